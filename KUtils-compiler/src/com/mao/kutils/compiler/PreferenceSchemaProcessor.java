@@ -0,0 +1,542 @@
+package com.mao.kutils.compiler;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+
+/**
+ * <p>
+ * 	com.mao.kutils.PreferenceSchema的注解处理器,为每个被注解的接口生成名为"接口名+Preferences"的实现类.
+ * </p>
+ * <p>
+ * 	处理器只通过名称引用注解,不依赖Android库,可以直接在编译期的JVM上运行.
+ * </p>
+ *
+ * @author mao
+ */
+@SupportedAnnotationTypes({PreferenceSchemaProcessor.SCHEMA, PreferenceSchemaProcessor.KEY})
+public class PreferenceSchemaProcessor extends AbstractProcessor {
+
+	static final String SCHEMA = "com.mao.kutils.PreferenceSchema";
+
+	static final String KEY = "com.mao.kutils.PreferenceKey";
+
+	private static final String SUFFIX = "Preferences";
+
+	@Override
+	public SourceVersion getSupportedSourceVersion() {
+		return SourceVersion.latestSupported();
+	}
+
+	@Override
+	public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+		TypeElement schema = processingEnv.getElementUtils().getTypeElement(SCHEMA);
+		if(schema == null) {
+			return false;
+		}
+		for(Element element : roundEnv.getElementsAnnotatedWith(schema)) {
+			if(element.getKind() != ElementKind.INTERFACE) {
+				error(element, "@PreferenceSchema can only be applied to interfaces");
+				continue;
+			}
+			TypeElement type = (TypeElement) element;
+			if(!type.getTypeParameters().isEmpty()) {
+				error(type, "@PreferenceSchema interfaces can't be generic");
+				continue;
+			}
+			Schema parsed = parse(type);
+			if(parsed != null) {
+				write(parsed);
+			}
+		}
+		return true;
+	}
+
+	//解析接口,出错时报告错误并返回null
+	private Schema parse(TypeElement type) {
+		AnnotationMirror mirror = findAnnotation(type, SCHEMA);
+		String name = (String) annotationValue(mirror, "name", null);
+		Integer mode = (Integer) annotationValue(mirror, "mode", 0);
+		if(name == null || name.length() == 0) {
+			error(type, "@PreferenceSchema name can't be empty");
+			return null;
+		}
+		Schema schema = new Schema(type, name, mode);
+		boolean valid = true;
+		List<ExecutableElement> methods = ElementFilter.methodsIn(
+				processingEnv.getElementUtils().getAllMembers(type));
+		for(ExecutableElement method : methods) {
+			if(!method.getModifiers().contains(Modifier.ABSTRACT)
+					|| method.getEnclosingElement().getKind() != ElementKind.INTERFACE) {
+				continue;
+			}
+			valid &= parseMethod(schema, method);
+		}
+		for(Property property : schema.properties.values()) {
+			valid &= resolveKeyAndDefault(property);
+		}
+		return valid && checkDuplicates(schema) ? schema : null;
+	}
+
+	//不同的属性不能使用相同的键,也不能生成相同的常量名或字段名
+	private boolean checkDuplicates(Schema schema) {
+		boolean valid = true;
+		Map<String, Property> keys = new HashMap<String, Property>();
+		Map<String, Property> constants = new HashMap<String, Property>();
+		Map<String, Property> fields = new HashMap<String, Property>();
+		for(Property property : schema.properties.values()) {
+			Property other = keys.put(property.key, property);
+			if(other != null) {
+				error(property.element(), "duplicate key \"" + property.key + "\", also used by " + other.name);
+				valid = false;
+			}
+			other = constants.put(property.constant(), property);
+			if(other != null) {
+				error(property.element(), property.name + " and " + other.name + " generate the same constant " + property.constant());
+				valid = false;
+			}
+			other = fields.put(property.field(), property);
+			if(other != null) {
+				error(property.element(), property.name + " and " + other.name + " generate the same field " + property.field());
+				valid = false;
+			}
+		}
+		return valid;
+	}
+
+	private boolean parseMethod(Schema schema, ExecutableElement method) {
+		String methodName = method.getSimpleName().toString();
+		List<? extends VariableElement> params = method.getParameters();
+		String propertyName;
+		Kind kind;
+		boolean getter;
+		if(params.isEmpty() && methodName.startsWith("get") && methodName.length() > 3) {
+			propertyName = methodName.substring(3);
+			kind = Kind.of(method.getReturnType());
+			getter = true;
+		} else if(params.isEmpty() && methodName.startsWith("is") && methodName.length() > 2
+				&& method.getReturnType().getKind() == TypeKind.BOOLEAN) {
+			propertyName = methodName.substring(2);
+			kind = Kind.BOOLEAN;
+			getter = true;
+		} else if(params.size() == 1 && methodName.startsWith("set") && methodName.length() > 3) {
+			TypeKind returnKind = method.getReturnType().getKind();
+			if(returnKind != TypeKind.VOID && returnKind != TypeKind.BOOLEAN) {
+				error(method, "setter must return void or boolean");
+				return false;
+			}
+			propertyName = methodName.substring(3);
+			kind = Kind.of(params.get(0).asType());
+			getter = false;
+		} else {
+			error(method, "method is neither a getter nor a setter");
+			return false;
+		}
+		if(kind == null) {
+			error(method, "unsupported type, expected boolean, int, long, float, String or Set<String>");
+			return false;
+		}
+		Property property = schema.properties.get(propertyName);
+		if(property == null) {
+			property = new Property(propertyName, kind);
+			schema.properties.put(propertyName, property);
+		} else if(property.kind != kind) {
+			error(method, "type of " + propertyName + " differs between getter and setter");
+			return false;
+		}
+		if(getter) {
+			property.getter = method;
+		} else {
+			property.setter = method;
+		}
+		return true;
+	}
+
+	private boolean resolveKeyAndDefault(Property property) {
+		AnnotationMirror mirror = null;
+		Element annotated = null;
+		if(property.getter != null) {
+			mirror = findAnnotation(property.getter, KEY);
+			annotated = property.getter;
+		}
+		if(mirror == null && property.setter != null) {
+			mirror = findAnnotation(property.setter, KEY);
+			annotated = property.setter;
+		}
+		String key = (String) annotationValue(mirror, "value", "");
+		property.key = key.length() > 0 ? key : toSnakeCase(property.name);
+		String defValue = (String) annotationValue(mirror, "defValue", "");
+		property.defValue = defaultLiteral(property.kind, defValue);
+		if(property.defValue == null) {
+			error(annotated, "invalid defValue \"" + defValue + "\" for " + property.kind.typeName);
+			return false;
+		}
+		return true;
+	}
+
+	//将默认值转换为Java字面量,不合法时返回null
+	private static String defaultLiteral(Kind kind, String value) {
+		boolean empty = value.length() == 0;
+		try {
+			switch (kind) {
+			case BOOLEAN:
+				if(empty) {
+					return "false";
+				}
+				return "true".equals(value) || "false".equals(value) ? value : null;
+			case INT:
+				return empty ? "0" : String.valueOf(Integer.parseInt(value.trim()));
+			case LONG:
+				return empty ? "0L" : Long.parseLong(value.trim()) + "L";
+			case FLOAT:
+				if(empty) {
+					return "0f";
+				}
+				float f = Float.parseFloat(value.trim());
+				return Float.isNaN(f) || Float.isInfinite(f) ? null : f + "f";
+			case STRING:
+				return empty ? "null" : quote(value);
+			default:
+				return empty ? "null" : null;
+			}
+		} catch (NumberFormatException e) {
+			return null;
+		}
+	}
+
+	private void write(Schema schema) {
+		TypeElement type = schema.type;
+		PackageElement pkg = processingEnv.getElementUtils().getPackageOf(type);
+		String packageName = pkg.isUnnamed() ? "" : pkg.getQualifiedName().toString();
+		String binaryName = processingEnv.getElementUtils().getBinaryName(type).toString();
+		String simpleName = (packageName.length() == 0 ? binaryName
+				: binaryName.substring(packageName.length() + 1)).replace('$', '_') + SUFFIX;
+		String qualifiedName = packageName.length() == 0 ? simpleName : packageName + "." + simpleName;
+
+		//只有Set<String>的转换是未检查的,没有这类属性时不需要导入Set和抑制警告
+		boolean hasStringSet = false;
+		for(Property property : schema.properties.values()) {
+			hasStringSet |= property.kind == Kind.STRING_SET;
+		}
+
+		StringBuilder sb = new StringBuilder(4096);
+		sb.append("// Generated by KUtils-compiler from ").append(type.getQualifiedName()).append(", do not edit.\n");
+		if(packageName.length() > 0) {
+			sb.append("package ").append(packageName).append(";\n\n");
+		}
+		sb.append("import java.util.HashMap;\n");
+		sb.append("import java.util.Map;\n");
+		if(hasStringSet) {
+			sb.append("import java.util.Set;\n");
+		}
+		sb.append('\n');
+		sb.append("import android.content.Context;\n\n");
+		sb.append("import com.mao.kutils.SharePreferencesFile;\n");
+		sb.append("import com.mao.kutils.SharePreferencesManager;\n\n");
+		sb.append("public final class ").append(simpleName).append(" implements ")
+				.append(type.getQualifiedName()).append(" {\n\n");
+		sb.append("\tpublic static final String NAME = ").append(quote(schema.name)).append(";\n\n");
+		sb.append("\tpublic static final int MODE = ").append(schema.mode).append(";\n\n");
+		for(Property property : schema.properties.values()) {
+			sb.append("\tpublic static final String ").append(property.constant()).append(" = ")
+					.append(quote(property.key)).append(";\n\n");
+		}
+		sb.append("\tprivate final SharePreferencesFile file;\n\n");
+		sb.append("\tpublic ").append(simpleName).append("(Context context) {\n");
+		sb.append("\t\tfile = SharePreferencesManager.getInstance().getFile(context, NAME, MODE);\n");
+		sb.append("\t}\n\n");
+
+		for(Property property : schema.properties.values()) {
+			if(property.getter != null) {
+				sb.append("\t@Override\n");
+				sb.append("\tpublic ").append(property.kind.typeName).append(' ')
+						.append(property.getter.getSimpleName()).append("() {\n");
+				sb.append("\t\treturn file.get").append(property.kind.accessor).append('(')
+						.append(property.constant()).append(", ").append(property.defValue).append(");\n");
+				sb.append("\t}\n\n");
+			}
+			if(property.setter != null) {
+				String param = property.setter.getParameters().get(0).getSimpleName().toString();
+				boolean returnsResult = property.setter.getReturnType().getKind() == TypeKind.BOOLEAN;
+				sb.append("\t@Override\n");
+				sb.append("\tpublic ").append(returnsResult ? "boolean " : "void ")
+						.append(property.setter.getSimpleName()).append('(')
+						.append(property.kind.typeName).append(' ').append(param).append(") {\n");
+				sb.append("\t\t").append(returnsResult ? "return " : "").append("file.put")
+						.append(property.kind.accessor).append('(').append(property.constant())
+						.append(", ").append(param).append(");\n");
+				sb.append("\t}\n\n");
+			}
+		}
+
+		sb.append("\t/**\n\t * 一次读取所有属性\n\t */\n");
+		if(hasStringSet) {
+			sb.append("\t@SuppressWarnings(\"unchecked\")\n");
+		}
+		sb.append("\tpublic Values load() {\n");
+		sb.append("\t\tMap<String, ?> all = file.getAll();\n");
+		sb.append("\t\tValues values = new Values();\n");
+		sb.append("\t\tif(all == null) {\n\t\t\treturn values;\n\t\t}\n");
+		sb.append("\t\tObject value;\n");
+		for(Property property : schema.properties.values()) {
+			sb.append("\t\tvalue = all.get(").append(property.constant()).append(");\n");
+			sb.append("\t\tif(value != null) {\n");
+			sb.append("\t\t\tvalues.").append(property.field()).append(" = (")
+					.append(property.kind.boxedName).append(") value;\n");
+			sb.append("\t\t}\n");
+		}
+		sb.append("\t\treturn values;\n");
+		sb.append("\t}\n\n");
+
+		sb.append("\t/**\n\t * 一次写入所有属性,值为null的属性会被移除\n\t */\n");
+		sb.append("\tpublic boolean store(Values values) {\n");
+		sb.append("\t\tMap<String, Object> all = new HashMap<String, Object>(")
+				.append(schema.properties.size() * 4 / 3 + 1).append(");\n");
+		for(Property property : schema.properties.values()) {
+			sb.append("\t\tall.put(").append(property.constant()).append(", values.")
+					.append(property.field()).append(");\n");
+		}
+		sb.append("\t\treturn file.putAll(all);\n");
+		sb.append("\t}\n\n");
+
+		sb.append("\tpublic static final class Values {\n");
+		for(Property property : schema.properties.values()) {
+			sb.append("\n\t\tpublic ").append(property.kind.typeName).append(' ').append(property.field())
+					.append(" = ").append(property.defValue).append(";\n");
+		}
+		sb.append("\t}\n");
+		sb.append("}\n");
+
+		Writer writer = null;
+		try {
+			writer = processingEnv.getFiler().createSourceFile(qualifiedName, type).openWriter();
+			writer.write(sb.toString());
+		} catch (IOException e) {
+			error(type, "can't write " + qualifiedName + ": " + e.getMessage());
+		} finally {
+			if(writer != null) {
+				try {
+					writer.close();
+				} catch (IOException e) {
+					error(type, "can't write " + qualifiedName + ": " + e.getMessage());
+				}
+			}
+		}
+	}
+
+	private static AnnotationMirror findAnnotation(Element element, String annotationName) {
+		for(AnnotationMirror mirror : element.getAnnotationMirrors()) {
+			TypeElement annotationType = (TypeElement) mirror.getAnnotationType().asElement();
+			if(annotationType.getQualifiedName().contentEquals(annotationName)) {
+				return mirror;
+			}
+		}
+		return null;
+	}
+
+	private static Object annotationValue(AnnotationMirror mirror, String name, Object defValue) {
+		if(mirror == null) {
+			return defValue;
+		}
+		for(Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry
+				: mirror.getElementValues().entrySet()) {
+			if(entry.getKey().getSimpleName().contentEquals(name)) {
+				return entry.getValue().getValue();
+			}
+		}
+		return defValue;
+	}
+
+	//LaunchCount -> launch_count
+	static String toSnakeCase(String name) {
+		StringBuilder sb = new StringBuilder(name.length() + 4);
+		for(int i = 0; i < name.length(); i++) {
+			char c = name.charAt(i);
+			if(Character.isUpperCase(c)) {
+				if(i > 0 && (!Character.isUpperCase(name.charAt(i - 1))
+						|| (i + 1 < name.length() && Character.isLowerCase(name.charAt(i + 1))))) {
+					sb.append('_');
+				}
+				sb.append(Character.toLowerCase(c));
+			} else {
+				sb.append(c);
+			}
+		}
+		return sb.toString();
+	}
+
+	//开头的缩写整体转为小写:LaunchCount -> launchCount, URLTimestamp -> urlTimestamp, URL -> url
+	static String toLowerCamelCase(String name) {
+		int upper = 0;
+		while(upper < name.length() && Character.isUpperCase(name.charAt(upper))) {
+			upper++;
+		}
+		//缩写之后是小写字母时,缩写的最后一个字母属于下一个单词
+		int end = upper > 1 && upper < name.length() && Character.isLowerCase(name.charAt(upper)) ? upper - 1 : upper;
+		if(end == 0) {
+			return name;
+		}
+		return name.substring(0, end).toLowerCase(Locale.US) + name.substring(end);
+	}
+
+	private static String quote(String s) {
+		StringBuilder sb = new StringBuilder(s.length() + 2);
+		sb.append('"');
+		for(int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			switch (c) {
+			case '"':
+				sb.append("\\\"");
+				break;
+			case '\\':
+				sb.append("\\\\");
+				break;
+			case '\n':
+				sb.append("\\n");
+				break;
+			case '\r':
+				sb.append("\\r");
+				break;
+			case '\t':
+				sb.append("\\t");
+				break;
+			default:
+				if(c < 0x20) {
+					sb.append(String.format("\\u%04x", (int) c));
+				} else {
+					sb.append(c);
+				}
+			}
+		}
+		sb.append('"');
+		return sb.toString();
+	}
+
+	private void error(Element element, String message) {
+		processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+	}
+
+	/**
+	 * 支持的属性类型
+	 */
+	enum Kind {
+		BOOLEAN("boolean", "Boolean", "Boolean"),
+		INT("int", "Integer", "Int"),
+		LONG("long", "Long", "Long"),
+		FLOAT("float", "Float", "Float"),
+		STRING("String", "String", "String"),
+		STRING_SET("Set<String>", "Set<String>", "StringSet");
+
+		/** 生成代码中的类型名 */
+		final String typeName;
+
+		/** 从getAll()的结果中转换时使用的类型名 */
+		final String boxedName;
+
+		/** SharePreferencesFile中读写方法的后缀 */
+		final String accessor;
+
+		Kind(String typeName, String boxedName, String accessor) {
+			this.typeName = typeName;
+			this.boxedName = boxedName;
+			this.accessor = accessor;
+		}
+
+		static Kind of(TypeMirror type) {
+			switch (type.getKind()) {
+			case BOOLEAN:
+				return BOOLEAN;
+			case INT:
+				return INT;
+			case LONG:
+				return LONG;
+			case FLOAT:
+				return FLOAT;
+			default:
+				String name = type.toString();
+				if("java.lang.String".equals(name)) {
+					return STRING;
+				}
+				if("java.util.Set<java.lang.String>".equals(name)) {
+					return STRING_SET;
+				}
+				return null;
+			}
+		}
+	}
+
+	private static final class Schema {
+
+		final TypeElement type;
+
+		final String name;
+
+		final int mode;
+
+		final Map<String, Property> properties = new LinkedHashMap<String, Property>();
+
+		Schema(TypeElement type, String name, int mode) {
+			this.type = type;
+			this.name = name;
+			this.mode = mode;
+		}
+	}
+
+	private static final class Property {
+
+		/** 去掉get/is/set前缀后的属性名,例如LaunchCount */
+		final String name;
+
+		final Kind kind;
+
+		ExecutableElement getter;
+
+		ExecutableElement setter;
+
+		String key;
+
+		String defValue;
+
+		Property(String name, Kind kind) {
+			this.name = name;
+			this.kind = kind;
+		}
+
+		//报告错误时使用的元素
+		Element element() {
+			return getter != null ? getter : setter;
+		}
+
+		String constant() {
+			return "KEY_" + toSnakeCase(name).toUpperCase(Locale.US);
+		}
+
+		String field() {
+			String field = toLowerCamelCase(name);
+			return SourceVersion.isKeyword(field) ? field + "_" : field;
+		}
+	}
+}
@@ -0,0 +1,326 @@
+package com.mao.kutils.compiler;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.StandardLocation;
+import javax.tools.ToolProvider;
+
+import junit.framework.TestCase;
+
+/**
+ * 在编译期运行处理器,检查生成的代码和报告的错误
+ *
+ * @author mao
+ * */
+public class PreferenceSchemaProcessorTest extends TestCase {
+
+	/** 注解和生成代码依赖的类,只保留生成代码用到的签名 */
+	private static final String[][] RUNTIME = {
+		{"com.mao.kutils.PreferenceSchema",
+			"package com.mao.kutils;\n"
+			+ "public @interface PreferenceSchema { String name(); int mode() default 0; }"},
+		{"com.mao.kutils.PreferenceKey",
+			"package com.mao.kutils;\n"
+			+ "public @interface PreferenceKey { String value() default \"\"; String defValue() default \"\"; }"},
+		{"android.content.Context",
+			"package android.content;\n"
+			+ "public class Context {}"},
+		{"com.mao.kutils.SharePreferencesManager",
+			"package com.mao.kutils;\n"
+			+ "public class SharePreferencesManager {\n"
+			+ "  public static SharePreferencesManager getInstance() { return null; }\n"
+			+ "  public SharePreferencesFile getFile(android.content.Context c, String n, int m) { return null; }\n"
+			+ "}"},
+		{"com.mao.kutils.SharePreferencesFile",
+			"package com.mao.kutils;\n"
+			+ "import java.util.Map;\n"
+			+ "import java.util.Set;\n"
+			+ "public final class SharePreferencesFile {\n"
+			+ "  public boolean getBoolean(String k, boolean d) { return d; }\n"
+			+ "  public float getFloat(String k, float d) { return d; }\n"
+			+ "  public int getInt(String k, int d) { return d; }\n"
+			+ "  public long getLong(String k, long d) { return d; }\n"
+			+ "  public String getString(String k, String d) { return d; }\n"
+			+ "  public Set<String> getStringSet(String k, Set<String> d) { return d; }\n"
+			+ "  public Map<String, ?> getAll() { return null; }\n"
+			+ "  public boolean putBoolean(String k, boolean v) { return true; }\n"
+			+ "  public boolean putFloat(String k, float v) { return true; }\n"
+			+ "  public boolean putInt(String k, int v) { return true; }\n"
+			+ "  public boolean putLong(String k, long v) { return true; }\n"
+			+ "  public boolean putString(String k, String v) { return true; }\n"
+			+ "  public boolean putStringSet(String k, Set<String> v) { return true; }\n"
+			+ "  public boolean putAll(Map<String, ?> v) { return true; }\n"
+			+ "}"},
+	};
+
+	private File dir;
+
+	private DiagnosticCollector<JavaFileObject> diagnostics;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		dir = File.createTempFile("PreferenceSchemaProcessorTest", "");
+		dir.delete();
+		dir.mkdirs();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		delete(dir);
+		super.tearDown();
+	}
+
+	private static void delete(File file) {
+		File[] children = file.listFiles();
+		if(children != null) {
+			for(File child : children) {
+				delete(child);
+			}
+		}
+		file.delete();
+	}
+
+	/**
+	 * 编译指定的源文件,未检查的转换作为错误
+	 *
+	 * @param className 源文件的类名
+	 * @param source 源文件内容
+	 * @return 编译成功返回true
+	 */
+	private boolean compile(String className, String source) throws IOException {
+		JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+		diagnostics = new DiagnosticCollector<JavaFileObject>();
+		StandardJavaFileManager fileManager = compiler.getStandardFileManager(diagnostics, Locale.US, null);
+		fileManager.setLocation(StandardLocation.CLASS_OUTPUT, Collections.singleton(dir));
+		fileManager.setLocation(StandardLocation.SOURCE_OUTPUT, Collections.singleton(dir));
+		List<JavaFileObject> units = new ArrayList<JavaFileObject>();
+		for(String[] runtime : RUNTIME) {
+			units.add(new Source(runtime[0], runtime[1]));
+		}
+		units.add(new Source(className, source));
+		JavaCompiler.CompilationTask task = compiler.getTask(null, fileManager, diagnostics,
+				Arrays.asList("-Xlint:unchecked", "-Werror"), null, units);
+		task.setProcessors(Collections.singleton(new PreferenceSchemaProcessor()));
+		try {
+			return task.call();
+		} finally {
+			fileManager.close();
+		}
+	}
+
+	private String errors() {
+		StringBuilder sb = new StringBuilder();
+		for(Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+			if(diagnostic.getKind() == Diagnostic.Kind.ERROR) {
+				sb.append(diagnostic.getMessage(Locale.US)).append('\n');
+			}
+		}
+		return sb.toString();
+	}
+
+	private String generated(String path) throws IOException {
+		File file = new File(dir, path);
+		assertTrue(path + " not generated", file.isFile());
+		Reader reader = new InputStreamReader(new FileInputStream(file), "UTF-8");
+		try {
+			StringBuilder sb = new StringBuilder();
+			char[] buffer = new char[4096];
+			int n;
+			while((n = reader.read(buffer)) != -1) {
+				sb.append(buffer, 0, n);
+			}
+			return sb.toString();
+		} finally {
+			reader.close();
+		}
+	}
+
+	public void testGeneratesKeysAndAccessors() throws Exception {
+		String source = "package demo;\n"
+				+ "import com.mao.kutils.PreferenceKey;\n"
+				+ "import com.mao.kutils.PreferenceSchema;\n"
+				+ "@PreferenceSchema(name = \"settings\", mode = 4)\n"
+				+ "public interface Settings {\n"
+				+ "  @PreferenceKey(defValue = \"3\") int getLaunchCount();\n"
+				+ "  boolean setLaunchCount(int count);\n"
+				+ "  boolean isFirstRun();\n"
+				+ "  void setFirstRun(boolean firstRun);\n"
+				+ "  @PreferenceKey(\"url_ts\") long getURLTimestamp();\n"
+				+ "  String getUserName();\n"
+				+ "  void setUserName(String name);\n"
+				+ "  @PreferenceKey(defValue = \"1.5\") float getScale();\n"
+				+ "  boolean isPublic();\n"
+				+ "}\n";
+		boolean compiled = compile("demo.Settings", source);
+		assertTrue(errors(), compiled);
+		String out = generated("demo/SettingsPreferences.java");
+
+		assertTrue(out.contains("public final class SettingsPreferences implements demo.Settings {"));
+		assertTrue(out.contains("public static final String NAME = \"settings\";"));
+		assertTrue(out.contains("public static final int MODE = 4;"));
+		assertTrue(out.contains("public static final String KEY_LAUNCH_COUNT = \"launch_count\";"));
+		assertTrue(out.contains("public static final String KEY_FIRST_RUN = \"first_run\";"));
+		assertTrue(out.contains("public static final String KEY_URL_TIMESTAMP = \"url_ts\";"));
+		assertTrue(out.contains("public static final String KEY_USER_NAME = \"user_name\";"));
+		assertTrue(out.contains("public static final String KEY_PUBLIC = \"public\";"));
+
+		assertTrue(out.contains("return file.getInt(KEY_LAUNCH_COUNT, 3);"));
+		assertTrue(out.contains("public boolean setLaunchCount(int count) {"));
+		assertTrue(out.contains("return file.putInt(KEY_LAUNCH_COUNT, count);"));
+		assertTrue(out.contains("public void setFirstRun(boolean firstRun) {"));
+		assertTrue(out.contains("\t\tfile.putBoolean(KEY_FIRST_RUN, firstRun);"));
+		assertTrue(out.contains("return file.getString(KEY_USER_NAME, null);"));
+		assertTrue(out.contains("return file.getFloat(KEY_SCALE, 1.5f);"));
+
+		//load()和store()逐个转换所有属性,字段名的开头缩写转为小写,关键字加下划线
+		assertTrue(out.contains("values.launchCount = (Integer) value;"));
+		assertTrue(out.contains("values.urlTimestamp = (Long) value;"));
+		assertTrue(out.contains("values.public_ = (Boolean) value;"));
+		assertTrue(out.contains("all.put(KEY_URL_TIMESTAMP, values.urlTimestamp);"));
+		assertTrue(out.contains("all.put(KEY_USER_NAME, values.userName);"));
+		assertTrue(out.contains("return file.putAll(all);"));
+		assertTrue(out.contains("public int launchCount = 3;"));
+		assertTrue(out.contains("public float scale = 1.5f;"));
+
+		//没有Set<String>属性时不导入Set,也不抑制警告
+		assertFalse(out.contains("import java.util.Set;"));
+		assertFalse(out.contains("@SuppressWarnings"));
+	}
+
+	public void testStringSet() throws Exception {
+		String source = "package demo;\n"
+				+ "import java.util.Set;\n"
+				+ "import com.mao.kutils.PreferenceSchema;\n"
+				+ "@PreferenceSchema(name = \"tags\")\n"
+				+ "public interface Tags {\n"
+				+ "  Set<String> getTags();\n"
+				+ "  void setTags(Set<String> tags);\n"
+				+ "}\n";
+		//-Werror下未检查的转换必须已被抑制
+		boolean compiled = compile("demo.Tags", source);
+		assertTrue(errors(), compiled);
+		String out = generated("demo/TagsPreferences.java");
+		assertTrue(out.contains("import java.util.Set;"));
+		assertTrue(out.contains("@SuppressWarnings(\"unchecked\")"));
+		assertTrue(out.contains("values.tags = (Set<String>) value;"));
+		assertTrue(out.contains("return file.getStringSet(KEY_TAGS, null);"));
+	}
+
+	public void testNestedInterface() throws Exception {
+		String source = "package demo;\n"
+				+ "import com.mao.kutils.PreferenceSchema;\n"
+				+ "public class Outer {\n"
+				+ "  @PreferenceSchema(name = \"inner\")\n"
+				+ "  public interface Inner { int getCount(); }\n"
+				+ "}\n";
+		boolean compiled = compile("demo.Outer", source);
+		assertTrue(errors(), compiled);
+		assertTrue(generated("demo/Outer_InnerPreferences.java").contains("implements demo.Outer.Inner {"));
+	}
+
+	public void testRejectsDuplicateKeys() throws Exception {
+		String source = "package demo;\n"
+				+ "import com.mao.kutils.PreferenceKey;\n"
+				+ "import com.mao.kutils.PreferenceSchema;\n"
+				+ "@PreferenceSchema(name = \"dup\")\n"
+				+ "public interface Dup {\n"
+				+ "  @PreferenceKey(\"count\") int getLaunchCount();\n"
+				+ "  @PreferenceKey(\"count\") int getOpenCount();\n"
+				+ "  long getURLTimestamp();\n"
+				+ "  long getUrlTimestamp();\n"
+				+ "}\n";
+		assertFalse(compile("demo.Dup", source));
+		String errors = errors();
+		assertTrue(errors, errors.contains("duplicate key \"count\""));
+		assertTrue(errors, errors.contains("generate the same constant KEY_URL_TIMESTAMP"));
+		assertFalse(new File(dir, "demo/DupPreferences.java").exists());
+	}
+
+	public void testReportsInvalidSchemas() throws Exception {
+		assertFalse(compile("demo.NotInterface", "package demo;\n"
+				+ "@com.mao.kutils.PreferenceSchema(name = \"a\")\n"
+				+ "public class NotInterface {}\n"));
+		assertTrue(errors().contains("can only be applied to interfaces"));
+
+		assertFalse(compile("demo.EmptyName", "package demo;\n"
+				+ "@com.mao.kutils.PreferenceSchema(name = \"\")\n"
+				+ "public interface EmptyName {}\n"));
+		assertTrue(errors().contains("name can't be empty"));
+
+		assertFalse(compile("demo.BadDefault", "package demo;\n"
+				+ "@com.mao.kutils.PreferenceSchema(name = \"a\")\n"
+				+ "public interface BadDefault {\n"
+				+ "  @com.mao.kutils.PreferenceKey(defValue = \"abc\") int getCount();\n"
+				+ "}\n"));
+		assertTrue(errors().contains("invalid defValue \"abc\" for int"));
+
+		assertFalse(compile("demo.BadType", "package demo;\n"
+				+ "@com.mao.kutils.PreferenceSchema(name = \"a\")\n"
+				+ "public interface BadType {\n"
+				+ "  double getRatio();\n"
+				+ "}\n"));
+		assertTrue(errors().contains("unsupported type"));
+
+		assertFalse(compile("demo.BadSetter", "package demo;\n"
+				+ "@com.mao.kutils.PreferenceSchema(name = \"a\")\n"
+				+ "public interface BadSetter {\n"
+				+ "  int setCount(int count);\n"
+				+ "  void reset();\n"
+				+ "  String getCount();\n"
+				+ "  void setName(int name);\n"
+				+ "  String getName();\n"
+				+ "}\n"));
+		String errors = errors();
+		assertTrue(errors, errors.contains("setter must return void or boolean"));
+		assertTrue(errors, errors.contains("method is neither a getter nor a setter"));
+		assertTrue(errors, errors.contains("type of Name differs between getter and setter"));
+	}
+
+	public void testNaming() {
+		assertEquals("launch_count", PreferenceSchemaProcessor.toSnakeCase("LaunchCount"));
+		assertEquals("url_timestamp", PreferenceSchemaProcessor.toSnakeCase("URLTimestamp"));
+		assertEquals("url", PreferenceSchemaProcessor.toSnakeCase("URL"));
+		assertEquals("https_proxy_port", PreferenceSchemaProcessor.toSnakeCase("HTTPSProxyPort"));
+
+		assertEquals("launchCount", PreferenceSchemaProcessor.toLowerCamelCase("LaunchCount"));
+		assertEquals("urlTimestamp", PreferenceSchemaProcessor.toLowerCamelCase("URLTimestamp"));
+		assertEquals("url", PreferenceSchemaProcessor.toLowerCamelCase("URL"));
+		assertEquals("httpsProxyPort", PreferenceSchemaProcessor.toLowerCamelCase("HTTPSProxyPort"));
+		assertEquals("a", PreferenceSchemaProcessor.toLowerCamelCase("A"));
+	}
+
+	/**
+	 * 内存中的源文件
+	 */
+	private static final class Source extends SimpleJavaFileObject {
+
+		private final String mContent;
+
+		Source(String className, String content) {
+			super(URI.create("string:///" + className.replace('.', '/') + Kind.SOURCE.extension), Kind.SOURCE);
+			mContent = content;
+		}
+
+		@Override
+		public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+			return mContent;
+		}
+	}
+}
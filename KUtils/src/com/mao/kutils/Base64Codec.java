@@ -0,0 +1,628 @@
+package com.mao.kutils;
+
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * <p>
+ * 	纯Java实现的Base64编码解码,不依赖android.util.Base64,可以在普通JVM上使用
+ * </p>
+ * <p>
+ * 	提供三种常用的编码方式:{@link #STANDARD}、{@link #URL_SAFE}、{@link #MIME},
+ *  除了对整个数组编码解码,还可以编码到调用者提供的数组中(不分配任何对象),
+ *  或者通过{@link #wrap(OutputStream)}、{@link #wrap(InputStream)}边读写边编码解码,大文件不需要全部放在内存中.
+ * </p>
+ * <p>
+ * 	解码时'='填充可有可无.STANDARD和URL_SAFE遇到不属于字母表的字符时解码失败,MIME会忽略这些字符(例如换行).
+ *  Base64Codec是不可变的,可以在多个线程中使用.
+ * </p>
+ *
+ * @author mao
+ * */
+public final class Base64Codec {
+
+	//必须在下面的实例之前初始化
+	private static final byte[] STANDARD_ALPHABET = alphabet('+', '/');
+
+	private static final byte[] URL_SAFE_ALPHABET = alphabet('-', '_');
+
+	private static final int[] STANDARD_VALUES = values(STANDARD_ALPHABET);
+
+	private static final int[] URL_SAFE_VALUES = values(URL_SAFE_ALPHABET);
+
+	/** RFC 4648标准字母表,有填充,不换行 */
+	public static final Base64Codec STANDARD = new Base64Codec(false, true, 0, null, false, false);
+
+	/** RFC 4648 URL和文件名安全的字母表('-'和'_'代替'+'和'/'),有填充,不换行 */
+	public static final Base64Codec URL_SAFE = new Base64Codec(true, true, 0, null, false, false);
+
+	/** RFC 2045,标准字母表,每76个字符以"\r\n"换行,解码时忽略不属于字母表的字符 */
+	public static final Base64Codec MIME = new Base64Codec(false, true, 76, new byte[] {'\r', '\n'}, false, true);
+
+	private static final Charset US_ASCII = Charset.forName("US-ASCII");
+
+	private static final int STREAM_BUFFER_SIZE = 8 * 1024;
+
+	private final boolean mUrlSafe;
+
+	private final byte[] mAlphabet;
+
+	private final int[] mValues;
+
+	private final boolean mPadding;
+
+	/** 每行的字符数,0表示不换行 */
+	private final int mLineLength;
+
+	private final byte[] mLineSeparator;
+
+	/** 最后一行后面是否也要加换行符 */
+	private final boolean mTrailingSeparator;
+
+	/** 解码时是否忽略不属于字母表的字符 */
+	private final boolean mLenient;
+
+	Base64Codec(boolean urlSafe, boolean padding, int lineLength, byte[] lineSeparator,
+			boolean trailingSeparator, boolean lenient) {
+		mUrlSafe = urlSafe;
+		mAlphabet = urlSafe ? URL_SAFE_ALPHABET : STANDARD_ALPHABET;
+		mValues = urlSafe ? URL_SAFE_VALUES : STANDARD_VALUES;
+		mPadding = padding;
+		//每行必须是完整的4字符组
+		mLineLength = lineSeparator == null ? 0 : lineLength / 4 * 4;
+		mLineSeparator = lineSeparator;
+		mTrailingSeparator = trailingSeparator && mLineLength > 0;
+		mLenient = lenient;
+	}
+
+	private static byte[] alphabet(char c62, char c63) {
+		byte[] table = new byte[64];
+		int i = 0;
+		for(char c = 'A'; c <= 'Z'; c++) {
+			table[i++] = (byte) c;
+		}
+		for(char c = 'a'; c <= 'z'; c++) {
+			table[i++] = (byte) c;
+		}
+		for(char c = '0'; c <= '9'; c++) {
+			table[i++] = (byte) c;
+		}
+		table[62] = (byte) c62;
+		table[63] = (byte) c63;
+		return table;
+	}
+
+	private static int[] values(byte[] alphabet) {
+		int[] values = new int[256];
+		Arrays.fill(values, -1);
+		for(int i = 0; i < alphabet.length; i++) {
+			values[alphabet[i]] = i;
+		}
+		return values;
+	}
+
+	/**
+	 * 获取编码时不写入'='填充的Base64Codec,其它设置不变
+	 *
+	 * @return 返回Base64Codec
+	 */
+	public Base64Codec withoutPadding() {
+		if(!mPadding) {
+			return this;
+		}
+		return new Base64Codec(mUrlSafe, false, mLineLength, mLineSeparator, mTrailingSeparator, mLenient);
+	}
+
+	/**
+	 * 计算编码后的长度
+	 *
+	 * @param length 编码前的字节数
+	 * @return 返回编码后的字节数
+	 */
+	public int encodedLength(int length) {
+		int remainder = length % 3;
+		int n = length / 3 * 4;
+		if(remainder != 0) {
+			n += mPadding ? 4 : remainder + 1;
+		}
+		if(mLineLength > 0 && n > 0) {
+			int separators = (n - 1) / mLineLength + (mTrailingSeparator ? 1 : 0);
+			n += separators * mLineSeparator.length;
+		}
+		return n;
+	}
+
+	/**
+	 * 编码
+	 *
+	 * @param data 要编码的数据
+	 * @return 返回编码后的字节数组,data为null时返回null
+	 */
+	public byte[] encode(byte[] data) {
+		if(data == null) {
+			return null;
+		}
+		byte[] result = new byte[encodedLength(data.length)];
+		encode(data, 0, data.length, result, 0);
+		return result;
+	}
+
+	/**
+	 * 编码为字符串
+	 *
+	 * @param data 要编码的数据
+	 * @return 返回编码后的字符串,data为null时返回null
+	 */
+	public String encodeToString(byte[] data) {
+		byte[] result = encode(data);
+		return result == null ? null : new String(result, US_ASCII);
+	}
+
+	/**
+	 * 将数组的指定部分编码后写入调用者提供的数组,不分配任何对象
+	 *
+	 * @param src 要编码的数据
+	 * @param srcOffset 起始位置
+	 * @param length 要编码的字节数
+	 * @param dst 目标数组,从dstOffset开始至少需要{@link #encodedLength(int)}个字节的空间
+	 * @param dstOffset 目标起始位置
+	 * @return 返回写入的字节数
+	 */
+	public int encode(byte[] src, int srcOffset, int length, byte[] dst, int dstOffset) {
+		int end = srcOffset + length;
+		int fullEnd = srcOffset + length / 3 * 3;
+		int i = srcOffset;
+		int j = dstOffset;
+		if(mLineLength == 0) {
+			j += encodeBlock(src, i, fullEnd - i, dst, j);
+			i = fullEnd;
+		} else {
+			int lineBytes = mLineLength / 4 * 3;
+			while(i < fullEnd) {
+				int n = Math.min(lineBytes, fullEnd - i);
+				j += encodeBlock(src, i, n, dst, j);
+				i += n;
+				//整行写满并且后面还有数据时才换行
+				if(n == lineBytes && i < end) {
+					j = writeSeparator(dst, j);
+				}
+			}
+		}
+		j += encodeTail(src, i, end - i, dst, j);
+		if(mTrailingSeparator && length > 0) {
+			j = writeSeparator(dst, j);
+		}
+		return j - dstOffset;
+	}
+
+	private int writeSeparator(byte[] dst, int offset) {
+		System.arraycopy(mLineSeparator, 0, dst, offset, mLineSeparator.length);
+		return offset + mLineSeparator.length;
+	}
+
+	//编码长度为3的倍数的数据,不换行
+	private int encodeBlock(byte[] src, int offset, int length, byte[] dst, int dstOffset) {
+		byte[] table = mAlphabet;
+		int end = offset + length;
+		int j = dstOffset;
+		for(int i = offset; i < end; i += 3) {
+			int bits = (src[i] & 0xff) << 16 | (src[i + 1] & 0xff) << 8 | (src[i + 2] & 0xff);
+			dst[j++] = table[bits >>> 18];
+			dst[j++] = table[(bits >>> 12) & 0x3f];
+			dst[j++] = table[(bits >>> 6) & 0x3f];
+			dst[j++] = table[bits & 0x3f];
+		}
+		return j - dstOffset;
+	}
+
+	//编码最后不足3个字节的数据
+	private int encodeTail(byte[] src, int offset, int length, byte[] dst, int dstOffset) {
+		byte[] table = mAlphabet;
+		int j = dstOffset;
+		if(length == 1) {
+			int b0 = src[offset] & 0xff;
+			dst[j++] = table[b0 >>> 2];
+			dst[j++] = table[(b0 << 4) & 0x3f];
+			if(mPadding) {
+				dst[j++] = '=';
+				dst[j++] = '=';
+			}
+		} else if(length == 2) {
+			int bits = (src[offset] & 0xff) << 8 | (src[offset + 1] & 0xff);
+			dst[j++] = table[bits >>> 10];
+			dst[j++] = table[(bits >>> 4) & 0x3f];
+			dst[j++] = table[(bits << 2) & 0x3f];
+			if(mPadding) {
+				dst[j++] = '=';
+			}
+		}
+		return j - dstOffset;
+	}
+
+	/**
+	 * 计算解码后的最大长度
+	 *
+	 * @param length 编码后的字节数
+	 * @return 返回解码后最多的字节数,实际长度由解码方法的返回值决定
+	 */
+	public int maxDecodedLength(int length) {
+		return length / 4 * 3 + (length % 4 == 0 ? 0 : 2);
+	}
+
+	/**
+	 * 解码
+	 *
+	 * @param data 编码后的数据
+	 * @return 解码成功返回解码后的字节数组,data为null或者不是合法的Base64时返回null
+	 */
+	public byte[] decode(byte[] data) {
+		if(data == null) {
+			return null;
+		}
+		byte[] result = new byte[maxDecodedLength(data.length)];
+		int n = decode(data, 0, data.length, result, 0);
+		if(n < 0) {
+			return null;
+		}
+		return n == result.length ? result : Arrays.copyOf(result, n);
+	}
+
+	/**
+	 * 解码字符串
+	 *
+	 * @param s 编码后的字符串
+	 * @return 解码成功返回解码后的字节数组,s为null或者不是合法的Base64时返回null
+	 */
+	public byte[] decode(String s) {
+		return s == null ? null : decode(s.getBytes(US_ASCII));
+	}
+
+	/**
+	 * 将数组的指定部分解码后写入调用者提供的数组,不分配任何对象
+	 *
+	 * @param src 编码后的数据
+	 * @param srcOffset 起始位置
+	 * @param length 字节数
+	 * @param dst 目标数组,从dstOffset开始至少需要{@link #maxDecodedLength(int)}个字节的空间
+	 * @param dstOffset 目标起始位置
+	 * @return 返回写入的字节数,不是合法的Base64时返回-1,此时dst中可能已写入部分内容
+	 */
+	public int decode(byte[] src, int srcOffset, int length, byte[] dst, int dstOffset) {
+		int[] values = mValues;
+		int end = srcOffset + length;
+		int i = srcOffset;
+		int j = dstOffset;
+		//快速路径:连续4个字符都属于字母表
+		while(i + 4 <= end) {
+			//不属于字母表的字符对应-1,移位后仍然是负数
+			int bits = values[src[i] & 0xff] << 18 | values[src[i + 1] & 0xff] << 12
+					| values[src[i + 2] & 0xff] << 6 | values[src[i + 3] & 0xff];
+			if(bits < 0) {
+				break;
+			}
+			dst[j++] = (byte) (bits >> 16);
+			dst[j++] = (byte) (bits >> 8);
+			dst[j++] = (byte) bits;
+			i += 4;
+		}
+		int bits = 0;
+		int count = 0;
+		for(; i < end; i++) {
+			int c = src[i] & 0xff;
+			int v = values[c];
+			if(v >= 0) {
+				bits = bits << 6 | v;
+				if(++count == 4) {
+					dst[j++] = (byte) (bits >> 16);
+					dst[j++] = (byte) (bits >> 8);
+					dst[j++] = (byte) bits;
+					bits = 0;
+					count = 0;
+				}
+			} else if(c == '=') {
+				if(count < 2) {
+					return -1;
+				}
+				//还需要的'='的个数
+				int padding = 3 - count;
+				for(i++; i < end; i++) {
+					c = src[i] & 0xff;
+					if(c == '=' && padding > 0) {
+						padding--;
+					} else if(!mLenient || c == '=' || values[c] >= 0) {
+						return -1;
+					}
+				}
+				if(padding > 0) {
+					return -1;
+				}
+				break;
+			} else if(!mLenient) {
+				return -1;
+			}
+		}
+		int n = writeTail(bits, count, dst, j);
+		return n < 0 ? -1 : j + n - dstOffset;
+	}
+
+	//写入最后不足4个字符对应的字节,返回写入的字节数,不合法时返回-1
+	private static int writeTail(int bits, int count, byte[] dst, int offset) {
+		switch (count) {
+		case 0:
+			return 0;
+		case 2:
+			dst[offset] = (byte) (bits >> 4);
+			return 1;
+		case 3:
+			dst[offset] = (byte) (bits >> 10);
+			dst[offset + 1] = (byte) (bits >> 2);
+			return 2;
+		default:
+			return -1;
+		}
+	}
+
+	/**
+	 * 包装输出流,写入的数据被编码后写入os.关闭返回的输出流时才会写入最后不足3个字节的数据,并关闭os
+	 *
+	 * @param os 编码后的数据写入的输出流
+	 * @return 返回编码输出流
+	 */
+	public OutputStream wrap(OutputStream os) {
+		return new EncodingOutputStream(os);
+	}
+
+	/**
+	 * 包装输入流,从返回的输入流中读取的是is中的数据解码后的内容.
+	 * 数据不是合法的Base64时读取方法抛出IOException
+	 *
+	 * @param is 编码后的数据所在的输入流
+	 * @return 返回解码输入流
+	 */
+	public InputStream wrap(InputStream is) {
+		return new DecodingInputStream(is);
+	}
+
+	private final class EncodingOutputStream extends FilterOutputStream {
+
+		private final byte[] mBuffer = new byte[STREAM_BUFFER_SIZE];
+
+		/** 还不足3个字节的数据 */
+		private final byte[] mPending = new byte[3];
+
+		private int mPendingLength;
+
+		private final byte[] mSingle = new byte[1];
+
+		/** 当前行已写入的字符数 */
+		private int mLinePosition;
+
+		private boolean mWritten;
+
+		private boolean mClosed;
+
+		EncodingOutputStream(OutputStream os) {
+			super(os);
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			mSingle[0] = (byte) b;
+			write(mSingle, 0, 1);
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			if(mClosed) {
+				throw new IOException("stream closed");
+			}
+			if(mPendingLength > 0) {
+				while(mPendingLength < 3 && len > 0) {
+					mPending[mPendingLength++] = b[off++];
+					len--;
+				}
+				if(mPendingLength < 3) {
+					return;
+				}
+				writeBlock(mPending, 0, 3);
+				mPendingLength = 0;
+			}
+			int full = len / 3 * 3;
+			writeBlock(b, off, full);
+			for(int i = full; i < len; i++) {
+				mPending[mPendingLength++] = b[off + i];
+			}
+		}
+
+		private void writeBlock(byte[] b, int off, int len) throws IOException {
+			int maxBytes = mBuffer.length / 4 * 3;
+			while(len > 0) {
+				int n = Math.min(len, maxBytes);
+				if(mLineLength > 0) {
+					if(mLinePosition == mLineLength) {
+						out.write(mLineSeparator);
+						mLinePosition = 0;
+					}
+					n = Math.min(n, (mLineLength - mLinePosition) / 4 * 3);
+				}
+				int written = encodeBlock(b, off, n, mBuffer, 0);
+				out.write(mBuffer, 0, written);
+				if(mLineLength > 0) {
+					mLinePosition += written;
+				}
+				off += n;
+				len -= n;
+				mWritten = true;
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			if(mClosed) {
+				return;
+			}
+			mClosed = true;
+			try {
+				if(mPendingLength > 0) {
+					if(mLineLength > 0 && mLinePosition == mLineLength) {
+						out.write(mLineSeparator);
+					}
+					out.write(mBuffer, 0, encodeTail(mPending, 0, mPendingLength, mBuffer, 0));
+					mWritten = true;
+				}
+				if(mTrailingSeparator && mWritten) {
+					out.write(mLineSeparator);
+				}
+				out.flush();
+			} finally {
+				out.close();
+			}
+		}
+	}
+
+	private final class DecodingInputStream extends FilterInputStream {
+
+		private final byte[] mInput = new byte[STREAM_BUFFER_SIZE];
+
+		private final byte[] mOutput = new byte[STREAM_BUFFER_SIZE];
+
+		private int mPosition;
+
+		private int mLimit;
+
+		private int mBits;
+
+		/** mBits中的字符数 */
+		private int mCount;
+
+		/** 遇到'='后还需要的'='的个数,-1表示还没有遇到'=' */
+		private int mPadding = -1;
+
+		private boolean mEof;
+
+		private final byte[] mSingle = new byte[1];
+
+		DecodingInputStream(InputStream is) {
+			super(is);
+		}
+
+		@Override
+		public int read() throws IOException {
+			int n = read(mSingle, 0, 1);
+			return n == -1 ? -1 : mSingle[0] & 0xff;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			if(len == 0) {
+				return 0;
+			}
+			while(mPosition == mLimit) {
+				if(mEof) {
+					return -1;
+				}
+				fill();
+			}
+			int n = Math.min(len, mLimit - mPosition);
+			System.arraycopy(mOutput, mPosition, b, off, n);
+			mPosition += n;
+			return n;
+		}
+
+		@Override
+		public int available() throws IOException {
+			return mLimit - mPosition;
+		}
+
+		@Override
+		public long skip(long n) throws IOException {
+			long remaining = n;
+			while(remaining > 0) {
+				if(mPosition == mLimit) {
+					if(mEof) {
+						break;
+					}
+					fill();
+					continue;
+				}
+				int step = (int) Math.min(remaining, mLimit - mPosition);
+				mPosition += step;
+				remaining -= step;
+			}
+			return n - remaining;
+		}
+
+		@Override
+		public boolean markSupported() {
+			return false;
+		}
+
+		@Override
+		public synchronized void mark(int readlimit) {
+		}
+
+		@Override
+		public synchronized void reset() throws IOException {
+			throw new IOException("mark/reset not supported");
+		}
+
+		private void fill() throws IOException {
+			mPosition = 0;
+			mLimit = 0;
+			int n = in.read(mInput);
+			if(n == -1) {
+				mEof = true;
+				if(mPadding > 0) {
+					throw new IOException("incomplete base64 padding");
+				}
+				int tail = writeTail(mBits, mCount, mOutput, 0);
+				if(tail < 0) {
+					throw new IOException("incomplete base64 data");
+				}
+				mLimit = tail;
+				mCount = 0;
+				return;
+			}
+			int[] values = mValues;
+			byte[] output = mOutput;
+			int j = 0;
+			int bits = mBits;
+			int count = mCount;
+			for(int i = 0; i < n; i++) {
+				int c = mInput[i] & 0xff;
+				int v = values[c];
+				if(mPadding >= 0) {
+					if(c == '=' && mPadding > 0) {
+						mPadding--;
+					} else if(!mLenient || c == '=' || v >= 0) {
+						throw new IOException("invalid base64 data after padding");
+					}
+				} else if(v >= 0) {
+					bits = bits << 6 | v;
+					if(++count == 4) {
+						output[j++] = (byte) (bits >> 16);
+						output[j++] = (byte) (bits >> 8);
+						output[j++] = (byte) bits;
+						bits = 0;
+						count = 0;
+					}
+				} else if(c == '=') {
+					if(count < 2) {
+						throw new IOException("unexpected base64 padding");
+					}
+					mPadding = 3 - count;
+				} else if(!mLenient) {
+					throw new IOException("invalid base64 character 0x" + Integer.toHexString(c));
+				}
+			}
+			mBits = bits;
+			mCount = count;
+			mLimit = j;
+		}
+	}
+}
@@ -1,14 +1,26 @@
 package com.mao.kutils;
 
-import java.io.UnsupportedEncodingException;
-import java.net.URLDecoder;
-import java.net.URLEncoder;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import android.text.TextUtils;
-import android.util.Base64;
 
 /**
  * 基本的加密解密工具类
@@ -17,6 +29,44 @@ import android.util.Base64;
  *
  */
 public class BaseEncryptHelper {
+	
+	public static final String MD5 = "MD5";
+	
+	public static final String SHA1 = "SHA-1";
+	
+	public static final String SHA256 = "SHA-256";
+	
+	/** CRC32C(Castagnoli),4字节 */
+	public static final String CRC32C = "CRC32C";
+	
+	/** xxHash64,种子为0,8字节,速度远快于MD5,但不能用于安全相关的场合 */
+	public static final String XXHASH64 = "XXH64";
+	
+	/** 分块并行计算时默认的块大小 */
+	public static final int DEFAULT_CHUNK_SIZE = 16 * 1024 * 1024;
+	
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+	
+	/** 与android.util.Base64.DEFAULT相同:每76个字符以"\n"换行,最后一行也有换行符 */
+	private static final Base64Codec BASE64_DEFAULT = new Base64Codec(false, true, 76, new byte[] {'\n'}, true, true);
+	
+	/** 不超过该大小的文件一次映射到内存中,更大的文件分段读取,避免32位设备上映射过多的地址空间 */
+	private static final long MAX_MAP_SIZE = 64 * 1024 * 1024;
+	
+	/** 小于该大小的文件直接读取,内存映射的开销不划算 */
+	private static final long MAP_THRESHOLD = 256 * 1024;
+	
+	private static final ThreadLocal<HashMap<String, Hasher>> sHashers = new ThreadLocal<HashMap<String, Hasher>>() {
+		
+		@Override
+		protected HashMap<String, Hasher> initialValue() {
+			return new HashMap<String, Hasher>();
+		}
+	};
+	
+	private static volatile ThreadPoolExecutor sExecutor;
+	
+	private static final ConcurrentHashMap<String, Charset> sCharsets = new ConcurrentHashMap<String, Charset>();
 
 	private BaseEncryptHelper() {
 		throw new UnsupportedOperationException("can't instantiate class EncryptHelper");
@@ -25,109 +75,358 @@ public class BaseEncryptHelper {
 	/**
 	 * MD5加密
 	 * 
-	 * @param raw 要加密的字符串
+	 * @param raw 要加密的字符串,按UTF-8编码
 	 * @return 加密成功返回加密后的字符串，加密失败返回null
 	 */
 	public static String md5(String raw) {
+		if(raw == null) {
+			return null;
+		}
+		return ByteUtils.bytes2HexString(hash(MD5, raw.getBytes(UTF_8)));
+	}
+	
+	/**
+	 * 计算文件的MD5
+	 * 
+	 * @param file 文件
+	 * @return 计算成功返回MD5的十六进制字符串，失败返回null
+	 */
+	public static String md5(File file) {
+		return ByteUtils.bytes2HexString(hash(MD5, file));
+	}
+	
+	/**
+	 * 创建增量计算哈希值的Hasher
+	 * 
+	 * @param algorithm 算法,{@link #MD5}、{@link #SHA1}、{@link #SHA256}、{@link #CRC32C}、{@link #XXHASH64},
+	 * 	或者{@link java.security.MessageDigest}支持的其它算法
+	 * @return 返回Hasher
+	 * @throws IllegalArgumentException 不支持该算法时抛出
+	 */
+	public static Hasher newHasher(String algorithm) {
+		return Hasher.newInstance(algorithm);
+	}
+	
+	/**
+	 * 计算字节数组的哈希值
+	 * 
+	 * @param algorithm 算法,见{@link #newHasher(String)}
+	 * @param data 数据
+	 * @return 返回哈希值，data为null时返回null
+	 * @throws IllegalArgumentException 不支持该算法时抛出
+	 */
+	public static byte[] hash(String algorithm, byte[] data) {
+		if(data == null) {
+			return null;
+		}
+		Hasher hasher = obtainHasher(algorithm);
+		try {
+			return hasher.update(data).digest();
+		} finally {
+			recycleHasher(algorithm, hasher);
+		}
+	}
+	
+	/**
+	 * 计算buffer中position到limit之间数据的哈希值,完成后buffer的position等于limit
+	 * 
+	 * @param algorithm 算法,见{@link #newHasher(String)}
+	 * @param buffer 数据
+	 * @return 返回哈希值，buffer为null时返回null
+	 * @throws IllegalArgumentException 不支持该算法时抛出
+	 */
+	public static byte[] hash(String algorithm, ByteBuffer buffer) {
+		if(buffer == null) {
+			return null;
+		}
+		Hasher hasher = obtainHasher(algorithm);
+		try {
+			return hasher.update(buffer).digest();
+		} finally {
+			recycleHasher(algorithm, hasher);
+		}
+	}
+	
+	/**
+	 * 读取输入流直到结束并计算哈希值,不会关闭输入流
+	 * 
+	 * @param algorithm 算法,见{@link #newHasher(String)}
+	 * @param is 输入流
+	 * @return 计算成功返回哈希值，读取失败或者is为null返回null
+	 * @throws IllegalArgumentException 不支持该算法时抛出
+	 */
+	public static byte[] hash(String algorithm, InputStream is) {
+		if(is == null) {
+			return null;
+		}
+		Hasher hasher = obtainHasher(algorithm);
+		byte[] buffer = IoUtils.obtainBuffer();
+		try {
+			int n;
+			while((n = is.read(buffer)) != -1) {
+				hasher.update(buffer, 0, n);
+			}
+			return hasher.digest();
+		} catch (IOException e) {
+			e.printStackTrace();
+			return null;
+		} finally {
+			IoUtils.recycleBuffer(buffer);
+			recycleHasher(algorithm, hasher);
+		}
+	}
+	
+	/**
+	 * 计算文件的哈希值,中等大小的文件通过内存映射读取,不会占用堆内存
+	 * 
+	 * @param algorithm 算法,见{@link #newHasher(String)}
+	 * @param file 文件
+	 * @return 计算成功返回哈希值，失败返回null
+	 * @throws IllegalArgumentException 不支持该算法时抛出
+	 */
+	public static byte[] hash(String algorithm, File file) {
+		if(file == null || !file.isFile()) {
+			return null;
+		}
+		FileInputStream fis = null;
+		Hasher hasher = null;
 		try {
-			MessageDigest md5 = MessageDigest.getInstance("MD5");
-			byte[] data = md5.digest(raw.getBytes(Charset.defaultCharset()));
-			String result = ByteUtils.bytes2HexString(data);
-			return result;
-		} catch (NoSuchAlgorithmException e) {
+			fis = new FileInputStream(file);
+			FileChannel channel = fis.getChannel();
+			long size = channel.size();
+			if(size < MAP_THRESHOLD || size > MAX_MAP_SIZE) {
+				return hash(algorithm, fis);
+			}
+			hasher = obtainHasher(algorithm);
+			hasher.update(channel.map(FileChannel.MapMode.READ_ONLY, 0, size));
+			return hasher.digest();
+		} catch (IOException e) {
 			e.printStackTrace();
 			return null;
+		} finally {
+			if(hasher != null) {
+				recycleHasher(algorithm, hasher);
+			}
+			IoUtils.close(fis);
+		}
+	}
+	
+	/**
+	 * <p>
+	 * 	分块并行计算文件的哈希值,适合GB级别的大文件
+	 * </p>
+	 * <p>
+	 * 	文件按chunkSize分块,每块的哈希值在线程池中并行计算,最后按顺序将所有块的哈希值拼接后再计算一次哈希值作为结果.
+	 *  因此结果与{@link #hash(String, File)}不同,只能与相同算法和相同chunkSize计算出的结果比较
+	 * </p>
+	 * 
+	 * @param algorithm 算法,见{@link #newHasher(String)}
+	 * @param file 文件
+	 * @param chunkSize 块大小,例如{@link #DEFAULT_CHUNK_SIZE}
+	 * @return 计算成功返回哈希值，失败返回null
+	 * @throws IllegalArgumentException 不支持该算法或者chunkSize不是正数时抛出
+	 */
+	public static byte[] hashParallel(final String algorithm, final File file, final int chunkSize) {
+		if(chunkSize <= 0) {
+			throw new IllegalArgumentException("chunkSize must be positive");
+		}
+		//提前检查算法,避免在工作线程中抛出异常
+		Hasher root = newHasher(algorithm);
+		if(file == null || !file.isFile()) {
+			return null;
+		}
+		long size = file.length();
+		int chunks = (int) Math.max(1, (size + chunkSize - 1) / chunkSize);
+		List<Future<byte[]>> futures = new ArrayList<Future<byte[]>>(chunks);
+		ThreadPoolExecutor executor = getExecutor();
+		for(int i = 0; i < chunks; i++) {
+			final long position = (long) i * chunkSize;
+			final long length = Math.min(chunkSize, size - position);
+			futures.add(executor.submit(new Callable<byte[]>() {
+
+				@Override
+				public byte[] call() throws Exception {
+					return hashRange(algorithm, file, position, length);
+				}
+			}));
+		}
+		try {
+			for(Future<byte[]> future : futures) {
+				root.update(future.get());
+			}
+			return root.digest();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			cancel(futures);
+			return null;
+		} catch (ExecutionException e) {
+			e.printStackTrace();
+			cancel(futures);
+			return null;
+		}
+	}
+	
+	private static byte[] hashRange(String algorithm, File file, long position, long length) throws IOException {
+		FileInputStream fis = new FileInputStream(file);
+		Hasher hasher = obtainHasher(algorithm);
+		byte[] buffer = IoUtils.obtainBuffer();
+		try {
+			//映射的内存在GC之前不会释放,并行计算大文件时分段读取,同时占用的只有每个线程一个缓冲区
+			FileChannel channel = fis.getChannel();
+			ByteBuffer wrapper = ByteBuffer.wrap(buffer);
+			long end = position + length;
+			while(position < end) {
+				wrapper.clear();
+				wrapper.limit((int) Math.min(buffer.length, end - position));
+				int n = channel.read(wrapper, position);
+				if(n < 0) {
+					throw new IOException("unexpected end of file at " + position);
+				}
+				hasher.update(buffer, 0, n);
+				position += n;
+			}
+			return hasher.digest();
+		} finally {
+			IoUtils.recycleBuffer(buffer);
+			recycleHasher(algorithm, hasher);
+			IoUtils.close(fis);
+		}
+	}
+	
+	private static void cancel(List<Future<byte[]>> futures) {
+		for(Future<byte[]> future : futures) {
+			future.cancel(true);
 		}
 	}
 	
+	//从当前线程的缓存中取出Hasher,取出后其它调用不会再拿到同一个实例
+	private static Hasher obtainHasher(String algorithm) {
+		Hasher hasher = sHashers.get().remove(algorithm);
+		return hasher != null ? hasher : Hasher.newInstance(algorithm);
+	}
+	
+	//重置Hasher后放回当前线程的缓存,计算中途抛出异常时也不会留下已传入的数据
+	private static void recycleHasher(String algorithm, Hasher hasher) {
+		hasher.reset();
+		sHashers.get().put(algorithm, hasher);
+	}
+	
+	private static ThreadPoolExecutor getExecutor() {
+		if(sExecutor == null) {
+			synchronized (BaseEncryptHelper.class) {
+				if(sExecutor == null) {
+					int threads = Math.max(2, Runtime.getRuntime().availableProcessors());
+					ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads,
+							30, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+								
+								private final AtomicInteger mCount = new AtomicInteger();
+								
+								@Override
+								public Thread newThread(Runnable r) {
+									Thread t = new Thread(r, "BaseEncryptHelper-hash-" + mCount.incrementAndGet());
+									t.setDaemon(true);
+									return t;
+								}
+							});
+					executor.allowCoreThreadTimeOut(true);
+					sExecutor = executor;
+				}
+			}
+		}
+		return sExecutor;
+	}
+	
 	/**
-	 * Base64编码
+	 * Base64编码，每76个字符换行，与android.util.Base64.DEFAULT的结果相同
 	 * 
 	 * @param data 要进行编码的字节数组
 	 * @return 编码成功返回编码后的字节数组，失败返回null
+	 * @see Base64Codec
 	 */
 	public static byte[] encodeBase64(byte[] data) {
-		if(data == null) {
-			return null;
-		}
-		return Base64.encode(data, Base64.DEFAULT);
+		return BASE64_DEFAULT.encode(data);
 	}
 	
 	/**
-	 * Base64解码
+	 * Base64解码，忽略换行等不属于Base64字母表的字符
 	 * 
 	 * @param data 要进行解码的字节数组
 	 * @return 解码成功返回解码后的字节数组，失败返回null
+	 * @see Base64Codec
 	 */
 	public static byte[] decodeBase64(byte[] data) {
-		if(data == null) {
-			return null;
-		}
-		return Base64.decode(data, Base64.DEFAULT);
+		return BASE64_DEFAULT.decode(data);
 	}
 	
 	/**
-	 * 采用默认字符集进行URL编码
+	 * 采用默认字符集进行URL编码，规则与{@link java.net.URLEncoder}相同
 	 * 
-	 * @param raw
-	 * @return
+	 * @param raw 要编码的字符串
+	 * @return 返回编码后的字符串，不需要编码时返回raw本身
+	 * @see UrlCodec
 	 */
 	public static String encodeURL(String raw) {
 		return encodeURL(raw, null);
 	}
 	
 	/**
-	 * 采用指定字符集进行URL编码
+	 * 采用指定字符集进行URL编码，规则与{@link java.net.URLEncoder}相同
 	 * 
-	 * @param raw
-	 * @param charsetName
-	 * @return
+	 * @param raw 要编码的字符串
+	 * @param charsetName 字符集名称，为空时使用默认字符集
+	 * @return 返回编码后的字符串，不需要编码时返回raw本身，不支持该字符集时返回null
+	 * @see UrlCodec
 	 */
 	public static String encodeURL(String raw, String charsetName) {
 		if(raw == null) {
 			return null;
 		}
-		try {
-			if(TextUtils.isEmpty(charsetName)) {
-				charsetName = Charset.defaultCharset().displayName();
-			}
-			return URLEncoder.encode(raw, charsetName);
-		} catch (UnsupportedEncodingException e) {
-			e.printStackTrace();
-			return null;
-		}
+		Charset charset = lookupCharset(charsetName);
+		return charset == null ? null : UrlCodec.FORM.encode(raw, charset);
 	}
 	
 	/**
-	 * 采用指定字符集进行URL解码
+	 * 采用默认字符集进行URL解码，规则与{@link java.net.URLDecoder}相同
 	 * 
-	 * @param s
-	 * @param charsetName
-	 * @return
+	 * @param s 要解码的字符串
+	 * @return 返回解码后的字符串，不需要解码时返回s本身，包含不完整的%转义时返回null
+	 * @see UrlCodec
 	 */
 	public static String decodeURL(String s) {
 		return decodeURL(s, null);
 	}
 	
 	/**
-	 * 采用指定字符集进行URL解码
+	 * 采用指定字符集进行URL解码，规则与{@link java.net.URLDecoder}相同
 	 * 
-	 * @param s
-	 * @param charsetName
-	 * @return
+	 * @param s 要解码的字符串
+	 * @param charsetName 字符集名称，为空时使用默认字符集
+	 * @return 返回解码后的字符串，不需要解码时返回s本身，包含不完整的%转义或者不支持该字符集时返回null
+	 * @see UrlCodec
 	 */
 	public static String decodeURL(String s, String charsetName) {
 		if(s == null) {
 			return null;
 		}
-		try {
-			if(TextUtils.isEmpty(charsetName)) {
-				charsetName = Charset.defaultCharset().displayName();
+		Charset charset = lookupCharset(charsetName);
+		return charset == null ? null : UrlCodec.FORM.decode(s, charset);
+	}
+	
+	//按名称查找字符集并缓存，名称为空时返回默认字符集，不支持时返回null
+	private static Charset lookupCharset(String charsetName) {
+		if(TextUtils.isEmpty(charsetName)) {
+			return Charset.defaultCharset();
+		}
+		Charset charset = sCharsets.get(charsetName);
+		if(charset == null) {
+			try {
+				charset = Charset.forName(charsetName);
+			} catch (IllegalArgumentException e) {
+				e.printStackTrace();
+				return null;
 			}
-			return URLDecoder.decode(s, charsetName);
-		} catch (UnsupportedEncodingException e) {
-			e.printStackTrace();
-			return null;
+			sCharsets.put(charsetName, charset);
 		}
+		return charset;
 	}
 }
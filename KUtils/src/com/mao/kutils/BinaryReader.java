@@ -0,0 +1,725 @@
+package com.mao.kutils;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import static com.mao.kutils.BinarySerializer.*;
+
+/**
+ * <p>
+ * 	读取{@link BinaryWriter}写入的对象
+ * </p>
+ * <p>
+ * 	按字段名将数据中的字段匹配到当前的类:数据中有而类中没有的字段被跳过,类中有而数据中没有的字段
+ *  保持无参构造方法设置的值,数值类型不同时会进行转换,类型不兼容的字段被跳过,
+ *  但集合和Map不能赋值给字段时抛出异常,避免数据被静默丢弃.
+ *  找不到的类的对象读取为null,找不到的集合和Map类读取为ArrayList和LinkedHashMap.
+ * </p>
+ * <p>
+ * 	通过{@link #BinaryReader(InputStream, long)}指定数据的长度后,数组、字符串和集合的长度会与剩余的数据比较,
+ *  损坏的数据不会导致分配巨大的数组.该类不是线程安全的.
+ * </p>
+ *
+ * @author mao
+ * */
+public class BinaryReader implements Closeable {
+
+	private final static Charset UTF_8 = Charset.forName("UTF-8");
+
+	private final InputStream mIn;
+
+	private final byte[] mBuffer = new byte[8 * 1024];
+
+	private int mPosition;
+
+	private int mLimit;
+
+	/** 数据的总长度,未知时为-1 */
+	private final long mLength;
+
+	/** 已从输入流读取的字节数 */
+	private long mStreamRead;
+
+	private boolean mHeaderRead;
+
+	private ClassLoader mClassLoader = BinaryReader.class.getClassLoader();
+
+	private final List<String> mStrings = new ArrayList<String>();
+
+	private final List<Object> mObjects = new ArrayList<Object>();
+
+	private final List<Type> mTypes = new ArrayList<Type>();
+
+	/** 类名解析结果的缓存,找不到的类对应null */
+	private final HashMap<String, Class<?>> mClasses = new HashMap<String, Class<?>>();
+
+	/**
+	 * 创建读取器
+	 *
+	 * @param in 输入流
+	 */
+	public BinaryReader(InputStream in) {
+		this(in, -1);
+	}
+
+	/**
+	 * 创建读取器,读取时检查长度不超过剩余的数据
+	 *
+	 * @param in 输入流
+	 * @param length 输入流中数据的字节数,未知时为-1
+	 */
+	public BinaryReader(InputStream in, long length) {
+		if(in == null) {
+			throw new IllegalArgumentException("in can't be null");
+		}
+		mIn = in;
+		mLength = length;
+	}
+
+	/**
+	 * 设置加载类时使用的类加载器,默认为加载KUtils的类加载器
+	 *
+	 * @param classLoader 类加载器
+	 * @return 返回当前对象
+	 */
+	public BinaryReader setClassLoader(ClassLoader classLoader) {
+		mClassLoader = classLoader;
+		return this;
+	}
+
+	/**
+	 * 判断是否还有可以读取的值
+	 *
+	 * @return 还有值返回true,已到流的结尾返回false
+	 * @throws IOException 读取失败时抛出
+	 */
+	public boolean hasNext() throws IOException {
+		return mPosition < mLimit || fill() > 0;
+	}
+
+	/**
+	 * 读取一个值
+	 *
+	 * @return 返回读取的值
+	 * @throws IOException 读取失败或者数据格式不正确时抛出
+	 */
+	public Object readValue() throws IOException {
+		if(!mHeaderRead) {
+			for(byte b : MAGIC) {
+				if(readByte() != b) {
+					throw new IOException("not a KUtils binary stream");
+				}
+			}
+			int version = readVarInt();
+			if(version != VERSION) {
+				throw new IOException("unsupported version: " + version);
+			}
+			mHeaderRead = true;
+		}
+		try {
+			return read(readByte());
+		} catch (RuntimeException e) {
+			//例如数据中的元素无法加入TreeSet
+			IOException ioe = new IOException("malformed data");
+			ioe.initCause(e);
+			throw ioe;
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		mIn.close();
+	}
+
+	private Object read(int tag) throws IOException {
+		switch (tag) {
+		case T_NULL:
+			return null;
+		case T_TRUE:
+			return Boolean.TRUE;
+		case T_FALSE:
+			return Boolean.FALSE;
+		case T_INT:
+			return unzigzag(readVarInt());
+		case T_LONG:
+			return unzigzag(readVarLong());
+		case T_FLOAT:
+			return Float.intBitsToFloat(readFixed32());
+		case T_DOUBLE:
+			return readDouble();
+		case T_BYTE:
+			return (byte) unzigzag(readVarInt());
+		case T_SHORT:
+			return (short) unzigzag(readVarInt());
+		case T_CHAR:
+			return (char) readVarInt();
+		case T_STRING: {
+			String s = readUtf8();
+			mStrings.add(s);
+			return s;
+		}
+		case T_STRING_REF: {
+			int index = readVarInt();
+			if(index >= mStrings.size()) {
+				throw new IOException("invalid string reference: " + index);
+			}
+			return mStrings.get(index);
+		}
+		case T_REF: {
+			int index = readVarInt();
+			if(index >= mObjects.size()) {
+				throw new IOException("invalid object reference: " + index);
+			}
+			return mObjects.get(index);
+		}
+		case T_ENUM:
+			return readEnum();
+		case T_PRIMITIVE_ARRAY:
+			return readPrimitiveArray();
+		case T_OBJECT_ARRAY:
+			return readObjectArray();
+		case T_COLLECTION:
+			return readCollection();
+		case T_MAP:
+			return readMap();
+		case T_OBJECT_NEW_TYPE:
+			return readObject(readType());
+		case T_OBJECT: {
+			int index = readVarInt();
+			if(index >= mTypes.size()) {
+				throw new IOException("invalid type reference: " + index);
+			}
+			return readObject(mTypes.get(index));
+		}
+		case T_DATE: {
+			Date date = new Date(unzigzag(readVarLong()));
+			mObjects.add(date);
+			return date;
+		}
+		default:
+			throw new IOException("unknown tag: " + tag);
+		}
+	}
+
+	private String readString() throws IOException {
+		Object value = read(readByte());
+		if(!(value instanceof String)) {
+			throw new IOException("expected string but got " + value);
+		}
+		return (String) value;
+	}
+
+	//读取类描述,找不到类时返回null
+	private Class<?> readClass() throws IOException {
+		int schemaId = readVarInt();
+		if(schemaId != 0) {
+			Class<?> clazz = getSchemaClass(schemaId);
+			if(clazz == null) {
+				L.e("BinaryReader", "unregistered schema id " + schemaId);
+			}
+			return clazz;
+		}
+		String name = readString();
+		if(mClasses.containsKey(name)) {
+			return mClasses.get(name);
+		}
+		Class<?> clazz;
+		try {
+			clazz = Class.forName(name, false, mClassLoader);
+		} catch (ClassNotFoundException e) {
+			L.e("BinaryReader", "class not found: " + name);
+			clazz = null;
+		}
+		mClasses.put(name, clazz);
+		return clazz;
+	}
+
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	private Object readEnum() throws IOException {
+		Class<?> clazz = readClass();
+		String name = readString();
+		if(clazz == null || !clazz.isEnum()) {
+			return null;
+		}
+		try {
+			return Enum.valueOf((Class<Enum>) clazz, name);
+		} catch (IllegalArgumentException e) {
+			//枚举常量已被删除
+			return null;
+		}
+	}
+
+	private Object readPrimitiveArray() throws IOException {
+		int kind = readByte();
+		int length = readLength();
+		switch (kind) {
+		case 0: {
+			byte[] a = new byte[length];
+			mObjects.add(a);
+			readFully(a, 0, length);
+			return a;
+		}
+		case 1: {
+			boolean[] a = new boolean[length];
+			mObjects.add(a);
+			for(int i = 0; i < length; i++) {
+				a[i] = readByte() != 0;
+			}
+			return a;
+		}
+		case 2: {
+			short[] a = new short[length];
+			mObjects.add(a);
+			for(int i = 0; i < length; i++) {
+				a[i] = (short) unzigzag(readVarInt());
+			}
+			return a;
+		}
+		case 3: {
+			char[] a = new char[length];
+			mObjects.add(a);
+			for(int i = 0; i < length; i++) {
+				a[i] = (char) readVarInt();
+			}
+			return a;
+		}
+		case 4: {
+			int[] a = new int[length];
+			mObjects.add(a);
+			for(int i = 0; i < length; i++) {
+				a[i] = unzigzag(readVarInt());
+			}
+			return a;
+		}
+		case 5: {
+			long[] a = new long[length];
+			mObjects.add(a);
+			for(int i = 0; i < length; i++) {
+				a[i] = unzigzag(readVarLong());
+			}
+			return a;
+		}
+		case 6: {
+			float[] a = new float[length];
+			mObjects.add(a);
+			for(int i = 0; i < length; i++) {
+				a[i] = Float.intBitsToFloat(readFixed32());
+			}
+			return a;
+		}
+		case 7: {
+			double[] a = new double[length];
+			mObjects.add(a);
+			for(int i = 0; i < length; i++) {
+				a[i] = readDouble();
+			}
+			return a;
+		}
+		default:
+			throw new IOException("unknown primitive array kind: " + kind);
+		}
+	}
+
+	private Object readObjectArray() throws IOException {
+		Class<?> component = readClass();
+		int length = readLength();
+		if(component == null || component.isPrimitive()) {
+			component = Object.class;
+		}
+		Object[] array = (Object[]) Array.newInstance(component, length);
+		mObjects.add(array);
+		for(int i = 0; i < length; i++) {
+			Object value = read(readByte());
+			if(value == null || component.isInstance(value)) {
+				array[i] = value;
+			}
+		}
+		return array;
+	}
+
+	private Object readCollection() throws IOException {
+		int kind = readByte();
+		Collection<Object> collection;
+		int size;
+		if(kind == COLLECTION_OTHER) {
+			//先占用编号,Comparator在集合之后编号
+			int index = mObjects.size();
+			mObjects.add(null);
+			Class<?> clazz = readClass();
+			Object comparator = read(readByte());
+			size = readLength();
+			collection = newContainer(clazz, Collection.class, comparator);
+			if(collection == null) {
+				collection = new ArrayList<Object>(Math.min(size, 1024));
+			}
+			mObjects.set(index, collection);
+		} else {
+			size = readLength();
+			int capacity = Math.max(16, size * 4 / 3 + 1);
+			switch (kind) {
+			case COLLECTION_ARRAY_LIST:
+				collection = new ArrayList<Object>(size);
+				break;
+			case COLLECTION_LINKED_LIST:
+				collection = new LinkedList<Object>();
+				break;
+			case COLLECTION_HASH_SET:
+				collection = new HashSet<Object>(capacity);
+				break;
+			case COLLECTION_LINKED_HASH_SET:
+				collection = new LinkedHashSet<Object>(capacity);
+				break;
+			case COLLECTION_TREE_SET:
+				collection = new TreeSet<Object>();
+				break;
+			default:
+				throw new IOException("unknown collection kind: " + kind);
+			}
+			mObjects.add(collection);
+		}
+		for(int i = 0; i < size; i++) {
+			collection.add(read(readByte()));
+		}
+		return collection;
+	}
+
+	private Object readMap() throws IOException {
+		int kind = readByte();
+		Map<Object, Object> map;
+		int size;
+		if(kind == MAP_OTHER) {
+			int index = mObjects.size();
+			mObjects.add(null);
+			Class<?> clazz = readClass();
+			Object comparator = read(readByte());
+			size = readLength();
+			map = newContainer(clazz, Map.class, comparator);
+			if(map == null) {
+				map = new LinkedHashMap<Object, Object>();
+			}
+			mObjects.set(index, map);
+		} else {
+			size = readLength();
+			int capacity = Math.max(16, size * 4 / 3 + 1);
+			switch (kind) {
+			case MAP_HASH_MAP:
+				map = new HashMap<Object, Object>(capacity);
+				break;
+			case MAP_LINKED_HASH_MAP:
+				map = new LinkedHashMap<Object, Object>(capacity);
+				break;
+			case MAP_TREE_MAP:
+				map = new TreeMap<Object, Object>();
+				break;
+			default:
+				throw new IOException("unknown map kind: " + kind);
+			}
+			mObjects.add(map);
+		}
+		for(int i = 0; i < size; i++) {
+			Object key = read(readByte());
+			map.put(key, read(readByte()));
+		}
+		return map;
+	}
+
+	//通过构造方法创建数据中指定的集合或者Map,类找不到或者不是base的子类时返回null
+	@SuppressWarnings("unchecked")
+	private static <T> T newContainer(Class<?> clazz, Class<?> base, Object comparator) throws IOException {
+		if(clazz == null || !base.isAssignableFrom(clazz)) {
+			return null;
+		}
+		if(comparator != null && !(comparator instanceof Comparator)) {
+			throw new IOException("invalid comparator: " + comparator);
+		}
+		Constructor<?> constructor = getContainerConstructor(clazz, comparator != null);
+		if(constructor == null) {
+			throw new IOException(clazz.getName() + " has no usable constructor");
+		}
+		try {
+			return (T) (comparator != null ? constructor.newInstance(comparator) : constructor.newInstance());
+		} catch (Exception e) {
+			IOException ioe = new IOException("failed to instantiate " + clazz.getName());
+			ioe.initCause(e);
+			throw ioe;
+		}
+	}
+
+	//读取类型描述,并将数据中的字段与当前类的字段按名称匹配
+	private Type readType() throws IOException {
+		Class<?> clazz = readClass();
+		int count = readLength();
+		ClassInfo info = clazz == null ? null : getClassInfo(clazz);
+		Field[] fields = new Field[count];
+		for(int i = 0; i < count; i++) {
+			String name = readString();
+			if(info != null) {
+				int index = info.indexOf(name);
+				fields[i] = index == -1 ? null : info.fields[index];
+			}
+		}
+		Type type = new Type(info, fields);
+		mTypes.add(type);
+		return type;
+	}
+
+	private Object readObject(Type type) throws IOException {
+		Object obj = type.info == null ? null : type.info.newInstance();
+		//找不到类时仍然占用一个编号,保持与写入时的编号一致
+		mObjects.add(obj);
+		Field[] fields = type.fields;
+		try {
+			for(int i = 0; i < fields.length; i++) {
+				Field f = fields[i];
+				int tag = readByte();
+				if(obj == null || f == null) {
+					read(tag);
+				} else if(f.getType().isPrimitive()) {
+					readPrimitiveField(obj, f, tag);
+				} else {
+					setReference(obj, f, read(tag));
+				}
+			}
+		} catch (IllegalAccessException e) {
+			IOException ioe = new IOException("failed to set fields of " + type.info.clazz.getName());
+			ioe.initCause(e);
+			throw ioe;
+		}
+		return obj;
+	}
+
+	//读取基本类型字段,数值直接读取,不装箱
+	private void readPrimitiveField(Object obj, Field f, int tag) throws IOException, IllegalAccessException {
+		switch (tag) {
+		case T_INT:
+		case T_BYTE:
+		case T_SHORT:
+			setIntegral(obj, f, unzigzag(readVarInt()));
+			break;
+		case T_CHAR:
+			setIntegral(obj, f, readVarInt());
+			break;
+		case T_LONG:
+			setIntegral(obj, f, unzigzag(readVarLong()));
+			break;
+		case T_FLOAT:
+			setFloating(obj, f, Float.intBitsToFloat(readFixed32()));
+			break;
+		case T_DOUBLE:
+			setFloating(obj, f, readDouble());
+			break;
+		case T_TRUE:
+		case T_FALSE:
+			if(f.getType() == boolean.class) {
+				f.setBoolean(obj, tag == T_TRUE);
+			}
+			break;
+		default:
+			//类型不兼容,跳过该值
+			read(tag);
+			break;
+		}
+	}
+
+	private static void setIntegral(Object obj, Field f, long v) throws IllegalAccessException {
+		Class<?> t = f.getType();
+		if(t == int.class) {
+			f.setInt(obj, (int) v);
+		} else if(t == long.class) {
+			f.setLong(obj, v);
+		} else if(t == short.class) {
+			f.setShort(obj, (short) v);
+		} else if(t == byte.class) {
+			f.setByte(obj, (byte) v);
+		} else if(t == char.class) {
+			f.setChar(obj, (char) v);
+		} else if(t == float.class) {
+			f.setFloat(obj, v);
+		} else if(t == double.class) {
+			f.setDouble(obj, v);
+		}
+	}
+
+	private static void setFloating(Object obj, Field f, double v) throws IllegalAccessException {
+		Class<?> t = f.getType();
+		if(t == float.class) {
+			f.setFloat(obj, (float) v);
+		} else if(t == double.class) {
+			f.setDouble(obj, v);
+		} else if(t != boolean.class) {
+			setIntegral(obj, f, (long) v);
+		}
+	}
+
+	//设置引用类型字段,包装类型之间会进行转换,不兼容的值被忽略,但不兼容的集合和Map抛出异常
+	private static void setReference(Object obj, Field f, Object value) throws IOException, IllegalAccessException {
+		Class<?> t = f.getType();
+		if(value == null || t.isInstance(value)) {
+			f.set(obj, value);
+		} else if(value instanceof Collection || value instanceof Map) {
+			throw new IOException("can't assign " + value.getClass().getName() + " to " + f);
+		} else if(value instanceof Number) {
+			Number n = (Number) value;
+			if(t == Integer.class) {
+				f.set(obj, n.intValue());
+			} else if(t == Long.class) {
+				f.set(obj, n.longValue());
+			} else if(t == Short.class) {
+				f.set(obj, n.shortValue());
+			} else if(t == Byte.class) {
+				f.set(obj, n.byteValue());
+			} else if(t == Float.class) {
+				f.set(obj, n.floatValue());
+			} else if(t == Double.class) {
+				f.set(obj, n.doubleValue());
+			}
+		}
+	}
+
+	private static int unzigzag(int v) {
+		return (v >>> 1) ^ -(v & 1);
+	}
+
+	private static long unzigzag(long v) {
+		return (v >>> 1) ^ -(v & 1);
+	}
+
+	//每个元素至少占1个字节,长度超过剩余的数据时数据已损坏
+	private int readLength() throws IOException {
+		int length = readVarInt();
+		if(length < 0) {
+			throw new IOException("invalid length: " + length);
+		}
+		if(mLength >= 0 && length > mLength - mStreamRead + (mLimit - mPosition)) {
+			throw new IOException("length " + length + " exceeds the remaining data");
+		}
+		return length;
+	}
+
+	private int readByte() throws IOException {
+		if(mPosition == mLimit && fill() <= 0) {
+			throw new EOFException();
+		}
+		return mBuffer[mPosition++] & 0xff;
+	}
+
+	private int readVarInt() throws IOException {
+		int result = 0;
+		for(int shift = 0; shift < 35; shift += 7) {
+			int b = readByte();
+			result |= (b & 0x7f) << shift;
+			if((b & 0x80) == 0) {
+				return result;
+			}
+		}
+		throw new IOException("malformed varint");
+	}
+
+	private long readVarLong() throws IOException {
+		long result = 0;
+		for(int shift = 0; shift < 70; shift += 7) {
+			int b = readByte();
+			result |= (long) (b & 0x7f) << shift;
+			if((b & 0x80) == 0) {
+				return result;
+			}
+		}
+		throw new IOException("malformed varint");
+	}
+
+	private int readFixed32() throws IOException {
+		return readByte() | (readByte() << 8) | (readByte() << 16) | (readByte() << 24);
+	}
+
+	private double readDouble() throws IOException {
+		return Double.longBitsToDouble(Long.reverseBytes(readVarLong()));
+	}
+
+	//长度不超过缓冲区的字符串直接从缓冲区解码
+	private String readUtf8() throws IOException {
+		int length = readLength();
+		if(length <= mBuffer.length) {
+			if(mLimit - mPosition < length) {
+				System.arraycopy(mBuffer, mPosition, mBuffer, 0, mLimit - mPosition);
+				mLimit -= mPosition;
+				mPosition = 0;
+				while(mLimit < length) {
+					int read = mIn.read(mBuffer, mLimit, mBuffer.length - mLimit);
+					if(read == -1) {
+						throw new EOFException();
+					}
+					mStreamRead += read;
+					mLimit += read;
+				}
+			}
+			String s = new String(mBuffer, mPosition, length, UTF_8);
+			mPosition += length;
+			return s;
+		}
+		byte[] data = new byte[length];
+		readFully(data, 0, length);
+		return new String(data, UTF_8);
+	}
+
+	private void readFully(byte[] data, int offset, int length) throws IOException {
+		int buffered = Math.min(length, mLimit - mPosition);
+		System.arraycopy(mBuffer, mPosition, data, offset, buffered);
+		mPosition += buffered;
+		offset += buffered;
+		length -= buffered;
+		while(length > 0) {
+			int read = mIn.read(data, offset, length);
+			if(read == -1) {
+				throw new EOFException();
+			}
+			mStreamRead += read;
+			offset += read;
+			length -= read;
+		}
+	}
+
+	private int fill() throws IOException {
+		mPosition = 0;
+		mLimit = 0;
+		int read = mIn.read(mBuffer, 0, mBuffer.length);
+		if(read > 0) {
+			mLimit = read;
+			mStreamRead += read;
+		}
+		return read;
+	}
+
+	/**
+	 * 数据中的一个类型,fields与数据中的字段顺序一致,当前类中不存在的字段为null
+	 */
+	private static final class Type {
+
+		final ClassInfo info;
+
+		final Field[] fields;
+
+		Type(ClassInfo info, Field[] fields) {
+			this.info = info;
+			this.fields = fields;
+		}
+	}
+}
@@ -0,0 +1,291 @@
+package com.mao.kutils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * <p>
+ * 	紧凑的二进制序列化格式
+ * </p>
+ * <p>
+ * 	与Java序列化相比:
+ *  <ul>
+ *  <li>整数采用zigzag变长编码,小数值只占1个字节</li>
+ *  <li>每个字符串在一个流中只写入一次,之后以编号引用</li>
+ *  <li>每个类的描述(类名或者模式编号以及字段名)在一个流中只写入一次,对象只写入字段值</li>
+ *  <li>读取时按字段名匹配,新增的字段保持无参构造方法设置的值,删除的字段被跳过,
+ *   int和long等数值类型之间可以互相转换,因此类可以在不破坏已保存数据的情况下修改</li>
+ *  <li>通过{@link #registerSchema(Class, int)}为类指定模式编号后,流中只写入编号,类重命名或者混淆后仍然可以读取</li>
+ *  </ul>
+ *  对象图中的循环引用和共享引用会被保留.
+ * </p>
+ * <p>
+ * 	支持null、基本类型及其包装类、String、枚举、Date、数组、List、Set、Map,以及有无参构造方法的类,
+ *  这些类的非静态、非transient字段会被写入.读取时会调用数据中指定的类的无参构造方法,
+ *  因此只能读取可信的数据.
+ * </p>
+ * <p>
+ * 	集合和Map保留具体的类型和排序用的Comparator,具体类型没有可用的构造方法时按List、Set、Map的默认实现写入,
+ *  此时带Comparator的SortedSet和SortedMap无法写入.依赖自定义序列化方法的JDK和Android类(例如Locale、BigDecimal)
+ *  在写入时抛出异常.
+ * </p>
+ *
+ * @author mao
+ * @see BinaryWriter
+ * @see BinaryReader
+ * */
+public final class BinarySerializer {
+
+	final static byte[] MAGIC = {'K', 'B'};
+	final static int VERSION = 1;
+
+	final static int T_NULL = 0;
+	final static int T_TRUE = 1;
+	final static int T_FALSE = 2;
+	final static int T_INT = 3;
+	final static int T_LONG = 4;
+	final static int T_FLOAT = 5;
+	final static int T_DOUBLE = 6;
+	final static int T_BYTE = 7;
+	final static int T_SHORT = 8;
+	final static int T_CHAR = 9;
+	/** 新字符串,之后加入字符串表 */
+	final static int T_STRING = 10;
+	/** 字符串表中的字符串 */
+	final static int T_STRING_REF = 11;
+	/** 之前写入过的对象 */
+	final static int T_REF = 12;
+	final static int T_PRIMITIVE_ARRAY = 13;
+	final static int T_OBJECT_ARRAY = 14;
+	final static int T_COLLECTION = 15;
+	final static int T_MAP = 16;
+	final static int T_ENUM = 17;
+	/** 新类型的对象,类型描述之后是字段值 */
+	final static int T_OBJECT_NEW_TYPE = 18;
+	/** 已描述过的类型的对象 */
+	final static int T_OBJECT = 19;
+	final static int T_DATE = 20;
+
+	final static int COLLECTION_ARRAY_LIST = 0;
+	final static int COLLECTION_LINKED_LIST = 1;
+	final static int COLLECTION_HASH_SET = 2;
+	final static int COLLECTION_LINKED_HASH_SET = 3;
+	final static int COLLECTION_TREE_SET = 4;
+	/** 其他具体类型,之后是类描述和Comparator */
+	final static int COLLECTION_OTHER = 5;
+
+	final static int MAP_HASH_MAP = 0;
+	final static int MAP_LINKED_HASH_MAP = 1;
+	final static int MAP_TREE_MAP = 2;
+	/** 其他具体类型,之后是类描述和Comparator */
+	final static int MAP_OTHER = 3;
+
+	private static final ConcurrentHashMap<Class<?>, Integer> sSchemaIds = new ConcurrentHashMap<Class<?>, Integer>();
+
+	private static final ConcurrentHashMap<Integer, Class<?>> sSchemaClasses = new ConcurrentHashMap<Integer, Class<?>>();
+
+	private static final ConcurrentHashMap<Class<?>, ClassInfo> sClassInfos = new ConcurrentHashMap<Class<?>, ClassInfo>();
+
+	/** 集合和Map类的构造方法:{无参构造方法, 参数为Comparator的构造方法},没有的为null */
+	private static final ConcurrentHashMap<Class<?>, Constructor<?>[]> sContainerConstructors = new ConcurrentHashMap<Class<?>, Constructor<?>[]>();
+
+	private BinarySerializer() {
+		throw new UnsupportedOperationException("can't instantiate class BinarySerializer");
+	}
+
+	/**
+	 * 为类指定模式编号,写入时只写入编号而不写入类名,读取时按编号查找类.
+	 * 读写双方都需要在使用前注册
+	 *
+	 * @param clazz 类
+	 * @param schemaId 模式编号,必须为正数,不同的类不能使用相同的编号
+	 */
+	public static void registerSchema(Class<?> clazz, int schemaId) {
+		if(schemaId <= 0) {
+			throw new IllegalArgumentException("schemaId must be positive");
+		}
+		Class<?> existing = sSchemaClasses.putIfAbsent(schemaId, clazz);
+		if(existing != null && existing != clazz) {
+			throw new IllegalArgumentException("schemaId " + schemaId + " is already used by " + existing.getName());
+		}
+		sSchemaIds.put(clazz, schemaId);
+	}
+
+	/**
+	 * 将对象序列化为字节数组
+	 *
+	 * @param obj 要序列化的对象,可以为null
+	 * @return 序列化成功返回字节数组,失败返回null
+	 */
+	public static byte[] toBytes(Object obj) {
+		IoUtils.ByteArrayBuilder baos = new IoUtils.ByteArrayBuilder();
+		BinaryWriter writer = new BinaryWriter(baos);
+		try {
+			writer.writeValue(obj);
+			writer.flush();
+			return baos.toByteArray();
+		} catch (IOException e) {
+			e.printStackTrace();
+			return null;
+		} catch (IllegalArgumentException e) {
+			e.printStackTrace();
+			return null;
+		} finally {
+			baos.close();
+		}
+	}
+
+	/**
+	 * 从字节数组反序列化对象
+	 *
+	 * @param data 由{@link #toBytes(Object)}生成的字节数组
+	 * @return 反序列化成功返回对象,失败或者data为null返回null
+	 */
+	public static Object fromBytes(byte[] data) {
+		if(data == null) {
+			return null;
+		}
+		BinaryReader reader = new BinaryReader(new ByteArrayInputStream(data), data.length);
+		try {
+			return reader.readValue();
+		} catch (IOException e) {
+			e.printStackTrace();
+			return null;
+		} catch (RuntimeException e) {
+			e.printStackTrace();
+			return null;
+		} catch (OutOfMemoryError e) {
+			e.printStackTrace();
+			return null;
+		}
+	}
+
+	static int getSchemaId(Class<?> clazz) {
+		Integer id = sSchemaIds.get(clazz);
+		return id == null ? 0 : id;
+	}
+
+	static Class<?> getSchemaClass(int schemaId) {
+		return sSchemaClasses.get(schemaId);
+	}
+
+	static ClassInfo getClassInfo(Class<?> clazz) {
+		ClassInfo info = sClassInfos.get(clazz);
+		if(info == null) {
+			info = new ClassInfo(clazz);
+			ClassInfo existing = sClassInfos.putIfAbsent(clazz, info);
+			if(existing != null) {
+				info = existing;
+			}
+		}
+		return info;
+	}
+
+	//JDK和Android的类依赖自定义序列化方法时,字段中没有完整的状态(例如Date的时间是transient的)
+	static boolean isUnsupportedPlatformClass(Class<?> clazz) {
+		String name = clazz.getName();
+		return (name.startsWith("java.") || name.startsWith("javax.") || name.startsWith("android."))
+				&& DeepCopier.hasCustomSerialization(clazz);
+	}
+
+	/**
+	 * 获取集合或者Map类的构造方法
+	 *
+	 * @param clazz 集合或者Map类
+	 * @param withComparator 为true时获取参数为Comparator的构造方法,否则获取无参构造方法
+	 * @return 返回构造方法,没有时返回null
+	 */
+	static Constructor<?> getContainerConstructor(Class<?> clazz, boolean withComparator) {
+		Constructor<?>[] constructors = sContainerConstructors.get(clazz);
+		if(constructors == null) {
+			constructors = new Constructor<?>[] {findConstructor(clazz), findConstructor(clazz, Comparator.class)};
+			sContainerConstructors.put(clazz, constructors);
+		}
+		return constructors[withComparator ? 1 : 0];
+	}
+
+	private static Constructor<?> findConstructor(Class<?> clazz, Class<?>... parameterTypes) {
+		if(Modifier.isAbstract(clazz.getModifiers())) {
+			return null;
+		}
+		try {
+			Constructor<?> c = clazz.getDeclaredConstructor(parameterTypes);
+			c.setAccessible(true);
+			return c;
+		} catch (NoSuchMethodException e) {
+			return null;
+		} catch (RuntimeException e) {
+			//无法访问的构造方法
+			return null;
+		}
+	}
+
+	/**
+	 * 一个类的构造方法和需要写入的字段
+	 */
+	static final class ClassInfo {
+
+		final Class<?> clazz;
+
+		/** 无参构造方法,没有时为null */
+		final Constructor<?> constructor;
+
+		final Field[] fields;
+
+		/** 字段名,与父类字段重名的字段以"类名.字段名"区分 */
+		final String[] names;
+
+		ClassInfo(Class<?> clazz) {
+			this.clazz = clazz;
+			Constructor<?> c;
+			try {
+				c = clazz.getDeclaredConstructor();
+				c.setAccessible(true);
+			} catch (NoSuchMethodException e) {
+				c = null;
+			}
+			constructor = c;
+			fields = DeepCopier.collectFields(clazz);
+			names = new String[fields.length];
+			Set<String> used = new HashSet<String>();
+			for(int i = 0; i < fields.length; i++) {
+				String name = fields[i].getName();
+				if(!used.add(name)) {
+					name = fields[i].getDeclaringClass().getSimpleName() + "." + name;
+					used.add(name);
+				}
+				names[i] = name;
+			}
+		}
+
+		//按字段名查找字段的下标,不存在返回-1
+		int indexOf(String name) {
+			for(int i = 0; i < names.length; i++) {
+				if(names[i].equals(name)) {
+					return i;
+				}
+			}
+			return -1;
+		}
+
+		Object newInstance() throws IOException {
+			if(constructor == null) {
+				throw new IOException(clazz.getName() + " has no no-arg constructor");
+			}
+			try {
+				return constructor.newInstance();
+			} catch (Exception e) {
+				IOException ioe = new IOException("failed to instantiate " + clazz.getName());
+				ioe.initCause(e);
+				throw ioe;
+			}
+		}
+	}
+}
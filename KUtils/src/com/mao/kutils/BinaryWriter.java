@@ -0,0 +1,505 @@
+package com.mao.kutils;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import static com.mao.kutils.BinarySerializer.*;
+
+/**
+ * <p>
+ * 	以{@link BinarySerializer}的格式向输出流写入对象
+ * </p>
+ * <p>
+ * 	同一个写入器写入的多个对象共用字符串表、类型表和对象表,对应的{@link BinaryReader}需要按相同的顺序读取.
+ *  写入器内部有缓冲区,写入完成后需要调用{@link #flush()}或者{@link #close()}.该类不是线程安全的.
+ * </p>
+ *
+ * @author mao
+ * */
+public class BinaryWriter implements Closeable, Flushable {
+
+	private final OutputStream mOut;
+
+	private final byte[] mBuffer = new byte[8 * 1024];
+
+	private int mPosition;
+
+	private boolean mHeaderWritten;
+
+	/** 已写入的字符串及其编号 */
+	private final HashMap<String, Integer> mStrings = new HashMap<String, Integer>();
+
+	/** 已写入的对象及其编号 */
+	private final IdentityHashMap<Object, Integer> mObjects = new IdentityHashMap<Object, Integer>();
+
+	/** 已描述的类型及其编号 */
+	private final HashMap<Class<?>, Integer> mTypes = new HashMap<Class<?>, Integer>();
+
+	/**
+	 * 创建写入器
+	 *
+	 * @param out 输出流,例如{@link IoUtils#getOutputStream(String)}返回的文件输出流
+	 */
+	public BinaryWriter(OutputStream out) {
+		if(out == null) {
+			throw new IllegalArgumentException("out can't be null");
+		}
+		mOut = out;
+	}
+
+	/**
+	 * 写入一个值
+	 *
+	 * @param value 要写入的值,可以为null
+	 * @throws IOException 写入失败,或者对象图中有不支持的类型时抛出
+	 */
+	public void writeValue(Object value) throws IOException {
+		if(!mHeaderWritten) {
+			ensure(MAGIC.length + 5);
+			for(byte b : MAGIC) {
+				mBuffer[mPosition++] = b;
+			}
+			writeVarInt(VERSION);
+			mHeaderWritten = true;
+		}
+		write(value);
+	}
+
+	@Override
+	public void flush() throws IOException {
+		flushBuffer();
+		mOut.flush();
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			flushBuffer();
+		} finally {
+			mOut.close();
+		}
+	}
+
+	private void write(Object value) throws IOException {
+		if(value == null) {
+			writeTag(T_NULL);
+		} else if(value instanceof String) {
+			writeString((String) value);
+		} else if(value instanceof Integer) {
+			writeTag(T_INT);
+			writeVarInt(zigzag((Integer) value));
+		} else if(value instanceof Long) {
+			writeTag(T_LONG);
+			writeVarLong(zigzag((Long) value));
+		} else if(value instanceof Boolean) {
+			writeTag((Boolean) value ? T_TRUE : T_FALSE);
+		} else if(value instanceof Float) {
+			writeTag(T_FLOAT);
+			writeFixed32(Float.floatToIntBits((Float) value));
+		} else if(value instanceof Double) {
+			writeTag(T_DOUBLE);
+			writeDouble((Double) value);
+		} else if(value instanceof Byte) {
+			writeTag(T_BYTE);
+			writeVarInt(zigzag((Byte) value));
+		} else if(value instanceof Short) {
+			writeTag(T_SHORT);
+			writeVarInt(zigzag((Short) value));
+		} else if(value instanceof Character) {
+			writeTag(T_CHAR);
+			writeVarInt((Character) value);
+		} else if(value instanceof Enum) {
+			writeTag(T_ENUM);
+			writeClass(((Enum<?>) value).getDeclaringClass());
+			writeString(((Enum<?>) value).name());
+		} else {
+			Integer ref = mObjects.get(value);
+			if(ref != null) {
+				writeTag(T_REF);
+				writeVarInt(ref);
+				return;
+			}
+			mObjects.put(value, mObjects.size());
+			Class<?> clazz = value.getClass();
+			if(clazz.isArray()) {
+				writeArray(value, clazz);
+			} else if(clazz == Date.class) {
+				writeTag(T_DATE);
+				writeVarLong(zigzag(((Date) value).getTime()));
+			} else if(value instanceof Collection) {
+				writeCollection((Collection<?>) value);
+			} else if(value instanceof Map) {
+				writeMap((Map<?, ?>) value);
+			} else {
+				writeObject(value, clazz);
+			}
+		}
+	}
+
+	private void writeString(String s) throws IOException {
+		Integer index = mStrings.get(s);
+		if(index != null) {
+			writeTag(T_STRING_REF);
+			writeVarInt(index);
+			return;
+		}
+		mStrings.put(s, mStrings.size());
+		writeTag(T_STRING);
+		writeUtf8(s);
+	}
+
+	private void writeClass(Class<?> clazz) throws IOException {
+		int schemaId = getSchemaId(clazz);
+		writeVarInt(schemaId);
+		if(schemaId == 0) {
+			writeString(clazz.getName());
+		}
+	}
+
+	private void writeArray(Object array, Class<?> clazz) throws IOException {
+		Class<?> component = clazz.getComponentType();
+		if(!component.isPrimitive()) {
+			Object[] objects = (Object[]) array;
+			writeTag(T_OBJECT_ARRAY);
+			writeClass(component);
+			writeVarInt(objects.length);
+			for(Object o : objects) {
+				write(o);
+			}
+			return;
+		}
+		writeTag(T_PRIMITIVE_ARRAY);
+		if(component == byte.class) {
+			byte[] a = (byte[]) array;
+			writeTag(0);
+			writeVarInt(a.length);
+			writeBytes(a, 0, a.length);
+		} else if(component == boolean.class) {
+			boolean[] a = (boolean[]) array;
+			writeTag(1);
+			writeVarInt(a.length);
+			for(boolean v : a) {
+				writeTag(v ? 1 : 0);
+			}
+		} else if(component == short.class) {
+			short[] a = (short[]) array;
+			writeTag(2);
+			writeVarInt(a.length);
+			for(short v : a) {
+				writeVarInt(zigzag(v));
+			}
+		} else if(component == char.class) {
+			char[] a = (char[]) array;
+			writeTag(3);
+			writeVarInt(a.length);
+			for(char v : a) {
+				writeVarInt(v);
+			}
+		} else if(component == int.class) {
+			int[] a = (int[]) array;
+			writeTag(4);
+			writeVarInt(a.length);
+			for(int v : a) {
+				writeVarInt(zigzag(v));
+			}
+		} else if(component == long.class) {
+			long[] a = (long[]) array;
+			writeTag(5);
+			writeVarInt(a.length);
+			for(long v : a) {
+				writeVarLong(zigzag(v));
+			}
+		} else if(component == float.class) {
+			float[] a = (float[]) array;
+			writeTag(6);
+			writeVarInt(a.length);
+			for(float v : a) {
+				writeFixed32(Float.floatToIntBits(v));
+			}
+		} else {
+			double[] a = (double[]) array;
+			writeTag(7);
+			writeVarInt(a.length);
+			for(double v : a) {
+				writeDouble(v);
+			}
+		}
+	}
+
+	//常用的类型只写入类别,其他具体类型写入类描述和Comparator,读取时通过构造方法创建
+	private void writeCollection(Collection<?> collection) throws IOException {
+		Class<?> clazz = collection.getClass();
+		Comparator<?> comparator = collection instanceof SortedSet ? ((SortedSet<?>) collection).comparator() : null;
+		int kind;
+		if(clazz == ArrayList.class) {
+			kind = COLLECTION_ARRAY_LIST;
+		} else if(clazz == LinkedList.class) {
+			kind = COLLECTION_LINKED_LIST;
+		} else if(clazz == HashSet.class) {
+			kind = COLLECTION_HASH_SET;
+		} else if(clazz == LinkedHashSet.class) {
+			kind = COLLECTION_LINKED_HASH_SET;
+		} else if(clazz == TreeSet.class && comparator == null) {
+			kind = COLLECTION_TREE_SET;
+		} else if(getContainerConstructor(clazz, comparator != null) != null) {
+			kind = COLLECTION_OTHER;
+		} else if(collection instanceof SortedSet) {
+			if(comparator != null) {
+				throw new IOException("can't keep the comparator of " + clazz.getName());
+			}
+			kind = COLLECTION_TREE_SET;
+		} else if(collection instanceof Set) {
+			//没有可用构造方法的Set(例如Collections.unmodifiableSet)读取为LinkedHashSet以保持原来的迭代顺序
+			kind = COLLECTION_LINKED_HASH_SET;
+		} else if(collection instanceof LinkedList) {
+			kind = COLLECTION_LINKED_LIST;
+		} else {
+			kind = COLLECTION_ARRAY_LIST;
+		}
+		writeTag(T_COLLECTION);
+		writeTag(kind);
+		if(kind == COLLECTION_OTHER) {
+			writeClass(clazz);
+			write(comparator);
+		}
+		writeVarInt(collection.size());
+		for(Object o : collection) {
+			write(o);
+		}
+	}
+
+	private void writeMap(Map<?, ?> map) throws IOException {
+		Class<?> clazz = map.getClass();
+		Comparator<?> comparator = map instanceof SortedMap ? ((SortedMap<?, ?>) map).comparator() : null;
+		int kind;
+		if(clazz == HashMap.class) {
+			kind = MAP_HASH_MAP;
+		} else if(clazz == LinkedHashMap.class) {
+			kind = MAP_LINKED_HASH_MAP;
+		} else if(clazz == TreeMap.class && comparator == null) {
+			kind = MAP_TREE_MAP;
+		} else if(getContainerConstructor(clazz, comparator != null) != null) {
+			kind = MAP_OTHER;
+		} else if(map instanceof SortedMap) {
+			if(comparator != null) {
+				throw new IOException("can't keep the comparator of " + clazz.getName());
+			}
+			kind = MAP_TREE_MAP;
+		} else {
+			kind = MAP_LINKED_HASH_MAP;
+		}
+		writeTag(T_MAP);
+		writeTag(kind);
+		if(kind == MAP_OTHER) {
+			writeClass(clazz);
+			write(comparator);
+		}
+		writeVarInt(map.size());
+		for(Map.Entry<?, ?> entry : map.entrySet()) {
+			write(entry.getKey());
+			write(entry.getValue());
+		}
+	}
+
+	private void writeObject(Object value, Class<?> clazz) throws IOException {
+		if(isUnsupportedPlatformClass(clazz)) {
+			throw new IOException(clazz.getName() + " uses custom serialization and can't be written");
+		}
+		ClassInfo info = getClassInfo(clazz);
+		if(info.constructor == null) {
+			throw new IOException(clazz.getName() + " has no no-arg constructor");
+		}
+		Integer type = mTypes.get(clazz);
+		if(type == null) {
+			mTypes.put(clazz, mTypes.size());
+			writeTag(T_OBJECT_NEW_TYPE);
+			writeClass(clazz);
+			writeVarInt(info.names.length);
+			for(String name : info.names) {
+				writeString(name);
+			}
+		} else {
+			writeTag(T_OBJECT);
+			writeVarInt(type);
+		}
+		try {
+			for(Field f : info.fields) {
+				Class<?> t = f.getType();
+				//基本类型字段直接写入,不装箱
+				if(t == int.class) {
+					writeTag(T_INT);
+					writeVarInt(zigzag(f.getInt(value)));
+				} else if(t == long.class) {
+					writeTag(T_LONG);
+					writeVarLong(zigzag(f.getLong(value)));
+				} else if(t == boolean.class) {
+					writeTag(f.getBoolean(value) ? T_TRUE : T_FALSE);
+				} else if(t == float.class) {
+					writeTag(T_FLOAT);
+					writeFixed32(Float.floatToIntBits(f.getFloat(value)));
+				} else if(t == double.class) {
+					writeTag(T_DOUBLE);
+					writeDouble(f.getDouble(value));
+				} else if(t == byte.class) {
+					writeTag(T_BYTE);
+					writeVarInt(zigzag(f.getByte(value)));
+				} else if(t == short.class) {
+					writeTag(T_SHORT);
+					writeVarInt(zigzag(f.getShort(value)));
+				} else if(t == char.class) {
+					writeTag(T_CHAR);
+					writeVarInt(f.getChar(value));
+				} else {
+					write(f.get(value));
+				}
+			}
+		} catch (IllegalAccessException e) {
+			IOException ioe = new IOException("failed to read fields of " + clazz.getName());
+			ioe.initCause(e);
+			throw ioe;
+		}
+	}
+
+	private static int zigzag(int v) {
+		return (v << 1) ^ (v >> 31);
+	}
+
+	private static long zigzag(long v) {
+		return (v << 1) ^ (v >> 63);
+	}
+
+	private void writeTag(int tag) throws IOException {
+		ensure(1);
+		mBuffer[mPosition++] = (byte) tag;
+	}
+
+	private void writeVarInt(int v) throws IOException {
+		ensure(5);
+		byte[] buffer = mBuffer;
+		int position = mPosition;
+		while((v & ~0x7f) != 0) {
+			buffer[position++] = (byte) ((v & 0x7f) | 0x80);
+			v >>>= 7;
+		}
+		buffer[position++] = (byte) v;
+		mPosition = position;
+	}
+
+	private void writeVarLong(long v) throws IOException {
+		ensure(10);
+		byte[] buffer = mBuffer;
+		int position = mPosition;
+		while((v & ~0x7fL) != 0) {
+			buffer[position++] = (byte) ((v & 0x7f) | 0x80);
+			v >>>= 7;
+		}
+		buffer[position++] = (byte) v;
+		mPosition = position;
+	}
+
+	private void writeFixed32(int v) throws IOException {
+		ensure(4);
+		byte[] buffer = mBuffer;
+		int position = mPosition;
+		buffer[position] = (byte) v;
+		buffer[position + 1] = (byte) (v >> 8);
+		buffer[position + 2] = (byte) (v >> 16);
+		buffer[position + 3] = (byte) (v >> 24);
+		mPosition = position + 4;
+	}
+
+	//常见的double值(整数、0.5等)的低位字节都是0,按字节反转后采用变长编码只需要很少的字节
+	private void writeDouble(double v) throws IOException {
+		writeVarLong(Long.reverseBytes(Double.doubleToLongBits(v)));
+	}
+
+	private void writeBytes(byte[] data, int offset, int length) throws IOException {
+		if(length > mBuffer.length - mPosition) {
+			flushBuffer();
+			if(length > mBuffer.length) {
+				mOut.write(data, offset, length);
+				return;
+			}
+		}
+		System.arraycopy(data, offset, mBuffer, mPosition, length);
+		mPosition += length;
+	}
+
+	//先写入UTF-8编码后的字节数,再直接编码到缓冲区,不产生中间的字节数组
+	private void writeUtf8(String s) throws IOException {
+		int length = s.length();
+		int utf8Length = 0;
+		for(int i = 0; i < length; i++) {
+			char c = s.charAt(i);
+			if(c < 0x80) {
+				utf8Length++;
+			} else if(c < 0x800) {
+				utf8Length += 2;
+			} else if(Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(s.charAt(i + 1))) {
+				utf8Length += 4;
+				i++;
+			} else if(c >= Character.MIN_SURROGATE && c <= Character.MAX_SURROGATE) {
+				//单独的代理字符写为'?'
+				utf8Length++;
+			} else {
+				utf8Length += 3;
+			}
+		}
+		writeVarInt(utf8Length);
+		for(int i = 0; i < length; i++) {
+			ensure(4);
+			byte[] buffer = mBuffer;
+			char c = s.charAt(i);
+			if(c < 0x80) {
+				buffer[mPosition++] = (byte) c;
+			} else if(c < 0x800) {
+				buffer[mPosition++] = (byte) (0xc0 | (c >> 6));
+				buffer[mPosition++] = (byte) (0x80 | (c & 0x3f));
+			} else if(Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(s.charAt(i + 1))) {
+				int codePoint = Character.toCodePoint(c, s.charAt(++i));
+				buffer[mPosition++] = (byte) (0xf0 | (codePoint >> 18));
+				buffer[mPosition++] = (byte) (0x80 | ((codePoint >> 12) & 0x3f));
+				buffer[mPosition++] = (byte) (0x80 | ((codePoint >> 6) & 0x3f));
+				buffer[mPosition++] = (byte) (0x80 | (codePoint & 0x3f));
+			} else if(c >= Character.MIN_SURROGATE && c <= Character.MAX_SURROGATE) {
+				buffer[mPosition++] = '?';
+			} else {
+				buffer[mPosition++] = (byte) (0xe0 | (c >> 12));
+				buffer[mPosition++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+				buffer[mPosition++] = (byte) (0x80 | (c & 0x3f));
+			}
+		}
+	}
+
+	private void ensure(int length) throws IOException {
+		if(mBuffer.length - mPosition < length) {
+			flushBuffer();
+		}
+	}
+
+	private void flushBuffer() throws IOException {
+		if(mPosition > 0) {
+			mOut.write(mBuffer, 0, mPosition);
+			mPosition = 0;
+		}
+	}
+}
@@ -0,0 +1,351 @@
+package com.mao.kutils;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import android.annotation.SuppressLint;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.Build;
+import android.text.TextUtils;
+
+/**
+ * <p>
+ * 	按目标尺寸解码位图,避免按原始分辨率解码导致内存不足
+ * </p>
+ * <p>
+ * 	解码分两步:先只解码尺寸,然后根据目标宽高计算2的幂次的inSampleSize并选择像素格式,再真正解码.
+ *  文件、字节数组和输入流使用相同的流程.可以通过{@link #setInBitmap(Bitmap)}复用已有位图的内存.
+ * </p>
+ * <p>
+ * 	一个BitmapDecoder的设置可以用于多次解码,但{@link #setInBitmap(Bitmap)}只对下一次解码有效.
+ *  解码后可以通过{@link #getSourceWidth()}等方法获取最近一次解码的图片信息.
+ *  BitmapDecoder不是线程安全的.
+ * </p>
+ *
+ * @author mao
+ * */
+public class BitmapDecoder {
+
+	private static final String TAG = "BitmapDecoder";
+
+	/** 输入流需要读取两次,第一次只解码尺寸时读取的数据不能超过这个大小 */
+	private static final int MARK_LIMIT = 1024 * 1024;
+
+	private static final int STREAM_BUFFER_SIZE = 16 * 1024;
+
+	private int mReqWidth;
+
+	private int mReqHeight;
+
+	private Bitmap.Config mPreferredConfig;
+
+	private boolean mAllowRgb565;
+
+	private Bitmap mInBitmap;
+
+	private BitmapPool mBitmapPool;
+
+	private int mSourceWidth;
+
+	private int mSourceHeight;
+
+	private String mMimeType;
+
+	private int mSampleSize;
+
+	/**
+	 * 设置目标宽高,解码结果的宽高不小于目标宽高,在此前提下尽量缩小.小于等于0表示不限制该方向
+	 *
+	 * @param reqWidth 目标宽度
+	 * @param reqHeight 目标高度
+	 * @return 返回this
+	 */
+	public BitmapDecoder setTargetSize(int reqWidth, int reqHeight) {
+		mReqWidth = reqWidth;
+		mReqHeight = reqHeight;
+		return this;
+	}
+
+	/**
+	 * 指定像素格式,为null时自动选择,默认为null
+	 *
+	 * @param config 像素格式
+	 * @return 返回this
+	 */
+	public BitmapDecoder setPreferredConfig(Bitmap.Config config) {
+		mPreferredConfig = config;
+		return this;
+	}
+
+	/**
+	 * 自动选择像素格式时,没有透明通道的JPEG图片是否使用RGB_565,内存占用减半.默认为false,总是使用ARGB_8888
+	 *
+	 * @param allowRgb565 是否允许使用RGB_565
+	 * @return 返回this
+	 */
+	public BitmapDecoder setAllowRgb565(boolean allowRgb565) {
+		mAllowRgb565 = allowRgb565;
+		return this;
+	}
+
+	/**
+	 * 设置用于复用内存的位图,必须是可变的.不满足复用条件时忽略,复用失败时重新分配内存.
+	 * 只对下一次解码有效,否则之后的解码会覆盖上一次的结果
+	 *
+	 * @param inBitmap 用于复用内存的位图
+	 * @return 返回this
+	 */
+	public BitmapDecoder setInBitmap(Bitmap inBitmap) {
+		mInBitmap = inBitmap;
+		return this;
+	}
+
+	/**
+	 * 设置位图缓冲池,没有通过{@link #setInBitmap(Bitmap)}指定复用的位图时,从缓冲池中查找合适的位图复用内存,
+	 * 没有用上的位图会被放回
+	 *
+	 * @param pool 位图缓冲池
+	 * @return 返回this
+	 */
+	public BitmapDecoder setBitmapPool(BitmapPool pool) {
+		mBitmapPool = pool;
+		return this;
+	}
+
+	/**
+	 * 获取最近一次解码的图片的原始宽度
+	 *
+	 * @return 返回原始宽度,还没有解码或者解码失败时返回0
+	 */
+	public int getSourceWidth() {
+		return mSourceWidth;
+	}
+
+	/**
+	 * 获取最近一次解码的图片的原始高度
+	 *
+	 * @return 返回原始高度,还没有解码或者解码失败时返回0
+	 */
+	public int getSourceHeight() {
+		return mSourceHeight;
+	}
+
+	/**
+	 * 获取最近一次解码的图片的MIME类型
+	 *
+	 * @return 返回MIME类型,例如"image/jpeg",未知时返回null
+	 */
+	public String getMimeType() {
+		return mMimeType;
+	}
+
+	/**
+	 * 获取最近一次解码使用的inSampleSize
+	 *
+	 * @return 返回inSampleSize
+	 */
+	public int getSampleSize() {
+		return mSampleSize;
+	}
+
+	/**
+	 * 解码文件
+	 *
+	 * @param pathName 文件路径
+	 * @return 解码成功返回位图,失败返回null
+	 */
+	public Bitmap decodeFile(final String pathName) {
+		if(TextUtils.isEmpty(pathName)) {
+			return null;
+		}
+		return decode(new Source() {
+
+			@Override
+			Bitmap decode(BitmapFactory.Options opts) {
+				return BitmapFactory.decodeFile(pathName, opts);
+			}
+		});
+	}
+
+	/**
+	 * 解码字节数组
+	 *
+	 * @param data 图片数据
+	 * @return 解码成功返回位图,失败返回null
+	 */
+	public Bitmap decodeByteArray(byte[] data) {
+		if(data == null) {
+			return null;
+		}
+		return decodeByteArray(data, 0, data.length);
+	}
+
+	/**
+	 * 解码字节数组的一部分
+	 *
+	 * @param data 图片数据
+	 * @param offset 起始位置
+	 * @param length 长度
+	 * @return 解码成功返回位图,失败返回null
+	 */
+	public Bitmap decodeByteArray(final byte[] data, final int offset, final int length) {
+		if(data == null) {
+			return null;
+		}
+		return decode(new Source() {
+
+			@Override
+			Bitmap decode(BitmapFactory.Options opts) {
+				return BitmapFactory.decodeByteArray(data, offset, length, opts);
+			}
+		});
+	}
+
+	/**
+	 * 解码输入流,不会关闭输入流.不支持mark的输入流会被包装为BufferedInputStream
+	 *
+	 * @param is 输入流
+	 * @return 解码成功返回位图,失败返回null
+	 */
+	public Bitmap decodeStream(InputStream is) {
+		if(is == null) {
+			return null;
+		}
+		final InputStream stream = is.markSupported() ? is : new BufferedInputStream(is, STREAM_BUFFER_SIZE);
+		stream.mark(MARK_LIMIT);
+		return decode(new Source() {
+
+			@Override
+			Bitmap decode(BitmapFactory.Options opts) {
+				return BitmapFactory.decodeStream(stream, null, opts);
+			}
+
+			@Override
+			boolean rewind() {
+				try {
+					stream.reset();
+					return true;
+				} catch (IOException e) {
+					L.e(TAG, "can't rewind stream: " + e.getMessage());
+					return false;
+				}
+			}
+		});
+	}
+
+	private Bitmap decode(Source source) {
+		Bitmap inBitmap = mInBitmap;
+		mInBitmap = null;
+		mSourceWidth = 0;
+		mSourceHeight = 0;
+		mMimeType = null;
+		mSampleSize = 1;
+
+		BitmapFactory.Options opts = new BitmapFactory.Options();
+		opts.inJustDecodeBounds = true;
+		source.decode(opts);
+		if(opts.outWidth <= 0 || opts.outHeight <= 0 || !source.rewind()) {
+			return null;
+		}
+		mSourceWidth = opts.outWidth;
+		mSourceHeight = opts.outHeight;
+		mMimeType = opts.outMimeType;
+		mSampleSize = BitmapUtils.calculateInSampleSize(opts.outWidth, opts.outHeight, mReqWidth, mReqHeight);
+
+		opts.inJustDecodeBounds = false;
+		opts.inSampleSize = mSampleSize;
+		opts.inPreferredConfig = selectConfig(opts.outMimeType);
+		Bitmap candidate = inBitmap;
+		Bitmap pooled = null;
+		if(candidate == null && mBitmapPool != null) {
+			pooled = mBitmapPool.getReusable((opts.outWidth + mSampleSize - 1) / mSampleSize,
+					(opts.outHeight + mSampleSize - 1) / mSampleSize, opts.inPreferredConfig);
+			candidate = pooled;
+		}
+		if(canUseForInBitmap(candidate, opts.outWidth, opts.outHeight, mSampleSize, opts.inPreferredConfig)) {
+			opts.inBitmap = candidate;
+			opts.inMutable = true;
+		}
+		Bitmap result = decodeWithRetry(source, opts);
+		if(pooled != null && result != pooled) {
+			mBitmapPool.put(pooled);
+		}
+		return result;
+	}
+
+	private Bitmap decodeWithRetry(Source source, BitmapFactory.Options opts) {
+		try {
+			try {
+				return source.decode(opts);
+			} catch (IllegalArgumentException e) {
+				//复用的位图不满足条件
+				if(opts.inBitmap == null || !source.rewind()) {
+					throw e;
+				}
+				L.e(TAG, "can't decode into inBitmap, retry with a new bitmap");
+				opts.inBitmap = null;
+				return source.decode(opts);
+			}
+		} catch (IllegalArgumentException e) {
+			e.printStackTrace();
+			return null;
+		} catch (OutOfMemoryError e) {
+			L.e(TAG, "out of memory when decoding " + mSourceWidth + "x" + mSourceHeight
+					+ " with inSampleSize " + mSampleSize);
+			return null;
+		}
+	}
+
+	private Bitmap.Config selectConfig(String mimeType) {
+		if(mPreferredConfig != null) {
+			return mPreferredConfig;
+		}
+		if(mAllowRgb565 && "image/jpeg".equals(mimeType)) {
+			return Bitmap.Config.RGB_565;
+		}
+		return Bitmap.Config.ARGB_8888;
+	}
+
+	/**
+	 * 判断位图能否作为inBitmap复用.API 19以上只要求内存足够,API 19以下要求尺寸完全相同并且inSampleSize为1
+	 *
+	 * @param candidate 要复用的位图
+	 * @param width 图片原始宽度
+	 * @param height 图片原始高度
+	 * @param sampleSize inSampleSize
+	 * @param config 像素格式
+	 * @return 可以复用返回true
+	 */
+	@SuppressLint("NewApi")
+	static boolean canUseForInBitmap(Bitmap candidate, int width, int height, int sampleSize, Bitmap.Config config) {
+		if(candidate == null || candidate.isRecycled() || !candidate.isMutable()) {
+			return false;
+		}
+		if(Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+			//按向上取整估计,宁可多算也不能少算
+			long w = (width + sampleSize - 1) / sampleSize;
+			long h = (height + sampleSize - 1) / sampleSize;
+			return w * h * BitmapUtils.getBytesPerPixel(config) <= candidate.getAllocationByteCount();
+		}
+		return sampleSize == 1 && candidate.getWidth() == width && candidate.getHeight() == height;
+	}
+
+	/**
+	 * 图片数据来源,需要支持解码两次
+	 */
+	private static abstract class Source {
+
+		abstract Bitmap decode(BitmapFactory.Options opts);
+
+		/**
+		 * 回到数据开头,准备再次解码
+		 *
+		 * @return 成功返回true
+		 */
+		boolean rewind() {
+			return true;
+		}
+	}
+}
@@ -0,0 +1,333 @@
+package com.mao.kutils;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashSet;
+
+import android.graphics.Bitmap;
+import android.graphics.Bitmap.CompressFormat;
+import android.os.Build;
+import android.text.TextUtils;
+
+/**
+ * <p>
+ * 	位图编码,可以自动选择格式,也可以在不超过指定字节数的前提下选择尽量高的质量
+ * </p>
+ * <p>
+ * 	自动选择格式时:有透明通道的位图使用PNG(API 18及以上使用WEBP),颜色很少的位图(例如图标、纯色背景)使用PNG,
+ *  其它使用JPEG.写入文件时先写入临时文件,同步到磁盘后再重命名,不会留下写了一半的文件.
+ * </p>
+ * <p>
+ * 	一个BitmapEncoder的设置可以用于多次编码,BitmapEncoder不是线程安全的.
+ * </p>
+ *
+ * @author mao
+ * */
+public class BitmapEncoder {
+
+	public static final int DEFAULT_QUALITY = 90;
+
+	/** 按字节数限制查找质量时的最低质量 */
+	public static final int MIN_QUALITY = 10;
+
+	/** 采样的颜色数不超过这个值时认为是图标一类的图片,使用PNG */
+	private static final int PALETTE_THRESHOLD = 16;
+
+	/** 每个方向的采样点数 */
+	private static final int SAMPLES_PER_SIDE = 16;
+
+	private static final int FILE_BUFFER_SIZE = 64 * 1024;
+
+	/** API 18,有透明通道的位图可以编码为WEBP */
+	private static final int WEBP_ALPHA_SDK = 18;
+
+	private CompressFormat mFormat;
+
+	private int mQuality = DEFAULT_QUALITY;
+
+	private int mMaxBytes;
+
+	private CompressFormat mLastFormat;
+
+	private int mLastQuality;
+
+	/**
+	 * 指定格式,为null时自动选择,默认为null
+	 *
+	 * @param format 格式
+	 * @return 返回this
+	 */
+	public BitmapEncoder setFormat(CompressFormat format) {
+		mFormat = format;
+		return this;
+	}
+
+	/**
+	 * 设置质量,PNG忽略该设置,默认为{@link #DEFAULT_QUALITY}
+	 *
+	 * @param quality 0到100之间的质量
+	 * @return 返回this
+	 */
+	public BitmapEncoder setQuality(int quality) {
+		if(quality < 0 || quality > 100) {
+			throw new IllegalArgumentException("quality must be in [0, 100]");
+		}
+		mQuality = quality;
+		return this;
+	}
+
+	/**
+	 * 限制编码后的字节数,JPEG和WEBP会在不超过该字节数的前提下选择尽量高(不超过{@link #setQuality(int)})的质量,
+	 * 质量降到{@link #MIN_QUALITY}仍然超过时使用最低质量的结果.PNG忽略该设置
+	 *
+	 * @param maxBytes 最大字节数,小于等于0表示不限制,默认不限制
+	 * @return 返回this
+	 */
+	public BitmapEncoder setMaxBytes(int maxBytes) {
+		mMaxBytes = maxBytes;
+		return this;
+	}
+
+	/**
+	 * 获取最近一次编码使用的格式
+	 *
+	 * @return 返回格式,还没有编码时返回null
+	 */
+	public CompressFormat getLastFormat() {
+		return mLastFormat;
+	}
+
+	/**
+	 * 获取最近一次编码使用的质量
+	 *
+	 * @return 返回质量
+	 */
+	public int getLastQuality() {
+		return mLastQuality;
+	}
+
+	/**
+	 * 编码为字节数组
+	 *
+	 * @param bitmap 位图
+	 * @return 编码成功返回字节数组,失败返回null
+	 */
+	public byte[] encode(Bitmap bitmap) {
+		if(bitmap == null || bitmap.isRecycled()) {
+			return null;
+		}
+		IoUtils.ByteArrayBuilder data = encodeToBuilder(bitmap);
+		if(data == null) {
+			return null;
+		}
+		try {
+			return data.toByteArray();
+		} finally {
+			data.close();
+		}
+	}
+
+	/**
+	 * 编码后写入输出流,不会关闭输出流
+	 *
+	 * @param bitmap 位图
+	 * @param os 输出流
+	 * @return 成功返回true
+	 */
+	public boolean encode(Bitmap bitmap, OutputStream os) {
+		if(bitmap == null || bitmap.isRecycled() || os == null) {
+			return false;
+		}
+		if(mMaxBytes > 0) {
+			IoUtils.ByteArrayBuilder data = encodeToBuilder(bitmap);
+			if(data == null) {
+				return false;
+			}
+			try {
+				data.writeTo(os);
+				return true;
+			} catch (IOException e) {
+				e.printStackTrace();
+				return false;
+			} finally {
+				data.close();
+			}
+		}
+		CompressFormat format = mFormat != null ? mFormat : chooseFormat(bitmap);
+		return compress(bitmap, format, mQuality, os);
+	}
+
+	/**
+	 * 编码后写入文件.先写入同目录下名称唯一的临时文件,同步到磁盘后重命名为目标文件,失败时目标文件保持不变,
+	 * 同时写入同一个路径时也不会共用临时文件
+	 *
+	 * @param bitmap 位图
+	 * @param path 文件路径,父目录不存在时会被创建
+	 * @return 成功返回true
+	 */
+	public boolean encodeToFile(Bitmap bitmap, String path) {
+		if(bitmap == null || bitmap.isRecycled() || TextUtils.isEmpty(path)) {
+			return false;
+		}
+		File file = new File(path);
+		File parent = file.getAbsoluteFile().getParentFile();
+		if(parent != null && !parent.exists() && !parent.mkdirs()) {
+			return false;
+		}
+		File temp = null;
+		FileOutputStream fos = null;
+		boolean success = false;
+		try {
+			//前缀至少3个字符,以.开头的隐藏文件不会被媒体扫描
+			temp = File.createTempFile("." + file.getName() + "-", ".tmp", parent);
+			fos = new FileOutputStream(temp);
+			if(mMaxBytes > 0) {
+				IoUtils.ByteArrayBuilder data = encodeToBuilder(bitmap);
+				if(data != null) {
+					try {
+						data.writeTo(fos.getChannel());
+						success = true;
+					} finally {
+						data.close();
+					}
+				}
+			} else {
+				//直接压缩到文件,不在内存中保留完整的编码结果
+				BufferedOutputStream bos = new BufferedOutputStream(fos, FILE_BUFFER_SIZE);
+				success = encode(bitmap, bos);
+				bos.flush();
+			}
+			if(success) {
+				fos.getFD().sync();
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+			success = false;
+		} finally {
+			if(!IoUtils.close(fos)) {
+				success = false;
+			}
+		}
+		if(success && temp.renameTo(file)) {
+			return true;
+		}
+		if(temp != null) {
+			temp.delete();
+		}
+		return false;
+	}
+
+	//编码结果保存在返回的ByteArrayBuilder中,使用完后需要关闭;失败返回null
+	private IoUtils.ByteArrayBuilder encodeToBuilder(Bitmap bitmap) {
+		CompressFormat format = mFormat != null ? mFormat : chooseFormat(bitmap);
+		IoUtils.ByteArrayBuilder out = new IoUtils.ByteArrayBuilder();
+		if(!compress(bitmap, format, mQuality, out)) {
+			out.close();
+			return null;
+		}
+		if(mMaxBytes <= 0 || format == CompressFormat.PNG || out.size() <= mMaxBytes) {
+			return out;
+		}
+		//二分查找不超过字节数限制的最高质量,符合限制的结果与下一次尝试交替使用两个缓冲区,不需要复制
+		IoUtils.ByteArrayBuilder best = null;
+		int bestQuality = MIN_QUALITY;
+		int low = MIN_QUALITY;
+		int high = mQuality - 1;
+		while(low <= high) {
+			int mid = (low + high) >>> 1;
+			out.reset();
+			if(!compress(bitmap, format, mid, out)) {
+				out.close();
+				IoUtils.close(best);
+				return null;
+			}
+			if(out.size() <= mMaxBytes) {
+				IoUtils.ByteArrayBuilder previous = best;
+				best = out;
+				bestQuality = mid;
+				low = mid + 1;
+				out = previous != null ? previous : new IoUtils.ByteArrayBuilder();
+			} else {
+				high = mid - 1;
+			}
+		}
+		if(best == null) {
+			//最低质量也超过限制
+			out.reset();
+			if(!compress(bitmap, format, MIN_QUALITY, out)) {
+				out.close();
+				return null;
+			}
+			return out;
+		}
+		out.close();
+		mLastQuality = bestQuality;
+		return best;
+	}
+
+	private boolean compress(Bitmap bitmap, CompressFormat format, int quality, OutputStream os) {
+		mLastFormat = format;
+		mLastQuality = quality;
+		return bitmap.compress(format, quality, os);
+	}
+
+	/**
+	 * 根据透明通道和内容选择格式
+	 *
+	 * @param bitmap 位图
+	 * @return 返回格式
+	 */
+	public static CompressFormat chooseFormat(Bitmap bitmap) {
+		if(bitmap.hasAlpha()) {
+			return Build.VERSION.SDK_INT >= WEBP_ALPHA_SDK ? CompressFormat.WEBP : CompressFormat.PNG;
+		}
+		return isFewColors(bitmap) ? CompressFormat.PNG : CompressFormat.JPEG;
+	}
+
+	/**
+	 * 根据文件扩展名获取格式
+	 *
+	 * @param path 文件路径
+	 * @return 扩展名为jpg、jpeg、png、webp时返回对应的格式,否则返回null
+	 */
+	public static CompressFormat formatForPath(String path) {
+		if(path == null) {
+			return null;
+		}
+		String lower = path.toLowerCase();
+		if(lower.endsWith(".jpg") || lower.endsWith(".jpeg")) {
+			return CompressFormat.JPEG;
+		}
+		if(lower.endsWith(".png")) {
+			return CompressFormat.PNG;
+		}
+		if(lower.endsWith(".webp")) {
+			return CompressFormat.WEBP;
+		}
+		return null;
+	}
+
+	//在均匀分布的采样点上统计颜色数
+	private static boolean isFewColors(Bitmap bitmap) {
+		int width = bitmap.getWidth();
+		int height = bitmap.getHeight();
+		if(width == 0 || height == 0) {
+			return true;
+		}
+		HashSet<Integer> colors = new HashSet<Integer>();
+		for(int i = 0; i < SAMPLES_PER_SIDE; i++) {
+			int y = (int) ((long) height * (2 * i + 1) / (2 * SAMPLES_PER_SIDE));
+			for(int j = 0; j < SAMPLES_PER_SIDE; j++) {
+				int x = (int) ((long) width * (2 * j + 1) / (2 * SAMPLES_PER_SIDE));
+				colors.add(bitmap.getPixel(x, y));
+				if(colors.size() > PALETTE_THRESHOLD) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+}
@@ -0,0 +1,284 @@
+package com.mao.kutils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import android.annotation.SuppressLint;
+import android.graphics.Bitmap;
+import android.graphics.Color;
+import android.os.Build;
+
+/**
+ * <p>
+ * 	可复用位图的缓冲池,按宽高和像素格式分组,总大小(按{@link BitmapUtils#sizeOfBitmap(Bitmap)}计算)超过上限时
+ *  淘汰最早放入的位图.
+ * </p>
+ * <p>
+ * 	不再使用的可变位图通过{@link #put(Bitmap)}放回,需要位图时通过{@link #get(int, int, Bitmap.Config)}获取,
+ *  避免频繁创建位图引起的GC.放回后调用者不能再使用该位图.
+ * </p>
+ * <p>
+ * 	作为inBitmap解码时通过{@link #getReusable(int, int, Bitmap.Config)}获取:API 19以上按占用内存查找,
+ *  不要求宽高和像素格式相同.
+ * </p>
+ * <p>
+ * 	BitmapPool是线程安全的.
+ * </p>
+ *
+ * @author mao
+ * */
+public class BitmapPool {
+
+	/** 按内存查找时,不选择占用内存超过所需内存该倍数的位图,避免小图长期占用大块内存 */
+	private final static int MAX_SIZE_MULTIPLE = 4;
+
+	private final HashMap<Key, ArrayList<Bitmap>> mGroups = new HashMap<Key, ArrayList<Bitmap>>();
+
+	/** 按放入顺序排列,最早放入的最先被淘汰 */
+	private final LinkedHashMap<Bitmap, Key> mLru = new LinkedHashMap<Bitmap, Key>();
+
+	/** 按占用内存分组,用于查找内存足够的最小位图 */
+	private final TreeMap<Integer, ArrayList<Bitmap>> mSizes = new TreeMap<Integer, ArrayList<Bitmap>>();
+
+	/** 查找时复用的Key,避免每次查找都分配对象 */
+	private final Key mLookupKey = new Key(0, 0, null);
+
+	private int mMaxSize;
+
+	private int mCurrentSize;
+
+	private int mHitCount;
+
+	private int mMissCount;
+
+	private int mEvictionCount;
+
+	/**
+	 * @param maxSize 缓冲池中位图的总大小上限,单位为字节
+	 */
+	public BitmapPool(int maxSize) {
+		if(maxSize <= 0) {
+			throw new IllegalArgumentException("maxSize <= 0");
+		}
+		mMaxSize = maxSize;
+	}
+
+	/**
+	 * 放回位图.不可变的、已回收的或者比上限还大的位图不会被放入
+	 *
+	 * @param bitmap 不再使用的位图
+	 * @return 放入成功返回true,此后调用者不能再使用该位图;返回false时位图仍由调用者处理
+	 */
+	public synchronized boolean put(Bitmap bitmap) {
+		if(bitmap == null || bitmap.isRecycled() || !bitmap.isMutable()) {
+			return false;
+		}
+		int size = BitmapUtils.sizeOfBitmap(bitmap);
+		if(size > mMaxSize || mLru.containsKey(bitmap)) {
+			return false;
+		}
+		Key key = new Key(bitmap.getWidth(), bitmap.getHeight(), bitmap.getConfig());
+		ArrayList<Bitmap> group = mGroups.get(key);
+		if(group == null) {
+			group = new ArrayList<Bitmap>();
+			mGroups.put(key, group);
+		}
+		group.add(bitmap);
+		ArrayList<Bitmap> sameSize = mSizes.get(size);
+		if(sameSize == null) {
+			sameSize = new ArrayList<Bitmap>();
+			mSizes.put(size, sameSize);
+		}
+		sameSize.add(bitmap);
+		mLru.put(bitmap, key);
+		mCurrentSize += size;
+		trimToSize(mMaxSize);
+		return true;
+	}
+
+	/**
+	 * 获取指定宽高和像素格式的位图,内容已清空为透明
+	 *
+	 * @param width 宽度
+	 * @param height 高度
+	 * @param config 像素格式
+	 * @return 有合适的位图时返回该位图,否则返回null
+	 */
+	public Bitmap get(int width, int height, Bitmap.Config config) {
+		Bitmap bitmap = getDirty(width, height, config);
+		if(bitmap != null) {
+			bitmap.eraseColor(Color.TRANSPARENT);
+		}
+		return bitmap;
+	}
+
+	/**
+	 * 获取指定宽高和像素格式的位图,内容是之前使用时留下的,适合接下来会完全覆盖的场合,例如作为inBitmap
+	 *
+	 * @param width 宽度
+	 * @param height 高度
+	 * @param config 像素格式
+	 * @return 有合适的位图时返回该位图,否则返回null
+	 */
+	public synchronized Bitmap getDirty(int width, int height, Bitmap.Config config) {
+		mLookupKey.set(width, height, config);
+		ArrayList<Bitmap> group = mGroups.get(mLookupKey);
+		if(group == null || group.isEmpty()) {
+			mMissCount++;
+			return null;
+		}
+		//取最近放入的
+		Bitmap bitmap = group.get(group.size() - 1);
+		remove(bitmap, mLru.get(bitmap));
+		mHitCount++;
+		return bitmap;
+	}
+
+	/**
+	 * <p>
+	 * 	获取能作为inBitmap解码出指定宽高和像素格式的位图,内容是之前使用时留下的
+	 * </p>
+	 * <p>
+	 * 	API 19以上只要求占用内存足够,返回满足条件的内存最小的位图,但不超过所需内存的{@value #MAX_SIZE_MULTIPLE}倍,
+	 *  宽高和像素格式由解码时重新设置;API 19以下inBitmap要求宽高相同,等同于{@link #getDirty(int, int, Bitmap.Config)}.
+	 * </p>
+	 *
+	 * @param width 解码后的宽度
+	 * @param height 解码后的高度
+	 * @param config 解码后的像素格式
+	 * @return 有合适的位图时返回该位图,否则返回null
+	 */
+	@SuppressLint("NewApi")
+	public synchronized Bitmap getReusable(int width, int height, Bitmap.Config config) {
+		if(Build.VERSION.SDK_INT < Build.VERSION_CODES.KITKAT) {
+			return getDirty(width, height, config);
+		}
+		long required = (long) width * height * BitmapUtils.getBytesPerPixel(config);
+		Map.Entry<Integer, ArrayList<Bitmap>> entry = required > Integer.MAX_VALUE ? null : mSizes.ceilingEntry((int) required);
+		if(entry == null || entry.getKey() > required * MAX_SIZE_MULTIPLE) {
+			mMissCount++;
+			return null;
+		}
+		ArrayList<Bitmap> sameSize = entry.getValue();
+		Bitmap bitmap = sameSize.get(sameSize.size() - 1);
+		remove(bitmap, mLru.get(bitmap));
+		mHitCount++;
+		return bitmap;
+	}
+
+	//从各个索引中移除位图,不回收
+	private void remove(Bitmap bitmap, Key key) {
+		mLru.remove(bitmap);
+		ArrayList<Bitmap> group = mGroups.get(key);
+		group.remove(bitmap);
+		if(group.isEmpty()) {
+			mGroups.remove(key);
+		}
+		int size = BitmapUtils.sizeOfBitmap(bitmap);
+		ArrayList<Bitmap> sameSize = mSizes.get(size);
+		sameSize.remove(bitmap);
+		if(sameSize.isEmpty()) {
+			mSizes.remove(size);
+		}
+		mCurrentSize -= size;
+	}
+
+	/**
+	 * 淘汰最早放入的位图,直到总大小不超过maxSize
+	 *
+	 * @param maxSize 总大小上限,单位为字节,0表示清空
+	 */
+	public synchronized void trimToSize(int maxSize) {
+		while(mCurrentSize > maxSize && !mLru.isEmpty()) {
+			Map.Entry<Bitmap, Key> entry = mLru.entrySet().iterator().next();
+			Bitmap bitmap = entry.getKey();
+			remove(bitmap, entry.getValue());
+			mEvictionCount++;
+			bitmap.recycle();
+		}
+	}
+
+	/**
+	 * 清空缓冲池,回收其中的所有位图
+	 */
+	public void clear() {
+		trimToSize(0);
+	}
+
+	/**
+	 * 修改总大小上限,超出的部分立即淘汰
+	 *
+	 * @param maxSize 总大小上限,单位为字节
+	 */
+	public synchronized void setMaxSize(int maxSize) {
+		if(maxSize <= 0) {
+			throw new IllegalArgumentException("maxSize <= 0");
+		}
+		mMaxSize = maxSize;
+		trimToSize(maxSize);
+	}
+
+	public synchronized int getMaxSize() {
+		return mMaxSize;
+	}
+
+	/**
+	 * 获取缓冲池中位图的总大小
+	 *
+	 * @return 返回总大小,单位为字节
+	 */
+	public synchronized int getCurrentSize() {
+		return mCurrentSize;
+	}
+
+	public synchronized int getHitCount() {
+		return mHitCount;
+	}
+
+	public synchronized int getMissCount() {
+		return mMissCount;
+	}
+
+	public synchronized int getEvictionCount() {
+		return mEvictionCount;
+	}
+
+	private static final class Key {
+
+		int width;
+
+		int height;
+
+		Bitmap.Config config;
+
+		Key(int width, int height, Bitmap.Config config) {
+			set(width, height, config);
+		}
+
+		void set(int width, int height, Bitmap.Config config) {
+			this.width = width;
+			this.height = height;
+			this.config = config;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if(!(o instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) o;
+			return width == other.width && height == other.height && config == other.config;
+		}
+
+		@Override
+		public int hashCode() {
+			int result = width;
+			result = 31 * result + height;
+			result = 31 * result + (config != null ? config.hashCode() : 0);
+			return result;
+		}
+	}
+}
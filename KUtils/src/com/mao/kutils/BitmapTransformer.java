@@ -0,0 +1,300 @@
+package com.mao.kutils;
+
+import java.util.ArrayList;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapShader;
+import android.graphics.Canvas;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.RectF;
+import android.graphics.Shader;
+
+/**
+ * <p>
+ * 	位图变换,支持圆形、圆角、居中裁剪和缩放,可以串联多个变换
+ * </p>
+ * <p>
+ * 	所有变换先合并为源位图上的一个区域、一个输出尺寸和一个形状,再用BitmapShader一次绘制到输出位图,
+ *  不产生中间位图,也不需要图层混合.Paint、Matrix和Canvas每个线程复用一份.
+ * </p>
+ * <p>
+ * 	变换按添加的顺序执行,例如centerCrop(200, 200).circle()和circle().resize(200, 200)的结果相同.
+ *  {@link #getKey()}可以作为缓存键的一部分.配置完成后{@link #transform(Bitmap, BitmapPool)}可以在多个线程中同时调用.
+ * </p>
+ *
+ * @author mao
+ * */
+public class BitmapTransformer {
+
+	private static final int SHAPE_RECT = 0;
+
+	private static final int SHAPE_CIRCLE = 1;
+
+	private static final int SHAPE_ROUND_RECT = 2;
+
+	private static final ThreadLocal<DrawState> sDrawState = new ThreadLocal<DrawState>() {
+
+		@Override
+		protected DrawState initialValue() {
+			return new DrawState();
+		}
+	};
+
+	private final ArrayList<Step> mSteps = new ArrayList<Step>();
+
+	private final StringBuilder mKey = new StringBuilder();
+
+	/**
+	 * 裁剪为居中的圆形,直径为当前宽高中较小的一个
+	 *
+	 * @return 返回this
+	 */
+	public BitmapTransformer circle() {
+		return add(new Step() {
+
+			@Override
+			void apply(Plan plan) {
+				int side = Math.min(plan.outWidth, plan.outHeight);
+				float left = (plan.outWidth - side) / 2f;
+				float top = (plan.outHeight - side) / 2f;
+				plan.cropOutput(left, top, left + side, top + side);
+				plan.shape = SHAPE_CIRCLE;
+			}
+		}, "circle");
+	}
+
+	/**
+	 * 圆角,半径按最终输出的像素计算
+	 *
+	 * @param radius 圆角半径
+	 * @return 返回this
+	 */
+	public BitmapTransformer roundedCorners(final float radius) {
+		if(radius < 0) {
+			throw new IllegalArgumentException("radius < 0");
+		}
+		return add(new Step() {
+
+			@Override
+			void apply(Plan plan) {
+				plan.shape = radius > 0 ? SHAPE_ROUND_RECT : SHAPE_RECT;
+				plan.radius = radius;
+			}
+		}, "round(" + radius + ")");
+	}
+
+	/**
+	 * 等比缩放到恰好覆盖目标尺寸,超出的部分居中裁掉
+	 *
+	 * @param width 目标宽度
+	 * @param height 目标高度
+	 * @return 返回this
+	 */
+	public BitmapTransformer centerCrop(final int width, final int height) {
+		checkSize(width, height);
+		return add(new Step() {
+
+			@Override
+			void apply(Plan plan) {
+				float scale = Math.max((float) width / plan.outWidth, (float) height / plan.outHeight);
+				float cropWidth = width / scale;
+				float cropHeight = height / scale;
+				float left = (plan.outWidth - cropWidth) / 2f;
+				float top = (plan.outHeight - cropHeight) / 2f;
+				plan.cropOutput(left, top, left + cropWidth, top + cropHeight);
+				plan.outWidth = width;
+				plan.outHeight = height;
+			}
+		}, "centerCrop(" + width + "x" + height + ")");
+	}
+
+	/**
+	 * 缩放到目标尺寸,不保持宽高比
+	 *
+	 * @param width 目标宽度
+	 * @param height 目标高度
+	 * @return 返回this
+	 */
+	public BitmapTransformer resize(final int width, final int height) {
+		checkSize(width, height);
+		return add(new Step() {
+
+			@Override
+			void apply(Plan plan) {
+				plan.outWidth = width;
+				plan.outHeight = height;
+			}
+		}, "resize(" + width + "x" + height + ")");
+	}
+
+	private static void checkSize(int width, int height) {
+		if(width <= 0 || height <= 0) {
+			throw new IllegalArgumentException("width and height must be > 0");
+		}
+	}
+
+	private BitmapTransformer add(Step step, String key) {
+		mSteps.add(step);
+		if(mKey.length() > 0) {
+			mKey.append('|');
+		}
+		mKey.append(key);
+		return this;
+	}
+
+	/**
+	 * 获取描述所有变换的键,变换相同时键相同
+	 *
+	 * @return 返回键,没有变换时返回空字符串
+	 */
+	public String getKey() {
+		return mKey.toString();
+	}
+
+	/**
+	 * 计算变换后的尺寸,不进行绘制
+	 *
+	 * @param width 源宽度
+	 * @param height 源高度
+	 * @return 返回{宽度, 高度}
+	 */
+	public int[] getOutputSize(int width, int height) {
+		Plan plan = plan(width, height);
+		return new int[] {plan.outWidth, plan.outHeight};
+	}
+
+	/**
+	 * 执行变换,源位图不会被修改或回收
+	 *
+	 * @param source 源位图
+	 * @param pool 位图缓冲池,输出位图优先从中获取,为null时创建新的位图
+	 * @return 返回新的位图;没有变换时返回源位图;source为null或者已回收时返回null
+	 */
+	public Bitmap transform(Bitmap source, BitmapPool pool) {
+		if(source == null || source.isRecycled()) {
+			return null;
+		}
+		if(mSteps.isEmpty()) {
+			return source;
+		}
+		Plan plan = plan(source.getWidth(), source.getHeight());
+		int outWidth = plan.outWidth;
+		int outHeight = plan.outHeight;
+		//矩形输出不会产生透明像素,可以沿用源位图的像素格式
+		Bitmap.Config config = Bitmap.Config.ARGB_8888;
+		if(plan.shape == SHAPE_RECT && source.getConfig() != null) {
+			config = source.getConfig();
+		}
+		Bitmap output = BitmapUtils.createBitmap(outWidth, outHeight, config, pool);
+		if(output == null) {
+			return null;
+		}
+
+		DrawState state = sDrawState.get();
+		Matrix matrix = state.matrix;
+		matrix.setTranslate(-plan.srcLeft, -plan.srcTop);
+		matrix.postScale(outWidth / (plan.srcRight - plan.srcLeft), outHeight / (plan.srcBottom - plan.srcTop));
+		//BitmapShader创建后不能更换位图,每次绘制新建一个
+		BitmapShader shader = new BitmapShader(source, Shader.TileMode.CLAMP, Shader.TileMode.CLAMP);
+		shader.setLocalMatrix(matrix);
+		Paint paint = state.paint;
+		paint.setShader(shader);
+		Canvas canvas = state.canvas;
+		canvas.setBitmap(output);
+		try {
+			switch (plan.shape) {
+			case SHAPE_CIRCLE:
+				canvas.drawCircle(outWidth / 2f, outHeight / 2f, Math.min(outWidth, outHeight) / 2f, paint);
+				break;
+			case SHAPE_ROUND_RECT:
+				state.rect.set(0, 0, outWidth, outHeight);
+				canvas.drawRoundRect(state.rect, plan.radius, plan.radius, paint);
+				break;
+			default:
+				canvas.drawRect(0, 0, outWidth, outHeight, paint);
+				break;
+			}
+		} finally {
+			//不持有输出位图
+			canvas.setBitmap(null);
+			paint.setShader(null);
+		}
+		return output;
+	}
+
+	private Plan plan(int width, int height) {
+		Plan plan = new Plan(width, height);
+		for(Step step : mSteps) {
+			step.apply(plan);
+		}
+		return plan;
+	}
+
+	@Override
+	public String toString() {
+		return "BitmapTransformer[" + mKey + "]";
+	}
+
+	private static abstract class Step {
+
+		abstract void apply(Plan plan);
+	}
+
+	/**
+	 * 合并后的绘制参数:源位图上的区域绘制到(0, 0, outWidth, outHeight)
+	 */
+	private static final class Plan {
+
+		float srcLeft;
+
+		float srcTop;
+
+		float srcRight;
+
+		float srcBottom;
+
+		int outWidth;
+
+		int outHeight;
+
+		int shape = SHAPE_RECT;
+
+		float radius;
+
+		Plan(int width, int height) {
+			srcRight = width;
+			srcBottom = height;
+			outWidth = width;
+			outHeight = height;
+		}
+
+		//只保留输出中的一个区域,并换算回源位图上的区域
+		void cropOutput(float left, float top, float right, float bottom) {
+			float scaleX = (srcRight - srcLeft) / outWidth;
+			float scaleY = (srcBottom - srcTop) / outHeight;
+			float newLeft = srcLeft + left * scaleX;
+			float newTop = srcTop + top * scaleY;
+			srcRight = srcLeft + right * scaleX;
+			srcBottom = srcTop + bottom * scaleY;
+			srcLeft = newLeft;
+			srcTop = newTop;
+			outWidth = Math.max(Math.round(right - left), 1);
+			outHeight = Math.max(Math.round(bottom - top), 1);
+		}
+	}
+
+	/**
+	 * 每个线程复用的绘制对象
+	 */
+	private static final class DrawState {
+
+		final Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG | Paint.FILTER_BITMAP_FLAG | Paint.DITHER_FLAG);
+
+		final Matrix matrix = new Matrix();
+
+		final RectF rect = new RectF();
+
+		final Canvas canvas = new Canvas();
+	}
+}
@@ -1,9 +1,7 @@
 package com.mao.kutils;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
 import java.net.MalformedURLException;
 import java.net.URL;
 
@@ -13,10 +11,6 @@ import android.graphics.Bitmap;
 import android.graphics.Bitmap.CompressFormat;
 import android.graphics.BitmapFactory;
 import android.graphics.Canvas;
-import android.graphics.Paint;
-import android.graphics.PorterDuff.Mode;
-import android.graphics.PorterDuffXfermode;
-import android.graphics.Rect;
 import android.graphics.drawable.BitmapDrawable;
 import android.graphics.drawable.Drawable;
 import android.os.Build;
@@ -30,6 +24,8 @@ import android.text.TextUtils;
  */
 public class BitmapUtils {
 
+	private static final BitmapTransformer CIRCLE = new BitmapTransformer().circle();
+
 	private BitmapUtils() {
 		throw new UnsupportedOperationException("can't instantiate class BitmapUtils");
 	}
@@ -41,38 +37,49 @@ public class BitmapUtils {
 	 */
 	
 	/**
-	 * 创建圆形位图
+	 * 创建圆形位图,截取位图中间的正方形区域
 	 * 
 	 * @param bitmap 
 	 * @return
+	 * @see BitmapTransformer#circle()
 	 */
 	public static Bitmap createCircleBitmap(Bitmap bitmap) {
-		if(bitmap == null) {
-			return null;
-		}
-		
-		int bmWidth = bitmap.getWidth();
-		int bmHeight = bitmap.getHeight();
-		int side = bmWidth < bmHeight ? bmWidth : bmHeight;
-		int x = (bmWidth - side) / 2;
-		int y = (bmHeight - side) / 2;
-		Bitmap newBm = Bitmap.createBitmap(side, side, Bitmap.Config.ARGB_8888);
-		if(newBm != null) {
-			Canvas canvas = new Canvas(newBm);
-		    Paint paint = new Paint();
-		    paint.setAntiAlias(true);
-		    paint.setFilterBitmap(true);
-		    paint.setDither(true);
-		   
-		    Rect rect = new Rect(0, 0, newBm.getWidth(), newBm.getHeight());
-		    canvas.drawARGB(0, 0, 0, 0);
-		    canvas.drawCircle(newBm.getWidth()/2, newBm.getHeight()/2, newBm.getHeight()/2, paint);
-		    paint.setXfermode(new PorterDuffXfermode(Mode.SRC_IN));
-		    canvas.drawBitmap(bitmap, rect, rect, paint);
-		    
-		    return newBm;
+		return createCircleBitmap(bitmap, null);
+	}
+	
+	/**
+	 * 创建圆形位图,结果位图从缓冲池中获取
+	 * 
+	 * @param bitmap 
+	 * @param pool 位图缓冲池,为null时创建新的位图
+	 * @return
+	 * @see BitmapTransformer#circle()
+	 */
+	public static Bitmap createCircleBitmap(Bitmap bitmap, BitmapPool pool) {
+		return CIRCLE.transform(bitmap, pool);
+	}
+	
+	
+	
+	
+	
+	/**
+	 * 创建位图,优先从缓冲池中获取,获取到的位图内容为透明
+	 * 
+	 * @param width 宽度
+	 * @param height 高度
+	 * @param config 像素格式
+	 * @param pool 位图缓冲池,为null时直接创建
+	 * @return 返回可变的位图
+	 */
+	public static Bitmap createBitmap(int width, int height, Bitmap.Config config, BitmapPool pool) {
+		if(pool != null) {
+			Bitmap bitmap = pool.get(width, height, config);
+			if(bitmap != null) {
+				return bitmap;
+			}
 		}
-		return null;
+		return Bitmap.createBitmap(width, height, config);
 	}
 	
 	
@@ -110,6 +117,50 @@ public class BitmapUtils {
     	}
     }
     
+    /**
+     * 获取指定像素格式每个像素占用的字节数
+     * 
+     * @param config 像素格式,为null时按ARGB_8888计算
+     * @return 返回每个像素占用的字节数
+     */
+    public static int getBytesPerPixel(Bitmap.Config config) {
+    	if(config == null) {
+    		return 4;
+    	}
+    	switch (config) {
+		case ALPHA_8:
+			return 1;
+		case RGB_565:
+		case ARGB_4444:
+			return 2;
+		default:
+			return 4;
+		}
+    }
+    
+    /**
+     * 计算解码时使用的inSampleSize,结果为2的幂次,并且缩小后的宽高不小于目标宽高
+     * 
+     * @param width 图片原始宽度
+     * @param height 图片原始高度
+     * @param reqWidth 目标宽度,小于等于0表示不限制宽度
+     * @param reqHeight 目标高度,小于等于0表示不限制高度
+     * @return 返回inSampleSize,最小为1
+     */
+    public static int calculateInSampleSize(int width, int height, int reqWidth, int reqHeight) {
+    	if(reqWidth <= 0 && reqHeight <= 0) {
+    		return 1;
+    	}
+    	int sampleSize = 1;
+    	while(true) {
+    		int next = sampleSize * 2;
+    		if((reqWidth > 0 && width / next < reqWidth)
+    				|| (reqHeight > 0 && height / next < reqHeight)) {
+    			return sampleSize;
+    		}
+    		sampleSize = next;
+    	}
+    }
     
     
     
@@ -125,10 +176,21 @@ public class BitmapUtils {
      * @return 转换成功返回一幅位图,失败返回null.
      */
     public static Bitmap drawable2Bitmap(Drawable d) {
+    	return drawable2Bitmap(d, null);
+    }
+    
+    /**
+     * Drawable转Bitmap,结果位图从缓冲池中获取
+     * 
+     * @param d 要转换的Drawable对象,不能为null.
+     * @param pool 位图缓冲池,为null时创建新的位图
+     * @return 转换成功返回一幅位图,失败返回null.
+     */
+    public static Bitmap drawable2Bitmap(Drawable d, BitmapPool pool) {
     	if(d == null) {
     		return null;
     	}
-    	Bitmap bm = Bitmap.createBitmap(d.getIntrinsicWidth(), d.getIntrinsicHeight(), Bitmap.Config.ARGB_8888);
+    	Bitmap bm = createBitmap(d.getIntrinsicWidth(), d.getIntrinsicHeight(), Bitmap.Config.ARGB_8888, pool);
     	Canvas canvas = new Canvas(bm);
     	d.setBounds(0, 0, d.getIntrinsicWidth(), d.getIntrinsicHeight());
     	d.draw(canvas);
@@ -151,19 +213,26 @@ public class BitmapUtils {
     }
     
     /**
-     * Bitmap转字节数组
+     * Bitmap转字节数组,根据透明通道和内容自动选择格式,质量为{@link BitmapEncoder#DEFAULT_QUALITY}
      * 
      * @param bitmap
-     * @return
+     * @return 编码成功返回字节数组,失败返回null
+     * @see BitmapEncoder
      */
     public static byte[] bitmap2Byte(Bitmap bitmap) {
-    	if(bitmap == null) {
-    		return null;
-    	}
-    	int size = bitmap.getWidth() * bitmap.getHeight();
-    	ByteArrayOutputStream baos = new ByteArrayOutputStream(size);
-    	bitmap.compress(CompressFormat.JPEG, 100, baos);
-    	return baos.toByteArray();
+    	return new BitmapEncoder().encode(bitmap);
+    }
+    
+    /**
+     * Bitmap转字节数组,在不超过maxBytes的前提下选择尽量高的质量
+     * 
+     * @param bitmap
+     * @param maxBytes 最大字节数
+     * @return 编码成功返回字节数组,失败返回null
+     * @see BitmapEncoder#setMaxBytes(int)
+     */
+    public static byte[] bitmap2Byte(Bitmap bitmap, int maxBytes) {
+    	return new BitmapEncoder().setMaxBytes(maxBytes).encode(bitmap);
     }
     
     /**
@@ -201,6 +270,32 @@ public class BitmapUtils {
     	return BitmapFactory.decodeFile(pathName, opts);
     }
     
+    /**
+     * 通过文件路径按目标尺寸获取位图,先只解码尺寸再按2的幂次缩小解码
+     * 
+     * @param pathName 路径
+     * @param reqWidth 目标宽度,小于等于0表示不限制宽度
+     * @param reqHeight 目标高度,小于等于0表示不限制高度
+     * @return 解码成功返回宽高不小于目标宽高的位图,失败返回null
+     * @see BitmapDecoder
+     */
+    public static Bitmap decodeBitmapFromFile(String pathName, int reqWidth, int reqHeight) {
+    	return new BitmapDecoder().setTargetSize(reqWidth, reqHeight).decodeFile(pathName);
+    }
+    
+    /**
+     * 字节数组按目标尺寸转Bitmap
+     * 
+     * @param data 图片数据
+     * @param reqWidth 目标宽度,小于等于0表示不限制宽度
+     * @param reqHeight 目标高度,小于等于0表示不限制高度
+     * @return 解码成功返回宽高不小于目标宽高的位图,失败返回null
+     * @see BitmapDecoder
+     */
+    public static Bitmap byte2Bitmap(byte[] data, int reqWidth, int reqHeight) {
+    	return new BitmapDecoder().setTargetSize(reqWidth, reqHeight).decodeByteArray(data);
+    }
+    
     /**
      * 从网络获取Bitmap
      * 
@@ -232,7 +327,33 @@ public class BitmapUtils {
     }
     
     /**
-     * 保存一张位图到指定路径
+     * 从网络按目标尺寸获取Bitmap
+     * 
+     * @param url 图片地址
+     * @param reqWidth 目标宽度,小于等于0表示不限制宽度
+     * @param reqHeight 目标高度,小于等于0表示不限制高度
+     * @return 解码成功返回宽高不小于目标宽高的位图,失败返回null
+     * @see BitmapDecoder
+     */
+    public static Bitmap decodeBitmapFromNetwork(String url, int reqWidth, int reqHeight) {
+    	if(TextUtils.isEmpty(url)) {
+    		return null;
+    	}
+    	InputStream is = null;
+    	try {
+    		is = new URL(url).openStream();
+    		return new BitmapDecoder().setTargetSize(reqWidth, reqHeight).decodeStream(is);
+    	} catch (IOException e) {
+			e.printStackTrace();
+			return null;
+		} finally {
+			IoUtils.close(is);
+		}
+    }
+    
+    /**
+     * 保存一张位图到指定路径.格式由扩展名(jpg、png、webp)决定,没有这些扩展名时根据透明通道和内容自动选择.
+     * 先写入临时文件再重命名,失败时不会留下不完整的文件
      * 
      * @param bitmap
      * @param path
@@ -240,23 +361,24 @@ public class BitmapUtils {
      * @return
      */
     public static boolean saveBitmap(Bitmap bitmap, String path, int quality) {
+    	return saveBitmap(bitmap, path, BitmapEncoder.formatForPath(path), quality);
+    }
+    
+    /**
+     * 按指定格式保存一张位图到指定路径,先写入临时文件再重命名
+     * 
+     * @param bitmap
+     * @param path
+     * @param format 格式,为null时自动选择
+     * @param quality
+     * @return
+     */
+    public static boolean saveBitmap(Bitmap bitmap, String path, CompressFormat format, int quality) {
     	if(bitmap == null || TextUtils.isEmpty(path)
     					  || quality < 0
     					  || quality > 100) {
     		return false;
     	}
-    	OutputStream stream = IoUtils.getOutputStream(path);
-    	try {
-	    	if(stream == null) {
-	    		return false;
-	    	} else {
-	    		return bitmap.compress(CompressFormat.JPEG, quality, stream);
-	    	}
-    	} catch (Exception e) {
-    		e.printStackTrace();
-    		return false;
-    	} finally {
-			IoUtils.close(stream);
-		}
+    	return new BitmapEncoder().setFormat(format).setQuality(quality).encodeToFile(bitmap, path);
     }
 }
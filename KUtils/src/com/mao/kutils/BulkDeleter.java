@@ -0,0 +1,513 @@
+package com.mao.kutils;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>
+ * 	批量删除工具
+ * </p>
+ * <p>
+ * 	子目录作为独立任务在有界线程池中并行删除,每个目录在其所有子项删除完成后由最后完成的任务删除.
+ *  每个子项只通过一次isDirectory()区分,文件直接删除,只有目录才会被列出并解析规范路径.
+ *  指向目录的符号链接只删除链接本身,不会删除链接指向的内容,也不计入释放的大小;
+ *  为了不对每个文件解析规范路径,指向文件的符号链接按{@link File#length()}(即目标的大小)计入.
+ * </p>
+ * <p>
+ * 	{@link #deleteInBackground(File)}和{@link #clearInBackground(File)}先将目标重命名为同一目录下的
+ *  临时名称,然后在后台线程中删除,原路径在方法返回时即可重新使用.如果进程在后台删除完成前退出,
+ *  可以通过{@link #purgeTrash(File)}删除残留的临时文件.
+ * </p>
+ *
+ * @author mao
+ * */
+public class BulkDeleter {
+
+	private final static String TAG = "BulkDeleter";
+
+	/** 后台删除时临时名称的前缀 */
+	public final static String TRASH_PREFIX = ".kutils-trash-";
+
+	/** 线程池队列中的任务数超过该值时不再拆分任务 */
+	private final static int MAX_QUEUED_TASKS = 64;
+
+	/** 删除线程数上限,删除受限于存储而不是CPU,更多线程没有意义 */
+	private final static int MAX_THREADS = 4;
+
+	private static volatile ThreadPoolExecutor sExecutor;
+
+	private static volatile ExecutorService sBackgroundExecutor;
+
+	private static final AtomicLong sTrashSequence = new AtomicLong();
+
+	private BulkDeleter() {
+		throw new UnsupportedOperationException("can't instantiate class BulkDeleter");
+	}
+
+	/**
+	 * 删除结果
+	 */
+	public static final class Result {
+
+		private final long mDeletedFiles;
+
+		private final long mDeletedDirectories;
+
+		private final long mBytesFreed;
+
+		private final List<String> mFailures;
+
+		Result(long deletedFiles, long deletedDirectories, long bytesFreed, List<String> failures) {
+			mDeletedFiles = deletedFiles;
+			mDeletedDirectories = deletedDirectories;
+			mBytesFreed = bytesFreed;
+			mFailures = Collections.unmodifiableList(failures);
+		}
+
+		/**
+		 * 获取删除的文件数(包括符号链接)
+		 *
+		 * @return 返回删除的文件数
+		 */
+		public long getDeletedFiles() {
+			return mDeletedFiles;
+		}
+
+		/**
+		 * 获取删除的目录数
+		 *
+		 * @return 返回删除的目录数
+		 */
+		public long getDeletedDirectories() {
+			return mDeletedDirectories;
+		}
+
+		/**
+		 * 获取删除的文件总大小
+		 *
+		 * @return 返回删除的文件总大小,单位:字节
+		 */
+		public long getBytesFreed() {
+			return mBytesFreed;
+		}
+
+		/**
+		 * 获取删除失败的路径
+		 *
+		 * @return 返回删除失败的绝对路径列表,不可修改
+		 */
+		public List<String> getFailures() {
+			return mFailures;
+		}
+
+		/**
+		 * 判断是否全部删除成功
+		 *
+		 * @return 没有删除失败的路径返回true,否则返回false
+		 */
+		public boolean isSuccessful() {
+			return mFailures.isEmpty();
+		}
+
+		@Override
+		public String toString() {
+			return "Result [files=" + mDeletedFiles + ", directories=" + mDeletedDirectories
+					+ ", bytesFreed=" + mBytesFreed + ", failures=" + mFailures.size() + "]";
+		}
+	}
+
+	/**
+	 * 删除指定的文件或者目录(递归),该方法会阻塞直到删除完成
+	 *
+	 * @param target 要删除的文件或者目录
+	 * @return 返回删除结果,目标不存在时返回各项均为0的结果
+	 */
+	public static Result delete(File target) {
+		Job job = new Job();
+		job.deleteTarget(target);
+		return job.await();
+	}
+
+	/**
+	 * 删除指定目录下的所有文件和目录,保留该目录本身,该方法会阻塞直到删除完成
+	 *
+	 * @param dir 要清空的目录
+	 * @return 返回删除结果,目录不存在时返回各项均为0的结果
+	 */
+	public static Result clear(File dir) {
+		Job job = new Job();
+		File[] children = dir.listFiles();
+		if(children != null && children.length > 0) {
+			job.start(new Node(null, canonicalPath(dir), null, children.length));
+			for(File child : children) {
+				job.deleteChild(job.mRootNode, child);
+			}
+		}
+		return job.await();
+	}
+
+	/**
+	 * 将指定的文件或者目录重命名后在后台删除,方法返回后原路径已不存在
+	 *
+	 * @param target 要删除的文件或者目录
+	 * @return 返回删除结果的Future,重命名失败时直接在后台删除原路径
+	 */
+	public static Future<Result> deleteInBackground(File target) {
+		File trash = moveToTrash(target);
+		return submit(trash != null ? trash : target);
+	}
+
+	/**
+	 * 将指定目录重命名后重新创建一个空目录,然后在后台删除原目录的内容,
+	 * 方法返回后该目录已经为空.注意重新创建的目录使用默认权限.
+	 * 无法重命名或者无法重新创建时在后台逐个删除目录的内容,此时方法返回时目录还未清空.
+	 *
+	 * @param dir 要清空的目录
+	 * @return 返回删除结果的Future
+	 */
+	public static Future<Result> clearInBackground(final File dir) {
+		File trash = moveToTrash(dir);
+		if(trash != null && !dir.mkdirs() && !dir.isDirectory()) {
+			//无法重新创建时恢复原目录,改为在后台逐个删除其内容
+			if(trash.renameTo(dir)) {
+				trash = null;
+			} else {
+				L.e(TAG, "can't recreate " + dir + ", its contents are being deleted from " + trash);
+			}
+		}
+		if(trash == null) {
+			return getBackgroundExecutor().submit(new Callable<Result>() {
+
+				@Override
+				public Result call() throws Exception {
+					return clear(dir);
+				}
+			});
+		}
+		return submit(trash);
+	}
+
+	/**
+	 * 在后台删除指定目录下残留的临时文件,这些文件是进程在后台删除完成前退出时留下的
+	 *
+	 * @param dir 要检查的目录
+	 * @return 返回删除结果的Future
+	 */
+	public static Future<Result> purgeTrash(final File dir) {
+		return getBackgroundExecutor().submit(new Callable<Result>() {
+
+			@Override
+			public Result call() throws Exception {
+				Job job = new Job();
+				File[] children = dir.listFiles();
+				List<File> trash = new ArrayList<File>();
+				if(children != null) {
+					for(File child : children) {
+						if(child.getName().startsWith(TRASH_PREFIX)) {
+							trash.add(child);
+						}
+					}
+				}
+				if(!trash.isEmpty()) {
+					job.start(new Node(null, canonicalPath(dir), null, trash.size()));
+					for(File child : trash) {
+						job.deleteChild(job.mRootNode, child);
+					}
+				}
+				return job.await();
+			}
+		});
+	}
+
+	private static Future<Result> submit(final File target) {
+		return getBackgroundExecutor().submit(new Callable<Result>() {
+
+			@Override
+			public Result call() throws Exception {
+				return delete(target);
+			}
+		});
+	}
+
+	//重命名为同一目录下的临时名称,失败返回null
+	private static File moveToTrash(File target) {
+		File parent = target.getAbsoluteFile().getParentFile();
+		if(parent == null) {
+			return null;
+		}
+		File trash = new File(parent, TRASH_PREFIX + System.currentTimeMillis()
+				+ "-" + sTrashSequence.incrementAndGet());
+		return target.renameTo(trash) ? trash : null;
+	}
+
+	//判断目录是否是符号链接
+	private static boolean isSymlink(File dir) {
+		try {
+			File parent = dir.getAbsoluteFile().getParentFile();
+			if(parent == null) {
+				return false;
+			}
+			File expected = new File(parent.getCanonicalFile(), dir.getName());
+			return !expected.getCanonicalFile().equals(expected.getAbsoluteFile());
+		} catch (IOException e) {
+			//无法判断时按符号链接处理,只删除链接本身
+			e.printStackTrace();
+			return true;
+		}
+	}
+
+	private static String canonicalPath(File file) {
+		try {
+			return file.getCanonicalPath();
+		} catch (IOException e) {
+			e.printStackTrace();
+			return null;
+		}
+	}
+
+	private static ThreadPoolExecutor getExecutor() {
+		if(sExecutor == null) {
+			synchronized (BulkDeleter.class) {
+				if(sExecutor == null) {
+					int threads = Math.min(MAX_THREADS, Math.max(2, Runtime.getRuntime().availableProcessors()));
+					ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads,
+							30, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new NamedThreadFactory("BulkDeleter-"));
+					executor.allowCoreThreadTimeOut(true);
+					sExecutor = executor;
+				}
+			}
+		}
+		return sExecutor;
+	}
+
+	private static ExecutorService getBackgroundExecutor() {
+		if(sBackgroundExecutor == null) {
+			synchronized (BulkDeleter.class) {
+				if(sBackgroundExecutor == null) {
+					ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1,
+							30, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new NamedThreadFactory("BulkDeleter-background-"));
+					executor.allowCoreThreadTimeOut(true);
+					sBackgroundExecutor = executor;
+				}
+			}
+		}
+		return sBackgroundExecutor;
+	}
+
+	private static final class NamedThreadFactory implements ThreadFactory {
+
+		private final String mPrefix;
+
+		private final AtomicInteger mCount = new AtomicInteger();
+
+		NamedThreadFactory(String prefix) {
+			mPrefix = prefix;
+		}
+
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread t = new Thread(r, mPrefix + mCount.incrementAndGet());
+			t.setDaemon(true);
+			t.setPriority(Thread.MIN_PRIORITY);
+			return t;
+		}
+	}
+
+	/**
+	 * 一个正在删除的目录,其所有子项删除完成后删除该目录并通知上级目录
+	 */
+	private static final class Node {
+
+		final File dir;
+
+		/** 目录的规范路径,无法获取时为null */
+		final String canonical;
+
+		final Node parent;
+
+		/** 还未删除完成的子项数 */
+		final AtomicInteger remaining;
+
+		Node(File dir, String canonical, Node parent, int children) {
+			this.dir = dir;
+			this.canonical = canonical;
+			this.parent = parent;
+			this.remaining = new AtomicInteger(children);
+		}
+	}
+
+	/**
+	 * 一次删除操作的状态
+	 */
+	private static final class Job {
+
+		private final AtomicLong mFiles = new AtomicLong();
+
+		private final AtomicLong mDirectories = new AtomicLong();
+
+		private final AtomicLong mBytes = new AtomicLong();
+
+		private final ConcurrentLinkedQueue<String> mFailures = new ConcurrentLinkedQueue<String>();
+
+		/** 还未结束的任务数,调用线程本身算一个,为0时删除结束 */
+		private final AtomicInteger mPendingTasks = new AtomicInteger(1);
+
+		private final CountDownLatch mDone = new CountDownLatch(1);
+
+		/** 根节点,根节点本身的dir为null时不删除 */
+		private Node mRootNode;
+
+		void start(Node root) {
+			mRootNode = root;
+		}
+
+		void deleteTarget(File target) {
+			File[] children = target.listFiles();
+			boolean link = isSymlink(target);
+			if(children == null || link) {
+				//文件、符号链接或者不存在
+				deleteFile(target, link);
+				return;
+			}
+			mRootNode = new Node(target, canonicalPath(target), null, children.length);
+			process(mRootNode, children);
+		}
+
+		//调用线程的部分已经完成,等待所有任务结束
+		Result await() {
+			taskDone();
+			try {
+				mDone.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			return new Result(mFiles.get(), mDirectories.get(), mBytes.get(), new ArrayList<String>(mFailures));
+		}
+
+		private void taskDone() {
+			if(mPendingTasks.decrementAndGet() == 0) {
+				mDone.countDown();
+			}
+		}
+
+		//删除一个子项,完成后通知上级目录
+		void deleteChild(Node parent, File child) {
+			//文件只需要一次stat,不列出子项也不解析规范路径
+			if(!child.isDirectory()) {
+				deleteFile(child, false);
+				childDone(parent);
+				return;
+			}
+			boolean link = isChildSymlink(parent, child);
+			File[] children = link ? null : child.listFiles();
+			if(children == null) {
+				deleteFile(child, link);
+				childDone(parent);
+				return;
+			}
+			String canonical = parent.canonical == null ? null : new File(parent.canonical, child.getName()).getPath();
+			Node node = new Node(child, canonical, parent, children.length);
+			ThreadPoolExecutor executor = getExecutor();
+			if(executor.getQueue().size() >= MAX_QUEUED_TASKS) {
+				process(node, children);
+			} else {
+				mPendingTasks.incrementAndGet();
+				executor.execute(new DirectoryTask(node, children));
+			}
+		}
+
+		//上级目录的规范路径已知时只需要解析子项本身,规范路径与上级目录的规范路径加上名称不同说明是符号链接
+		private static boolean isChildSymlink(Node parent, File child) {
+			if(parent.canonical == null) {
+				return isSymlink(child);
+			}
+			try {
+				return !new File(parent.canonical, child.getName()).getPath().equals(child.getCanonicalPath());
+			} catch (IOException e) {
+				e.printStackTrace();
+				return true;
+			}
+		}
+
+		void process(Node node, File[] children) {
+			if(children.length == 0) {
+				nodeDone(node);
+				return;
+			}
+			for(File child : children) {
+				deleteChild(node, child);
+			}
+		}
+
+		//length()会跟随符号链接,链接本身不计入大小
+		private void deleteFile(File file, boolean link) {
+			long length = link ? 0 : file.length();
+			if(file.delete()) {
+				mFiles.incrementAndGet();
+				mBytes.addAndGet(length);
+			} else if(file.exists()) {
+				//不存在说明已被其他人删除,不算失败
+				mFailures.add(file.getAbsolutePath());
+			}
+		}
+
+		private void childDone(Node parent) {
+			if(parent.remaining.decrementAndGet() == 0) {
+				nodeDone(parent);
+			}
+		}
+
+		//目录的所有子项已经处理完成
+		private void nodeDone(Node node) {
+			if(node.dir != null) {
+				if(node.dir.delete()) {
+					mDirectories.incrementAndGet();
+				} else {
+					mFailures.add(node.dir.getAbsolutePath());
+				}
+			}
+			if(node.parent != null) {
+				childDone(node.parent);
+			}
+		}
+
+		private final class DirectoryTask implements Runnable {
+
+			private final Node mNode;
+
+			private final File[] mChildren;
+
+			DirectoryTask(Node node, File[] children) {
+				mNode = node;
+				mChildren = children;
+			}
+
+			@Override
+			public void run() {
+				try {
+					process(mNode, mChildren);
+				} catch (RuntimeException e) {
+					//该目录无法删除完成,记为失败
+					e.printStackTrace();
+					mFailures.add(mNode.dir.getAbsolutePath());
+				} finally {
+					taskDone();
+				}
+			}
+		}
+	}
+}
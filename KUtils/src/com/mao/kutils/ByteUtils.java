@@ -1,12 +1,10 @@
 package com.mao.kutils;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.UnsupportedEncodingException;
 import java.nio.charset.Charset;
+import java.util.Arrays;
 
 import android.graphics.Bitmap;
-import android.graphics.Bitmap.CompressFormat;
 import android.graphics.BitmapFactory;
 
 /**
@@ -21,26 +19,168 @@ public class ByteUtils {
 		throw new UnsupportedOperationException("can't instantiate class ByteUtils");
 	}
 	
+	/** 每个字节对应的两个小写十六进制字符 */
+	private static final char[] HEX_LOWER = buildHexTable("0123456789abcdef");
+	
+	/** 每个字节对应的两个大写十六进制字符 */
+	private static final char[] HEX_UPPER = buildHexTable("0123456789ABCDEF");
+	
+	/** ASCII字符对应的十六进制数值，不是十六进制字符的为-1 */
+	private static final byte[] HEX_VALUES = new byte[128];
+	
+	static {
+		Arrays.fill(HEX_VALUES, (byte) -1);
+		for(int i = 0; i < 10; i++) {
+			HEX_VALUES['0' + i] = (byte) i;
+		}
+		for(int i = 0; i < 6; i++) {
+			HEX_VALUES['a' + i] = (byte) (10 + i);
+			HEX_VALUES['A' + i] = (byte) (10 + i);
+		}
+	}
+	
 	/**
-	 * 字节数组转十六进制表示形式字符串
+	 * 获取十六进制字符对应的数值
 	 * 
-	 * @param b 要转换的字节数组
+	 * @param c 字符
+	 * @return 返回0到15,不是十六进制字符时返回-1
+	 */
+	static int hexValue(char c) {
+		return c < 128 ? HEX_VALUES[c] : -1;
+	}
+	
+	private static char[] buildHexTable(String digits) {
+		char[] table = new char[512];
+		for(int i = 0; i < 256; i++) {
+			table[i << 1] = digits.charAt(i >>> 4);
+			table[(i << 1) + 1] = digits.charAt(i & 0x0f);
+		}
+		return table;
+	}
+	
+	/**
+	 * 字节数组转十六进制表示形式字符串(小写)
 	 * 
-	 * @return 如果data为null那么返回null，否则返回该字节数组的十六进制表示形式字符串
+	 * @param data 要转换的字节数组
+	 * 
+	 * @return 如果data为null那么返回null，否则返回该字节数组的十六进制表示形式字符串，每个字节固定对应两个字符
 	 */
 	public static String bytes2HexString(byte[] data) {
+		return bytes2HexString(data, false);
+	}
+	
+	/**
+	 * 字节数组转十六进制表示形式字符串
+	 * 
+	 * @param data 要转换的字节数组
+	 * @param upperCase true表示使用大写字母
+	 * 
+	 * @return 如果data为null那么返回null，否则返回该字节数组的十六进制表示形式字符串，每个字节固定对应两个字符
+	 */
+	public static String bytes2HexString(byte[] data, boolean upperCase) {
 		if(data == null) {
 			return null;
 		}
-		StringBuilder sb = new StringBuilder(2 * data.length);
-		for(byte b : data) {
-			int n = 0x00ff & b;
-			if(n < 10) {
-				sb.append("0");
+		char[] chars = new char[data.length << 1];
+		encodeHex(data, 0, data.length, chars, 0, upperCase);
+		return new String(chars);
+	}
+	
+	/**
+	 * 将字节数组的指定部分编码为十六进制字符，写入调用者提供的字符数组，不分配任何对象
+	 * 
+	 * @param src 要编码的字节数组
+	 * @param srcOffset 起始位置
+	 * @param length 要编码的字节数
+	 * @param dst 目标字符数组，从dstOffset开始至少需要2 * length个字符的空间
+	 * @param dstOffset 目标起始位置
+	 * @param upperCase true表示使用大写字母
+	 * @return 返回写入的字符数
+	 */
+	public static int encodeHex(byte[] src, int srcOffset, int length, char[] dst, int dstOffset, boolean upperCase) {
+		char[] table = upperCase ? HEX_UPPER : HEX_LOWER;
+		int end = srcOffset + length;
+		int j = dstOffset;
+		for(int i = srcOffset; i < end; i++) {
+			int index = (src[i] & 0xff) << 1;
+			dst[j++] = table[index];
+			dst[j++] = table[index + 1];
+		}
+		return length << 1;
+	}
+	
+	/**
+	 * 将字节数组的指定部分编码为十六进制字符的ASCII字节，写入调用者提供的字节数组，不分配任何对象
+	 * 
+	 * @param src 要编码的字节数组
+	 * @param srcOffset 起始位置
+	 * @param length 要编码的字节数
+	 * @param dst 目标字节数组，从dstOffset开始至少需要2 * length个字节的空间
+	 * @param dstOffset 目标起始位置
+	 * @param upperCase true表示使用大写字母
+	 * @return 返回写入的字节数
+	 */
+	public static int encodeHex(byte[] src, int srcOffset, int length, byte[] dst, int dstOffset, boolean upperCase) {
+		char[] table = upperCase ? HEX_UPPER : HEX_LOWER;
+		int end = srcOffset + length;
+		int j = dstOffset;
+		for(int i = srcOffset; i < end; i++) {
+			int index = (src[i] & 0xff) << 1;
+			dst[j++] = (byte) table[index];
+			dst[j++] = (byte) table[index + 1];
+		}
+		return length << 1;
+	}
+	
+	/**
+	 * 十六进制字符串转字节数组，大小写字母都可以
+	 * 
+	 * @param hex 十六进制字符串
+	 * @return 转换成功返回字节数组，如果hex为null、长度为奇数或者包含非十六进制字符那么返回null
+	 */
+	public static byte[] hexString2Bytes(CharSequence hex) {
+		if(hex == null || (hex.length() & 1) != 0) {
+			return null;
+		}
+		byte[] data = new byte[hex.length() >> 1];
+		if(decodeHex(hex, 0, hex.length(), data, 0) < 0) {
+			return null;
+		}
+		return data;
+	}
+	
+	/**
+	 * 将十六进制字符解码后写入调用者提供的字节数组，不分配任何对象
+	 * 
+	 * @param src 十六进制字符
+	 * @param srcOffset 起始位置
+	 * @param length 要解码的字符数，必须为偶数
+	 * @param dst 目标字节数组，从dstOffset开始至少需要length / 2个字节的空间
+	 * @param dstOffset 目标起始位置
+	 * @return 返回写入的字节数，长度为奇数或者包含非十六进制字符时返回-1，此时dst中可能已写入部分内容
+	 */
+	public static int decodeHex(CharSequence src, int srcOffset, int length, byte[] dst, int dstOffset) {
+		if((length & 1) != 0) {
+			return -1;
+		}
+		byte[] values = HEX_VALUES;
+		int end = srcOffset + length;
+		int j = dstOffset;
+		for(int i = srcOffset; i < end; i += 2) {
+			char high = src.charAt(i);
+			char low = src.charAt(i + 1);
+			//非ASCII字符的高位不为0
+			if(((high | low) & 0xff80) != 0) {
+				return -1;
+			}
+			int h = values[high];
+			int l = values[low];
+			if((h | l) < 0) {
+				return -1;
 			}
-			sb.append(Integer.toHexString(n));
+			dst[j++] = (byte) ((h << 4) | l);
 		}
-		return sb.toString();
+		return length >> 1;
 	}
 	
 	/**
@@ -54,23 +194,17 @@ public class ByteUtils {
 	}
 	
 	/**
-	 * 按指定字符集将字节数组转换为字符串
+	 * 按指定字符集将字节数组转换为字符串，直接解码整个数组，不经过输入流
 	 * 
 	 * @param data 字节数组
-	 * @param charset 指定的字符集
-	 * @return 转换成功返回转换成功的字符串，失败返回null
+	 * @param charset 指定的字符集，为null时使用默认字符集
+	 * @return 转换成功返回转换成功的字符串，data为null返回null
 	 */
 	public static String bytes2String(byte[] data, Charset charset) {
 		if(data == null) {
 			return null;
 		}
-		ByteArrayInputStream bais = null;
-		try {
-			bais = new ByteArrayInputStream(data);
-			return IoUtils.inputStream2String(bais, charset);
-		} finally {
-			IoUtils.close(bais);
-		}
+		return new String(data, charset == null ? Charset.defaultCharset() : charset);
 	}
 	
 	/**
@@ -108,23 +242,14 @@ public class ByteUtils {
 	}
 	
 	/**
-	 * 位图转字节数组
+	 * 位图转字节数组,根据透明通道和内容自动选择格式
 	 * 
 	 * @param bitmap 
-	 * @return
+	 * @return 编码成功返回字节数组,失败返回null
+	 * @see BitmapEncoder
 	 */
 	public static byte[] bitmap2Bytes(Bitmap bitmap) {
-		if(bitmap == null) {
-			return null;
-		}
-		ByteArrayOutputStream baos = null;
-		try {
-			baos = new ByteArrayOutputStream(BitmapUtils.sizeOfBitmap(bitmap));
-			bitmap.compress(CompressFormat.JPEG, 100, baos);
-			return baos.toByteArray();
-		} finally {
-			IoUtils.close(baos);
-		}
+		return BitmapUtils.bitmap2Byte(bitmap);
 	}
 	
 	/**
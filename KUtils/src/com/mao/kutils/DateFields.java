@@ -0,0 +1,304 @@
+package com.mao.kutils;
+
+import java.util.Calendar;
+import java.util.TimeZone;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * <p>
+ * 	不使用Calendar计算时间戳在指定时区的日期字段,线程安全
+ * </p>
+ * <p>
+ * 	{@link #pack(long)}一次算出所有字段并打包为一个long,再通过{@link #getYear(long)}等静态方法取出,
+ *  批量处理时间戳时不需要为每条记录创建Calendar.时区偏移按UTC日期缓存,
+ *  一天内有夏令时切换时缓存切换的时刻,之后同一天的时间戳只需要比较.
+ * </p>
+ * <p>
+ * 	日期按公历计算,1582年之前的日期与Calendar(使用儒略历)不同;公元前的年份为0、-1、-2...
+ * </p>
+ *
+ * @author mao
+ * */
+public final class DateFields {
+
+	public static final int MIN_YEAR = -32768;
+
+	public static final int MAX_YEAR = 32767;
+
+	private static final long MILLIS_PER_DAY = 24L * 60 * 60 * 1000;
+
+	/** 0000-03-01到1970-01-01的天数 */
+	private static final long DAYS_0000_TO_1970 = 719468;
+
+	private static final int DAYS_PER_400_YEARS = 146097;
+
+	/** 平年每月之前的天数 */
+	private static final int[] DAYS_BEFORE_MONTH = {0, 0, 31, 59, 90, 120, 151, 181, 212, 243, 273, 304, 334};
+
+	/** 缓存的天数,必须是2的幂 */
+	private static final int CACHE_SIZE = 512;
+
+	private static final int MILLIS_SHIFT = 0;
+
+	private static final int SECOND_SHIFT = 10;
+
+	private static final int MINUTE_SHIFT = 16;
+
+	private static final int HOUR_SHIFT = 22;
+
+	private static final int DAY_OF_WEEK_SHIFT = 27;
+
+	private static final int DAY_SHIFT = 30;
+
+	private static final int MONTH_SHIFT = 35;
+
+	private static final int DAY_OF_YEAR_SHIFT = 39;
+
+	private static final int YEAR_SHIFT = 48;
+
+	private static final ConcurrentHashMap<String, DateFields> sInstances = new ConcurrentHashMap<String, DateFields>();
+
+	private final TimeZone mZone;
+
+	/** 时区没有偏移变化时直接使用固定偏移 */
+	private final boolean mFixed;
+
+	private final int mRawOffset;
+
+	/** 按UTC日期直接映射的缓存,元素不可变,并发读写时最多重复计算 */
+	private final DayOffsets[] mCache = new DayOffsets[CACHE_SIZE];
+
+	/**
+	 * 获取默认时区的实例
+	 *
+	 * @return 返回实例
+	 */
+	public static DateFields getDefault() {
+		return getInstance(TimeZone.getDefault());
+	}
+
+	/**
+	 * 获取指定时区的实例,相同ID的时区返回同一个实例
+	 *
+	 * @param zone 时区
+	 * @return 返回实例
+	 */
+	public static DateFields getInstance(TimeZone zone) {
+		if(zone == null) {
+			throw new IllegalArgumentException("zone can't be null");
+		}
+		DateFields fields = sInstances.get(zone.getID());
+		if(fields == null) {
+			fields = new DateFields(zone);
+			DateFields existing = sInstances.putIfAbsent(zone.getID(), fields);
+			if(existing != null) {
+				fields = existing;
+			}
+		}
+		return fields;
+	}
+
+	private DateFields(TimeZone zone) {
+		mZone = (TimeZone) zone.clone();
+		mRawOffset = mZone.getRawOffset();
+		//只有UTC、GMT+08:00、Etc/GMT-8这类时区的偏移固定,Asia/Shanghai等时区现在没有夏令时但历史上有
+		String id = mZone.getID();
+		mFixed = !mZone.useDaylightTime() && (id.equals("UTC") || id.startsWith("GMT") || id.startsWith("Etc/"));
+	}
+
+	/**
+	 * 获取时区
+	 *
+	 * @return 返回时区的副本
+	 */
+	public TimeZone getTimeZone() {
+		return (TimeZone) mZone.clone();
+	}
+
+	/**
+	 * 获取时间戳对应的时区偏移(包括夏令时)
+	 *
+	 * @param timestamp 时间戳,单位为毫秒
+	 * @return 返回偏移,单位为毫秒
+	 */
+	public int getOffset(long timestamp) {
+		if(mFixed) {
+			return mRawOffset;
+		}
+		long day = floorDiv(timestamp, MILLIS_PER_DAY);
+		int index = (int) day & (CACHE_SIZE - 1);
+		DayOffsets offsets = mCache[index];
+		if(offsets == null || offsets.day != day) {
+			offsets = new DayOffsets(mZone, day);
+			mCache[index] = offsets;
+		}
+		if(timestamp < offsets.transition) {
+			return offsets.before;
+		}
+		return offsets.after != Integer.MIN_VALUE ? offsets.after : mZone.getOffset(timestamp);
+	}
+
+	/**
+	 * 计算所有字段并打包为一个long
+	 *
+	 * @param timestamp 时间戳,单位为毫秒
+	 * @return 返回打包的字段,通过{@link #getYear(long)}等方法取出
+	 * @throws IllegalArgumentException 年份超出{@link #MIN_YEAR}到{@link #MAX_YEAR}时抛出
+	 */
+	public long pack(long timestamp) {
+		long local = timestamp + getOffset(timestamp);
+		long days = floorDiv(local, MILLIS_PER_DAY);
+		int millisOfDay = (int) (local - days * MILLIS_PER_DAY);
+		int dayOfWeek = (int) floorMod(days + 4, 7) + Calendar.SUNDAY;
+
+		//以3月1日为一年的开始,闰日在年末
+		long z = days + DAYS_0000_TO_1970;
+		long era = floorDiv(z, DAYS_PER_400_YEARS);
+		int dayOfEra = (int) (z - era * DAYS_PER_400_YEARS);
+		int yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+		int dayOfMarchYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+		int mp = (5 * dayOfMarchYear + 2) / 153;
+		int day = dayOfMarchYear - (153 * mp + 2) / 5 + 1;
+		int month = mp < 10 ? mp + 3 : mp - 9;
+		long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+		if(year < MIN_YEAR || year > MAX_YEAR) {
+			throw new IllegalArgumentException("year out of range: " + year);
+		}
+		int dayOfYear = DAYS_BEFORE_MONTH[month] + day + (month > 2 && isLeapYear((int) year) ? 1 : 0);
+
+		return year << YEAR_SHIFT
+				| (long) dayOfYear << DAY_OF_YEAR_SHIFT
+				| (long) month << MONTH_SHIFT
+				| (long) day << DAY_SHIFT
+				| (long) dayOfWeek << DAY_OF_WEEK_SHIFT
+				| (long) (millisOfDay / 3600000) << HOUR_SHIFT
+				| (long) (millisOfDay / 60000 % 60) << MINUTE_SHIFT
+				| (long) (millisOfDay / 1000 % 60) << SECOND_SHIFT
+				| (long) (millisOfDay % 1000) << MILLIS_SHIFT;
+	}
+
+	public static int getYear(long fields) {
+		return (int) (fields >> YEAR_SHIFT);
+	}
+
+	/**
+	 * 获取月份
+	 *
+	 * @param fields {@link #pack(long)}的结果
+	 * @return 返回1到12,注意与Calendar.MONTH不同
+	 */
+	public static int getMonth(long fields) {
+		return (int) (fields >>> MONTH_SHIFT) & 0xF;
+	}
+
+	public static int getDayOfMonth(long fields) {
+		return (int) (fields >>> DAY_SHIFT) & 0x1F;
+	}
+
+	/**
+	 * 获取一年中的第几天
+	 *
+	 * @param fields {@link #pack(long)}的结果
+	 * @return 返回1到366
+	 */
+	public static int getDayOfYear(long fields) {
+		return (int) (fields >>> DAY_OF_YEAR_SHIFT) & 0x1FF;
+	}
+
+	/**
+	 * 获取星期几
+	 *
+	 * @param fields {@link #pack(long)}的结果
+	 * @return 返回{@link Calendar#SUNDAY}到{@link Calendar#SATURDAY}
+	 */
+	public static int getDayOfWeek(long fields) {
+		return (int) (fields >>> DAY_OF_WEEK_SHIFT) & 0x7;
+	}
+
+	/**
+	 * 获取小时
+	 *
+	 * @param fields {@link #pack(long)}的结果
+	 * @return 返回0到23
+	 */
+	public static int getHour(long fields) {
+		return (int) (fields >>> HOUR_SHIFT) & 0x1F;
+	}
+
+	public static int getMinute(long fields) {
+		return (int) (fields >>> MINUTE_SHIFT) & 0x3F;
+	}
+
+	public static int getSecond(long fields) {
+		return (int) (fields >>> SECOND_SHIFT) & 0x3F;
+	}
+
+	public static int getMillis(long fields) {
+		return (int) (fields >>> MILLIS_SHIFT) & 0x3FF;
+	}
+
+	/**
+	 * 是否闰年(公历)
+	 *
+	 * @param year 年份
+	 * @return 闰年返回true
+	 */
+	public static boolean isLeapYear(int year) {
+		return (year & 3) == 0 && (year % 100 != 0 || year % 400 == 0);
+	}
+
+	static long floorDiv(long x, long y) {
+		long q = x / y;
+		return (x % y != 0 && (x ^ y) < 0) ? q - 1 : q;
+	}
+
+	static long floorMod(long x, long y) {
+		return x - floorDiv(x, y) * y;
+	}
+
+	@Override
+	public String toString() {
+		return "DateFields[" + mZone.getID() + "]";
+	}
+
+	/**
+	 * 一个UTC日期内的时区偏移,假设一天内最多切换一次.切换后的偏移与当天结束时不同时after为Integer.MIN_VALUE,切换之后直接查询时区
+	 */
+	private static final class DayOffsets {
+
+		final long day;
+
+		final int before;
+
+		/** 切换的时刻,没有切换时为Long.MAX_VALUE */
+		final long transition;
+
+		final int after;
+
+		DayOffsets(TimeZone zone, long day) {
+			this.day = day;
+			long start = day * MILLIS_PER_DAY;
+			long end = start + MILLIS_PER_DAY - 1;
+			before = zone.getOffset(start);
+			int last = zone.getOffset(end);
+			if(last == before) {
+				transition = Long.MAX_VALUE;
+				after = last;
+				return;
+			}
+			//二分查找偏移改变的时刻
+			long low = start;
+			long high = end;
+			while(high - low > 1) {
+				long mid = low + (high - low) / 2;
+				if(zone.getOffset(mid) == before) {
+					low = mid;
+				} else {
+					high = mid;
+				}
+			}
+			transition = high;
+			after = zone.getOffset(high) == last ? last : Integer.MIN_VALUE;
+		}
+	}
+}
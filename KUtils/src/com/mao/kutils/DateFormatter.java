@@ -0,0 +1,413 @@
+package com.mao.kutils;
+
+import java.text.DecimalFormatSymbols;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.GregorianCalendar;
+import java.util.Locale;
+import java.util.TimeZone;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * <p>
+ * 	线程安全的日期格式化,相同的格式、Locale和时区共用一个实例
+ * </p>
+ * <p>
+ * 	只包含yyyy、MM、dd、HH、mm、ss、SSS和普通字符的格式(例如yyyy-MM-dd HH:mm:ss、yyyy-MM-dd'T'HH:mm:ss.SSS)
+ *  通过{@link DateFields}计算日期字段后写入每个线程复用的字符数组,不经过Calendar;其它格式使用每个线程一个的SimpleDateFormat.
+ *  快速路径按公历和阿拉伯数字计算,Locale使用其它历法(例如th_TH的佛历)或者其它数字时也使用SimpleDateFormat.
+ *  不包含毫秒的格式会缓存上一次的结果,同一秒内的时间戳直接返回缓存的字符串.
+ * </p>
+ *
+ * @author mao
+ * */
+public final class DateFormatter {
+
+	public static final String DEFAULT_PATTERN = "yyyy-MM-dd HH:mm:ss";
+
+	private static final int FIELD_LITERAL = 0;
+
+	private static final int FIELD_YEAR = 1;
+
+	private static final int FIELD_MONTH = 2;
+
+	private static final int FIELD_DAY = 3;
+
+	private static final int FIELD_HOUR = 4;
+
+	private static final int FIELD_MINUTE = 5;
+
+	private static final int FIELD_SECOND = 6;
+
+	private static final int FIELD_MILLIS = 7;
+
+	/** 快速路径只处理这个范围内的年份,之前的日期涉及儒略历,交给SimpleDateFormat */
+	private static final int MIN_FAST_YEAR = 1600;
+
+	private static final int MAX_FAST_YEAR = 9999;
+
+	/** 1600-01-01T00:00:00Z */
+	private static final long MIN_FAST_SECOND = -11676096000L;
+
+	/** 9999-12-31T23:59:59Z */
+	private static final long MAX_FAST_SECOND = 253402300799L;
+
+	private static final int SECONDS_PER_DAY = 24 * 60 * 60;
+
+	private static final ConcurrentHashMap<String, DateFormatter> sCache = new ConcurrentHashMap<String, DateFormatter>();
+
+	private final String mPattern;
+
+	private final Locale mLocale;
+
+	private final TimeZone mZone;
+
+	private final DateFields mDateFields;
+
+	/** 快速路径的各个字段,不支持快速路径时为null */
+	private final int[] mFields;
+
+	private final String[] mLiterals;
+
+	private final int mMaxLength;
+
+	private final boolean mHasMillis;
+
+	private final ThreadLocal<State> mState = new ThreadLocal<State>() {
+
+		@Override
+		protected State initialValue() {
+			return new State(mMaxLength);
+		}
+	};
+
+	/**
+	 * 获取使用默认Locale和默认时区的实例
+	 *
+	 * @param pattern SimpleDateFormat格式
+	 * @return 返回实例
+	 * @throws IllegalArgumentException 格式不正确时抛出
+	 */
+	public static DateFormatter getInstance(String pattern) {
+		return getInstance(pattern, Locale.getDefault(), TimeZone.getDefault());
+	}
+
+	/**
+	 * 获取实例,相同的参数返回同一个实例
+	 *
+	 * @param pattern SimpleDateFormat格式
+	 * @param locale Locale
+	 * @param zone 时区
+	 * @return 返回实例
+	 * @throws IllegalArgumentException 格式不正确时抛出
+	 */
+	public static DateFormatter getInstance(String pattern, Locale locale, TimeZone zone) {
+		if(pattern == null || locale == null || zone == null) {
+			throw new IllegalArgumentException("pattern, locale and zone can't be null");
+		}
+		String key = pattern + '\u0000' + locale + '\u0000' + zone.getID();
+		DateFormatter formatter = sCache.get(key);
+		if(formatter == null) {
+			formatter = new DateFormatter(pattern, locale, zone);
+			DateFormatter existing = sCache.putIfAbsent(key, formatter);
+			if(existing != null) {
+				formatter = existing;
+			}
+		}
+		return formatter;
+	}
+
+	private DateFormatter(String pattern, Locale locale, TimeZone zone) {
+		mPattern = pattern;
+		mLocale = locale;
+		mZone = (TimeZone) zone.clone();
+		mDateFields = DateFields.getInstance(zone);
+		ArrayList<Integer> fields = new ArrayList<Integer>();
+		ArrayList<String> literals = new ArrayList<String>();
+		//佛历的BuddhistCalendar是GregorianCalendar的子类,不能用instanceof判断
+		boolean fast = new DecimalFormatSymbols(locale).getZeroDigit() == '0'
+				&& Calendar.getInstance(zone, locale).getClass() == GregorianCalendar.class
+				&& compile(pattern, fields, literals);
+		if(fast) {
+			mFields = new int[fields.size()];
+			mLiterals = new String[fields.size()];
+			int length = 0;
+			boolean hasMillis = false;
+			for(int i = 0; i < mFields.length; i++) {
+				mFields[i] = fields.get(i);
+				mLiterals[i] = literals.get(i);
+				length += fieldLength(mFields[i], mLiterals[i]);
+				hasMillis |= mFields[i] == FIELD_MILLIS;
+			}
+			mMaxLength = length;
+			mHasMillis = hasMillis;
+		} else {
+			//检查格式是否正确
+			new SimpleDateFormat(pattern, locale);
+			mFields = null;
+			mLiterals = null;
+			mMaxLength = 0;
+			mHasMillis = pattern.indexOf('S') >= 0;
+		}
+	}
+
+	//拆分为字段和普通字符,有快速路径不支持的字段时返回false
+	private static boolean compile(String pattern, ArrayList<Integer> fields, ArrayList<String> literals) {
+		StringBuilder literal = new StringBuilder();
+		int length = pattern.length();
+		int i = 0;
+		while(i < length) {
+			char c = pattern.charAt(i);
+			if(c == '\'') {
+				//''表示单引号,'...'中的内容原样输出
+				if(i + 1 < length && pattern.charAt(i + 1) == '\'') {
+					literal.append('\'');
+					i += 2;
+					continue;
+				}
+				int end = i + 1;
+				while(true) {
+					if(end >= length) {
+						return false;
+					}
+					if(pattern.charAt(end) == '\'') {
+						if(end + 1 < length && pattern.charAt(end + 1) == '\'') {
+							literal.append('\'');
+							end += 2;
+							continue;
+						}
+						break;
+					}
+					literal.append(pattern.charAt(end++));
+				}
+				i = end + 1;
+				continue;
+			}
+			if((c < 'a' || c > 'z') && (c < 'A' || c > 'Z')) {
+				literal.append(c);
+				i++;
+				continue;
+			}
+			int count = 1;
+			while(i + count < length && pattern.charAt(i + count) == c) {
+				count++;
+			}
+			int field = fieldOf(c, count);
+			if(field == FIELD_LITERAL) {
+				return false;
+			}
+			if(literal.length() > 0) {
+				fields.add(FIELD_LITERAL);
+				literals.add(literal.toString());
+				literal.setLength(0);
+			}
+			fields.add(field);
+			literals.add(null);
+			i += count;
+		}
+		if(literal.length() > 0) {
+			fields.add(FIELD_LITERAL);
+			literals.add(literal.toString());
+		}
+		return true;
+	}
+
+	private static int fieldOf(char c, int count) {
+		switch (c) {
+		case 'y':
+			return count == 4 ? FIELD_YEAR : FIELD_LITERAL;
+		case 'M':
+			return count == 2 ? FIELD_MONTH : FIELD_LITERAL;
+		case 'd':
+			return count == 2 ? FIELD_DAY : FIELD_LITERAL;
+		case 'H':
+			return count == 2 ? FIELD_HOUR : FIELD_LITERAL;
+		case 'm':
+			return count == 2 ? FIELD_MINUTE : FIELD_LITERAL;
+		case 's':
+			return count == 2 ? FIELD_SECOND : FIELD_LITERAL;
+		case 'S':
+			return count == 3 ? FIELD_MILLIS : FIELD_LITERAL;
+		default:
+			return FIELD_LITERAL;
+		}
+	}
+
+	private static int fieldLength(int field, String literal) {
+		switch (field) {
+		case FIELD_LITERAL:
+			return literal.length();
+		case FIELD_YEAR:
+			return 4;
+		case FIELD_MILLIS:
+			return 3;
+		default:
+			return 2;
+		}
+	}
+
+	public String getPattern() {
+		return mPattern;
+	}
+
+	public Locale getLocale() {
+		return mLocale;
+	}
+
+	/**
+	 * 获取时区
+	 *
+	 * @return 返回时区的副本
+	 */
+	public TimeZone getTimeZone() {
+		return (TimeZone) mZone.clone();
+	}
+
+	/**
+	 * 格式化Date
+	 *
+	 * @param date 日期
+	 * @return 返回格式化后的字符串,date为null时返回null
+	 */
+	public String format(Date date) {
+		return date == null ? null : format(date.getTime());
+	}
+
+	/**
+	 * 格式化时间戳
+	 *
+	 * @param timestamp 时间戳,单位为毫秒
+	 * @return 返回格式化后的字符串
+	 */
+	public String format(long timestamp) {
+		State state = mState.get();
+		long second = DateFields.floorDiv(timestamp, 1000);
+		if(second != state.second) {
+			state.second = second;
+			state.result = null;
+			state.fast = mFields != null && state.computeFields(mDateFields, second);
+		} else if(state.result != null) {
+			return state.result;
+		}
+		String result = state.fast
+				? formatFast(state, (int) (timestamp - second * 1000))
+				: formatSlow(state, timestamp);
+		if(!mHasMillis) {
+			state.result = result;
+		}
+		return result;
+	}
+
+	private String formatFast(State state, int millis) {
+		char[] buffer = state.buffer;
+		int position = 0;
+		for(int i = 0; i < mFields.length; i++) {
+			switch (mFields[i]) {
+			case FIELD_LITERAL:
+				String literal = mLiterals[i];
+				literal.getChars(0, literal.length(), buffer, position);
+				position += literal.length();
+				break;
+			case FIELD_YEAR:
+				position = put2(buffer, position, state.year / 100);
+				position = put2(buffer, position, state.year % 100);
+				break;
+			case FIELD_MONTH:
+				position = put2(buffer, position, state.month);
+				break;
+			case FIELD_DAY:
+				position = put2(buffer, position, state.day);
+				break;
+			case FIELD_HOUR:
+				position = put2(buffer, position, state.hour);
+				break;
+			case FIELD_MINUTE:
+				position = put2(buffer, position, state.minute);
+				break;
+			case FIELD_SECOND:
+				position = put2(buffer, position, state.secondOfMinute);
+				break;
+			default:
+				buffer[position++] = (char) ('0' + millis / 100);
+				position = put2(buffer, position, millis % 100);
+				break;
+			}
+		}
+		return new String(buffer, 0, position);
+	}
+
+	private static int put2(char[] buffer, int position, int value) {
+		buffer[position] = (char) ('0' + value / 10);
+		buffer[position + 1] = (char) ('0' + value % 10);
+		return position + 2;
+	}
+
+	private String formatSlow(State state, long timestamp) {
+		if(state.format == null) {
+			state.format = new SimpleDateFormat(mPattern, mLocale);
+			state.format.setTimeZone(mZone);
+		}
+		state.date.setTime(timestamp);
+		return state.format.format(state.date);
+	}
+
+	@Override
+	public String toString() {
+		return "DateFormatter[" + mPattern + ", " + mLocale + ", " + mZone.getID() + "]";
+	}
+
+	/**
+	 * 每个线程的格式化状态,保存上一次格式化的秒和对应的字段
+	 */
+	private static final class State {
+
+		final char[] buffer;
+
+		final Date date = new Date();
+
+		SimpleDateFormat format;
+
+		long second = Long.MIN_VALUE;
+
+		String result;
+
+		boolean fast;
+
+		int year;
+
+		int month;
+
+		int day;
+
+		int hour;
+
+		int minute;
+
+		int secondOfMinute;
+
+		State(int maxLength) {
+			buffer = new char[maxLength];
+		}
+
+		//计算本地时间的字段,年份超出快速路径的范围时返回false
+		boolean computeFields(DateFields dateFields, long second) {
+			//先排除离范围很远的时间戳,避免溢出
+			if(second < MIN_FAST_SECOND - SECONDS_PER_DAY || second > MAX_FAST_SECOND + SECONDS_PER_DAY) {
+				return false;
+			}
+			long fields = dateFields.pack(second * 1000);
+			year = DateFields.getYear(fields);
+			if(year < MIN_FAST_YEAR || year > MAX_FAST_YEAR) {
+				return false;
+			}
+			month = DateFields.getMonth(fields);
+			day = DateFields.getDayOfMonth(fields);
+			hour = DateFields.getHour(fields);
+			minute = DateFields.getMinute(fields);
+			secondOfMinute = DateFields.getSecond(fields);
+			return true;
+		}
+	}
+}
@@ -0,0 +1,495 @@
+package com.mao.kutils;
+
+import java.io.Externalizable;
+import java.io.Serializable;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.regex.Pattern;
+
+/**
+ * <p>
+ * 	对象深度复制工具
+ * </p>
+ * <p>
+ * 	第一次复制某个类的对象时生成该类的复制方案并缓存,之后直接按方案复制:
+ *  <ul>
+ *  <li>String、基本类型的包装类、枚举等不可变类型直接返回原对象</li>
+ *  <li>基本类型数组直接clone(),对象数组逐个元素复制</li>
+ *  <li>常用的List、Set、Map实现创建同类型的新集合后逐个元素复制</li>
+ *  <li>其他类通过无参构造方法创建对象,然后逐个复制所有非静态、非transient字段,基本类型字段不会装箱</li>
+ *  </ul>
+ *  对象图中的循环引用和共享引用在副本中保持相同的结构.
+ *  与序列化一样不复制transient字段,这些字段保持无参构造方法设置的值.
+ * </p>
+ * <p>
+ * 	定义了writeObject、readObject、writeReplace或者readResolve方法的Serializable类,
+ *  以及没有无参构造方法的Serializable类会通过序列化复制,以保持这些类自定义的语义.
+ * </p>
+ *
+ * @author mao
+ * */
+public final class DeepCopier {
+
+	/** 每个类的复制方案 */
+	private static final ConcurrentHashMap<Class<?>, Plan> sPlans = new ConcurrentHashMap<Class<?>, Plan>();
+
+	/** 不可变类型,直接返回原对象 */
+	private static final Plan IMMUTABLE = new Plan() {
+
+		@Override
+		Object copy(Object src, DeepCopier copier) {
+			return src;
+		}
+	};
+
+	/** 基本类型数组 */
+	private static final Plan PRIMITIVE_ARRAY = new Plan() {
+
+		@Override
+		Object copy(Object src, DeepCopier copier) {
+			Object copy;
+			if(src instanceof byte[]) {
+				copy = ((byte[]) src).clone();
+			} else if(src instanceof int[]) {
+				copy = ((int[]) src).clone();
+			} else if(src instanceof long[]) {
+				copy = ((long[]) src).clone();
+			} else if(src instanceof char[]) {
+				copy = ((char[]) src).clone();
+			} else if(src instanceof float[]) {
+				copy = ((float[]) src).clone();
+			} else if(src instanceof double[]) {
+				copy = ((double[]) src).clone();
+			} else if(src instanceof boolean[]) {
+				copy = ((boolean[]) src).clone();
+			} else {
+				copy = ((short[]) src).clone();
+			}
+			copier.mCopies.put(src, copy);
+			return copy;
+		}
+	};
+
+	/** 对象数组 */
+	private static final Plan OBJECT_ARRAY = new Plan() {
+
+		@Override
+		Object copy(Object src, DeepCopier copier) {
+			Object[] array = (Object[]) src;
+			Object[] copy = (Object[]) Array.newInstance(array.getClass().getComponentType(), array.length);
+			copier.mCopies.put(src, copy);
+			for(int i = 0; i < array.length; i++) {
+				copy[i] = copier.copyValue(array[i]);
+			}
+			return copy;
+		}
+	};
+
+	/** 通过序列化复制 */
+	private static final Plan SERIALIZATION = new Plan() {
+
+		@Override
+		Object copy(Object src, DeepCopier copier) {
+			Object copy = IoUtils.copyBySerialization(src);
+			if(copy == null) {
+				throw new IllegalArgumentException("failed to copy " + src.getClass().getName() + " by serialization");
+			}
+			copier.mCopies.put(src, copy);
+			return copy;
+		}
+	};
+
+	static {
+		Class<?>[] immutables = {String.class, Boolean.class, Byte.class, Character.class, Short.class,
+				Integer.class, Long.class, Float.class, Double.class, BigInteger.class, BigDecimal.class,
+				Class.class, Locale.class, UUID.class, Pattern.class, java.io.File.class,
+				java.net.URI.class, java.nio.charset.Charset.class};
+		for(Class<?> c : immutables) {
+			sPlans.put(c, IMMUTABLE);
+		}
+	}
+
+	/** 原对象到副本的映射,用于处理循环引用和共享引用 */
+	private final IdentityHashMap<Object, Object> mCopies = new IdentityHashMap<Object, Object>();
+
+	private DeepCopier() {
+	}
+
+	/**
+	 * 深度复制对象
+	 *
+	 * @param obj 要复制的对象,可以为null
+	 * @return 返回副本,obj为null返回null
+	 * @throws IllegalArgumentException 对象图中有无法复制的对象时抛出,
+	 * 			即没有无参构造方法且不是Serializable的类,或者序列化失败
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T> T copy(T obj) {
+		if(obj == null) {
+			return null;
+		}
+		return (T) new DeepCopier().copyValue(obj);
+	}
+
+	/**
+	 * 将指定类型注册为不可变类型,复制时直接返回原对象,子类不受影响
+	 *
+	 * @param clazz 不可变类型
+	 */
+	public static void registerImmutable(Class<?> clazz) {
+		sPlans.put(clazz, IMMUTABLE);
+	}
+
+	Object copyValue(Object src) {
+		if(src == null) {
+			return null;
+		}
+		Object copy = mCopies.get(src);
+		if(copy != null) {
+			return copy;
+		}
+		return getPlan(src.getClass()).copy(src, this);
+	}
+
+	private static Plan getPlan(Class<?> clazz) {
+		Plan plan = sPlans.get(clazz);
+		if(plan == null) {
+			plan = createPlan(clazz);
+			Plan existing = sPlans.putIfAbsent(clazz, plan);
+			if(existing != null) {
+				plan = existing;
+			}
+		}
+		return plan;
+	}
+
+	private static Plan createPlan(Class<?> clazz) {
+		if(clazz.isEnum() || (clazz.getSuperclass() != null && clazz.getSuperclass().isEnum())) {
+			return IMMUTABLE;
+		}
+		if(clazz.isArray()) {
+			return clazz.getComponentType().isPrimitive() ? PRIMITIVE_ARRAY : OBJECT_ARRAY;
+		}
+		Plan plan = createCollectionPlan(clazz);
+		if(plan != null) {
+			return plan;
+		}
+		Constructor<?> constructor = null;
+		try {
+			constructor = clazz.getDeclaredConstructor();
+			constructor.setAccessible(true);
+		} catch (NoSuchMethodException e) {
+			constructor = null;
+		}
+		boolean serializable = Serializable.class.isAssignableFrom(clazz);
+		if(serializable && (constructor == null || Externalizable.class.isAssignableFrom(clazz)
+				|| hasCustomSerialization(clazz))) {
+			return SERIALIZATION;
+		}
+		if(constructor == null) {
+			return new UnsupportedPlan(clazz.getName() + " has no no-arg constructor and is not Serializable");
+		}
+		if(clazz.getEnclosingClass() != null && !Modifier.isStatic(clazz.getModifiers())) {
+			//非静态内部类的无参构造方法实际上需要外部类对象
+			return serializable ? SERIALIZATION
+					: new UnsupportedPlan(clazz.getName() + " is a non-static inner class");
+		}
+		return new FieldPlan(constructor, collectFields(clazz));
+	}
+
+	private static Plan createCollectionPlan(Class<?> clazz) {
+		if(clazz == ArrayList.class || clazz == LinkedList.class || clazz == HashSet.class
+				|| clazz == LinkedHashSet.class || clazz == CopyOnWriteArrayList.class) {
+			return new CollectionPlan(clazz, false);
+		}
+		if(clazz == TreeSet.class) {
+			return new CollectionPlan(clazz, true);
+		}
+		if(clazz == HashMap.class || clazz == LinkedHashMap.class || clazz == ConcurrentHashMap.class) {
+			return new MapPlan(clazz, false);
+		}
+		if(clazz == TreeMap.class) {
+			return new MapPlan(clazz, true);
+		}
+		return null;
+	}
+
+	//判断类的继承链上是否有自定义的序列化方法
+	static boolean hasCustomSerialization(Class<?> clazz) {
+		for(Class<?> c = clazz; c != null && c != Object.class; c = c.getSuperclass()) {
+			if(hasDeclaredMethod(c, "writeObject", java.io.ObjectOutputStream.class)
+					|| hasDeclaredMethod(c, "readObject", java.io.ObjectInputStream.class)
+					|| hasDeclaredMethod(c, "writeReplace")
+					|| hasDeclaredMethod(c, "readResolve")) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static boolean hasDeclaredMethod(Class<?> c, String name, Class<?>... parameterTypes) {
+		try {
+			Method method = c.getDeclaredMethod(name, parameterTypes);
+			return method != null;
+		} catch (NoSuchMethodException e) {
+			return false;
+		}
+	}
+
+	//收集继承链上所有非静态、非transient字段,BinarySerializer也使用该方法
+	static Field[] collectFields(Class<?> clazz) {
+		List<Field> fields = new ArrayList<Field>();
+		for(Class<?> c = clazz; c != null && c != Object.class; c = c.getSuperclass()) {
+			for(Field field : c.getDeclaredFields()) {
+				int modifiers = field.getModifiers();
+				if(Modifier.isStatic(modifiers) || Modifier.isTransient(modifiers)) {
+					continue;
+				}
+				field.setAccessible(true);
+				fields.add(field);
+			}
+		}
+		return fields.toArray(new Field[fields.size()]);
+	}
+
+	/**
+	 * 某个类的复制方案
+	 */
+	private static abstract class Plan {
+
+		/**
+		 * 复制对象,创建副本后需要在复制其引用的对象前将副本放入copier.mCopies
+		 */
+		abstract Object copy(Object src, DeepCopier copier);
+	}
+
+	private static final class UnsupportedPlan extends Plan {
+
+		private final String mMessage;
+
+		UnsupportedPlan(String message) {
+			mMessage = message;
+		}
+
+		@Override
+		Object copy(Object src, DeepCopier copier) {
+			throw new IllegalArgumentException(mMessage);
+		}
+	}
+
+	/**
+	 * 通过无参构造方法创建对象后逐个复制字段
+	 */
+	private static final class FieldPlan extends Plan {
+
+		private final static int KIND_REFERENCE = 0;
+		private final static int KIND_IMMUTABLE = 1;
+		private final static int KIND_INT = 2;
+		private final static int KIND_LONG = 3;
+		private final static int KIND_BOOLEAN = 4;
+		private final static int KIND_FLOAT = 5;
+		private final static int KIND_DOUBLE = 6;
+		private final static int KIND_BYTE = 7;
+		private final static int KIND_SHORT = 8;
+		private final static int KIND_CHAR = 9;
+
+		private final Constructor<?> mConstructor;
+
+		private final Field[] mFields;
+
+		private final int[] mKinds;
+
+		FieldPlan(Constructor<?> constructor, Field[] fields) {
+			mConstructor = constructor;
+			mFields = fields;
+			mKinds = new int[fields.length];
+			for(int i = 0; i < fields.length; i++) {
+				mKinds[i] = kindOf(fields[i].getType());
+			}
+		}
+
+		private static int kindOf(Class<?> type) {
+			if(type == int.class) {
+				return KIND_INT;
+			} else if(type == long.class) {
+				return KIND_LONG;
+			} else if(type == boolean.class) {
+				return KIND_BOOLEAN;
+			} else if(type == float.class) {
+				return KIND_FLOAT;
+			} else if(type == double.class) {
+				return KIND_DOUBLE;
+			} else if(type == byte.class) {
+				return KIND_BYTE;
+			} else if(type == short.class) {
+				return KIND_SHORT;
+			} else if(type == char.class) {
+				return KIND_CHAR;
+			} else if(Modifier.isFinal(type.getModifiers()) && sPlans.get(type) == IMMUTABLE) {
+				//声明类型是final的不可变类型时不需要查找复制方案
+				return KIND_IMMUTABLE;
+			}
+			return KIND_REFERENCE;
+		}
+
+		@Override
+		Object copy(Object src, DeepCopier copier) {
+			Object copy;
+			try {
+				copy = mConstructor.newInstance();
+			} catch (Exception e) {
+				throw new IllegalArgumentException("failed to instantiate " + src.getClass().getName(), e);
+			}
+			copier.mCopies.put(src, copy);
+			try {
+				Field[] fields = mFields;
+				int[] kinds = mKinds;
+				for(int i = 0; i < fields.length; i++) {
+					Field f = fields[i];
+					switch (kinds[i]) {
+					case KIND_INT:
+						f.setInt(copy, f.getInt(src));
+						break;
+					case KIND_LONG:
+						f.setLong(copy, f.getLong(src));
+						break;
+					case KIND_BOOLEAN:
+						f.setBoolean(copy, f.getBoolean(src));
+						break;
+					case KIND_FLOAT:
+						f.setFloat(copy, f.getFloat(src));
+						break;
+					case KIND_DOUBLE:
+						f.setDouble(copy, f.getDouble(src));
+						break;
+					case KIND_BYTE:
+						f.setByte(copy, f.getByte(src));
+						break;
+					case KIND_SHORT:
+						f.setShort(copy, f.getShort(src));
+						break;
+					case KIND_CHAR:
+						f.setChar(copy, f.getChar(src));
+						break;
+					case KIND_IMMUTABLE:
+						f.set(copy, f.get(src));
+						break;
+					default:
+						f.set(copy, copier.copyValue(f.get(src)));
+						break;
+					}
+				}
+			} catch (IllegalAccessException e) {
+				throw new IllegalArgumentException("failed to copy fields of " + src.getClass().getName(), e);
+			}
+			return copy;
+		}
+	}
+
+	/**
+	 * 复制List和Set,TreeSet的比较器不复制
+	 */
+	private static final class CollectionPlan extends Plan {
+
+		private final Class<?> mClass;
+
+		private final boolean mSorted;
+
+		CollectionPlan(Class<?> clazz, boolean sorted) {
+			mClass = clazz;
+			mSorted = sorted;
+		}
+
+		@SuppressWarnings({"unchecked", "rawtypes"})
+		@Override
+		Object copy(Object src, DeepCopier copier) {
+			Collection<Object> source = (Collection<Object>) src;
+			Collection<Object> copy;
+			if(mSorted) {
+				copy = new TreeSet<Object>(((TreeSet) src).comparator());
+			} else if(mClass == ArrayList.class) {
+				copy = new ArrayList<Object>(source.size());
+			} else if(mClass == HashSet.class) {
+				copy = new HashSet<Object>(Math.max(16, source.size() * 4 / 3 + 1));
+			} else if(mClass == LinkedHashSet.class) {
+				copy = new LinkedHashSet<Object>(Math.max(16, source.size() * 4 / 3 + 1));
+			} else if(mClass == LinkedList.class) {
+				copy = new LinkedList<Object>();
+			} else {
+				copy = new CopyOnWriteArrayList<Object>();
+			}
+			copier.mCopies.put(src, copy);
+			if(copy instanceof CopyOnWriteArrayList) {
+				//逐个添加会每次复制整个数组
+				List<Object> elements = new ArrayList<Object>(source.size());
+				for(Object element : source) {
+					elements.add(copier.copyValue(element));
+				}
+				copy.addAll(elements);
+			} else {
+				for(Object element : source) {
+					copy.add(copier.copyValue(element));
+				}
+			}
+			return copy;
+		}
+	}
+
+	/**
+	 * 复制Map,TreeMap的比较器不复制,按访问顺序排列的LinkedHashMap的副本按插入顺序排列
+	 */
+	private static final class MapPlan extends Plan {
+
+		private final Class<?> mClass;
+
+		private final boolean mSorted;
+
+		MapPlan(Class<?> clazz, boolean sorted) {
+			mClass = clazz;
+			mSorted = sorted;
+		}
+
+		@SuppressWarnings({"unchecked", "rawtypes"})
+		@Override
+		Object copy(Object src, DeepCopier copier) {
+			Map<Object, Object> source = (Map<Object, Object>) src;
+			Map<Object, Object> copy;
+			int capacity = Math.max(16, source.size() * 4 / 3 + 1);
+			if(mSorted) {
+				copy = new TreeMap<Object, Object>(((TreeMap) src).comparator());
+			} else if(mClass == HashMap.class) {
+				copy = new HashMap<Object, Object>(capacity);
+			} else if(mClass == LinkedHashMap.class) {
+				copy = new LinkedHashMap<Object, Object>(capacity);
+			} else {
+				copy = new ConcurrentHashMap<Object, Object>(capacity);
+			}
+			copier.mCopies.put(src, copy);
+			for(Map.Entry<Object, Object> entry : source.entrySet()) {
+				copy.put(copier.copyValue(entry.getKey()), copier.copyValue(entry.getValue()));
+			}
+			return copy;
+		}
+	}
+}
@@ -0,0 +1,402 @@
+package com.mao.kutils;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>
+ * 	目录大小计算器
+ * </p>
+ * <p>
+ * 	每个条目不再重复exist/isDirectory/isFile检查:Android 5.0及以上对每个子项只做一次lstat,
+ *  同时得到类型和大小;之前的版本对文件调用isDirectory()和length(),只有目录才比较规范路径判断是否是符号链接.
+ *  子目录列出的子项直接交给子目录任务,不需要再列一次.子目录作为独立任务
+ *  在共享线程池中并行遍历,队列较满时在当前线程中继续遍历,避免产生大量细小任务.
+ *  不进入符号链接指向的目录,避免循环链接和目录外的文件被统计;无法列出的目录不计入大小,
+ *  通过{@link #getSkippedDirectoryCount()}获取其数量.
+ *  计算过程可以取消,并可以通过监听器获取进度.
+ * </p>
+ * <p>
+ * 	可以通过{@link #setSizeCache(SizeCache)}设置缓存:目录的修改时间不变时直接使用缓存的
+ *  该目录下文件总大小和子目录列表,只需要检查子目录的修改时间.注意目录的修改时间只会在
+ *  增删或重命名其中的条目时改变,原地修改文件内容不会被发现,因此缓存适合文件写入后不再修改的目录,
+ *  例如图片缓存目录.
+ * </p>
+ * <p>
+ * 	该类的实例只能使用一次.
+ * </p>
+ *
+ * @author mao
+ * */
+public class DirectorySizeCalculator {
+
+	/** 线程池队列中的任务数超过该值时不再拆分任务 */
+	private final static int MAX_QUEUED_TASKS = 64;
+
+	private static volatile ThreadPoolExecutor sExecutor;
+
+	private volatile boolean mCancelled;
+
+	private boolean mParallel = true;
+
+	private OnProgressListener mListener;
+
+	private SizeCache mCache;
+
+	private final AtomicLong mTotalBytes = new AtomicLong();
+
+	private final AtomicLong mFileCount = new AtomicLong();
+
+	private final AtomicLong mSkippedDirectories = new AtomicLong();
+
+	/** 还未完成的任务数,为0时计算完成 */
+	private final AtomicInteger mPendingTasks = new AtomicInteger();
+
+	private final CountDownLatch mDone = new CountDownLatch(1);
+
+	/**
+	 * 计算进度监听器
+	 */
+	public interface OnProgressListener {
+
+		/**
+		 * 每遍历完一个目录回调一次,可能在多个工作线程中并发回调
+		 *
+		 * @param fileCount 已统计的文件数
+		 * @param totalBytes 已统计的文件总大小,单位:字节
+		 */
+		void onProgress(long fileCount, long totalBytes);
+	}
+
+	/**
+	 * 设置是否并行遍历子目录,默认为true
+	 *
+	 * @param parallel true表示并行,false表示只在调用线程中遍历
+	 * @return 返回当前对象
+	 */
+	public DirectorySizeCalculator setParallel(boolean parallel) {
+		mParallel = parallel;
+		return this;
+	}
+
+	/**
+	 * 设置进度监听器
+	 *
+	 * @param listener 监听器,可以为null
+	 * @return 返回当前对象
+	 */
+	public DirectorySizeCalculator setOnProgressListener(OnProgressListener listener) {
+		mListener = listener;
+		return this;
+	}
+
+	/**
+	 * 设置目录大小缓存,同一个缓存可以在多次计算中共用
+	 *
+	 * @param cache 缓存,为null表示不使用缓存
+	 * @return 返回当前对象
+	 */
+	public DirectorySizeCalculator setSizeCache(SizeCache cache) {
+		mCache = cache;
+		return this;
+	}
+
+	/**
+	 * 取消计算,可以在任意线程中调用
+	 */
+	public void cancel() {
+		mCancelled = true;
+	}
+
+	/**
+	 * 判断计算是否已被取消
+	 *
+	 * @return 已取消返回true,否则返回false
+	 */
+	public boolean isCancelled() {
+		return mCancelled;
+	}
+
+	/**
+	 * 计算指定文件或者目录(递归)的大小,该方法会阻塞直到计算完成或被取消
+	 *
+	 * @param path 指定的路径
+	 * @return 返回总大小,单位:字节,路径不存在返回0,被取消返回-1
+	 */
+	public long calculate(String path) {
+		if(path == null || path.length() == 0) {
+			return 0;
+		}
+		File root = new File(path);
+		File[] children = root.listFiles();
+		if(children == null) {
+			if(root.isDirectory()) {
+				//无法列出的目录
+				mSkippedDirectories.set(1);
+				return 0;
+			}
+			//不是目录,length()对不存在的文件返回0
+			long length = root.length();
+			mFileCount.set(length > 0 ? 1 : 0);
+			return length;
+		}
+		String canonical = canonicalPath(root);
+		if(canonical == null) {
+			return 0;
+		}
+		mPendingTasks.set(1);
+		new DirectoryTask(root, canonical, children).run();
+		if(mParallel) {
+			try {
+				mDone.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				mCancelled = true;
+			}
+		}
+		return mCancelled ? -1 : mTotalBytes.get();
+	}
+
+	/**
+	 * 获取已统计的文件数
+	 *
+	 * @return 返回已统计的文件数
+	 */
+	public long getFileCount() {
+		return mFileCount.get();
+	}
+
+	/**
+	 * 获取因为无法列出(例如没有权限)而跳过的目录数,这些目录的内容不计入总大小
+	 *
+	 * @return 返回跳过的目录数
+	 */
+	public long getSkippedDirectoryCount() {
+		return mSkippedDirectories.get();
+	}
+
+	//遍历一个目录,canonical为其规范路径,listed为已经列出的子项,为null时需要重新列出
+	private void walk(File dir, String canonical, File[] listed) {
+		if(mCancelled) {
+			return;
+		}
+		SizeCache.Entry cached = null;
+		long modified = 0;
+		if(mCache != null) {
+			modified = dir.lastModified();
+			cached = mCache.get(dir, modified);
+		}
+		File[] subdirs;
+		if(cached != null) {
+			mTotalBytes.addAndGet(cached.bytes);
+			mFileCount.addAndGet(cached.files);
+			subdirs = cached.subdirs;
+		} else {
+			File[] children = listed != null ? listed : dir.listFiles();
+			if(children == null) {
+				mSkippedDirectories.incrementAndGet();
+				return;
+			}
+			long bytes = 0;
+			long files = 0;
+			List<File> dirs = null;
+			for(File child : children) {
+				if(mCancelled) {
+					return;
+				}
+				long stat = FileStat.lstat(child, canonical);
+				if(stat >= 0) {
+					bytes += stat;
+					files++;
+					continue;
+				}
+				if(stat != FileStat.DIRECTORY) {
+					//符号链接或者已经不存在
+					continue;
+				}
+				String childCanonical = new File(canonical, child.getName()).getPath();
+				if(mCache == null) {
+					File[] grandChildren = child.listFiles();
+					if(grandChildren == null) {
+						mSkippedDirectories.incrementAndGet();
+						continue;
+					}
+					//已经列出的子项直接交给子目录任务,避免再列一次
+					fork(child, childCanonical, grandChildren);
+				} else {
+					if(dirs == null) {
+						dirs = new ArrayList<File>();
+					}
+					dirs.add(child);
+				}
+			}
+			mTotalBytes.addAndGet(bytes);
+			mFileCount.addAndGet(files);
+			subdirs = null;
+			if(mCache != null) {
+				subdirs = dirs == null ? new File[0] : dirs.toArray(new File[dirs.size()]);
+				mCache.put(dir, modified, bytes, files, subdirs);
+			}
+		}
+		if(subdirs != null) {
+			//使用缓存时子目录需要按自己的修改时间检查缓存,不能复用已列出的子项.缓存中只有已确认不是符号链接的子目录
+			for(File subdir : subdirs) {
+				fork(subdir, new File(canonical, subdir.getName()).getPath(), null);
+			}
+		}
+		OnProgressListener listener = mListener;
+		if(listener != null) {
+			listener.onProgress(mFileCount.get(), mTotalBytes.get());
+		}
+	}
+
+	//并行时在线程池中遍历子目录,否则在当前线程中遍历
+	private void fork(File dir, String canonical, File[] listed) {
+		if(mCancelled) {
+			return;
+		}
+		if(!mParallel) {
+			walk(dir, canonical, listed);
+			return;
+		}
+		ThreadPoolExecutor executor = getExecutor();
+		if(executor.getQueue().size() >= MAX_QUEUED_TASKS) {
+			walk(dir, canonical, listed);
+			return;
+		}
+		mPendingTasks.incrementAndGet();
+		executor.execute(new DirectoryTask(dir, canonical, listed));
+	}
+
+	private static String canonicalPath(File file) {
+		try {
+			return file.getCanonicalPath();
+		} catch (IOException e) {
+			e.printStackTrace();
+			return null;
+		}
+	}
+
+	private static ThreadPoolExecutor getExecutor() {
+		if(sExecutor == null) {
+			synchronized (DirectorySizeCalculator.class) {
+				if(sExecutor == null) {
+					int threads = Math.max(2, Runtime.getRuntime().availableProcessors());
+					ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads,
+							30, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+
+						private final AtomicInteger mCount = new AtomicInteger();
+
+						@Override
+						public Thread newThread(Runnable r) {
+							Thread t = new Thread(r, "DirectorySizeCalculator-" + mCount.incrementAndGet());
+							t.setDaemon(true);
+							return t;
+						}
+					});
+					executor.allowCoreThreadTimeOut(true);
+					sExecutor = executor;
+				}
+			}
+		}
+		return sExecutor;
+	}
+
+	private final class DirectoryTask implements Runnable {
+
+		private final File mDir;
+
+		private final String mCanonical;
+
+		private final File[] mListed;
+
+		DirectoryTask(File dir, String canonical, File[] listed) {
+			mDir = dir;
+			mCanonical = canonical;
+			mListed = listed;
+		}
+
+		@Override
+		public void run() {
+			try {
+				walk(mDir, mCanonical, mListed);
+			} finally {
+				if(mPendingTasks.decrementAndGet() == 0) {
+					mDone.countDown();
+				}
+			}
+		}
+	}
+
+	/**
+	 * <p>
+	 * 	以目录修改时间为依据的目录大小缓存,线程安全,可以在多次计算中共用.
+	 * </p>
+	 */
+	public static class SizeCache {
+
+		private final ConcurrentHashMap<String, Entry> mEntries = new ConcurrentHashMap<String, Entry>();
+
+		/**
+		 * 清空缓存
+		 */
+		public void clear() {
+			mEntries.clear();
+		}
+
+		/**
+		 * 使指定目录的缓存失效
+		 *
+		 * @param path 目录路径
+		 */
+		public void invalidate(String path) {
+			if(path != null) {
+				mEntries.remove(new File(path).getPath());
+			}
+		}
+
+		Entry get(File dir, long modified) {
+			Entry entry = mEntries.get(dir.getPath());
+			if(entry == null || modified == 0 || entry.modified != modified) {
+				return null;
+			}
+			return entry;
+		}
+
+		void put(File dir, long modified, long bytes, long files, File[] subdirs) {
+			if(modified != 0) {
+				mEntries.put(dir.getPath(), new Entry(modified, bytes, files, subdirs));
+			}
+		}
+
+		static final class Entry {
+
+			final long modified;
+
+			/** 该目录下(不包括子目录)的文件总大小 */
+			final long bytes;
+
+			/** 该目录下(不包括子目录)的文件数 */
+			final long files;
+
+			final File[] subdirs;
+
+			Entry(long modified, long bytes, long files, File[] subdirs) {
+				this.modified = modified;
+				this.bytes = bytes;
+				this.files = files;
+				this.subdirs = subdirs;
+			}
+		}
+	}
+}
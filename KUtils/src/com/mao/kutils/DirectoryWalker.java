@@ -0,0 +1,456 @@
+package com.mao.kutils;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * <p>
+ * 	目录遍历器,按深度优先(先序)逐个返回指定目录下的文件和目录
+ * </p>
+ * <p>
+ * 	遍历是惰性的:只有在遍历到某个目录时才列出其子项的名称,栈中只保存当前路径上各层目录的名称数组,
+ *  子项的File在遍历到时才创建,已返回的名称会立即从数组中释放,因此内存占用只与目录深度和单个目录的子项数有关,
+ *  与整棵树的大小无关.minSdkVersion下没有java.nio.file的目录流,列出目录时每个子项仍然需要一个名称字符串.
+ *  每个条目只调用一次isDirectory(),判断结果会传给过滤器和访问器,不需要再次检查.
+ * </p>
+ * <p>
+ * 	可以通过{@link #walk(Visitor)}以访问器的方式遍历,访问器可以跳过子目录或者提前结束遍历;
+ *  也可以通过{@link #iterator()}以迭代器的方式遍历,停止迭代即结束遍历.
+ * </p>
+ * <p>
+ * 	默认不进入指向目录的符号链接,可以通过{@link #setFollowLinks(boolean)}修改,跟随符号链接时会跳过
+ *  指向当前路径上某个上级目录的链接,避免无限循环.
+ * </p>
+ * <p>
+ * 	该类不是线程安全的,一个实例可以多次遍历,但不能在多个线程中同时遍历.
+ * </p>
+ *
+ * @author mao
+ * */
+public class DirectoryWalker implements Iterable<File> {
+
+	/** 继续遍历 */
+	public final static int CONTINUE = 0;
+
+	/** 不进入当前目录,对文件等同于CONTINUE */
+	public final static int SKIP_SUBTREE = 1;
+
+	/** 结束遍历 */
+	public final static int TERMINATE = 2;
+
+	private final File mRoot;
+
+	private int mMaxDepth = Integer.MAX_VALUE;
+
+	private boolean mFollowLinks;
+
+	private boolean mIncludeDirectories;
+
+	private Filter mFilter;
+
+	private Filter mDirectoryFilter;
+
+	private Matcher mNameMatcher;
+
+	/**
+	 * 条目过滤器
+	 */
+	public interface Filter {
+
+		/**
+		 * 判断是否接受指定的条目
+		 *
+		 * @param file 条目
+		 * @param isDirectory 条目是否是目录
+		 * @param depth 条目的深度,根目录的直接子项为1
+		 * @return 接受返回true,否则返回false
+		 */
+		boolean accept(File file, boolean isDirectory, int depth);
+	}
+
+	/**
+	 * 条目访问器
+	 */
+	public interface Visitor {
+
+		/**
+		 * 访问一个条目,目录在其子项之前访问
+		 *
+		 * @param file 条目
+		 * @param isDirectory 条目是否是目录
+		 * @param depth 条目的深度,根目录的直接子项为1
+		 * @return 返回{@link DirectoryWalker#CONTINUE}、{@link DirectoryWalker#SKIP_SUBTREE}
+		 * 			或者{@link DirectoryWalker#TERMINATE}
+		 */
+		int visit(File file, boolean isDirectory, int depth);
+	}
+
+	/**
+	 * 创建遍历器
+	 *
+	 * @param root 要遍历的根目录,根目录本身不会被返回
+	 */
+	public DirectoryWalker(File root) {
+		if(root == null) {
+			throw new IllegalArgumentException("root can't be null");
+		}
+		mRoot = root;
+	}
+
+	/**
+	 * 创建遍历器
+	 *
+	 * @param path 要遍历的根目录路径,根目录本身不会被返回
+	 */
+	public DirectoryWalker(String path) {
+		this(new File(path));
+	}
+
+	/**
+	 * 设置最大遍历深度,默认不限制
+	 *
+	 * @param maxDepth 最大深度,1表示只遍历根目录的直接子项
+	 * @return 返回当前对象
+	 */
+	public DirectoryWalker setMaxDepth(int maxDepth) {
+		if(maxDepth < 1) {
+			throw new IllegalArgumentException("maxDepth must be positive");
+		}
+		mMaxDepth = maxDepth;
+		return this;
+	}
+
+	/**
+	 * 设置是否进入指向目录的符号链接,默认为false
+	 *
+	 * @param followLinks true表示进入
+	 * @return 返回当前对象
+	 */
+	public DirectoryWalker setFollowLinks(boolean followLinks) {
+		mFollowLinks = followLinks;
+		return this;
+	}
+
+	/**
+	 * 设置是否返回目录,默认为false,即只返回文件
+	 *
+	 * @param includeDirectories true表示同时返回目录
+	 * @return 返回当前对象
+	 */
+	public DirectoryWalker setIncludeDirectories(boolean includeDirectories) {
+		mIncludeDirectories = includeDirectories;
+		return this;
+	}
+
+	/**
+	 * 设置条目过滤器,只有被接受的条目才会被返回,不影响是否进入目录
+	 *
+	 * @param filter 过滤器,为null表示不过滤
+	 * @return 返回当前对象
+	 */
+	public DirectoryWalker setFilter(Filter filter) {
+		mFilter = filter;
+		return this;
+	}
+
+	/**
+	 * 设置目录过滤器,只有被接受的目录才会被进入,不影响目录本身是否被返回
+	 *
+	 * @param filter 过滤器,为null表示进入所有目录
+	 * @return 返回当前对象
+	 */
+	public DirectoryWalker setDirectoryFilter(Filter filter) {
+		mDirectoryFilter = filter;
+		return this;
+	}
+
+	/**
+	 * 设置文件名通配符,只有文件名匹配的条目才会被返回,不影响是否进入目录.
+	 * 支持*(任意个字符)、?(单个字符)、[abc]、[a-z]、[!abc]和{jpg,png}
+	 *
+	 * @param glob 通配符,例如"*.{jpg,png}",为null表示不过滤
+	 * @return 返回当前对象
+	 */
+	public DirectoryWalker setNameFilter(String glob) {
+		mNameMatcher = glob == null ? null : Pattern.compile(globToRegex(glob)).matcher("");
+		return this;
+	}
+
+	/**
+	 * 以访问器的方式遍历
+	 *
+	 * @param visitor 访问器
+	 * @return 遍历完成返回true,被访问器结束返回false
+	 */
+	public boolean walk(Visitor visitor) {
+		Cursor cursor = new Cursor();
+		while(cursor.advance()) {
+			int result = visitor.visit(cursor.mFile, cursor.mIsDirectory, cursor.mDepth);
+			if(result == TERMINATE) {
+				return false;
+			} else if(result == SKIP_SUBTREE) {
+				cursor.skipSubtree();
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * 以迭代器的方式遍历,每次调用返回一个新的迭代器
+	 *
+	 * @return 返回迭代器,不支持remove()
+	 */
+	@Override
+	public Iterator<File> iterator() {
+		final Cursor cursor = new Cursor();
+		return new Iterator<File>() {
+
+			private boolean mFetched;
+
+			private boolean mHasNext;
+
+			@Override
+			public boolean hasNext() {
+				if(!mFetched) {
+					mHasNext = cursor.advance();
+					mFetched = true;
+				}
+				return mHasNext;
+			}
+
+			@Override
+			public File next() {
+				if(!hasNext()) {
+					throw new NoSuchElementException();
+				}
+				mFetched = false;
+				return cursor.mFile;
+			}
+
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+
+	//判断条目是否需要返回
+	private boolean accept(File file, boolean isDirectory, int depth) {
+		if(isDirectory && !mIncludeDirectories) {
+			return false;
+		}
+		if(mNameMatcher != null && !mNameMatcher.reset(file.getName()).matches()) {
+			return false;
+		}
+		return mFilter == null || mFilter.accept(file, isDirectory, depth);
+	}
+
+	//将通配符转换为正则表达式
+	static String globToRegex(String glob) {
+		StringBuilder sb = new StringBuilder(glob.length() + 16);
+		boolean inClass = false;
+		int braces = 0;
+		for(int i = 0; i < glob.length(); i++) {
+			char c = glob.charAt(i);
+			if(inClass) {
+				if(c == ']') {
+					inClass = false;
+				} else if(c == '\\' || c == '[' || c == '&' || c == '^') {
+					sb.append('\\');
+				}
+				sb.append(c);
+				continue;
+			}
+			switch (c) {
+			case '*':
+				sb.append(".*");
+				break;
+			case '?':
+				sb.append('.');
+				break;
+			case '[':
+				inClass = true;
+				sb.append('[');
+				if(i + 1 < glob.length() && glob.charAt(i + 1) == '!') {
+					sb.append('^');
+					i++;
+				}
+				break;
+			case '{':
+				braces++;
+				sb.append("(?:");
+				break;
+			case '}':
+				if(braces > 0) {
+					braces--;
+					sb.append(')');
+				} else {
+					sb.append("\\}");
+				}
+				break;
+			case ',':
+				sb.append(braces > 0 ? "|" : ",");
+				break;
+			default:
+				if("\\.^$|+()".indexOf(c) >= 0) {
+					sb.append('\\');
+				}
+				sb.append(c);
+				break;
+			}
+		}
+		if(inClass || braces > 0) {
+			throw new IllegalArgumentException("invalid glob: " + glob);
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * 栈中的一层目录
+	 */
+	private static final class Frame {
+
+		final File dir;
+
+		/** 子项的名称 */
+		final String[] names;
+
+		final int depth;
+
+		/** 目录的规范路径 */
+		final String canonical;
+
+		final Frame parent;
+
+		int index;
+
+		Frame(File dir, String[] names, int depth, String canonical, Frame parent) {
+			this.dir = dir;
+			this.names = names;
+			this.depth = depth;
+			this.canonical = canonical;
+			this.parent = parent;
+		}
+	}
+
+	/**
+	 * 一次遍历的状态
+	 */
+	private final class Cursor {
+
+		private Frame mTop;
+
+		/** 当前路径上各层目录的规范路径,只在跟随符号链接时使用 */
+		private final Set<String> mAncestors;
+
+		/** 上一个条目是需要进入的目录时保存其信息,下一次前进时才真正进入 */
+		private File mPendingDir;
+
+		private String mPendingCanonical;
+
+		private File mFile;
+
+		private boolean mIsDirectory;
+
+		private int mDepth;
+
+		Cursor() {
+			mAncestors = mFollowLinks ? new HashSet<String>() : null;
+			String canonical = canonicalPath(mRoot);
+			if(canonical != null) {
+				push(mRoot, canonical, 0);
+			}
+		}
+
+		//前进到下一个需要返回的条目,没有更多条目时返回false
+		boolean advance() {
+			while(true) {
+				if(mPendingDir != null) {
+					push(mPendingDir, mPendingCanonical, mDepth);
+					mPendingDir = null;
+					mPendingCanonical = null;
+				}
+				Frame top = mTop;
+				if(top == null) {
+					return false;
+				}
+				if(top.index >= top.names.length) {
+					pop();
+					continue;
+				}
+				File child = new File(top.dir, top.names[top.index]);
+				//已返回的名称不再持有
+				top.names[top.index++] = null;
+				int depth = top.depth + 1;
+				boolean isDirectory = child.isDirectory();
+				if(isDirectory && depth < mMaxDepth
+						&& (mDirectoryFilter == null || mDirectoryFilter.accept(child, true, depth))) {
+					String canonical = checkLink(top, child);
+					if(canonical != null) {
+						mPendingDir = child;
+						mPendingCanonical = canonical;
+					}
+				}
+				mFile = child;
+				mIsDirectory = isDirectory;
+				mDepth = depth;
+				if(accept(child, isDirectory, depth)) {
+					return true;
+				}
+			}
+		}
+
+		void skipSubtree() {
+			mPendingDir = null;
+			mPendingCanonical = null;
+		}
+
+		//检查子目录的符号链接,可以进入时返回其规范路径,否则返回null
+		private String checkLink(Frame parent, File dir) {
+			String canonical = canonicalPath(dir);
+			if(canonical == null) {
+				return null;
+			}
+			if(mFollowLinks) {
+				return mAncestors.contains(canonical) ? null : canonical;
+			}
+			//规范路径与上级目录的规范路径加上名称不同,说明该目录是符号链接
+			String expected = new File(parent.canonical, dir.getName()).getPath();
+			return canonical.equals(expected) ? canonical : null;
+		}
+
+		private void push(File dir, String canonical, int depth) {
+			//只列出名称,File在遍历到时才创建
+			String[] names = dir.list();
+			if(names == null || names.length == 0) {
+				return;
+			}
+			mTop = new Frame(dir, names, depth, canonical, mTop);
+			if(mAncestors != null) {
+				mAncestors.add(canonical);
+			}
+		}
+
+		private void pop() {
+			if(mAncestors != null) {
+				mAncestors.remove(mTop.canonical);
+			}
+			mTop = mTop.parent;
+		}
+	}
+
+	private static String canonicalPath(File file) {
+		try {
+			return file.getCanonicalPath();
+		} catch (IOException e) {
+			e.printStackTrace();
+			return null;
+		}
+	}
+}
@@ -0,0 +1,980 @@
+package com.mao.kutils;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * <p>
+ * 	基于日志索引的磁盘LRU缓存
+ * </p>
+ * <p>
+ * 	每个缓存项对应缓存目录下的一个文件,写入时先写到临时文件,提交时再重命名为正式文件,
+ *  因此读取者不会看到写了一半的内容.所有操作都记录在journal日志中,日志中记录了每个缓存项的大小,
+ *  打开缓存时只需要读取日志就能恢复索引和访问顺序,不需要检查每个文件.
+ *  日志中的冗余记录过多时会在后台重写日志.
+ * </p>
+ * <p>
+ * 	缓存总大小或缓存项数超过限制时在后台按最近最少使用的顺序删除缓存项.
+ *  同一个键同时只能有一个编辑器,不同的键可以并发写入,读取不需要等待写入:
+ *  读取者打开的是已提交的文件,之后提交的新内容会替换该文件,不会影响已经打开的流.
+ * </p>
+ * <p>
+ * 	键只能由小写字母、数字、下划线和短横线组成,长度为1到120,任意字符串可以先通过{@link #toKey(String)}转换.
+ * </p>
+ *
+ * @author mao
+ * */
+public final class DiskLruCache implements Closeable {
+
+	private final static String TAG = "DiskLruCache";
+
+	final static String JOURNAL_FILE = "journal";
+	final static String JOURNAL_FILE_TEMP = "journal.tmp";
+	final static String JOURNAL_FILE_BACKUP = "journal.bkp";
+	final static String MAGIC = "com.mao.kutils.DiskLruCache";
+	final static String VERSION = "1";
+
+	private final static String CLEAN = "CLEAN";
+	private final static String DIRTY = "DIRTY";
+	private final static String REMOVE = "REMOVE";
+	private final static String READ = "READ";
+
+	private final static String CLEAN_SUFFIX = ".0";
+
+	private final static String TEMP_SUFFIX = ".tmp";
+
+	private final static Pattern KEY_PATTERN = Pattern.compile("[a-z0-9_-]{1,120}");
+
+	/** 冗余记录数超过该值且超过缓存项数时重写日志 */
+	private final static int REDUNDANT_OP_COMPACT_THRESHOLD = 2000;
+
+	private final static Charset UTF_8 = Charset.forName("UTF-8");
+
+	private final File mDirectory;
+
+	private final File mJournalFile;
+
+	private final File mJournalFileTmp;
+
+	private final File mJournalFileBackup;
+
+	private final int mAppVersion;
+
+	private long mMaxSize;
+
+	private int mMaxCount;
+
+	private long mSize;
+
+	private Writer mJournalWriter;
+
+	/** 按访问顺序排列的缓存项 */
+	private final LinkedHashMap<String, Entry> mEntries = new LinkedHashMap<String, Entry>(0, 0.75f, true);
+
+	private int mRedundantOpCount;
+
+	private long mHitCount;
+
+	private long mMissCount;
+
+	/** 清理任务,所有缓存共用一个后台线程 */
+	private static final ThreadPoolExecutor sCleanupExecutor = new ThreadPoolExecutor(0, 1,
+			30, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread t = new Thread(r, "DiskLruCache-cleanup");
+			t.setDaemon(true);
+			return t;
+		}
+	});
+
+	private final Runnable mCleanupTask = new Runnable() {
+
+		@Override
+		public void run() {
+			synchronized (DiskLruCache.this) {
+				if(mJournalWriter == null) {
+					return;
+				}
+				try {
+					trimToSize();
+					if(journalRebuildRequired()) {
+						rebuildJournal();
+					}
+				} catch (IOException e) {
+					e.printStackTrace();
+				}
+			}
+		}
+	};
+
+	private DiskLruCache(File directory, int appVersion, long maxSize, int maxCount) {
+		mDirectory = directory;
+		mAppVersion = appVersion;
+		mJournalFile = new File(directory, JOURNAL_FILE);
+		mJournalFileTmp = new File(directory, JOURNAL_FILE_TEMP);
+		mJournalFileBackup = new File(directory, JOURNAL_FILE_BACKUP);
+		mMaxSize = maxSize;
+		mMaxCount = maxCount;
+	}
+
+	/**
+	 * 打开缓存,缓存目录不存在时自动创建
+	 *
+	 * @param directory 缓存目录,该目录只能被一个缓存使用
+	 * @param appVersion 应用版本,版本改变时会清空缓存
+	 * @param maxSize 缓存的最大总大小,单位:字节
+	 * @return 返回打开的缓存
+	 * @throws IOException 读写缓存目录失败时抛出
+	 */
+	public static DiskLruCache open(File directory, int appVersion, long maxSize) throws IOException {
+		return open(directory, appVersion, maxSize, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * 打开缓存,缓存目录不存在时自动创建
+	 *
+	 * @param directory 缓存目录,该目录只能被一个缓存使用
+	 * @param appVersion 应用版本,版本改变时会清空缓存
+	 * @param maxSize 缓存的最大总大小,单位:字节
+	 * @param maxCount 缓存的最大缓存项数
+	 * @return 返回打开的缓存
+	 * @throws IOException 读写缓存目录失败时抛出
+	 */
+	public static DiskLruCache open(File directory, int appVersion, long maxSize, int maxCount) throws IOException {
+		if(maxSize <= 0) {
+			throw new IllegalArgumentException("maxSize <= 0");
+		}
+		if(maxCount <= 0) {
+			throw new IllegalArgumentException("maxCount <= 0");
+		}
+		//上一次重写日志时在重命名前退出,备份的日志仍然有效
+		File backup = new File(directory, JOURNAL_FILE_BACKUP);
+		if(backup.exists()) {
+			File journal = new File(directory, JOURNAL_FILE);
+			if(journal.exists()) {
+				backup.delete();
+			} else if(!backup.renameTo(journal)) {
+				throw new IOException("failed to restore journal backup");
+			}
+		}
+		DiskLruCache cache = new DiskLruCache(directory, appVersion, maxSize, maxCount);
+		if(cache.mJournalFile.exists()) {
+			try {
+				boolean torn = cache.readJournal();
+				cache.processJournal();
+				if(torn) {
+					//不能在写了一半的行后面继续追加
+					cache.rebuildJournal();
+				} else {
+					cache.mJournalWriter = new BufferedWriter(new OutputStreamWriter(
+							new FileOutputStream(cache.mJournalFile, true), UTF_8));
+				}
+				return cache;
+			} catch (IOException e) {
+				L.e(TAG, "journal " + cache.mJournalFile + " is corrupt, removing: " + e.getMessage());
+				cache.delete();
+			}
+		}
+		directory.mkdirs();
+		cache = new DiskLruCache(directory, appVersion, maxSize, maxCount);
+		cache.rebuildJournal();
+		return cache;
+	}
+
+	/**
+	 * 将任意字符串转换为合法的键
+	 *
+	 * @param raw 原始字符串,例如图片的URL
+	 * @return 返回转换后的键
+	 */
+	public static String toKey(String raw) {
+		String key = BaseEncryptHelper.md5(raw);
+		if(key == null) {
+			key = Integer.toHexString(raw.hashCode());
+		}
+		return key;
+	}
+
+	//读取日志,最后一行不完整时返回true
+	private boolean readJournal() throws IOException {
+		boolean torn = truncateTornLine();
+		BufferedReader reader = new BufferedReader(new InputStreamReader(
+				new FileInputStream(mJournalFile), UTF_8), 8192);
+		try {
+			String magic = reader.readLine();
+			String version = reader.readLine();
+			String appVersion = reader.readLine();
+			String blank = reader.readLine();
+			if(!MAGIC.equals(magic) || !VERSION.equals(version)
+					|| !Integer.toString(mAppVersion).equals(appVersion) || !"".equals(blank)) {
+				throw new IOException("unexpected journal header: [" + magic + ", " + version
+						+ ", " + appVersion + ", " + blank + "]");
+			}
+			int lineCount = 0;
+			while(true) {
+				String line = reader.readLine();
+				if(line == null) {
+					break;
+				}
+				if(!readJournalLine(line)) {
+					//写了一半的行,之后的内容都不可信
+					torn = true;
+					break;
+				}
+				lineCount++;
+			}
+			mRedundantOpCount = lineCount - mEntries.size();
+			return torn;
+		} finally {
+			IoUtils.close(reader);
+		}
+	}
+
+	//进程在写日志时退出可能留下没有换行符的最后一行,截掉该行,截断时返回true
+	private boolean truncateTornLine() throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(mJournalFile, "rw");
+		try {
+			long length = raf.length();
+			long end = length;
+			while(end > 0) {
+				raf.seek(end - 1);
+				if(raf.read() == '\n') {
+					break;
+				}
+				end--;
+			}
+			if(end == length) {
+				return false;
+			}
+			raf.setLength(end);
+			return true;
+		} finally {
+			IoUtils.close(raf);
+		}
+	}
+
+	//解析一行日志,格式不正确时返回false
+	private boolean readJournalLine(String line) {
+		int firstSpace = line.indexOf(' ');
+		if(firstSpace == -1) {
+			return false;
+		}
+		String op = line.substring(0, firstSpace);
+		int secondSpace = line.indexOf(' ', firstSpace + 1);
+		String key = secondSpace == -1 ? line.substring(firstSpace + 1) : line.substring(firstSpace + 1, secondSpace);
+		if(!KEY_PATTERN.matcher(key).matches()) {
+			return false;
+		}
+		if(REMOVE.equals(op) && secondSpace == -1) {
+			mEntries.remove(key);
+			return true;
+		}
+		//先检查整行的格式,格式不正确的行不能留下空的缓存项
+		if(CLEAN.equals(op) && secondSpace != -1) {
+			long length;
+			try {
+				length = Long.parseLong(line.substring(secondSpace + 1));
+			} catch (NumberFormatException e) {
+				return false;
+			}
+			if(length < 0) {
+				return false;
+			}
+			Entry entry = getOrCreateEntry(key);
+			entry.length = length;
+			entry.readable = true;
+			entry.currentEditor = null;
+			return true;
+		} else if(DIRTY.equals(op) && secondSpace == -1) {
+			Entry entry = getOrCreateEntry(key);
+			entry.currentEditor = new Editor(entry);
+			return true;
+		} else if(READ.equals(op) && secondSpace == -1) {
+			//mEntries按访问顺序排列,get()把缓存项移到最近使用的一端,重新打开后保留关闭前的访问顺序
+			mEntries.get(key);
+			return true;
+		}
+		return false;
+	}
+
+	private Entry getOrCreateEntry(String key) {
+		Entry entry = mEntries.get(key);
+		if(entry == null) {
+			entry = new Entry(key);
+			mEntries.put(key, entry);
+		}
+		return entry;
+	}
+
+	//计算总大小,删除未完成的编辑
+	private void processJournal() {
+		deleteIfExists(mJournalFileTmp);
+		for(Iterator<Entry> i = mEntries.values().iterator(); i.hasNext(); ) {
+			Entry entry = i.next();
+			if(entry.currentEditor == null) {
+				mSize += entry.length;
+			} else {
+				entry.currentEditor = null;
+				deleteIfExists(entry.getCleanFile());
+				deleteIfExists(entry.getDirtyFile());
+				i.remove();
+			}
+		}
+	}
+
+	//重写日志,只保留当前有效的记录
+	private synchronized void rebuildJournal() throws IOException {
+		if(mJournalWriter != null) {
+			mJournalWriter.close();
+		}
+		Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(mJournalFileTmp), UTF_8));
+		try {
+			writer.write(MAGIC);
+			writer.write("\n");
+			writer.write(VERSION);
+			writer.write("\n");
+			writer.write(Integer.toString(mAppVersion));
+			writer.write("\n");
+			writer.write("\n");
+			for(Entry entry : mEntries.values()) {
+				if(entry.currentEditor != null) {
+					writer.write(DIRTY + ' ' + entry.key + '\n');
+				} else {
+					writer.write(CLEAN + ' ' + entry.key + ' ' + entry.length + '\n');
+				}
+			}
+		} finally {
+			writer.close();
+		}
+		if(mJournalFile.exists()) {
+			renameTo(mJournalFile, mJournalFileBackup, true);
+		}
+		renameTo(mJournalFileTmp, mJournalFile, false);
+		mJournalFileBackup.delete();
+		mJournalWriter = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(mJournalFile, true), UTF_8));
+		mRedundantOpCount = 0;
+	}
+
+	/**
+	 * 获取指定键的快照
+	 *
+	 * @param key 键
+	 * @return 返回快照,不存在或者尚未提交时返回null,使用完后需要关闭
+	 * @throws IOException 写日志失败时抛出
+	 */
+	public synchronized Snapshot get(String key) throws IOException {
+		checkNotClosed();
+		validateKey(key);
+		Entry entry = mEntries.get(key);
+		if(entry == null || !entry.readable) {
+			mMissCount++;
+			return null;
+		}
+		//在锁内打开文件,保证打开的文件与记录的大小一致,读取内容在锁外进行
+		File file = entry.getCleanFile();
+		InputStream in;
+		try {
+			in = new FileInputStream(file);
+		} catch (FileNotFoundException e) {
+			//文件被外部删除
+			removeEntry(entry);
+			mMissCount++;
+			return null;
+		}
+		mHitCount++;
+		mRedundantOpCount++;
+		mJournalWriter.append(READ + ' ' + key + '\n');
+		if(journalRebuildRequired()) {
+			sCleanupExecutor.execute(mCleanupTask);
+		}
+		return new Snapshot(key, file, entry.length, in);
+	}
+
+	/**
+	 * 判断是否存在指定键的已提交缓存项,不更新访问顺序
+	 *
+	 * @param key 键
+	 * @return 存在返回true,否则返回false
+	 */
+	public synchronized boolean contains(String key) {
+		checkNotClosed();
+		validateKey(key);
+		Entry entry = mEntries.get(key);
+		return entry != null && entry.readable;
+	}
+
+	/**
+	 * 编辑指定键的缓存项
+	 *
+	 * @param key 键
+	 * @return 返回编辑器,该键正在被编辑时返回null
+	 * @throws IOException 写日志失败时抛出
+	 */
+	public synchronized Editor edit(String key) throws IOException {
+		checkNotClosed();
+		validateKey(key);
+		Entry entry = mEntries.get(key);
+		if(entry == null) {
+			entry = new Entry(key);
+			mEntries.put(key, entry);
+		} else if(entry.currentEditor != null) {
+			return null;
+		}
+		Editor editor = new Editor(entry);
+		entry.currentEditor = editor;
+		//提交前先记录DIRTY,进程在提交前退出时下次打开会删除临时文件
+		mJournalWriter.write(DIRTY + ' ' + key + '\n');
+		mJournalWriter.flush();
+		return editor;
+	}
+
+	/**
+	 * 写入指定键的缓存项
+	 *
+	 * @param key 键
+	 * @param data 数据
+	 * @return 写入成功返回true,该键正在被编辑或者写入失败返回false
+	 */
+	public boolean put(String key, byte[] data) {
+		Editor editor = null;
+		OutputStream out = null;
+		try {
+			editor = edit(key);
+			if(editor == null) {
+				return false;
+			}
+			out = editor.newOutputStream();
+			out.write(data);
+			out.close();
+			out = null;
+			editor.commit();
+			return true;
+		} catch (IOException e) {
+			e.printStackTrace();
+			IoUtils.close(out);
+			if(editor != null) {
+				editor.abortUnlessCommitted();
+			}
+			return false;
+		}
+	}
+
+	/**
+	 * 删除指定键的缓存项,正在被编辑的缓存项不能删除
+	 *
+	 * @param key 键
+	 * @return 删除成功返回true,否则返回false
+	 * @throws IOException 写日志失败时抛出
+	 */
+	public synchronized boolean remove(String key) throws IOException {
+		checkNotClosed();
+		validateKey(key);
+		Entry entry = mEntries.get(key);
+		if(entry == null || entry.currentEditor != null) {
+			return false;
+		}
+		return removeEntry(entry);
+	}
+
+	private boolean removeEntry(Entry entry) throws IOException {
+		File file = entry.getCleanFile();
+		if(file.exists() && !file.delete()) {
+			return false;
+		}
+		mSize -= entry.length;
+		entry.length = 0;
+		mRedundantOpCount++;
+		mJournalWriter.append(REMOVE + ' ' + entry.key + '\n');
+		mEntries.remove(entry.key);
+		if(journalRebuildRequired()) {
+			sCleanupExecutor.execute(mCleanupTask);
+		}
+		return true;
+	}
+
+	private synchronized void completeEdit(Editor editor, boolean success) throws IOException {
+		Entry entry = editor.entry;
+		if(entry.currentEditor != editor) {
+			throw new IllegalStateException("editor is no longer valid");
+		}
+		File dirty = entry.getDirtyFile();
+		if(success && !dirty.exists()) {
+			//没有写入任何内容
+			success = false;
+		}
+		IOException renameFailure = null;
+		try {
+			if(success) {
+				File clean = entry.getCleanFile();
+				long newLength = dirty.length();
+				try {
+					//直接覆盖原文件,重命名失败时原来的内容仍然完整
+					renameTo(dirty, clean, false);
+					mSize = mSize - entry.length + newLength;
+					entry.length = newLength;
+				} catch (IOException e) {
+					renameFailure = e;
+					success = false;
+				}
+			}
+			if(!success) {
+				deleteIfExists(dirty);
+			}
+		} finally {
+			//无论如何都要释放编辑锁,否则该缓存项之后无法再编辑
+			entry.currentEditor = null;
+		}
+		mRedundantOpCount++;
+		if(success) {
+			entry.readable = true;
+			mJournalWriter.write(CLEAN + ' ' + entry.key + ' ' + entry.length + '\n');
+		} else if(entry.readable) {
+			//放弃编辑,保留原来的内容
+			mJournalWriter.write(CLEAN + ' ' + entry.key + ' ' + entry.length + '\n');
+		} else {
+			mEntries.remove(entry.key);
+			mJournalWriter.write(REMOVE + ' ' + entry.key + '\n');
+		}
+		mJournalWriter.flush();
+		if(mSize > mMaxSize || mEntries.size() > mMaxCount || journalRebuildRequired()) {
+			sCleanupExecutor.execute(mCleanupTask);
+		}
+		if(renameFailure != null) {
+			throw renameFailure;
+		}
+	}
+
+	//按最近最少使用的顺序删除缓存项,正在编辑的缓存项不会被删除
+	private void trimToSize() throws IOException {
+		if(mSize <= mMaxSize && mEntries.size() <= mMaxCount) {
+			return;
+		}
+		ArrayList<Entry> candidates = new ArrayList<Entry>();
+		long size = mSize;
+		int count = mEntries.size();
+		for(Entry entry : mEntries.values()) {
+			if(size <= mMaxSize && count <= mMaxCount) {
+				break;
+			}
+			if(entry.currentEditor == null) {
+				candidates.add(entry);
+				size -= entry.length;
+				count--;
+			}
+		}
+		for(Entry entry : candidates) {
+			removeEntry(entry);
+		}
+	}
+
+	private boolean journalRebuildRequired() {
+		return mRedundantOpCount >= REDUNDANT_OP_COMPACT_THRESHOLD
+				&& mRedundantOpCount >= mEntries.size();
+	}
+
+	/**
+	 * 修改缓存的最大总大小,超出时在后台删除缓存项
+	 *
+	 * @param maxSize 最大总大小,单位:字节
+	 */
+	public synchronized void setMaxSize(long maxSize) {
+		mMaxSize = maxSize;
+		sCleanupExecutor.execute(mCleanupTask);
+	}
+
+	/**
+	 * 修改缓存的最大缓存项数,超出时在后台删除缓存项
+	 *
+	 * @param maxCount 最大缓存项数
+	 */
+	public synchronized void setMaxCount(int maxCount) {
+		mMaxCount = maxCount;
+		sCleanupExecutor.execute(mCleanupTask);
+	}
+
+	/**
+	 * 获取缓存的最大总大小
+	 *
+	 * @return 返回最大总大小,单位:字节
+	 */
+	public synchronized long getMaxSize() {
+		return mMaxSize;
+	}
+
+	/**
+	 * 获取已提交的缓存项总大小,可能暂时超过最大总大小
+	 *
+	 * @return 返回总大小,单位:字节
+	 */
+	public synchronized long size() {
+		return mSize;
+	}
+
+	/**
+	 * 获取缓存项数,包括正在编辑的缓存项
+	 *
+	 * @return 返回缓存项数
+	 */
+	public synchronized int getCount() {
+		return mEntries.size();
+	}
+
+	/**
+	 * 获取命中次数
+	 *
+	 * @return 返回get()返回快照的次数
+	 */
+	public synchronized long getHitCount() {
+		return mHitCount;
+	}
+
+	/**
+	 * 获取未命中次数
+	 *
+	 * @return 返回get()返回null的次数
+	 */
+	public synchronized long getMissCount() {
+		return mMissCount;
+	}
+
+	/**
+	 * 获取缓存目录
+	 *
+	 * @return 返回缓存目录
+	 */
+	public File getDirectory() {
+		return mDirectory;
+	}
+
+	/**
+	 * 判断缓存是否已经关闭
+	 *
+	 * @return 已关闭返回true,否则返回false
+	 */
+	public synchronized boolean isClosed() {
+		return mJournalWriter == null;
+	}
+
+	/**
+	 * 将日志写入文件
+	 *
+	 * @throws IOException 写日志失败时抛出
+	 */
+	public synchronized void flush() throws IOException {
+		checkNotClosed();
+		trimToSize();
+		mJournalWriter.flush();
+	}
+
+	/**
+	 * 关闭缓存,正在进行的编辑会被放弃
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		if(mJournalWriter == null) {
+			return;
+		}
+		for(Entry entry : new ArrayList<Entry>(mEntries.values())) {
+			if(entry.currentEditor != null) {
+				entry.currentEditor.abort();
+			}
+		}
+		trimToSize();
+		mJournalWriter.close();
+		mJournalWriter = null;
+	}
+
+	/**
+	 * 关闭缓存并删除缓存目录下的所有内容
+	 *
+	 * @throws IOException 关闭缓存失败时抛出
+	 */
+	public void delete() throws IOException {
+		close();
+		BulkDeleter.clear(mDirectory);
+	}
+
+	private void checkNotClosed() {
+		if(mJournalWriter == null) {
+			throw new IllegalStateException("cache is closed");
+		}
+	}
+
+	private static void validateKey(String key) {
+		if(key == null || !KEY_PATTERN.matcher(key).matches()) {
+			throw new IllegalArgumentException("keys must match regex [a-z0-9_-]{1,120}: \"" + key + "\"");
+		}
+	}
+
+	private static void deleteIfExists(File file) {
+		if(file.exists() && !file.delete()) {
+			L.e(TAG, "failed to delete " + file);
+		}
+	}
+
+	private static void renameTo(File from, File to, boolean deleteDestination) throws IOException {
+		if(deleteDestination) {
+			deleteIfExists(to);
+		}
+		if(!from.renameTo(to)) {
+			throw new IOException("failed to rename " + from + " to " + to);
+		}
+	}
+
+	/**
+	 * 缓存项的快照,持有已打开的输入流,使用完后需要关闭
+	 */
+	public static final class Snapshot implements Closeable {
+
+		private final String mKey;
+
+		private final File mFile;
+
+		private final long mLength;
+
+		private final InputStream mInputStream;
+
+		Snapshot(String key, File file, long length, InputStream in) {
+			mKey = key;
+			mFile = file;
+			mLength = length;
+			mInputStream = in;
+		}
+
+		/**
+		 * 获取键
+		 *
+		 * @return 返回键
+		 */
+		public String getKey() {
+			return mKey;
+		}
+
+		/**
+		 * 获取缓存项的文件,该文件可能在快照关闭后被替换或者删除
+		 *
+		 * @return 返回缓存项的文件
+		 */
+		public File getFile() {
+			return mFile;
+		}
+
+		/**
+		 * 获取缓存项的大小
+		 *
+		 * @return 返回缓存项的大小,单位:字节
+		 */
+		public long getLength() {
+			return mLength;
+		}
+
+		/**
+		 * 获取输入流,关闭快照时会关闭该流
+		 *
+		 * @return 返回输入流
+		 */
+		public InputStream getInputStream() {
+			return mInputStream;
+		}
+
+		/**
+		 * 读取全部内容
+		 *
+		 * @return 返回全部内容
+		 * @throws IOException 读取失败时抛出
+		 */
+		public byte[] getBytes() throws IOException {
+			if(mLength > Integer.MAX_VALUE) {
+				throw new IOException("entry is too large: " + mLength);
+			}
+			byte[] data = new byte[(int) mLength];
+			int offset = 0;
+			while(offset < data.length) {
+				int read = mInputStream.read(data, offset, data.length - offset);
+				if(read == -1) {
+					throw new EOFException("expected " + mLength + " bytes but got " + offset);
+				}
+				offset += read;
+			}
+			return data;
+		}
+
+		@Override
+		public void close() {
+			IoUtils.close(mInputStream);
+		}
+	}
+
+	/**
+	 * 缓存项的编辑器,写入的内容在提交前对读取者不可见
+	 */
+	public final class Editor {
+
+		final Entry entry;
+
+		private boolean mHasErrors;
+
+		private boolean mDone;
+
+		Editor(Entry entry) {
+			this.entry = entry;
+		}
+
+		/**
+		 * 创建写入临时文件的输出流,写入完成后需要先关闭该流再提交
+		 *
+		 * @return 返回输出流,写入过程中的错误会被记录,提交时放弃该编辑
+		 * @throws IOException 创建临时文件失败时抛出
+		 */
+		public OutputStream newOutputStream() throws IOException {
+			synchronized (DiskLruCache.this) {
+				if(entry.currentEditor != this || mDone) {
+					throw new IllegalStateException("editor is no longer valid");
+				}
+			}
+			File dirty = entry.getDirtyFile();
+			FileOutputStream out;
+			try {
+				out = new FileOutputStream(dirty);
+			} catch (FileNotFoundException e) {
+				//缓存目录可能被外部删除
+				mDirectory.mkdirs();
+				out = new FileOutputStream(dirty);
+			}
+			return new FaultHidingOutputStream(out);
+		}
+
+		/**
+		 * 提交编辑,写入过程中出现错误时会放弃编辑
+		 *
+		 * @throws IOException 写日志失败时抛出
+		 */
+		public void commit() throws IOException {
+			if(mHasErrors) {
+				completeEdit(this, false);
+			} else {
+				completeEdit(this, true);
+			}
+			mDone = true;
+		}
+
+		/**
+		 * 放弃编辑,保留原来的内容
+		 *
+		 * @throws IOException 写日志失败时抛出
+		 */
+		public void abort() throws IOException {
+			completeEdit(this, false);
+			mDone = true;
+		}
+
+		/**
+		 * 未提交时放弃编辑,可以在finally中调用
+		 */
+		public void abortUnlessCommitted() {
+			if(!mDone) {
+				try {
+					abort();
+				} catch (IOException e) {
+					e.printStackTrace();
+				} catch (IllegalStateException e) {
+					//缓存已关闭,编辑已被放弃
+				}
+			}
+		}
+
+		private final class FaultHidingOutputStream extends FilterOutputStream {
+
+			FaultHidingOutputStream(OutputStream out) {
+				super(out);
+			}
+
+			@Override
+			public void write(int oneByte) {
+				try {
+					out.write(oneByte);
+				} catch (IOException e) {
+					mHasErrors = true;
+				}
+			}
+
+			@Override
+			public void write(byte[] buffer, int offset, int length) {
+				try {
+					out.write(buffer, offset, length);
+				} catch (IOException e) {
+					mHasErrors = true;
+				}
+			}
+
+			@Override
+			public void close() {
+				try {
+					out.close();
+				} catch (IOException e) {
+					mHasErrors = true;
+				}
+			}
+
+			@Override
+			public void flush() {
+				try {
+					out.flush();
+				} catch (IOException e) {
+					mHasErrors = true;
+				}
+			}
+		}
+	}
+
+	private final class Entry {
+
+		final String key;
+
+		/** 已提交内容的大小 */
+		long length;
+
+		/** 是否已经提交过 */
+		boolean readable;
+
+		/** 当前的编辑器,为null表示没有被编辑 */
+		Editor currentEditor;
+
+		Entry(String key) {
+			this.key = key;
+		}
+
+		File getCleanFile() {
+			return new File(mDirectory, key + CLEAN_SUFFIX);
+		}
+
+		File getDirtyFile() {
+			return new File(mDirectory, key + TEMP_SUFFIX);
+		}
+	}
+}
@@ -0,0 +1,71 @@
+package com.mao.kutils;
+
+import java.io.File;
+import java.io.IOException;
+
+import android.annotation.SuppressLint;
+import android.os.Build;
+import android.system.ErrnoException;
+import android.system.Os;
+import android.system.OsConstants;
+import android.system.StructStat;
+
+/**
+ * <p>
+ * 	不跟随符号链接判断条目的类型
+ * </p>
+ * <p>
+ * 	Android 5.0及以上通过一次lstat得到条目的类型和大小;之前的版本没有lstat,
+ *  先通过isDirectory()区分文件和目录,目录再比较规范路径判断是否是符号链接,
+ *  此时指向文件的符号链接按文件处理,大小为目标的大小.
+ * </p>
+ *
+ * @author mao
+ * */
+final class FileStat {
+
+	/** 目录 */
+	static final long DIRECTORY = -1;
+
+	/** 符号链接 */
+	static final long LINK = -2;
+
+	/** 不存在或者无法访问 */
+	static final long MISSING = -3;
+
+	private FileStat() {
+	}
+
+	/**
+	 * 判断条目的类型
+	 *
+	 * @param file 条目
+	 * @param parentCanonical 上级目录的规范路径
+	 * @return 普通文件返回其大小,否则返回{@link #DIRECTORY}、{@link #LINK}或者{@link #MISSING}
+	 */
+	@SuppressLint("NewApi")
+	static long lstat(File file, String parentCanonical) {
+		if(Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+			try {
+				StructStat stat = Os.lstat(file.getPath());
+				if(OsConstants.S_ISLNK(stat.st_mode)) {
+					return LINK;
+				}
+				return OsConstants.S_ISDIR(stat.st_mode) ? DIRECTORY : stat.st_size;
+			} catch (ErrnoException e) {
+				return MISSING;
+			}
+		}
+		if(!file.isDirectory()) {
+			//列出之后被删除的文件大小为0
+			return file.length();
+		}
+		//规范路径与上级目录的规范路径加上名称不同,说明是符号链接
+		try {
+			String expected = new File(parentCanonical, file.getName()).getPath();
+			return expected.equals(file.getCanonicalPath()) ? DIRECTORY : LINK;
+		} catch (IOException e) {
+			return MISSING;
+		}
+	}
+}
@@ -1,9 +1,8 @@
 package com.mao.kutils;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.IOException;
-import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.concurrent.Future;
 
 import android.text.TextUtils;
 
@@ -105,6 +104,36 @@ public class FileUtils {
 		return f.list();
 	}
 	
+	/**
+	 * 创建指定目录的遍历器,遍历是惰性的,可以通过返回的遍历器设置过滤条件、最大深度等,
+	 * 然后通过for-each或者{@link DirectoryWalker#walk(DirectoryWalker.Visitor)}遍历
+	 * 
+	 * @param path 指定的目录路径
+	 * @return 返回遍历器，如果指定的路径不存在或者不是目录，遍历时不会返回任何条目
+	 * 
+	 * @see DirectoryWalker
+	 */
+	public static DirectoryWalker walk(String path) {
+		if(TextUtils.isEmpty(path)) {
+			throw new IllegalArgumentException("path can't be empty");
+		}
+		return new DirectoryWalker(path);
+	}
+	
+	/**
+	 * 递归遍历指定目录下的所有文件
+	 * 
+	 * @param path 指定的目录路径
+	 * @param visitor 访问器，可以跳过子目录或者提前结束遍历
+	 * @return 遍历完成返回true，被访问器提前结束或者路径为空返回false
+	 */
+	public static boolean walk(String path, DirectoryWalker.Visitor visitor) {
+		if(TextUtils.isEmpty(path)) {
+			return false;
+		}
+		return new DirectoryWalker(path).walk(visitor);
+	}
+	
 	/**
 	 * 判断指定目录是否是空目录
 	 * 
@@ -121,33 +150,15 @@ public class FileUtils {
 	}
 	
 	/**
-	 * 获取指定文件或者目录(递归)大小，单位：字节
+	 * 获取指定文件或者目录(递归)大小，单位：字节，子目录会被并行遍历
 	 * 
 	 * @param path 指定的路径
 	 * @return 返回指定的文件或者目录大小
+	 * 
+	 * @see DirectorySizeCalculator
 	 */
 	public static long getSize(String path) {
-		return calculateSize(path);
-	}
-	
-	//递归计算目录大小
-	private static long calculateSize(String path) {
-		if(isDirectory(path)) {
-			String[] childs = listFile(path);
-			if(childs != null) {
-				long count = 0;
-				for(String p : childs) {
-					count += calculateSize(p);
-				}
-				return count;
-			} else {
-				return 0;
-			}
-		} else if(isFile(path)) {
-			return getFileSize(path);
-		} else {
-			return 0;
-		}
+		return new DirectorySizeCalculator().calculate(path);
 	}
 	
 	/**
@@ -157,20 +168,11 @@ public class FileUtils {
 	 * @return 如果指定的文件不存在或者不是文件，那么返回0，否则返回文件大小
 	 */
 	public static long getFileSize(String path) {
-		if(isFile(path)) {
-			InputStream is = null;
-			try {
-				is = new FileInputStream(path);
-				return is.available();
-			} catch (IOException e) {
-				e.printStackTrace();
-				return 0;
-			} finally {
-				IoUtils.close(is);
-			}
-		} else {
+		if(TextUtils.isEmpty(path)) {
 			return 0;
 		}
+		File f = new File(path);
+		return f.isFile() ? f.length() : 0;
 	}
 	
 	
@@ -182,38 +184,42 @@ public class FileUtils {
 	 */
 	
 	/**
-	 * 删除指定路径的文件或者目录，如果是目录会将整个目录删除掉
+	 * 删除指定路径的文件或者目录，如果是目录会将整个目录删除掉，子目录会被并行删除
 	 * 
 	 * @param path 要删除的文件或目录路径
+	 * 
+	 * @see #deleteWithResult(String)
 	 */
 	public static void delete(String path) {
-		if(isDirectory(path)) {
-			deleteDirectory(path);
-		} else if(isFile(path)) {
-			deleteFile(path);
+		deleteWithResult(path);
+	}
+	
+	/**
+	 * 删除指定路径的文件或者目录，与{@link #delete(String)}相同，同时返回删除结果
+	 * 
+	 * @param path 要删除的文件或目录路径
+	 * @return 返回删除结果，包括删除的文件数、目录数、释放的字节数以及删除失败的路径
+	 * 
+	 * @see BulkDeleter
+	 */
+	public static BulkDeleter.Result deleteWithResult(String path) {
+		if(TextUtils.isEmpty(path)) {
+			return new BulkDeleter.Result(0, 0, 0, new ArrayList<String>());
 		}
+		return BulkDeleter.delete(new File(path));
 	}
 	
-	//删除目录
-	private static void deleteDirectory(String path) {
-		if(isDirectory(path)) {
-			if(isEmptyDirectory(path)) {
-				deleteFile(path);
-			} else {
-				String[] childs = listFile(path);
-				if(childs != null) {
-					for(String p : childs) {
-						deleteDirectory(p);
-					}
-				} else {
-					
-				}
-			}
-		} else if(isFile(path)) {
-			deleteFile(path);
-		} else {
-			
+	/**
+	 * 将指定路径的文件或者目录重命名后在后台删除，方法返回后原路径已不存在，可以立即重新使用
+	 * 
+	 * @param path 要删除的文件或目录路径
+	 * @return 返回删除结果的Future，路径为空时返回null
+	 */
+	public static Future<BulkDeleter.Result> deleteInBackground(String path) {
+		if(TextUtils.isEmpty(path)) {
+			return null;
 		}
+		return BulkDeleter.deleteInBackground(new File(path));
 	}
 	
 	/**
@@ -238,17 +244,25 @@ public class FileUtils {
 	 */
 	public static void clear(String path) {
 		if(isDirectory(path)) {
-			String[] childs = listFile(path);
-			if(childs != null) {
-				for(String p : childs) {
-					delete(p);
-				}
-			}
+			BulkDeleter.clear(new File(path));
 		} else if(isFile(path)) {
 			clearFile(path);
 		}
 	}
 	
+	/**
+	 * 清空指定目录，目录会被重命名后在后台删除，然后重新创建一个空目录，方法返回后该目录已经为空
+	 * 
+	 * @param path 要清空的目录路径
+	 * @return 返回删除结果的Future，如果指定的路径不是目录返回null
+	 */
+	public static Future<BulkDeleter.Result> clearInBackground(String path) {
+		if(!isDirectory(path)) {
+			return null;
+		}
+		return BulkDeleter.clearInBackground(new File(path));
+	}
+	
 	/**
 	 * 清空文件
 	 * 
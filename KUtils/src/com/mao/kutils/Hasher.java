@@ -0,0 +1,379 @@
+package com.mao.kutils;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * <p>
+ * 	增量计算哈希值,数据可以分多次通过update传入,最后调用{@link #digest()}得到结果
+ * </p>
+ * <p>
+ * 	支持的算法见{@link BaseEncryptHelper}中的常量.MD5、SHA-1、SHA-256由{@link MessageDigest}计算,
+ *  CRC32C和xxHash64由本类实现,结果按大端字节序输出,与常见工具输出的十六进制值一致.
+ * </p>
+ * <p>
+ * 	Hasher不是线程安全的
+ * </p>
+ *
+ * @author mao
+ * @see BaseEncryptHelper#newHasher(String)
+ * */
+public abstract class Hasher {
+
+	/** 直接内存中的数据需要先拷贝到数组中处理,每次拷贝的大小 */
+	private static final int COPY_CHUNK = 8 * 1024;
+
+	private byte[] mCopyBuffer;
+
+	Hasher() {
+	}
+
+	/**
+	 * 创建指定算法的Hasher
+	 *
+	 * @param algorithm 算法名称,见{@link BaseEncryptHelper}中的常量
+	 * @return 返回Hasher
+	 * @throws IllegalArgumentException 不支持该算法时抛出
+	 */
+	static Hasher newInstance(String algorithm) {
+		if(BaseEncryptHelper.CRC32C.equals(algorithm)) {
+			return new Crc32c();
+		}
+		if(BaseEncryptHelper.XXHASH64.equals(algorithm)) {
+			return new XxHash64();
+		}
+		try {
+			return new Digest(MessageDigest.getInstance(algorithm));
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalArgumentException("unsupported algorithm " + algorithm);
+		}
+	}
+
+	/**
+	 * 传入数据
+	 *
+	 * @param data 数据
+	 * @return 返回this
+	 */
+	public Hasher update(byte[] data) {
+		return update(data, 0, data.length);
+	}
+
+	/**
+	 * 传入数据的一部分
+	 *
+	 * @param data 数据
+	 * @param offset 起始位置
+	 * @param length 长度
+	 * @return 返回this
+	 */
+	public abstract Hasher update(byte[] data, int offset, int length);
+
+	/**
+	 * 传入buffer中position到limit之间的数据,完成后buffer的position等于limit
+	 *
+	 * @param buffer 数据,可以是直接内存或者内存映射的buffer
+	 * @return 返回this
+	 */
+	public Hasher update(ByteBuffer buffer) {
+		if(buffer.hasArray()) {
+			int length = buffer.remaining();
+			update(buffer.array(), buffer.arrayOffset() + buffer.position(), length);
+			buffer.position(buffer.position() + length);
+			return this;
+		}
+		if(mCopyBuffer == null) {
+			mCopyBuffer = new byte[COPY_CHUNK];
+		}
+		byte[] chunk = mCopyBuffer;
+		while(buffer.hasRemaining()) {
+			int n = Math.min(chunk.length, buffer.remaining());
+			buffer.get(chunk, 0, n);
+			update(chunk, 0, n);
+		}
+		return this;
+	}
+
+	/**
+	 * 完成计算并返回结果,之后Hasher被重置,可以计算新的数据
+	 *
+	 * @return 返回哈希值
+	 */
+	public abstract byte[] digest();
+
+	/**
+	 * 丢弃已传入的数据
+	 */
+	public abstract void reset();
+
+	/**
+	 * 获取哈希值的字节数
+	 *
+	 * @return 返回哈希值的字节数
+	 */
+	public abstract int getDigestLength();
+
+	private static final class Digest extends Hasher {
+
+		private final MessageDigest mDigest;
+
+		Digest(MessageDigest digest) {
+			mDigest = digest;
+		}
+
+		@Override
+		public Hasher update(byte[] data, int offset, int length) {
+			mDigest.update(data, offset, length);
+			return this;
+		}
+
+		@Override
+		public byte[] digest() {
+			return mDigest.digest();
+		}
+
+		@Override
+		public void reset() {
+			mDigest.reset();
+		}
+
+		@Override
+		public int getDigestLength() {
+			return mDigest.getDigestLength();
+		}
+	}
+
+	/**
+	 * CRC32C(Castagnoli),采用slicing-by-8查表法,每次处理8个字节
+	 */
+	static final class Crc32c extends Hasher {
+
+		private static final int POLY = 0x82F63B78;
+
+		/** 8张256项的表依次存放 */
+		private static final int[] TABLE = new int[8 * 256];
+
+		static {
+			for(int i = 0; i < 256; i++) {
+				int crc = i;
+				for(int k = 0; k < 8; k++) {
+					crc = (crc & 1) != 0 ? (crc >>> 1) ^ POLY : crc >>> 1;
+				}
+				TABLE[i] = crc;
+			}
+			for(int i = 0; i < 256; i++) {
+				int crc = TABLE[i];
+				for(int t = 1; t < 8; t++) {
+					crc = (crc >>> 8) ^ TABLE[crc & 0xff];
+					TABLE[(t << 8) + i] = crc;
+				}
+			}
+		}
+
+		private int mCrc = 0xffffffff;
+
+		@Override
+		public Hasher update(byte[] data, int offset, int length) {
+			int[] table = TABLE;
+			int crc = mCrc;
+			int i = offset;
+			int end = offset + length;
+			for(int last = end - 8; i <= last; i += 8) {
+				crc ^= (data[i] & 0xff) | (data[i + 1] & 0xff) << 8
+						| (data[i + 2] & 0xff) << 16 | (data[i + 3] & 0xff) << 24;
+				crc = table[0x700 + (crc & 0xff)]
+						^ table[0x600 + ((crc >>> 8) & 0xff)]
+						^ table[0x500 + ((crc >>> 16) & 0xff)]
+						^ table[0x400 + (crc >>> 24)]
+						^ table[0x300 + (data[i + 4] & 0xff)]
+						^ table[0x200 + (data[i + 5] & 0xff)]
+						^ table[0x100 + (data[i + 6] & 0xff)]
+						^ table[data[i + 7] & 0xff];
+			}
+			for(; i < end; i++) {
+				crc = (crc >>> 8) ^ table[(crc ^ data[i]) & 0xff];
+			}
+			mCrc = crc;
+			return this;
+		}
+
+		/**
+		 * 获取当前的CRC值,不会重置
+		 *
+		 * @return 返回CRC值
+		 */
+		long getValue() {
+			return ~mCrc & 0xffffffffL;
+		}
+
+		@Override
+		public byte[] digest() {
+			int crc = ~mCrc;
+			reset();
+			return new byte[] {(byte) (crc >>> 24), (byte) (crc >>> 16), (byte) (crc >>> 8), (byte) crc};
+		}
+
+		@Override
+		public void reset() {
+			mCrc = 0xffffffff;
+		}
+
+		@Override
+		public int getDigestLength() {
+			return 4;
+		}
+	}
+
+	/**
+	 * xxHash64,种子为0
+	 */
+	static final class XxHash64 extends Hasher {
+
+		private static final long P1 = 0x9E3779B185EBCA87L;
+		private static final long P2 = 0xC2B2AE3D27D4EB4FL;
+		private static final long P3 = 0x165667B19E3779F9L;
+		private static final long P4 = 0x85EBCA77C2B2AE63L;
+		private static final long P5 = 0x27D4EB2F165667C5L;
+
+		private long mV1, mV2, mV3, mV4;
+
+		private long mTotal;
+
+		/** 不足32字节的数据先放在这里 */
+		private final byte[] mBuffer = new byte[32];
+
+		private int mBuffered;
+
+		XxHash64() {
+			reset();
+		}
+
+		@Override
+		public Hasher update(byte[] data, int offset, int length) {
+			mTotal += length;
+			int end = offset + length;
+			if(mBuffered > 0) {
+				int n = Math.min(32 - mBuffered, length);
+				System.arraycopy(data, offset, mBuffer, mBuffered, n);
+				mBuffered += n;
+				offset += n;
+				if(mBuffered < 32) {
+					return this;
+				}
+				stripes(mBuffer, 0, 32);
+				mBuffered = 0;
+			}
+			int stripesEnd = offset + ((end - offset) & ~31);
+			if(stripesEnd > offset) {
+				stripes(data, offset, stripesEnd);
+			}
+			if(stripesEnd < end) {
+				mBuffered = end - stripesEnd;
+				System.arraycopy(data, stripesEnd, mBuffer, 0, mBuffered);
+			}
+			return this;
+		}
+
+		private void stripes(byte[] data, int offset, int end) {
+			long v1 = mV1, v2 = mV2, v3 = mV3, v4 = mV4;
+			for(int i = offset; i < end; i += 32) {
+				v1 = round(v1, readLong(data, i));
+				v2 = round(v2, readLong(data, i + 8));
+				v3 = round(v3, readLong(data, i + 16));
+				v4 = round(v4, readLong(data, i + 24));
+			}
+			mV1 = v1;
+			mV2 = v2;
+			mV3 = v3;
+			mV4 = v4;
+		}
+
+		/**
+		 * 获取当前的哈希值,不会重置
+		 *
+		 * @return 返回哈希值
+		 */
+		long getValue() {
+			long h;
+			if(mTotal >= 32) {
+				h = Long.rotateLeft(mV1, 1) + Long.rotateLeft(mV2, 7)
+						+ Long.rotateLeft(mV3, 12) + Long.rotateLeft(mV4, 18);
+				h = merge(h, mV1);
+				h = merge(h, mV2);
+				h = merge(h, mV3);
+				h = merge(h, mV4);
+			} else {
+				h = P5;
+			}
+			h += mTotal;
+			byte[] buf = mBuffer;
+			int i = 0;
+			for(; i + 8 <= mBuffered; i += 8) {
+				h ^= round(0, readLong(buf, i));
+				h = Long.rotateLeft(h, 27) * P1 + P4;
+			}
+			if(i + 4 <= mBuffered) {
+				h ^= (readInt(buf, i) & 0xffffffffL) * P1;
+				h = Long.rotateLeft(h, 23) * P2 + P3;
+				i += 4;
+			}
+			for(; i < mBuffered; i++) {
+				h ^= (buf[i] & 0xff) * P5;
+				h = Long.rotateLeft(h, 11) * P1;
+			}
+			h ^= h >>> 33;
+			h *= P2;
+			h ^= h >>> 29;
+			h *= P3;
+			h ^= h >>> 32;
+			return h;
+		}
+
+		@Override
+		public byte[] digest() {
+			long h = getValue();
+			reset();
+			byte[] result = new byte[8];
+			for(int i = 7; i >= 0; i--) {
+				result[i] = (byte) h;
+				h >>>= 8;
+			}
+			return result;
+		}
+
+		@Override
+		public void reset() {
+			mV1 = P1 + P2;
+			mV2 = P2;
+			mV3 = 0;
+			mV4 = -P1;
+			mTotal = 0;
+			mBuffered = 0;
+		}
+
+		@Override
+		public int getDigestLength() {
+			return 8;
+		}
+
+		private static long round(long acc, long input) {
+			acc += input * P2;
+			acc = Long.rotateLeft(acc, 31);
+			return acc * P1;
+		}
+
+		private static long merge(long acc, long v) {
+			acc ^= round(0, v);
+			return acc * P1 + P4;
+		}
+
+		private static long readLong(byte[] b, int i) {
+			return (readInt(b, i) & 0xffffffffL) | ((long) readInt(b, i + 4) << 32);
+		}
+
+		private static int readInt(byte[] b, int i) {
+			return (b[i] & 0xff) | (b[i + 1] & 0xff) << 8 | (b[i + 2] & 0xff) << 16 | (b[i + 3] & 0xff) << 24;
+		}
+	}
+}
@@ -0,0 +1,485 @@
+package com.mao.kutils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+import android.graphics.Bitmap;
+import android.util.LruCache;
+
+/**
+ * <p>
+ * 	内存+磁盘两级图片缓存
+ * </p>
+ * <p>
+ * 	内存中按{@link BitmapUtils#sizeOfBitmap(Bitmap)}计算大小缓存解码后的位图,同一个URL按不同的目标尺寸分别缓存;
+ *  磁盘中通过{@link DiskLruCache}缓存下载的原始数据,不同尺寸共用.
+ *  {@link #load(String, int, int)}依次查找内存、磁盘,最后通过{@link Fetcher}下载.
+ *  多个线程同时加载同一张图片时只会下载和解码一次,其它线程等待并共享结果.
+ * </p>
+ * <p>
+ * 	每一级都统计命中率和耗时,见{@link #getMemoryStats()}等方法.
+ * </p>
+ *
+ * @author mao
+ * */
+public class ImageCache implements Closeable {
+
+	private static final String TAG = "ImageCache";
+
+	private final LruCache<String, Bitmap> mMemoryCache;
+
+	private final DiskLruCache mDiskCache;
+
+	private final Fetcher mFetcher;
+
+	/** 正在加载的位图,键与内存缓存相同 */
+	private final ConcurrentHashMap<String, FutureTask<Bitmap>> mLoading = new ConcurrentHashMap<String, FutureTask<Bitmap>>();
+
+	/** 正在读取或下载的原始数据,键为URL */
+	private final ConcurrentHashMap<String, FutureTask<byte[]>> mFetching = new ConcurrentHashMap<String, FutureTask<byte[]>>();
+
+	private final Counter mMemoryCounter = new Counter();
+
+	private final Counter mDiskCounter = new Counter();
+
+	private final Counter mNetworkCounter = new Counter();
+
+	private final Counter mDecodeCounter = new Counter();
+
+	private volatile boolean mAllowRgb565;
+
+	private volatile BitmapPool mBitmapPool;
+
+	/**
+	 * @param memoryMaxSize 内存缓存的大小上限,单位为字节
+	 * @param diskCache 磁盘缓存,为null时只使用内存缓存
+	 * @param fetcher 下载图片数据,为null时使用{@link HttpFetcher}
+	 */
+	public ImageCache(int memoryMaxSize, DiskLruCache diskCache, Fetcher fetcher) {
+		mMemoryCache = new LruCache<String, Bitmap>(memoryMaxSize) {
+
+			@Override
+			protected int sizeOf(String key, Bitmap value) {
+				return BitmapUtils.sizeOfBitmap(value);
+			}
+		};
+		mDiskCache = diskCache;
+		mFetcher = fetcher != null ? fetcher : new HttpFetcher(HttpFetcher.DEFAULT_TIMEOUT, HttpFetcher.DEFAULT_TIMEOUT);
+	}
+
+	/**
+	 * 没有透明通道的JPEG图片是否解码为RGB_565,默认为false
+	 *
+	 * @param allowRgb565 是否允许使用RGB_565
+	 */
+	public void setAllowRgb565(boolean allowRgb565) {
+		mAllowRgb565 = allowRgb565;
+	}
+
+	/**
+	 * 设置解码时复用内存的位图缓冲池
+	 *
+	 * @param pool 位图缓冲池,可以为null
+	 */
+	public void setBitmapPool(BitmapPool pool) {
+		mBitmapPool = pool;
+	}
+
+	/**
+	 * 加载图片,依次查找内存缓存、磁盘缓存,都没有时下载.会阻塞当前线程,不能在主线程中调用
+	 *
+	 * @param url 图片地址
+	 * @param reqWidth 目标宽度,小于等于0表示不限制
+	 * @param reqHeight 目标高度,小于等于0表示不限制
+	 * @return 加载成功返回位图,失败返回null
+	 */
+	public Bitmap load(final String url, final int reqWidth, final int reqHeight) {
+		if(url == null) {
+			return null;
+		}
+		final String key = memoryKey(url, reqWidth, reqHeight);
+		Bitmap bitmap = getFromMemory(key);
+		if(bitmap != null) {
+			return bitmap;
+		}
+		return coalesce(mLoading, key, new Callable<Bitmap>() {
+
+			@Override
+			public Bitmap call() throws Exception {
+				//等待期间可能已经被其它线程加载
+				Bitmap cached = mMemoryCache.get(key);
+				if(cached != null) {
+					return cached;
+				}
+				byte[] data = getBytes(url);
+				return data == null ? null : decode(url, data, reqWidth, reqHeight);
+			}
+		});
+	}
+
+	/**
+	 * 加载图片后进行变换,变换结果以变换的键区分缓存在内存中.会阻塞当前线程,不能在主线程中调用
+	 *
+	 * @param url 图片地址
+	 * @param reqWidth 解码的目标宽度,小于等于0表示不限制
+	 * @param reqHeight 解码的目标高度,小于等于0表示不限制
+	 * @param transformer 变换,为null时与{@link #load(String, int, int)}相同
+	 * @return 成功返回变换后的位图,失败返回null
+	 */
+	public Bitmap load(final String url, final int reqWidth, final int reqHeight, final BitmapTransformer transformer) {
+		if(transformer == null) {
+			return load(url, reqWidth, reqHeight);
+		}
+		if(url == null) {
+			return null;
+		}
+		final String key = memoryKey(url, reqWidth, reqHeight) + "|" + transformer.getKey();
+		Bitmap bitmap = getFromMemory(key);
+		if(bitmap != null) {
+			return bitmap;
+		}
+		return coalesce(mLoading, key, new Callable<Bitmap>() {
+
+			@Override
+			public Bitmap call() throws Exception {
+				Bitmap cached = mMemoryCache.get(key);
+				if(cached != null) {
+					return cached;
+				}
+				Bitmap source = load(url, reqWidth, reqHeight);
+				Bitmap transformed = transformer.transform(source, mBitmapPool);
+				if(transformed != null) {
+					mMemoryCache.put(key, transformed);
+				}
+				return transformed;
+			}
+		});
+	}
+
+	/**
+	 * 只从内存缓存中查找,可以在主线程中调用
+	 *
+	 * @param url 图片地址
+	 * @param reqWidth 目标宽度
+	 * @param reqHeight 目标高度
+	 * @return 找到时返回位图,否则返回null
+	 */
+	public Bitmap getFromMemory(String url, int reqWidth, int reqHeight) {
+		return getFromMemory(memoryKey(url, reqWidth, reqHeight));
+	}
+
+	private Bitmap getFromMemory(String key) {
+		long start = System.nanoTime();
+		Bitmap bitmap = mMemoryCache.get(key);
+		mMemoryCounter.record(bitmap != null, start);
+		return bitmap;
+	}
+
+	/**
+	 * 获取图片的原始数据,先查找磁盘缓存,没有时下载并写入磁盘缓存.同一个URL同时只会下载一次
+	 *
+	 * @param url 图片地址
+	 * @return 成功返回图片数据,失败返回null
+	 */
+	public byte[] getBytes(final String url) {
+		return coalesce(mFetching, url, new Callable<byte[]>() {
+
+			@Override
+			public byte[] call() throws Exception {
+				byte[] data = getFromDisk(url);
+				if(data != null) {
+					return data;
+				}
+				long start = System.nanoTime();
+				try {
+					data = mFetcher.fetch(url);
+				} finally {
+					mNetworkCounter.record(data != null, start);
+				}
+				if(data != null && mDiskCache != null) {
+					mDiskCache.put(DiskLruCache.toKey(url), data);
+				}
+				return data;
+			}
+		});
+	}
+
+	private byte[] getFromDisk(String url) {
+		if(mDiskCache == null) {
+			return null;
+		}
+		long start = System.nanoTime();
+		byte[] data = null;
+		DiskLruCache.Snapshot snapshot = null;
+		try {
+			snapshot = mDiskCache.get(DiskLruCache.toKey(url));
+			if(snapshot != null) {
+				data = snapshot.getBytes();
+			}
+		} catch (IOException e) {
+			L.e(TAG, "can't read disk cache for " + url + ": " + e.getMessage());
+		} finally {
+			IoUtils.close(snapshot);
+			mDiskCounter.record(data != null, start);
+		}
+		return data;
+	}
+
+	/**
+	 * 按目标尺寸解码图片数据并放入内存缓存
+	 *
+	 * @param url 图片地址
+	 * @param data 图片数据
+	 * @param reqWidth 目标宽度,小于等于0表示不限制
+	 * @param reqHeight 目标高度,小于等于0表示不限制
+	 * @return 解码成功返回位图,失败返回null
+	 */
+	public Bitmap decode(String url, byte[] data, int reqWidth, int reqHeight) {
+		long start = System.nanoTime();
+		Bitmap bitmap = new BitmapDecoder()
+				.setTargetSize(reqWidth, reqHeight)
+				.setAllowRgb565(mAllowRgb565)
+				.setBitmapPool(mBitmapPool)
+				.decodeByteArray(data);
+		mDecodeCounter.record(bitmap != null, start);
+		if(bitmap != null) {
+			mMemoryCache.put(memoryKey(url, reqWidth, reqHeight), bitmap);
+		}
+		return bitmap;
+	}
+
+	/**
+	 * 从内存和磁盘缓存中删除图片
+	 *
+	 * @param url 图片地址
+	 * @param reqWidth 目标宽度
+	 * @param reqHeight 目标高度
+	 */
+	public void remove(String url, int reqWidth, int reqHeight) {
+		mMemoryCache.remove(memoryKey(url, reqWidth, reqHeight));
+		if(mDiskCache != null) {
+			try {
+				mDiskCache.remove(DiskLruCache.toKey(url));
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	/**
+	 * 清空内存缓存,例如在onTrimMemory()中调用
+	 */
+	public void evictMemory() {
+		mMemoryCache.evictAll();
+	}
+
+	public Stats getMemoryStats() {
+		return mMemoryCounter.snapshot();
+	}
+
+	public Stats getDiskStats() {
+		return mDiskCounter.snapshot();
+	}
+
+	/**
+	 * 下载的统计,命中表示下载成功
+	 *
+	 * @return 返回统计信息
+	 */
+	public Stats getNetworkStats() {
+		return mNetworkCounter.snapshot();
+	}
+
+	/**
+	 * 解码的统计,命中表示解码成功
+	 *
+	 * @return 返回统计信息
+	 */
+	public Stats getDecodeStats() {
+		return mDecodeCounter.snapshot();
+	}
+
+	/**
+	 * 关闭磁盘缓存并清空内存缓存
+	 */
+	@Override
+	public void close() throws IOException {
+		mMemoryCache.evictAll();
+		if(mDiskCache != null) {
+			mDiskCache.close();
+		}
+	}
+
+	static String memoryKey(String url, int reqWidth, int reqHeight) {
+		return url + "#" + Math.max(reqWidth, 0) + "x" + Math.max(reqHeight, 0);
+	}
+
+	//相同键的任务同时只执行一次,其它调用者等待同一个结果
+	private static <V> V coalesce(ConcurrentHashMap<String, FutureTask<V>> running, String key, Callable<V> callable) {
+		FutureTask<V> task = new FutureTask<V>(callable);
+		FutureTask<V> existing = running.putIfAbsent(key, task);
+		if(existing == null) {
+			try {
+				task.run();
+			} finally {
+				running.remove(key, task);
+			}
+		} else {
+			task = existing;
+		}
+		try {
+			return task.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return null;
+		} catch (ExecutionException e) {
+			L.e(TAG, "failed to load " + key + ": " + e.getCause());
+			return null;
+		}
+	}
+
+	/**
+	 * 下载图片数据
+	 */
+	public interface Fetcher {
+
+		/**
+		 * 下载图片数据,在工作线程中调用
+		 *
+		 * @param url 图片地址
+		 * @return 返回图片数据,不存在时可以返回null
+		 * @throws IOException 下载失败时抛出
+		 */
+		byte[] fetch(String url) throws IOException;
+	}
+
+	/**
+	 * 通过HttpURLConnection下载,有连接和读取超时
+	 */
+	public static class HttpFetcher implements Fetcher {
+
+		public static final int DEFAULT_TIMEOUT = 15 * 1000;
+
+		private final int mConnectTimeout;
+
+		private final int mReadTimeout;
+
+		/**
+		 * @param connectTimeout 连接超时,单位为毫秒
+		 * @param readTimeout 读取超时,单位为毫秒
+		 */
+		public HttpFetcher(int connectTimeout, int readTimeout) {
+			mConnectTimeout = connectTimeout;
+			mReadTimeout = readTimeout;
+		}
+
+		@Override
+		public byte[] fetch(String url) throws IOException {
+			HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+			connection.setConnectTimeout(mConnectTimeout);
+			connection.setReadTimeout(mReadTimeout);
+			InputStream is = null;
+			try {
+				int code = connection.getResponseCode();
+				if(code != HttpURLConnection.HTTP_OK) {
+					throw new IOException("HTTP " + code + " for " + url);
+				}
+				is = connection.getInputStream();
+				int length = connection.getContentLength();
+				//长度已知时直接读入长度正好的数组,返回时不再复制
+				IoUtils.ByteArrayBuilder data = new IoUtils.ByteArrayBuilder(length > 0 ? length : 0);
+				try {
+					data.readFrom(is);
+					return data.toByteArray();
+				} finally {
+					data.close();
+				}
+			} finally {
+				IoUtils.close(is);
+				connection.disconnect();
+			}
+		}
+	}
+
+	/**
+	 * 某一级缓存的统计信息
+	 */
+	public static final class Stats {
+
+		private final long mHitCount;
+
+		private final long mMissCount;
+
+		private final long mTotalNanos;
+
+		Stats(long hitCount, long missCount, long totalNanos) {
+			mHitCount = hitCount;
+			mMissCount = missCount;
+			mTotalNanos = totalNanos;
+		}
+
+		public long getHitCount() {
+			return mHitCount;
+		}
+
+		public long getMissCount() {
+			return mMissCount;
+		}
+
+		/**
+		 * 获取命中率
+		 *
+		 * @return 返回0到1之间的命中率,没有请求时返回0
+		 */
+		public double getHitRate() {
+			long total = mHitCount + mMissCount;
+			return total == 0 ? 0 : (double) mHitCount / total;
+		}
+
+		/**
+		 * 获取平均耗时
+		 *
+		 * @return 返回平均耗时,单位为毫秒,没有请求时返回0
+		 */
+		public double getAverageMillis() {
+			long total = mHitCount + mMissCount;
+			return total == 0 ? 0 : mTotalNanos / 1000000.0 / total;
+		}
+
+		@Override
+		public String toString() {
+			return "hits=" + mHitCount + ", misses=" + mMissCount
+					+ ", hitRate=" + getHitRate() + ", avgMillis=" + getAverageMillis();
+		}
+	}
+
+	private static final class Counter {
+
+		final AtomicLong hits = new AtomicLong();
+
+		final AtomicLong misses = new AtomicLong();
+
+		final AtomicLong nanos = new AtomicLong();
+
+		void record(boolean hit, long startNanos) {
+			nanos.addAndGet(System.nanoTime() - startNanos);
+			if(hit) {
+				hits.incrementAndGet();
+			} else {
+				misses.incrementAndGet();
+			}
+		}
+
+		Stats snapshot() {
+			return new Stats(hits.get(), misses.get(), nanos.get());
+		}
+	}
+}
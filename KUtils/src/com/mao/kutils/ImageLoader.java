@@ -0,0 +1,376 @@
+package com.mao.kutils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import android.graphics.Bitmap;
+import android.os.Handler;
+import android.os.Looper;
+
+/**
+ * <p>
+ * 	异步图片加载器,基于{@link ImageCache}
+ * </p>
+ * <p>
+ * 	下载(包括读取磁盘缓存)和解码分别在两个固定大小的线程池中执行,互不阻塞.
+ *  等待中的任务后提交的先执行,列表快速滚动时当前可见的图片最先加载.
+ *  相同地址和尺寸的请求只加载一次,结果分发给所有请求.
+ * </p>
+ * <p>
+ * 	同一个{@link Target}再次加载时之前的请求自动取消,例如列表项被复用时;
+ *  也可以通过{@link #cancel(Target)}取消,例如列表项滚出屏幕时.
+ *  一个任务的所有请求都取消后,还没有开始的下载和解码不会再执行.
+ * </p>
+ *
+ * @author mao
+ * */
+public class ImageLoader {
+
+	private static final String TAG = "ImageLoader";
+
+	private final ImageCache mCache;
+
+	private final ThreadPoolExecutor mNetworkExecutor;
+
+	private final ThreadPoolExecutor mDecodeExecutor;
+
+	private final Executor mCallbackExecutor;
+
+	private final Object mLock = new Object();
+
+	/** 正在执行的任务,键与内存缓存相同 */
+	private final HashMap<String, Job> mJobs = new HashMap<String, Job>();
+
+	/** 每个Target当前的请求 */
+	private final HashMap<Target, Request> mTargets = new HashMap<Target, Request>();
+
+	/**
+	 * 在主线程中回调Target
+	 *
+	 * @param cache 图片缓存
+	 * @param networkThreads 下载线程数
+	 * @param decodeThreads 解码线程数
+	 */
+	public ImageLoader(ImageCache cache, int networkThreads, int decodeThreads) {
+		this(cache, networkThreads, decodeThreads, new MainThreadExecutor());
+	}
+
+	/**
+	 * @param cache 图片缓存
+	 * @param networkThreads 下载线程数
+	 * @param decodeThreads 解码线程数
+	 * @param callbackExecutor 回调Target的Executor
+	 */
+	public ImageLoader(ImageCache cache, int networkThreads, int decodeThreads, Executor callbackExecutor) {
+		if(cache == null || callbackExecutor == null) {
+			throw new IllegalArgumentException("cache and callbackExecutor can't be null");
+		}
+		mCache = cache;
+		mNetworkExecutor = newLifoExecutor(networkThreads, "ImageLoader-network-");
+		mDecodeExecutor = newLifoExecutor(decodeThreads, "ImageLoader-decode-");
+		mCallbackExecutor = callbackExecutor;
+	}
+
+	private static ThreadPoolExecutor newLifoExecutor(int threads, final String prefix) {
+		if(threads <= 0) {
+			throw new IllegalArgumentException("threads <= 0");
+		}
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS,
+				new LifoBlockingDeque(), new ThreadFactory() {
+
+					private final AtomicInteger mCount = new AtomicInteger();
+
+					@Override
+					public Thread newThread(Runnable r) {
+						Thread t = new Thread(r, prefix + mCount.incrementAndGet());
+						t.setDaemon(true);
+						return t;
+					}
+				});
+		executor.allowCoreThreadTimeOut(true);
+		return executor;
+	}
+
+	/**
+	 * 加载图片.内存缓存命中时在当前线程中立即回调,否则异步加载后通过回调Executor回调
+	 *
+	 * @param url 图片地址
+	 * @param reqWidth 目标宽度,小于等于0表示不限制
+	 * @param reqHeight 目标高度,小于等于0表示不限制
+	 * @param target 接收结果,之前通过该Target发起的请求会被取消
+	 * @return 返回请求,可以用来取消;url或者target为null时返回null
+	 */
+	public Request load(String url, int reqWidth, int reqHeight, Target target) {
+		if(url == null || target == null) {
+			return null;
+		}
+		cancel(target);
+		Request request = new Request(target);
+		Bitmap cached = mCache.getFromMemory(url, reqWidth, reqHeight);
+		if(cached != null) {
+			request.mDone = true;
+			target.onLoaded(cached);
+			return request;
+		}
+		String key = ImageCache.memoryKey(url, reqWidth, reqHeight);
+		synchronized (mLock) {
+			Job job = mJobs.get(key);
+			if(job == null) {
+				job = new Job(key, url, reqWidth, reqHeight);
+				mJobs.put(key, job);
+				mNetworkExecutor.execute(job.mFetchStage);
+			}
+			request.mJob = job;
+			job.mRequests.add(request);
+			mTargets.put(target, request);
+		}
+		return request;
+	}
+
+	/**
+	 * 取消Target当前的请求,之后不会再回调该Target
+	 *
+	 * @param target 要取消的Target
+	 */
+	public void cancel(Target target) {
+		Request request;
+		synchronized (mLock) {
+			request = mTargets.get(target);
+		}
+		if(request != null) {
+			request.cancel();
+		}
+	}
+
+	/**
+	 * 获取正在执行的任务数,相同的请求只算一个
+	 *
+	 * @return 返回任务数
+	 */
+	public int getPendingCount() {
+		synchronized (mLock) {
+			return mJobs.size();
+		}
+	}
+
+	/**
+	 * 停止所有加载,之后不能再使用
+	 */
+	public void shutdown() {
+		synchronized (mLock) {
+			for(Job job : mJobs.values()) {
+				job.mCancelled = true;
+			}
+			mJobs.clear();
+			mTargets.clear();
+		}
+		mNetworkExecutor.shutdownNow();
+		mDecodeExecutor.shutdownNow();
+	}
+
+	/**
+	 * 接收加载结果
+	 */
+	public interface Target {
+
+		/**
+		 * 加载成功
+		 *
+		 * @param bitmap 位图
+		 */
+		void onLoaded(Bitmap bitmap);
+
+		/**
+		 * 加载失败
+		 */
+		void onFailed();
+	}
+
+	/**
+	 * 一次加载请求
+	 */
+	public final class Request {
+
+		private final Target mTarget;
+
+		private Job mJob;
+
+		private boolean mCancelled;
+
+		private boolean mDone;
+
+		Request(Target target) {
+			mTarget = target;
+		}
+
+		/**
+		 * 取消请求,之后不会再回调Target
+		 */
+		public void cancel() {
+			synchronized (mLock) {
+				if(mCancelled || mDone) {
+					return;
+				}
+				mCancelled = true;
+				if(mTargets.get(mTarget) == this) {
+					mTargets.remove(mTarget);
+				}
+				Job job = mJob;
+				if(job != null && job.mRequests.remove(this) && job.mRequests.isEmpty()) {
+					//没有请求需要这个任务了
+					job.mCancelled = true;
+					if(mJobs.get(job.mKey) == job) {
+						mJobs.remove(job.mKey);
+					}
+					mNetworkExecutor.remove(job.mFetchStage);
+				}
+			}
+		}
+
+		public boolean isCancelled() {
+			synchronized (mLock) {
+				return mCancelled;
+			}
+		}
+
+		/**
+		 * 是否已经回调
+		 *
+		 * @return 已经回调返回true
+		 */
+		public boolean isDone() {
+			synchronized (mLock) {
+				return mDone;
+			}
+		}
+	}
+
+	/**
+	 * 相同地址和尺寸的请求共用的任务,先下载再解码
+	 */
+	private final class Job {
+
+		final String mKey;
+
+		final String mUrl;
+
+		final int mReqWidth;
+
+		final int mReqHeight;
+
+		final ArrayList<Request> mRequests = new ArrayList<Request>();
+
+		volatile boolean mCancelled;
+
+		final Runnable mFetchStage = new Runnable() {
+
+			@Override
+			public void run() {
+				if(mCancelled) {
+					return;
+				}
+				final byte[] data;
+				try {
+					data = mCache.getBytes(mUrl);
+				} catch (RuntimeException e) {
+					L.e(TAG, "failed to fetch " + mUrl + ": " + e);
+					finish(null);
+					return;
+				}
+				if(data == null) {
+					finish(null);
+					return;
+				}
+				if(mCancelled) {
+					return;
+				}
+				mDecodeExecutor.execute(new Runnable() {
+
+					@Override
+					public void run() {
+						if(mCancelled) {
+							return;
+						}
+						Bitmap bitmap = null;
+						try {
+							bitmap = mCache.decode(mUrl, data, mReqWidth, mReqHeight);
+						} catch (RuntimeException e) {
+							L.e(TAG, "failed to decode " + mUrl + ": " + e);
+						}
+						finish(bitmap);
+					}
+				});
+			}
+		};
+
+		Job(String key, String url, int reqWidth, int reqHeight) {
+			mKey = key;
+			mUrl = url;
+			mReqWidth = reqWidth;
+			mReqHeight = reqHeight;
+		}
+
+		void finish(final Bitmap bitmap) {
+			ArrayList<Request> requests;
+			synchronized (mLock) {
+				if(mJobs.get(mKey) == this) {
+					mJobs.remove(mKey);
+				}
+				requests = new ArrayList<Request>(mRequests);
+				mRequests.clear();
+			}
+			for(final Request request : requests) {
+				mCallbackExecutor.execute(new Runnable() {
+
+					@Override
+					public void run() {
+						synchronized (mLock) {
+							//分发期间可能被取消
+							if(request.mCancelled) {
+								return;
+							}
+							request.mDone = true;
+							if(mTargets.get(request.mTarget) == request) {
+								mTargets.remove(request.mTarget);
+							}
+						}
+						if(bitmap != null) {
+							request.mTarget.onLoaded(bitmap);
+						} else {
+							request.mTarget.onFailed();
+						}
+					}
+				});
+			}
+		}
+	}
+
+	/**
+	 * 后放入的先取出,ThreadPoolExecutor通过offer放入任务
+	 */
+	private static final class LifoBlockingDeque extends LinkedBlockingDeque<Runnable> {
+
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		public boolean offer(Runnable e) {
+			return offerFirst(e);
+		}
+	}
+
+	private static final class MainThreadExecutor implements Executor {
+
+		private final Handler mHandler = new Handler(Looper.getMainLooper());
+
+		@Override
+		public void execute(Runnable command) {
+			mHandler.post(command);
+		}
+	}
+}
@@ -1,8 +1,8 @@
 package com.mao.kutils;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
@@ -10,7 +10,20 @@ import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.OutputStream;
 import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import android.text.TextUtils;
 
 /**
  * IO流工具类
@@ -20,10 +33,38 @@ import java.nio.charset.Charset;
  */
 public class IoUtils {
 
+	private final static String TAG = "IoUtils";
+	
+	/** 流复制时使用的缓冲区大小 */
+	private final static int BUFFER_SIZE = 64 * 1024;
+	
+	/** 缓冲池中最多保留的缓冲区数 */
+	private final static int MAX_POOLED_BUFFERS = 4;
+	
+	/** 文件复制时每次传输的最大字节数,每传输一段回调一次进度 */
+	private final static long TRANSFER_CHUNK_SIZE = 8 * 1024 * 1024;
+	
+	private static final ConcurrentLinkedQueue<byte[]> sBufferPool = new ConcurrentLinkedQueue<byte[]>();
+	
 	private IoUtils() {
 		throw new UnsupportedOperationException("can't instantiate class IoUtils");
 	}
 	
+	/**
+	 * 复制进度监听器
+	 */
+	public interface OnProgressListener {
+		
+		/**
+		 * 每传输一段数据回调一次，在执行复制的线程中回调
+		 * 
+		 * @param transferred 已传输的字节数
+		 * @param total 总字节数，未知时为-1
+		 * @return 返回false取消复制
+		 */
+		boolean onProgress(long transferred, long total);
+	}
+	
 	/**
 	 * 关闭流
 	 * 
@@ -43,39 +84,116 @@ public class IoUtils {
 	}
 	
 	/**
-	 * 采用对象序列化实现彻底深度对象复制
+	 * 深度复制对象，对象图中的循环引用和共享引用在副本中保持相同的结构
 	 * 
 	 * @param obj 要复制的对象
 	 * @return 复制成功相应新的对象,复制失败返回null.
+	 * 
+	 * @see DeepCopier
 	 */
+	@SuppressWarnings("unchecked")
 	public static <T extends Serializable> T copyObject(Object obj) {
+		try {
+			return (T) DeepCopier.copy(obj);
+		} catch (IllegalArgumentException e) {
+			e.printStackTrace();
+			return null;
+		}
+	}
+	
+	//采用对象序列化实现深度对象复制,失败返回null
+	static Object copyBySerialization(Object obj) {
 		if(obj == null) {
 			return null;
 		}
-		ByteArrayOutputStream baos = null;
+		ByteArrayBuilder baos = null;
 		ObjectOutputStream oos = null;
-		ByteArrayInputStream bais = null;
 		ObjectInputStream ois = null;
 		try {
-			baos = new ByteArrayOutputStream();
+			baos = new ByteArrayBuilder();
 			oos = new ObjectOutputStream(baos);
 			oos.writeObject(obj);
-			bais = new ByteArrayInputStream(baos.toByteArray());
-			ois = new ObjectInputStream(bais);
-			Object object = ois.readObject();
-			return (T) object;
+			oos.flush();
+			//逐段读取,第一段不会被标记为已交出,关闭后可以放回缓冲池
+			ois = new ObjectInputStream(baos.asInputStream());
+			return ois.readObject();
 		} catch (Exception e) {
 			e.printStackTrace();
 			return null;
 		} finally {
 			close(oos);
-			close(baos);
 			close(ois);
-			close(bais);
+			close(baos);
 		}
 	}
 	
 	
+	/**
+	 * 以{@link BinarySerializer}的紧凑二进制格式将对象保存到文件，先写入临时文件再重命名，
+	 * 写入失败时不会破坏原来的文件
+	 * 
+	 * @param obj 要保存的对象，可以为null
+	 * @param path 文件路径，所在目录不存在时自动创建
+	 * @return 保存成功返回true，失败返回false
+	 */
+	public static boolean saveObject(Object obj, String path) {
+		if(TextUtils.isEmpty(path)) {
+			return false;
+		}
+		File file = new File(path);
+		File temp = new File(path + ".tmp");
+		OutputStream os = getOutputStream(temp.getPath());
+		if(os == null) {
+			return false;
+		}
+		BinaryWriter writer = new BinaryWriter(os);
+		boolean success = false;
+		try {
+			writer.writeValue(obj);
+			writer.flush();
+			success = true;
+		} catch (IOException e) {
+			e.printStackTrace();
+		} finally {
+			if(!close(writer)) {
+				success = false;
+			}
+		}
+		if(success && temp.renameTo(file)) {
+			return true;
+		}
+		temp.delete();
+		return false;
+	}
+	
+	/**
+	 * 读取{@link #saveObject(Object, String)}保存的对象
+	 * 
+	 * @param path 文件路径
+	 * @return 读取成功返回对象，文件不存在或者读取失败返回null
+	 */
+	public static Object loadObject(String path) {
+		if(!FileUtils.isFile(path)) {
+			return null;
+		}
+		BinaryReader reader = null;
+		try {
+			reader = new BinaryReader(new FileInputStream(path), new File(path).length());
+			return reader.readValue();
+		} catch (IOException e) {
+			e.printStackTrace();
+			return null;
+		} catch (RuntimeException e) {
+			e.printStackTrace();
+			return null;
+		} catch (OutOfMemoryError e) {
+			e.printStackTrace();
+			return null;
+		} finally {
+			close(reader);
+		}
+	}
+	
 	/**
 	 * 通过路径获取输出流，如果指定的路径不存在会自动创建
 	 * 
@@ -125,24 +243,694 @@ public class IoUtils {
 	 * 按指定字符集将输入流转换为字符串
 	 * 
 	 * @param is 输入流
-	 * @param charset 指定的字符集
+	 * @param charset 指定的字符集，为null时使用默认字符集
 	 * @return 转换成功返回对应的字符串，失败返回null
 	 */
 	public static String inputStream2String(InputStream is, Charset charset) {
+		return inputStream2String(is, charset, -1);
+	}
+	
+	/**
+	 * <p>
+	 * 	按指定字符集将输入流转换为字符串
+	 * </p>
+	 * <p>
+	 * 	通过CharsetDecoder流式解码，跨越读取边界的多字节字符会被正确解码，无法解码的字节替换为替换字符。
+	 *  解码使用的字节缓冲区、字符缓冲区和解码器都是线程内复用的，只有结果的StringBuilder需要分配。
+	 * </p>
+	 * 
+	 * @param is 输入流
+	 * @param charset 指定的字符集，为null时使用默认字符集
+	 * @param sizeHint 预计的字节数，用于确定结果的初始容量，未知时传-1，此时使用available()的返回值
+	 * @return 转换成功返回对应的字符串，失败返回null
+	 */
+	public static String inputStream2String(InputStream is, Charset charset, int sizeHint) {
 		if(is == null) {
 			return null;
 		}
-		byte[] buffer = new byte[1024];
-		int length;
-		StringBuilder sb = new StringBuilder();
+		if(charset == null) {
+			charset = Charset.defaultCharset();
+		}
+		DecodeBuffers buffers = sDecodeBuffers.get();
+		if(buffers.inUse) {
+			//输入流在read()中再次调用了该方法,不能共用缓冲区
+			buffers = new DecodeBuffers();
+		}
+		buffers.inUse = true;
 		try {
-			while((length = is.read(buffer)) != -1) {
-				sb.append(new String(buffer, 0, length, charset));
+			if(sizeHint < 0) {
+				sizeHint = is.available();
 			}
+			CharsetDecoder decoder = buffers.getDecoder(charset);
+			ByteBuffer in = buffers.byteBuffer;
+			CharBuffer out = buffers.charBuffer;
+			in.clear();
+			StringBuilder sb = new StringBuilder(Math.max(16, (int) (sizeHint * decoder.averageCharsPerByte())));
+			boolean endOfInput = false;
+			while(!endOfInput) {
+				int length = is.read(buffers.bytes, in.position(), in.remaining());
+				if(length == -1) {
+					endOfInput = true;
+				} else {
+					in.position(in.position() + length);
+				}
+				in.flip();
+				decode(decoder, in, out, sb, endOfInput);
+				//未解码完的多字节字符留到下一次
+				in.compact();
+			}
+			out.clear();
+			while(decoder.flush(out).isOverflow()) {
+				drain(out, sb);
+			}
+			drain(out, sb);
 			return sb.toString();
 		} catch (IOException e) {
 			e.printStackTrace();
 			return null;
+		} finally {
+			buffers.inUse = false;
+		}
+	}
+	
+	private static void decode(CharsetDecoder decoder, ByteBuffer in, CharBuffer out,
+			StringBuilder sb, boolean endOfInput) {
+		while(true) {
+			out.clear();
+			CoderResult result = decoder.decode(in, out, endOfInput);
+			drain(out, sb);
+			if(!result.isOverflow()) {
+				return;
+			}
+		}
+	}
+	
+	private static void drain(CharBuffer out, StringBuilder sb) {
+		out.flip();
+		sb.append(out.array(), out.arrayOffset(), out.remaining());
+		out.clear();
+	}
+	
+	private static final ThreadLocal<DecodeBuffers> sDecodeBuffers = new ThreadLocal<DecodeBuffers>() {
+		
+		@Override
+		protected DecodeBuffers initialValue() {
+			return new DecodeBuffers();
+		}
+	};
+	
+	/**
+	 * 每个线程复用的解码缓冲区
+	 */
+	private static final class DecodeBuffers {
+		
+		final byte[] bytes = new byte[8 * 1024];
+		
+		final ByteBuffer byteBuffer = ByteBuffer.wrap(bytes);
+		
+		final CharBuffer charBuffer = CharBuffer.allocate(8 * 1024);
+		
+		boolean inUse;
+		
+		private CharsetDecoder mDecoder;
+		
+		//获取指定字符集的解码器,与上一次的字符集相同时复用
+		CharsetDecoder getDecoder(Charset charset) {
+			if(mDecoder == null || !mDecoder.charset().equals(charset)) {
+				mDecoder = charset.newDecoder()
+						.onMalformedInput(CodingErrorAction.REPLACE)
+						.onUnmappableCharacter(CodingErrorAction.REPLACE);
+			} else {
+				mDecoder.reset();
+			}
+			return mDecoder;
+		}
+	}
+	
+	/**
+	 * 复制文件，目标文件已存在时会被覆盖，目标目录不存在时自动创建
+	 * 
+	 * @param src 源文件路径
+	 * @param dst 目标文件路径
+	 * @return 复制成功返回true，失败返回false
+	 */
+	public static boolean copyFile(String src, String dst) {
+		if(TextUtils.isEmpty(src) || TextUtils.isEmpty(dst)) {
+			return false;
+		}
+		return copyFile(new File(src), new File(dst), null);
+	}
+	
+	/**
+	 * <p>
+	 * 	复制文件，目标文件已存在时会被覆盖，目标目录不存在时自动创建
+	 * </p>
+	 * <p>
+	 * 	通过FileChannel.transferTo()在内核中直接传输数据，不经过Java堆，
+	 *  transferTo()无法传输时改为将源文件映射到内存后写入。复制失败或者被取消时会删除目标文件。
+	 *  源文件和目标文件的规范路径相同(包括通过符号链接指向同一个文件)时不复制并返回false。
+	 * </p>
+	 * 
+	 * @param src 源文件
+	 * @param dst 目标文件
+	 * @param listener 进度监听器，可以为null
+	 * @return 复制成功返回true，失败或者被取消返回false
+	 */
+	public static boolean copyFile(File src, File dst, OnProgressListener listener) {
+		if(src == null || dst == null || !src.isFile()) {
+			return false;
+		}
+		//打开输出流会截断目标文件，必须在此之前排除源文件本身
+		try {
+			if(src.getCanonicalFile().equals(dst.getCanonicalFile())) {
+				L.e(TAG, "can't copy " + src + " to itself");
+				return false;
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+			return false;
+		}
+		File parent = dst.getAbsoluteFile().getParentFile();
+		if(parent != null && !parent.exists() && !parent.mkdirs()) {
+			return false;
+		}
+		FileInputStream fis = null;
+		FileOutputStream fos = null;
+		boolean success = false;
+		try {
+			fis = new FileInputStream(src);
+			fos = new FileOutputStream(dst);
+			FileChannel in = fis.getChannel();
+			FileChannel out = fos.getChannel();
+			long total = in.size();
+			long position = 0;
+			while(position < total) {
+				long count = Math.min(TRANSFER_CHUNK_SIZE, total - position);
+				long transferred = in.transferTo(position, count, out);
+				if(transferred <= 0) {
+					//部分平台或文件系统不支持transferTo(),映射该段后写入
+					MappedByteBuffer mapped = in.map(FileChannel.MapMode.READ_ONLY, position, count);
+					while(mapped.hasRemaining()) {
+						out.write(mapped);
+					}
+					transferred = count;
+				}
+				position += transferred;
+				if(listener != null && !listener.onProgress(position, total)) {
+					return false;
+				}
+			}
+			success = true;
+			return true;
+		} catch (IOException e) {
+			e.printStackTrace();
+			return false;
+		} finally {
+			close(fis);
+			if(!close(fos)) {
+				success = false;
+			}
+			if(!success) {
+				dst.delete();
+			}
+		}
+	}
+	
+	/**
+	 * 移动文件，目标文件已存在时会被覆盖
+	 * 
+	 * @param src 源文件路径
+	 * @param dst 目标文件路径
+	 * @return 移动成功返回true，失败返回false
+	 */
+	public static boolean moveFile(String src, String dst) {
+		if(TextUtils.isEmpty(src) || TextUtils.isEmpty(dst)) {
+			return false;
+		}
+		return moveFile(new File(src), new File(dst), null);
+	}
+	
+	/**
+	 * 移动文件，目标文件已存在时会被覆盖。源文件和目标文件在同一个文件系统中时直接重命名，
+	 * 否则先复制再删除源文件
+	 * 
+	 * @param src 源文件
+	 * @param dst 目标文件
+	 * @param listener 进度监听器，只在需要复制时回调，可以为null
+	 * @return 移动成功返回true，失败或者被取消返回false，失败时源文件保持不变
+	 */
+	public static boolean moveFile(File src, File dst, OnProgressListener listener) {
+		if(src == null || dst == null || !src.isFile()) {
+			return false;
+		}
+		File parent = dst.getAbsoluteFile().getParentFile();
+		if(parent != null && !parent.exists()) {
+			parent.mkdirs();
+		}
+		if(src.renameTo(dst)) {
+			return true;
+		}
+		if(!copyFile(src, dst, listener)) {
+			return false;
+		}
+		if(!src.delete()) {
+			L.e(TAG, "failed to delete " + src + " after copying");
+		}
+		return true;
+	}
+	
+	/**
+	 * <p>
+	 * 	将输入流的内容全部写入输出流，不会关闭这两个流
+	 * </p>
+	 * <p>
+	 * 	两个流都是文件流时通过FileChannel直接传输，否则使用缓冲池中的缓冲区复制，
+	 *  不会为每次复制分配新的缓冲区。
+	 * </p>
+	 * 
+	 * @param is 输入流
+	 * @param os 输出流
+	 * @param total 总字节数，用于进度回调，未知时传-1
+	 * @param listener 进度监听器，可以为null
+	 * @return 返回传输的字节数，失败或者被取消返回-1
+	 */
+	public static long transfer(InputStream is, OutputStream os, long total, OnProgressListener listener) {
+		if(is == null || os == null) {
+			return -1;
+		}
+		try {
+			if(is instanceof FileInputStream && os instanceof FileOutputStream) {
+				return transfer(((FileInputStream) is).getChannel(), ((FileOutputStream) os).getChannel(), total, listener);
+			}
+			byte[] buffer = obtainBuffer();
+			try {
+				long transferred = 0;
+				int length;
+				while((length = is.read(buffer)) != -1) {
+					os.write(buffer, 0, length);
+					transferred += length;
+					if(listener != null && !listener.onProgress(transferred, total)) {
+						return -1;
+					}
+				}
+				return transferred;
+			} finally {
+				recycleBuffer(buffer);
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+			return -1;
+		}
+	}
+	
+	//从输入通道的当前位置传输到结尾
+	private static long transfer(FileChannel in, FileChannel out, long total, OnProgressListener listener) throws IOException {
+		long start = in.position();
+		long size = in.size();
+		if(total < 0) {
+			total = size - start;
+		}
+		long position = start;
+		while(position < size) {
+			long transferred = in.transferTo(position, Math.min(TRANSFER_CHUNK_SIZE, size - position), out);
+			if(transferred <= 0) {
+				break;
+			}
+			position += transferred;
+			if(listener != null && !listener.onProgress(position - start, total)) {
+				in.position(position);
+				return -1;
+			}
+		}
+		in.position(position);
+		if(position < size) {
+			//transferTo()无法继续传输,剩余部分通过缓冲区复制
+			byte[] buffer = obtainBuffer();
+			try {
+				ByteBuffer wrapped = ByteBuffer.wrap(buffer);
+				int length;
+				while((length = in.read(wrapped)) != -1) {
+					wrapped.flip();
+					while(wrapped.hasRemaining()) {
+						out.write(wrapped);
+					}
+					wrapped.clear();
+					position += length;
+					if(listener != null && !listener.onProgress(position - start, total)) {
+						return -1;
+					}
+				}
+			} finally {
+				recycleBuffer(buffer);
+			}
+		}
+		return position - start;
+	}
+	
+	//从缓冲池中获取缓冲区,缓冲池为空时分配新的缓冲区
+	static byte[] obtainBuffer() {
+		byte[] buffer = sBufferPool.poll();
+		return buffer != null ? buffer : new byte[BUFFER_SIZE];
+	}
+	
+	//将缓冲区放回缓冲池,缓冲池已满时丢弃
+	static void recycleBuffer(byte[] buffer) {
+		if(sBufferPool.size() < MAX_POOLED_BUFFERS) {
+			sBufferPool.offer(buffer);
+		}
+	}
+	
+	/**
+	 * <p>
+	 * 	字节数组输出流,用来代替ByteArrayOutputStream
+	 * </p>
+	 * <p>
+	 * 	写满一段后从缓冲池中获取新的一段,扩容时不复制已经写入的数据.取出结果时最多复制一次:
+	 *  只有一段且正好写满时(例如按已知的总长度指定了初始容量){@link #toByteArray()}直接返回内部数组;
+	 *  {@link #array()}和{@link #asByteBuffer()}在只有一段时直接返回内部数组;
+	 *  {@link #writeTo(OutputStream)}、{@link #writeTo(WritableByteChannel)}和{@link #asInputStream()}逐段读取,不需要合并.
+	 * </p>
+	 * <p>
+	 * 	使用完后调用{@link #close()}将缓冲区放回缓冲池.不是线程安全的.
+	 * </p>
+	 * 
+	 * @author mao
+	 * */
+	public static final class ByteArrayBuilder extends OutputStream {
+		
+		private static final byte[] EMPTY = new byte[0];
+		
+		private final ArrayList<byte[]> mSegments = new ArrayList<byte[]>(4);
+		
+		/** 除第一段外的各段都来自缓冲池 */
+		private boolean mFirstPooled;
+		
+		/** 第一段已经交给调用者,不能再写入或者放回缓冲池 */
+		private boolean mShared;
+		
+		private byte[] mCurrent;
+		
+		/** 最后一段中已写入的字节数 */
+		private int mCurrentCount;
+		
+		private int mCount;
+		
+		/**
+		 * 从缓冲池中获取第一段
+		 */
+		public ByteArrayBuilder() {
+			this(0);
+		}
+		
+		/**
+		 * @param capacity 初始容量,知道总长度时传入总长度;小于等于0时从缓冲池中获取第一段
+		 */
+		public ByteArrayBuilder(int capacity) {
+			if(capacity > 0) {
+				mCurrent = new byte[capacity];
+			} else {
+				mCurrent = obtainBuffer();
+				mFirstPooled = true;
+			}
+			mSegments.add(mCurrent);
+		}
+		
+		@Override
+		public void write(int b) {
+			if(mCurrentCount == mCurrent.length) {
+				nextSegment();
+			}
+			mCurrent[mCurrentCount++] = (byte) b;
+			mCount++;
+		}
+		
+		@Override
+		public void write(byte[] b, int off, int len) {
+			if(off < 0 || len < 0 || off > b.length - len) {
+				throw new IndexOutOfBoundsException();
+			}
+			while(len > 0) {
+				if(mCurrentCount == mCurrent.length) {
+					nextSegment();
+				}
+				int n = Math.min(len, mCurrent.length - mCurrentCount);
+				System.arraycopy(b, off, mCurrent, mCurrentCount, n);
+				mCurrentCount += n;
+				mCount += n;
+				off += n;
+				len -= n;
+			}
+		}
+		
+		/**
+		 * 从输入流中读取到结尾,数据直接读入内部数组,不会关闭输入流
+		 * 
+		 * @param is 输入流
+		 * @return 返回读取的字节数
+		 * @throws IOException
+		 */
+		public long readFrom(InputStream is) throws IOException {
+			long total = 0;
+			while(true) {
+				if(mCurrentCount == mCurrent.length) {
+					//先读一个字节确认还有数据,正好写满时不用再获取新的一段
+					int b = is.read();
+					if(b == -1) {
+						return total;
+					}
+					write(b);
+					total++;
+				}
+				int n = is.read(mCurrent, mCurrentCount, mCurrent.length - mCurrentCount);
+				if(n == -1) {
+					return total;
+				}
+				mCurrentCount += n;
+				mCount += n;
+				total += n;
+			}
+		}
+		
+		private void nextSegment() {
+			mCurrent = obtainBuffer();
+			mSegments.add(mCurrent);
+			mCurrentCount = 0;
+		}
+		
+		/**
+		 * 获取已写入的字节数
+		 * 
+		 * @return 返回字节数
+		 */
+		public int size() {
+			return mCount;
+		}
+		
+		/**
+		 * 获取长度正好为{@link #size()}的字节数组,只有一段且正好写满时直接返回内部数组
+		 * 
+		 * @return 返回字节数组
+		 */
+		public byte[] toByteArray() {
+			byte[] data = merge();
+			if(data.length == mCount) {
+				mShared = true;
+				return data;
+			}
+			return Arrays.copyOf(data, mCount);
+		}
+		
+		/**
+		 * 获取内部数组,有效数据为前{@link #size()}个字节.有多段时先合并为一段
+		 * 
+		 * @return 返回内部数组,长度可能大于{@link #size()}
+		 */
+		public byte[] array() {
+			byte[] data = merge();
+			mShared = true;
+			return data;
+		}
+		
+		/**
+		 * 获取包装内部数组的ByteBuffer,position为0,limit为{@link #size()}
+		 * 
+		 * @return 返回ByteBuffer
+		 * @see #array()
+		 */
+		public ByteBuffer asByteBuffer() {
+			return ByteBuffer.wrap(array(), 0, mCount);
+		}
+		
+		/**
+		 * 获取逐段读取已写入数据的输入流,不合并也不复制,内部数组仍然可以放回缓冲池.
+		 * 读取完成前不能再写入、重置或者关闭
+		 * 
+		 * @return 返回输入流
+		 */
+		public InputStream asInputStream() {
+			return new SegmentInputStream(mSegments.toArray(new byte[mSegments.size()][]), mCurrentCount);
+		}
+		
+		/**
+		 * 逐段写入输出流
+		 * 
+		 * @param os 输出流
+		 * @throws IOException
+		 */
+		public void writeTo(OutputStream os) throws IOException {
+			int last = mSegments.size() - 1;
+			for(int i = 0; i <= last; i++) {
+				os.write(mSegments.get(i), 0, i == last ? mCurrentCount : mSegments.get(i).length);
+			}
+		}
+		
+		/**
+		 * 逐段写入通道,例如FileChannel、SocketChannel
+		 * 
+		 * @param channel 通道
+		 * @throws IOException
+		 */
+		public void writeTo(WritableByteChannel channel) throws IOException {
+			int last = mSegments.size() - 1;
+			for(int i = 0; i <= last; i++) {
+				ByteBuffer buffer = ByteBuffer.wrap(mSegments.get(i), 0, i == last ? mCurrentCount : mSegments.get(i).length);
+				while(buffer.hasRemaining()) {
+					channel.write(buffer);
+				}
+			}
+		}
+		
+		/**
+		 * 清空已写入的数据,保留第一段(已经交给调用者时除外)
+		 */
+		public void reset() {
+			byte[] first = mSegments.get(0);
+			boolean keepFirst = first != EMPTY && !mShared;
+			releaseSegments(!keepFirst);
+			if(!keepFirst) {
+				first = obtainBuffer();
+				mFirstPooled = true;
+				mShared = false;
+			}
+			mSegments.add(first);
+			mCurrent = first;
+		}
+		
+		/**
+		 * 将缓冲区放回缓冲池.之后仍然可以写入,相当于重新创建
+		 */
+		@Override
+		public void close() {
+			releaseSegments(true);
+			mSegments.add(EMPTY);
+			mCurrent = EMPTY;
+			mFirstPooled = false;
+			mShared = false;
+		}
+		
+		//清空所有段并放回缓冲池,releaseFirst为false时不放回第一段
+		private void releaseSegments(boolean releaseFirst) {
+			for(int i = mSegments.size() - 1; i > 0; i--) {
+				recycleBuffer(mSegments.get(i));
+			}
+			if(releaseFirst && mFirstPooled && !mShared) {
+				recycleBuffer(mSegments.get(0));
+			}
+			mSegments.clear();
+			mCurrentCount = 0;
+			mCount = 0;
+		}
+		
+		/**
+		 * 按顺序读取各段的输入流,最后一段只读取前lastCount个字节
+		 */
+		private static final class SegmentInputStream extends InputStream {
+			
+			private final byte[][] mSegments;
+			
+			private final int mLastCount;
+			
+			private int mIndex;
+			
+			private int mPosition;
+			
+			SegmentInputStream(byte[][] segments, int lastCount) {
+				mSegments = segments;
+				mLastCount = lastCount;
+			}
+			
+			//当前段的有效长度
+			private int limit() {
+				return mIndex == mSegments.length - 1 ? mLastCount : mSegments[mIndex].length;
+			}
+			
+			//当前段读完时移到下一段,没有数据时返回false
+			private boolean ensure() {
+				while(mPosition == limit()) {
+					if(mIndex == mSegments.length - 1) {
+						return false;
+					}
+					mIndex++;
+					mPosition = 0;
+				}
+				return true;
+			}
+			
+			@Override
+			public int read() {
+				return ensure() ? mSegments[mIndex][mPosition++] & 0xff : -1;
+			}
+			
+			@Override
+			public int read(byte[] b, int off, int len) {
+				if(off < 0 || len < 0 || off > b.length - len) {
+					throw new IndexOutOfBoundsException();
+				}
+				if(len == 0) {
+					return 0;
+				}
+				if(!ensure()) {
+					return -1;
+				}
+				int n = Math.min(len, limit() - mPosition);
+				System.arraycopy(mSegments[mIndex], mPosition, b, off, n);
+				mPosition += n;
+				return n;
+			}
+			
+			@Override
+			public int available() {
+				int available = limit() - mPosition;
+				for(int i = mIndex + 1; i < mSegments.length; i++) {
+					available += i == mSegments.length - 1 ? mLastCount : mSegments[i].length;
+				}
+				return available;
+			}
+		}
+		
+		//合并为长度正好为mCount的一段
+		private byte[] merge() {
+			if(mSegments.size() == 1) {
+				return mSegments.get(0);
+			}
+			byte[] data = new byte[mCount];
+			int position = 0;
+			int last = mSegments.size() - 1;
+			for(int i = 0; i <= last; i++) {
+				byte[] segment = mSegments.get(i);
+				int length = i == last ? mCurrentCount : segment.length;
+				System.arraycopy(segment, 0, data, position, length);
+				position += length;
+			}
+			int count = mCount;
+			releaseSegments(true);
+			mSegments.add(data);
+			mCurrent = data;
+			mCurrentCount = count;
+			mCount = count;
+			mFirstPooled = false;
+			mShared = false;
+			return data;
 		}
 	}
 }
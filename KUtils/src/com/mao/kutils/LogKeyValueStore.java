@@ -0,0 +1,569 @@
+package com.mao.kutils;
+
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.zip.CRC32;
+
+/**
+ * <p>
+ * 	只追加写的日志结构键值存储
+ * </p>
+ * <p>
+ * 	每次写入只在文件末尾追加一条包含本次所有修改的记录,写入开销与记录大小成正比而与文件大小无关.
+ *  打开时通过内存映射顺序回放所有记录重建内存中的键值对,遇到长度或CRC校验不正确的记录
+ *  (例如写入过程中进程崩溃)时截断文件到最后一条完整记录.当失效记录过多时在后台线程中压缩,
+ *  压缩结果先写到临时文件再重命名,因此压缩过程中崩溃也不会丢失数据.
+ * </p>
+ * <p>
+ * 	支持的值类型与SharedPreferences一致:Boolean、Float、Integer、Long、String以及Set&lt;String&gt;.
+ *  该类只依赖java标准库,可以直接在JVM上使用和测试.
+ * </p>
+ *
+ * @author mao
+ * */
+public class LogKeyValueStore implements Closeable {
+
+	/** 文件头,"KVL1" */
+	private final static int MAGIC = 0x4B564C31;
+
+	private final static int FILE_HEADER_SIZE = 4;
+
+	/** 记录头:4字节长度 + 4字节CRC32 */
+	private final static int RECORD_HEADER_SIZE = 8;
+
+	/** 单条记录的最大长度,超出视为损坏 */
+	private final static int MAX_RECORD_SIZE = 16 * 1024 * 1024;
+
+	/** 压缩时每条记录包含的键值对数量 */
+	private final static int COMPACT_BATCH_SIZE = 256;
+
+	/** 文件中的操作数不少于该值才考虑压缩 */
+	private final static int MIN_COMPACT_OPS = 256;
+
+	private final static String COMPACT_SUFFIX = ".compact";
+
+	private final static byte TYPE_REMOVE = 0;
+	private final static byte TYPE_BOOLEAN = 1;
+	private final static byte TYPE_FLOAT = 2;
+	private final static byte TYPE_INT = 3;
+	private final static byte TYPE_LONG = 4;
+	private final static byte TYPE_STRING = 5;
+	private final static byte TYPE_STRING_SET = 6;
+	private final static byte TYPE_CLEAR = 7;
+
+	private final static Charset UTF_8 = Charset.forName("UTF-8");
+
+	/** 所有存储共用的后台压缩线程 */
+	private final static ExecutorService sCompactExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread t = new Thread(r, "LogKeyValueStore-compact");
+			t.setDaemon(true);
+			return t;
+		}
+	});
+
+	private final File mFile;
+
+	private RandomAccessFile mRaf;
+
+	private FileChannel mChannel;
+
+	/** 最后一条完整记录的结束位置 */
+	private long mEnd;
+
+	/** 文件中的操作数,包括已被覆盖的 */
+	private long mOpCount;
+
+	private final HashMap<String, Object> mValues = new HashMap<String, Object>();
+
+	/** 保证同一时间只有一个压缩在进行 */
+	private final Object mCompactLock = new Object();
+
+	private boolean mCompacting;
+
+	private boolean mClosed;
+
+	private LogKeyValueStore(File file) {
+		mFile = file;
+	}
+
+	/**
+	 * 打开指定的存储文件,文件不存在时自动创建
+	 *
+	 * @param file 存储文件
+	 * @return 返回打开的存储
+	 * @throws IOException 文件无法读写或者不是该格式的文件
+	 */
+	public static LogKeyValueStore open(File file) throws IOException {
+		if(file == null) {
+			throw new IllegalArgumentException("file can't be null");
+		}
+		LogKeyValueStore store = new LogKeyValueStore(file);
+		store.load();
+		return store;
+	}
+
+	/**
+	 * 获取指定键的值
+	 *
+	 * @param key 键
+	 * @return 存在返回相应的值,否则返回null
+	 */
+	public synchronized Object get(String key) {
+		return mValues.get(key);
+	}
+
+	/**
+	 * 判断是否包含指定的键
+	 *
+	 * @param key 键
+	 * @return 包含返回true,否则返回false
+	 */
+	public synchronized boolean contains(String key) {
+		return mValues.containsKey(key);
+	}
+
+	/**
+	 * 获取所有键值对
+	 *
+	 * @return 返回所有键值对的副本
+	 */
+	public synchronized Map<String, Object> getAll() {
+		return new HashMap<String, Object>(mValues);
+	}
+
+	/**
+	 * 以一条记录原子地写入一组修改
+	 *
+	 * @param changes 要写入的键值对,值为null表示移除该键
+	 * @param clear 是否在应用changes之前先清空所有键值对
+	 * @param sync 是否在返回前将记录同步到磁盘
+	 * @throws IOException 写入失败,此时内存和文件中的内容都不会改变
+	 */
+	public synchronized void write(Map<String, ?> changes, boolean clear, boolean sync) throws IOException {
+		checkOpen();
+		if(!clear && (changes == null || changes.isEmpty())) {
+			return;
+		}
+		List<Object> ops = new ArrayList<Object>();
+		if(clear) {
+			ops.add(null);
+		}
+		if(changes != null) {
+			for(Map.Entry<String, ?> entry : changes.entrySet()) {
+				ops.add(entry.getKey());
+				ops.add(copyValue(entry.getValue()));
+			}
+		}
+		append(ops, sync);
+		if(clear) {
+			mValues.clear();
+		}
+		if(changes != null) {
+			for(int i = clear ? 1 : 0; i < ops.size(); i += 2) {
+				String key = (String) ops.get(i);
+				Object value = ops.get(i + 1);
+				if(value == null) {
+					mValues.remove(key);
+				} else {
+					mValues.put(key, value);
+				}
+			}
+		}
+		mOpCount += (changes == null ? 0 : changes.size()) + (clear ? 1 : 0);
+		scheduleCompactionIfNeeded();
+	}
+
+	/**
+	 * 将文件重写为只包含当前键值对的记录.压缩期间仍然可以读写,期间追加的记录会被复制到新文件.
+	 *
+	 * @throws IOException 压缩失败,原文件不受影响
+	 */
+	public void compact() throws IOException {
+		synchronized (mCompactLock) {
+			compactLocked();
+		}
+	}
+
+	private void compactLocked() throws IOException {
+		Map<String, Object> snapshot;
+		long snapshotEnd;
+		long snapshotOps;
+		synchronized (this) {
+			checkOpen();
+			snapshot = new HashMap<String, Object>(mValues);
+			snapshotEnd = mEnd;
+			snapshotOps = mOpCount;
+		}
+		File tmp = new File(mFile.getPath() + COMPACT_SUFFIX);
+		RandomAccessFile out = new RandomAccessFile(tmp, "rw");
+		try {
+			FileChannel channel = out.getChannel();
+			channel.truncate(0);
+			writeFully(channel, fileHeader(), 0);
+			long position = FILE_HEADER_SIZE;
+			List<Object> ops = new ArrayList<Object>(COMPACT_BATCH_SIZE * 2);
+			Iterator<Map.Entry<String, Object>> it = snapshot.entrySet().iterator();
+			while(it.hasNext()) {
+				Map.Entry<String, Object> entry = it.next();
+				ops.add(entry.getKey());
+				ops.add(entry.getValue());
+				if(ops.size() >= COMPACT_BATCH_SIZE * 2 || !it.hasNext()) {
+					ByteBuffer record = encode(ops);
+					writeFully(channel, record, position);
+					position += record.limit();
+					ops.clear();
+				}
+			}
+			synchronized (this) {
+				checkOpen();
+				//复制压缩期间追加的记录
+				long tail = mEnd - snapshotEnd;
+				long copied = 0;
+				while(copied < tail) {
+					copied += mChannel.transferTo(snapshotEnd + copied, tail - copied, channel.position(position + copied));
+				}
+				channel.force(false);
+				out.close();
+				if(!tmp.renameTo(mFile)) {
+					throw new IOException("rename " + tmp + " failed");
+				}
+				IoUtils.close(mRaf);
+				try {
+					openChannel();
+				} catch (IOException e) {
+					mClosed = true;
+					throw e;
+				}
+				mEnd = position + tail;
+				mOpCount = snapshot.size() + (mOpCount - snapshotOps);
+			}
+		} finally {
+			IoUtils.close(out);
+			if(tmp.exists()) {
+				tmp.delete();
+			}
+		}
+	}
+
+	/**
+	 * 关闭存储,关闭后不能再读写
+	 */
+	@Override
+	public synchronized void close() {
+		if(!mClosed) {
+			mClosed = true;
+			IoUtils.close(mRaf);
+		}
+	}
+
+	/**
+	 * 获取文件中的有效数据长度
+	 *
+	 * @return 返回最后一条完整记录的结束位置
+	 */
+	public synchronized long getLogSize() {
+		return mEnd;
+	}
+
+	private void load() throws IOException {
+		File parent = mFile.getParentFile();
+		if(parent != null && !parent.exists()) {
+			parent.mkdirs();
+		}
+		//重命名是原子的,残留的临时文件说明上次压缩没有完成,原文件仍然完整
+		File tmp = new File(mFile.getPath() + COMPACT_SUFFIX);
+		if(tmp.exists()) {
+			tmp.delete();
+		}
+		openChannel();
+		long size = mChannel.size();
+		if(size < FILE_HEADER_SIZE) {
+			mChannel.truncate(0);
+			writeFully(mChannel, fileHeader(), 0);
+			mChannel.force(false);
+			mEnd = FILE_HEADER_SIZE;
+			return;
+		}
+		try {
+			mEnd = replay(mChannel.map(FileChannel.MapMode.READ_ONLY, 0, size));
+		} catch (IOException e) {
+			IoUtils.close(mRaf);
+			throw e;
+		}
+		if(mEnd < size) {
+			//丢弃不完整的记录
+			mChannel.truncate(mEnd);
+			mChannel.force(false);
+		}
+	}
+
+	private void openChannel() throws IOException {
+		mRaf = new RandomAccessFile(mFile, "rw");
+		mChannel = mRaf.getChannel();
+	}
+
+	//回放所有完整的记录,返回最后一条完整记录的结束位置
+	private long replay(MappedByteBuffer buffer) throws IOException {
+		if(buffer.getInt() != MAGIC) {
+			throw new IOException(mFile + " is not a log store file");
+		}
+		CRC32 crc = new CRC32();
+		byte[] payload = new byte[256];
+		long end = buffer.position();
+		while(buffer.remaining() >= RECORD_HEADER_SIZE) {
+			int length = buffer.getInt();
+			int checksum = buffer.getInt();
+			if(length < 0 || length > MAX_RECORD_SIZE || length > buffer.remaining()) {
+				break;
+			}
+			if(payload.length < length) {
+				payload = new byte[Math.max(length, payload.length * 2)];
+			}
+			buffer.get(payload, 0, length);
+			crc.reset();
+			crc.update(payload, 0, length);
+			if((int) crc.getValue() != checksum) {
+				break;
+			}
+			try {
+				replayRecord(ByteBuffer.wrap(payload, 0, length));
+			} catch (RuntimeException e) {
+				//校验通过但无法解析,按损坏处理
+				break;
+			}
+			end = buffer.position();
+		}
+		return end;
+	}
+
+	private void replayRecord(ByteBuffer record) {
+		int count = record.getInt();
+		//先完整解析再应用,保证记录的原子性
+		List<Object> ops = new ArrayList<Object>(count * 2);
+		boolean clear = false;
+		for(int i = 0; i < count; i++) {
+			byte type = record.get();
+			if(type == TYPE_CLEAR) {
+				clear = true;
+				ops.clear();
+				continue;
+			}
+			ops.add(readString(record));
+			ops.add(readValue(type, record));
+		}
+		if(clear) {
+			mValues.clear();
+		}
+		for(int i = 0; i < ops.size(); i += 2) {
+			Object value = ops.get(i + 1);
+			if(value == null) {
+				mValues.remove(ops.get(i));
+			} else {
+				mValues.put((String) ops.get(i), value);
+			}
+		}
+		mOpCount += count;
+	}
+
+	private static Object readValue(byte type, ByteBuffer record) {
+		switch (type) {
+		case TYPE_REMOVE:
+			return null;
+		case TYPE_BOOLEAN:
+			return record.get() != 0;
+		case TYPE_FLOAT:
+			return record.getFloat();
+		case TYPE_INT:
+			return record.getInt();
+		case TYPE_LONG:
+			return record.getLong();
+		case TYPE_STRING:
+			return readString(record);
+		case TYPE_STRING_SET:
+			int size = record.getInt();
+			Set<String> set = new HashSet<String>(size * 4 / 3 + 1);
+			for(int i = 0; i < size; i++) {
+				set.add(readString(record));
+			}
+			return Collections.unmodifiableSet(set);
+		default:
+			throw new IllegalStateException("unknown type " + type);
+		}
+	}
+
+	private static String readString(ByteBuffer record) {
+		int length = record.getInt();
+		String s = new String(record.array(), record.arrayOffset() + record.position(), length, UTF_8);
+		record.position(record.position() + length);
+		return s;
+	}
+
+	//追加一条记录,失败时截断到追加前的位置
+	private void append(List<Object> ops, boolean sync) throws IOException {
+		ByteBuffer record = encode(ops);
+		try {
+			writeFully(mChannel, record, mEnd);
+			if(sync) {
+				mChannel.force(false);
+			}
+		} catch (IOException e) {
+			try {
+				mChannel.truncate(mEnd);
+			} catch (IOException ignored) {
+				//下次打开时会通过CRC丢弃这条不完整的记录
+			}
+			throw e;
+		}
+		mEnd += record.limit();
+	}
+
+	//ops中依次为键和值,键为null表示清空.记录格式为:长度、CRC32、操作数、操作,长度和CRC32均不包括记录头
+	@SuppressWarnings("unchecked")
+	private static ByteBuffer encode(List<Object> ops) throws IOException {
+		IoUtils.ByteArrayBuilder baos = new IoUtils.ByteArrayBuilder(64);
+		DataOutputStream out = new DataOutputStream(baos);
+		out.writeInt(0);
+		out.writeInt(0);
+		out.writeInt(0);
+		int count = 0;
+		for(int i = 0; i < ops.size(); i++) {
+			String key = (String) ops.get(i);
+			count++;
+			if(key == null) {
+				out.writeByte(TYPE_CLEAR);
+				continue;
+			}
+			Object value = ops.get(++i);
+			if(value == null) {
+				out.writeByte(TYPE_REMOVE);
+				writeString(out, key);
+			} else if(value instanceof Boolean) {
+				out.writeByte(TYPE_BOOLEAN);
+				writeString(out, key);
+				out.writeBoolean((Boolean) value);
+			} else if(value instanceof Float) {
+				out.writeByte(TYPE_FLOAT);
+				writeString(out, key);
+				out.writeFloat((Float) value);
+			} else if(value instanceof Integer) {
+				out.writeByte(TYPE_INT);
+				writeString(out, key);
+				out.writeInt((Integer) value);
+			} else if(value instanceof Long) {
+				out.writeByte(TYPE_LONG);
+				writeString(out, key);
+				out.writeLong((Long) value);
+			} else if(value instanceof String) {
+				out.writeByte(TYPE_STRING);
+				writeString(out, key);
+				writeString(out, (String) value);
+			} else {
+				Set<String> set = (Set<String>) value;
+				out.writeByte(TYPE_STRING_SET);
+				writeString(out, key);
+				out.writeInt(set.size());
+				for(String s : set) {
+					writeString(out, s);
+				}
+			}
+		}
+		out.flush();
+		ByteBuffer record = baos.asByteBuffer();
+		int length = record.limit() - RECORD_HEADER_SIZE;
+		if(length > MAX_RECORD_SIZE) {
+			throw new IOException("record too large: " + length);
+		}
+		record.putInt(RECORD_HEADER_SIZE, count);
+		CRC32 crc = new CRC32();
+		crc.update(record.array(), RECORD_HEADER_SIZE, length);
+		record.putInt(0, length);
+		record.putInt(4, (int) crc.getValue());
+		return record;
+	}
+
+	private static void writeString(DataOutputStream out, String s) throws IOException {
+		byte[] data = s.getBytes(UTF_8);
+		out.writeInt(data.length);
+		out.write(data);
+	}
+
+	//检查并复制值,Set会被复制为不可修改的副本
+	@SuppressWarnings("unchecked")
+	private static Object copyValue(Object value) {
+		if(value == null || value instanceof Boolean || value instanceof Float
+				|| value instanceof Integer || value instanceof Long || value instanceof String) {
+			return value;
+		}
+		if(value instanceof Set) {
+			Set<String> set = new HashSet<String>((Set<String>) value);
+			return Collections.unmodifiableSet(set);
+		}
+		throw new IllegalArgumentException("unsupported value type " + value.getClass().getName());
+	}
+
+	private static ByteBuffer fileHeader() {
+		ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_SIZE);
+		header.putInt(0, MAGIC);
+		return header;
+	}
+
+	private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+		while(buffer.hasRemaining()) {
+			position += channel.write(buffer, position);
+		}
+	}
+
+	private void checkOpen() throws IOException {
+		if(mClosed) {
+			throw new IOException("store " + mFile + " is closed");
+		}
+	}
+
+	private void scheduleCompactionIfNeeded() {
+		if(mCompacting || mOpCount < MIN_COMPACT_OPS || mOpCount <= 2L * mValues.size()) {
+			return;
+		}
+		mCompacting = true;
+		sCompactExecutor.execute(new Runnable() {
+
+			@Override
+			public void run() {
+				try {
+					compact();
+				} catch (IOException e) {
+					//压缩期间存储被关闭时不需要报告
+					synchronized (LogKeyValueStore.this) {
+						if(!mClosed) {
+							e.printStackTrace();
+						}
+					}
+				} finally {
+					synchronized (LogKeyValueStore.this) {
+						mCompacting = false;
+					}
+				}
+			}
+		});
+	}
+}
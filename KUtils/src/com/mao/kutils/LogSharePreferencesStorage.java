@@ -0,0 +1,69 @@
+package com.mao.kutils;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+/**
+ * <p>
+ * 	基于{@link LogKeyValueStore}的SharePreferences存储后端
+ * </p>
+ * <p>
+ * 	每个SharePreferences文件对应一个只追加写的日志文件,每次提交只追加本次修改的记录,
+ *  而XML实现每次提交都要重写整个文件.日志文件总是私有的,mode参数会被忽略.
+ *  注意该后端不会迁移已经保存在XML文件中的数据.
+ * </p>
+ *
+ * @author mao
+ * */
+public class LogSharePreferencesStorage implements SharePreferencesStorage {
+
+	private final static String DEFAULT_DIR_NAME = "kvprefs";
+
+	private final static String FILE_SUFFIX = ".kvlog";
+
+	/** 日志文件所在目录,为null时使用应用files目录下的kvprefs目录 */
+	private final File mDir;
+
+	private final Map<String, LogSharedPreferences> mOpened = new HashMap<String, LogSharedPreferences>();
+
+	/**
+	 * 使用应用files目录下的kvprefs目录保存日志文件
+	 */
+	public LogSharePreferencesStorage() {
+		this(null);
+	}
+
+	/**
+	 * 使用指定目录保存日志文件
+	 *
+	 * @param dir 日志文件所在目录,为null时使用应用files目录下的kvprefs目录
+	 */
+	public LogSharePreferencesStorage(File dir) {
+		mDir = dir;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 *
+	 * @throws IllegalStateException 日志文件无法打开
+	 */
+	@Override
+	public synchronized SharedPreferences getSharedPreferences(Context context, String name, int mode) {
+		LogSharedPreferences sp = mOpened.get(name);
+		if(sp == null) {
+			File dir = mDir != null ? mDir : new File(context.getFilesDir(), DEFAULT_DIR_NAME);
+			try {
+				sp = new LogSharedPreferences(LogKeyValueStore.open(new File(dir, name + FILE_SUFFIX)));
+			} catch (IOException e) {
+				throw new IllegalStateException("can't open log store for " + name, e);
+			}
+			mOpened.put(name, sp);
+		}
+		return sp;
+	}
+}
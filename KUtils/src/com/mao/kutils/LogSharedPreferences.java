@@ -0,0 +1,232 @@
+package com.mao.kutils;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+import android.content.SharedPreferences;
+import android.os.Handler;
+import android.os.Looper;
+
+/**
+ * <p>
+ * 	将{@link LogKeyValueStore}适配为SharedPreferences
+ * </p>
+ * <p>
+ * 	commit()在返回前将记录同步到磁盘,apply()只追加记录不等待同步.与系统实现一致,
+ *  监听器以弱引用保存并在主线程回调.
+ * </p>
+ *
+ * @author mao
+ * */
+final class LogSharedPreferences implements SharedPreferences {
+
+	private final static String TAG = "LogSharedPreferences";
+
+	private final static Object CONTENT = new Object();
+
+	private final LogKeyValueStore mStore;
+
+	private final WeakHashMap<OnSharedPreferenceChangeListener, Object> mListeners
+			= new WeakHashMap<OnSharedPreferenceChangeListener, Object>();
+
+	private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+	LogSharedPreferences(LogKeyValueStore store) {
+		mStore = store;
+	}
+
+	@Override
+	public Map<String, ?> getAll() {
+		return mStore.getAll();
+	}
+
+	@Override
+	public String getString(String key, String defValue) {
+		String v = (String) mStore.get(key);
+		return v != null ? v : defValue;
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public Set<String> getStringSet(String key, Set<String> defValues) {
+		Set<String> v = (Set<String>) mStore.get(key);
+		return v != null ? v : defValues;
+	}
+
+	@Override
+	public int getInt(String key, int defValue) {
+		Integer v = (Integer) mStore.get(key);
+		return v != null ? v : defValue;
+	}
+
+	@Override
+	public long getLong(String key, long defValue) {
+		Long v = (Long) mStore.get(key);
+		return v != null ? v : defValue;
+	}
+
+	@Override
+	public float getFloat(String key, float defValue) {
+		Float v = (Float) mStore.get(key);
+		return v != null ? v : defValue;
+	}
+
+	@Override
+	public boolean getBoolean(String key, boolean defValue) {
+		Boolean v = (Boolean) mStore.get(key);
+		return v != null ? v : defValue;
+	}
+
+	@Override
+	public boolean contains(String key) {
+		return mStore.contains(key);
+	}
+
+	@Override
+	public Editor edit() {
+		return new EditorImpl();
+	}
+
+	@Override
+	public void registerOnSharedPreferenceChangeListener(OnSharedPreferenceChangeListener listener) {
+		synchronized (mListeners) {
+			mListeners.put(listener, CONTENT);
+		}
+	}
+
+	@Override
+	public void unregisterOnSharedPreferenceChangeListener(OnSharedPreferenceChangeListener listener) {
+		synchronized (mListeners) {
+			mListeners.remove(listener);
+		}
+	}
+
+	private void notifyListeners(final List<String> keys) {
+		final List<OnSharedPreferenceChangeListener> listeners;
+		synchronized (mListeners) {
+			if(mListeners.isEmpty()) {
+				return;
+			}
+			listeners = new ArrayList<OnSharedPreferenceChangeListener>(mListeners.keySet());
+		}
+		Runnable notify = new Runnable() {
+
+			@Override
+			public void run() {
+				for(String key : keys) {
+					for(OnSharedPreferenceChangeListener listener : listeners) {
+						listener.onSharedPreferenceChanged(LogSharedPreferences.this, key);
+					}
+				}
+			}
+		};
+		if(Looper.myLooper() == Looper.getMainLooper()) {
+			notify.run();
+		} else {
+			mMainHandler.post(notify);
+		}
+	}
+
+	private final class EditorImpl implements Editor {
+
+		private final Map<String, Object> mChanges = new HashMap<String, Object>();
+
+		private boolean mClear;
+
+		@Override
+		public Editor putString(String key, String value) {
+			synchronized (this) {
+				mChanges.put(key, value);
+				return this;
+			}
+		}
+
+		@Override
+		public Editor putStringSet(String key, Set<String> values) {
+			synchronized (this) {
+				mChanges.put(key, values);
+				return this;
+			}
+		}
+
+		@Override
+		public Editor putInt(String key, int value) {
+			synchronized (this) {
+				mChanges.put(key, value);
+				return this;
+			}
+		}
+
+		@Override
+		public Editor putLong(String key, long value) {
+			synchronized (this) {
+				mChanges.put(key, value);
+				return this;
+			}
+		}
+
+		@Override
+		public Editor putFloat(String key, float value) {
+			synchronized (this) {
+				mChanges.put(key, value);
+				return this;
+			}
+		}
+
+		@Override
+		public Editor putBoolean(String key, boolean value) {
+			synchronized (this) {
+				mChanges.put(key, value);
+				return this;
+			}
+		}
+
+		@Override
+		public Editor remove(String key) {
+			synchronized (this) {
+				mChanges.put(key, null);
+				return this;
+			}
+		}
+
+		@Override
+		public Editor clear() {
+			synchronized (this) {
+				mClear = true;
+				return this;
+			}
+		}
+
+		@Override
+		public boolean commit() {
+			return write(true);
+		}
+
+		@Override
+		public void apply() {
+			write(false);
+		}
+
+		private boolean write(boolean sync) {
+			List<String> keys;
+			synchronized (this) {
+				try {
+					mStore.write(mChanges, mClear, sync);
+				} catch (IOException e) {
+					L.e(TAG, "write failed: " + e.getMessage());
+					return false;
+				}
+				keys = new ArrayList<String>(mChanges.keySet());
+				mChanges.clear();
+				mClear = false;
+			}
+			notifyListeners(keys);
+			return true;
+		}
+	}
+}
@@ -0,0 +1,30 @@
+package com.mao.kutils;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * <p>
+ * 	指定{@link PreferenceSchema}接口中某个属性的键和默认值,可以注解在getter或setter上,
+ *  同一属性只需注解一次.
+ * </p>
+ * 
+ * @author mao
+ * */
+@Documented
+@Retention(RetentionPolicy.CLASS)
+@Target(ElementType.METHOD)
+public @interface PreferenceKey {
+
+	/** 键,为空表示使用属性名的下划线形式 */
+	String value() default "";
+	
+	/** 
+	 * 默认值的字面量,编译时转换为相应类型的常量,例如"true"、"10"、"1.5".
+	 * 为空表示使用类型的默认值,String和Set&lt;String&gt;的默认值为null.
+	 */
+	String defValue() default "";
+}
@@ -0,0 +1,46 @@
+package com.mao.kutils;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * <p>
+ * 	声明一个SharePreferences文件的结构.被注解的接口中的getter/setter对应文件中的键,
+ *  KUtils-compiler中的注解处理器会在编译时为其生成名为"接口名+Preferences"的实现类.
+ * </p>
+ * <p>
+ * 	getter以get或is(仅boolean)开头且没有参数,setter以set开头且只有一个参数,返回void或boolean.
+ *  支持的类型为boolean、int、long、float、String以及Set&lt;String&gt;.
+ *  键默认为属性名的下划线形式,例如getLaunchCount对应launch_count,可以通过{@link PreferenceKey}指定.
+ * </p>
+ * <p>
+ * 	生成的实现类在构造时检查一次文件参数,之后的读写使用预先生成的键常量,不再逐次检查.
+ *  另外还生成Values类以及load()/store(Values)方法,用于一次读取或一次写入整个结构.
+ * </p>
+ * 
+ * <pre>
+ * &#64;PreferenceSchema(name = "settings")
+ * public interface Settings {
+ *     int getLaunchCount();
+ *     void setLaunchCount(int count);
+ * }
+ * 
+ * Settings settings = new SettingsPreferences(context);
+ * </pre>
+ * 
+ * @author mao
+ * */
+@Documented
+@Retention(RetentionPolicy.CLASS)
+@Target(ElementType.TYPE)
+public @interface PreferenceSchema {
+
+	/** SharePreferences文件名 */
+	String name();
+	
+	/** SharePreferences文件模式,默认为Context.MODE_PRIVATE */
+	int mode() default 0;
+}
@@ -0,0 +1,318 @@
+package com.mao.kutils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import android.content.SharedPreferences;
+import android.content.SharedPreferences.Editor;
+
+/**
+ * <p>
+ * 	SharePreferences批量写入器
+ * </p>
+ * <p>
+ * 	在指定的时间窗口内对同一个SharePreferences文件的所有写操作会被合并到同一个Editor中,
+ *  然后在后台写线程中只提交一次.所有文件共用一个写线程,因此同一文件的批次按顺序提交.
+ * </p>
+ *
+ * @author mao
+ * */
+final class SharePreferencesBatchWriter {
+
+	private final static String TAG = "SharePreferencesBatchWriter";
+
+	/** 表示键已被移除的占位值 */
+	final static Object REMOVED = new Object();
+
+	/** 合并写操作的时间窗口,单位:毫秒 */
+	private final long mWindowMillis;
+
+	/** 后台写线程 */
+	private final ScheduledThreadPoolExecutor mExecutor;
+
+	/** 还在收集写操作的批次,以文件名为键 */
+	private final Map<String, Batch> mPending = new HashMap<String, Batch>();
+
+	/** 已停止收集但还未提交完成的批次,以文件名为键 */
+	private final Map<String, Batch> mInFlight = new HashMap<String, Batch>();
+
+	/** 批次提交后的回调,可以为null */
+	private final OnCommittedListener mListener;
+
+	SharePreferencesBatchWriter(long windowMillis, OnCommittedListener listener) {
+		mWindowMillis = windowMillis < 0 ? 0 : windowMillis;
+		mListener = listener;
+		mExecutor = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, TAG);
+				t.setDaemon(true);
+				return t;
+			}
+		});
+	}
+
+	/**
+	 * 将一个写操作加入指定文件的当前批次,如果当前没有批次则新建一个并在时间窗口结束后提交
+	 *
+	 * @param sp 要写入的SharedPreferences
+	 * @param name SharePreferences文件名
+	 * @param key 键
+	 * @param value 值,为{@link #REMOVED}时表示移除该键
+	 * @return 加入成功返回true,写入器已关闭返回false
+	 */
+	synchronized boolean enqueue(SharedPreferences sp, String name, String key, Object value) {
+		if(mExecutor.isShutdown()) {
+			return false;
+		}
+		//与SharedPreferences一致,写入null等同于移除
+		pendingBatch(sp, name).values.put(key, value == null ? REMOVED : value);
+		return true;
+	}
+
+	/**
+	 * 将多个写操作一次加入指定文件的当前批次,这些写操作总是在同一次提交中写入
+	 *
+	 * @param sp 要写入的SharedPreferences
+	 * @param name SharePreferences文件名
+	 * @param values 键值对,值为null时表示移除该键
+	 * @return 加入成功返回true,写入器已关闭返回false
+	 */
+	synchronized boolean enqueueAll(SharedPreferences sp, String name, Map<String, ?> values) {
+		if(mExecutor.isShutdown()) {
+			return false;
+		}
+		Batch batch = pendingBatch(sp, name);
+		for(Map.Entry<String, ?> entry : values.entrySet()) {
+			Object value = entry.getValue();
+			batch.values.put(entry.getKey(), value == null ? REMOVED : value);
+		}
+		return true;
+	}
+
+	//获取指定文件正在收集写操作的批次,没有时新建一个并在时间窗口结束后提交
+	private Batch pendingBatch(SharedPreferences sp, String name) {
+		Batch batch = mPending.get(name);
+		if(batch == null) {
+			batch = new Batch(sp, name);
+			mPending.put(name, batch);
+			mExecutor.schedule(batch.task, mWindowMillis, TimeUnit.MILLISECONDS);
+		}
+		return batch;
+	}
+
+	/**
+	 * 查询指定键尚未写入文件的值
+	 *
+	 * @param name SharePreferences文件名
+	 * @param key 键
+	 * @return 没有待写入的值返回null,待移除返回{@link #REMOVED},否则返回待写入的值
+	 */
+	synchronized Object peek(String name, String key) {
+		Batch batch = mPending.get(name);
+		if(batch != null && batch.values.containsKey(key)) {
+			return batch.values.get(key);
+		}
+		batch = mInFlight.get(name);
+		if(batch != null && batch.values.containsKey(key)) {
+			return batch.values.get(key);
+		}
+		return null;
+	}
+
+	/**
+	 * 将指定文件尚未写入的值覆盖到map中
+	 *
+	 * @param name SharePreferences文件名
+	 * @param all 文件中现有的所有键值对
+	 */
+	synchronized void overlay(String name, Map<String, Object> all) {
+		overlay(mInFlight.get(name), all);
+		overlay(mPending.get(name), all);
+	}
+
+	private static void overlay(Batch batch, Map<String, Object> all) {
+		if(batch == null) {
+			return;
+		}
+		for(Map.Entry<String, Object> entry : batch.values.entrySet()) {
+			if(entry.getValue() == REMOVED) {
+				all.remove(entry.getKey());
+			} else {
+				all.put(entry.getKey(), entry.getValue());
+			}
+		}
+	}
+
+	/**
+	 * 立即提交指定文件的当前批次
+	 *
+	 * @param name SharePreferences文件名
+	 * @return 返回一个Future,该文件此前所有写操作提交完成后结束,结果表示是否全部提交成功
+	 */
+	Future<Boolean> flush(String name) {
+		final List<Batch> batches = new ArrayList<Batch>(2);
+		synchronized (this) {
+			addIfNotNull(batches, mInFlight.get(name));
+			addIfNotNull(batches, mPending.get(name));
+		}
+		return await(batches);
+	}
+
+	/**
+	 * 立即提交所有文件的当前批次
+	 *
+	 * @return 返回一个Future,此前所有写操作提交完成后结束,结果表示是否全部提交成功
+	 */
+	Future<Boolean> flushAll() {
+		final List<Batch> batches = new ArrayList<Batch>();
+		synchronized (this) {
+			batches.addAll(mInFlight.values());
+			batches.addAll(mPending.values());
+		}
+		return await(batches);
+	}
+
+	/**
+	 * 提交所有批次并关闭写线程
+	 *
+	 * @return 返回一个Future,所有写操作提交完成后结束
+	 */
+	Future<Boolean> shutdown() {
+		Future<Boolean> future;
+		synchronized (this) {
+			future = flushAll();
+			mExecutor.shutdown();
+		}
+		return future;
+	}
+
+	private static void addIfNotNull(List<Batch> batches, Batch batch) {
+		if(batch != null) {
+			batches.add(batch);
+		}
+	}
+
+	private Future<Boolean> await(final List<Batch> batches) {
+		FutureTask<Boolean> waiter = new FutureTask<Boolean>(new Callable<Boolean>() {
+
+			@Override
+			public Boolean call() throws Exception {
+				boolean result = true;
+				for(Batch batch : batches) {
+					result &= batch.task.get();
+				}
+				return result;
+			}
+		});
+		if(mExecutor.isShutdown()) {
+			//关闭后已入队的批次仍会执行,在当前线程等待即可
+			waiter.run();
+			return waiter;
+		}
+		//写线程只有一个且按顺序执行,提前执行的批次和等待任务都排在已有任务之后
+		for(Batch batch : batches) {
+			mExecutor.execute(batch.task);
+		}
+		mExecutor.execute(waiter);
+		return waiter;
+	}
+
+	//将批次从收集状态转为提交状态
+	private synchronized void detach(Batch batch) {
+		if(mPending.get(batch.name) == batch) {
+			mPending.remove(batch.name);
+		}
+		mInFlight.put(batch.name, batch);
+	}
+
+	private synchronized void finish(Batch batch) {
+		if(mInFlight.get(batch.name) == batch) {
+			mInFlight.remove(batch.name);
+		}
+	}
+
+	/**
+	 * 批次提交完成的回调
+	 */
+	interface OnCommittedListener {
+
+		/**
+		 * 指定文件的一个批次已提交,在写线程中回调
+		 *
+		 * @param name SharePreferences文件名
+		 */
+		void onCommitted(String name);
+	}
+
+	/**
+	 * 同一文件在一个时间窗口内的所有写操作
+	 */
+	private final class Batch implements Callable<Boolean> {
+
+		final SharedPreferences sp;
+
+		final String name;
+
+		/** 按写入顺序保存的键值对,后写的值覆盖先写的值 */
+		final LinkedHashMap<String, Object> values = new LinkedHashMap<String, Object>();
+
+		/** 提交任务,只会执行一次,因此提前flush后定时任务不会重复提交 */
+		final FutureTask<Boolean> task = new FutureTask<Boolean>(this);
+
+		Batch(SharedPreferences sp, String name) {
+			this.sp = sp;
+			this.name = name;
+		}
+
+		@SuppressWarnings("unchecked")
+		@Override
+		public Boolean call() throws Exception {
+			detach(this);
+			try {
+				Editor editor = sp.edit();
+				for(Map.Entry<String, Object> entry : values.entrySet()) {
+					String key = entry.getKey();
+					Object value = entry.getValue();
+					if(value == REMOVED) {
+						editor.remove(key);
+					} else if(value instanceof Boolean) {
+						editor.putBoolean(key, (Boolean) value);
+					} else if(value instanceof Float) {
+						editor.putFloat(key, (Float) value);
+					} else if(value instanceof Integer) {
+						editor.putInt(key, (Integer) value);
+					} else if(value instanceof Long) {
+						editor.putLong(key, (Long) value);
+					} else if(value instanceof Set) {
+						editor.putStringSet(key, (Set<String>) value);
+					} else {
+						editor.putString(key, (String) value);
+					}
+				}
+				boolean result = editor.commit();
+				if(!result) {
+					L.e(TAG, "commit " + name + " failed");
+				}
+				//在移出提交状态前回调,保证读取方不会在两者之间读到旧值
+				if(mListener != null) {
+					mListener.onCommitted(name);
+				}
+				return result;
+			} finally {
+				finish(this);
+			}
+		}
+	}
+}
@@ -0,0 +1,209 @@
+package com.mao.kutils;
+
+import java.util.Map;
+import java.util.Set;
+
+import android.content.Context;
+
+/**
+ * <p>
+ * 	绑定到一个SharePreferences文件的访问对象,通过{@link SharePreferencesManager#getFile(Context, String, int)}获取.
+ * </p>
+ * <p>
+ * 	文件参数在获取时已经检查过,这里的读写不再逐次检查,键也不会检查是否为空,因此适合键为常量的场景,
+ *  例如由{@link PreferenceSchema}生成的访问类.读写同样经过SharePreferencesManager的批量写入、
+ *  读缓存和存储后端.
+ * </p>
+ * 
+ * @author mao
+ * */
+public final class SharePreferencesFile {
+
+	private final SharePreferencesManager mManager;
+	
+	private final Context mContext;
+	
+	private final String mName;
+	
+	private final int mMode;
+	
+	SharePreferencesFile(SharePreferencesManager manager, Context context, String name, int mode) {
+		mManager = manager;
+		mContext = context;
+		mName = name;
+		mMode = mode;
+	}
+	
+	/**
+	 * 获取文件名
+	 * 
+	 * @return 返回绑定的SharePreferences文件名
+	 */
+	public String getName() {
+		return mName;
+	}
+	
+	/**
+	 * 读取boolean类型的值
+	 * 
+	 * @param key 键
+	 * @param defValue 获取失败时返回的值
+	 * @return 获取成功返回相应的值,键不存在或者获取失败返回defValue
+	 */
+	public boolean getBoolean(String key, boolean defValue) {
+		return mManager.doGetBoolean(mContext, mName, mMode, key, defValue);
+	}
+	
+	/**
+	 * 读取float类型的值
+	 * 
+	 * @param key 键
+	 * @param defValue 获取失败时返回的值
+	 * @return 获取成功返回相应的值,键不存在或者获取失败返回defValue
+	 */
+	public float getFloat(String key, float defValue) {
+		return mManager.doGetFloat(mContext, mName, mMode, key, defValue);
+	}
+	
+	/**
+	 * 读取int类型的值
+	 * 
+	 * @param key 键
+	 * @param defValue 获取失败时返回的值
+	 * @return 获取成功返回相应的值,键不存在或者获取失败返回defValue
+	 */
+	public int getInt(String key, int defValue) {
+		return mManager.doGetInt(mContext, mName, mMode, key, defValue);
+	}
+	
+	/**
+	 * 读取long类型的值
+	 * 
+	 * @param key 键
+	 * @param defValue 获取失败时返回的值
+	 * @return 获取成功返回相应的值,键不存在或者获取失败返回defValue
+	 */
+	public long getLong(String key, long defValue) {
+		return mManager.doGetLong(mContext, mName, mMode, key, defValue);
+	}
+	
+	/**
+	 * 读取String类型的值
+	 * 
+	 * @param key 键
+	 * @param defValue 获取失败时返回的值
+	 * @return 获取成功返回相应的值,键不存在或者获取失败返回defValue
+	 */
+	public String getString(String key, String defValue) {
+		return mManager.doGetString(mContext, mName, mMode, key, defValue);
+	}
+	
+	/**
+	 * 读取Set<String>类型的值
+	 * 
+	 * @param key 键
+	 * @param defValue 获取失败时返回的值
+	 * @return 获取成功返回相应的值,键不存在或者获取失败返回defValue
+	 */
+	public Set<String> getStringSet(String key, Set<String> defValue) {
+		return mManager.doGetStringSet(mContext, mName, mMode, key, defValue);
+	}
+	
+	/**
+	 * 一次读取文件中的所有键值对
+	 * 
+	 * @return 返回包含所有键值对的Map
+	 */
+	public Map<String, ?> getAll() {
+		return mManager.doGetAll(mContext, mName, mMode);
+	}
+	
+	/**
+	 * 写入boolean类型的值
+	 * 
+	 * @param key 键
+	 * @param value 值
+	 * @return 写入成功返回true,失败返回false;批量写入模式下返回是否加入了批次
+	 */
+	public boolean putBoolean(String key, boolean value) {
+		return mManager.doPutBoolean(mContext, mName, mMode, key, value);
+	}
+	
+	/**
+	 * 写入float类型的值
+	 * 
+	 * @param key 键
+	 * @param value 值
+	 * @return 写入成功返回true,失败返回false;批量写入模式下返回是否加入了批次
+	 */
+	public boolean putFloat(String key, float value) {
+		return mManager.doPutFloat(mContext, mName, mMode, key, value);
+	}
+	
+	/**
+	 * 写入int类型的值
+	 * 
+	 * @param key 键
+	 * @param value 值
+	 * @return 写入成功返回true,失败返回false;批量写入模式下返回是否加入了批次
+	 */
+	public boolean putInt(String key, int value) {
+		return mManager.doPutInt(mContext, mName, mMode, key, value);
+	}
+	
+	/**
+	 * 写入long类型的值
+	 * 
+	 * @param key 键
+	 * @param value 值
+	 * @return 写入成功返回true,失败返回false;批量写入模式下返回是否加入了批次
+	 */
+	public boolean putLong(String key, long value) {
+		return mManager.doPutLong(mContext, mName, mMode, key, value);
+	}
+	
+	/**
+	 * 写入String类型的值
+	 * 
+	 * @param key 键
+	 * @param value 值
+	 * @return 写入成功返回true,失败返回false;批量写入模式下返回是否加入了批次
+	 */
+	public boolean putString(String key, String value) {
+		return mManager.doPutString(mContext, mName, mMode, key, value);
+	}
+	
+	/**
+	 * 写入字符串集合,批量写入模式下保存的是集合的副本
+	 * 
+	 * @param key 键
+	 * @param values 值
+	 * @return 写入成功返回true,失败返回false;批量写入模式下返回是否加入了批次
+	 */
+	public boolean putStringSet(String key, Set<String> values) {
+		return mManager.doPutStringSet(mContext, mName, mMode, key, values);
+	}
+	
+	/**
+	 * 一次写入多个键值对,所有修改通过一个Editor提交,批量写入模式下加入同一个批次
+	 * 
+	 * @param values 要写入的键值对,值为null表示移除该键
+	 * @return 写入成功返回true,失败返回false
+	 */
+	public boolean putAll(Map<String, ?> values) {
+		if(values == null || values.isEmpty()) {
+			return true;
+		}
+		return mManager.doPutAll(mContext, mName, mMode, values);
+	}
+	
+	/**
+	 * 移除键对应的值
+	 * 
+	 * @param key 键
+	 * @return 移除成功返回true,失败返回false;批量写入模式下返回是否加入了批次
+	 */
+	public boolean remove(String key) {
+		return mManager.doRemoveValue(mContext, mName, mMode, key);
+	}
+}
@@ -1,7 +1,12 @@
 package com.mao.kutils;
 
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 
 import android.content.Context;
 import android.content.SharedPreferences;
@@ -46,6 +51,34 @@ public class SharePreferencesManager {
 	
 	/** 登录信息SharePreferences文件模式 */
 	private final int loginSpMode = Context.MODE_PRIVATE;
+	
+	/** 默认的存储后端,使用系统基于XML的SharedPreferences */
+	private final static SharePreferencesStorage DEFAULT_STORAGE = new SharePreferencesStorage() {
+		
+		@Override
+		public SharedPreferences getSharedPreferences(Context context, String name, int mode) {
+			return context.getSharedPreferences(name, mode);
+		}
+	};
+	
+	/** 当前使用的存储后端 */
+	private volatile SharePreferencesStorage mStorage = DEFAULT_STORAGE;
+	
+	/** 批量写入器,为null表示未开启批量写入模式 */
+	private volatile SharePreferencesBatchWriter mBatchWriter;
+	
+	/** 读缓存,为null表示未开启读缓存 */
+	private volatile SharePreferencesReadCache mReadCache;
+	
+	/** 批量写入的批次提交后使相应文件的读缓存失效 */
+	private final SharePreferencesBatchWriter.OnCommittedListener mCommittedListener
+			= new SharePreferencesBatchWriter.OnCommittedListener() {
+		
+		@Override
+		public void onCommitted(String name) {
+			invalidateReadCache(name);
+		}
+	};
 	 
 	/**
 	 * <p>
@@ -58,6 +91,205 @@ public class SharePreferencesManager {
 		return sSpManager;
 	}
 	
+	/**
+	 * <p>
+	 * 	设置存储后端,之后所有读写都通过该后端提供的SharedPreferences进行.
+	 *  设置前会先提交批量写入模式下尚未提交的写操作,并清空读缓存.
+	 * </p>
+	 * <p>
+	 * 	注意切换后端不会迁移已有的数据.
+	 * </p>
+	 * 
+	 * @param storage 存储后端,为null表示恢复为系统基于XML的实现
+	 * */
+	public synchronized void setStorage(SharePreferencesStorage storage) {
+		SharePreferencesBatchWriter writer = mBatchWriter;
+		if(writer != null) {
+			try {
+				writer.flushAll().get();
+			} catch (Exception e) {
+				e.printStackTrace();
+			}
+		}
+		mStorage = storage != null ? storage : DEFAULT_STORAGE;
+		SharePreferencesReadCache cache = mReadCache;
+		if(cache != null) {
+			mReadCache = new SharePreferencesReadCache(mStorage);
+			cache.release();
+		}
+	}
+	
+	/**
+	 * <p>
+	 * 	开启批量写入模式.开启后所有写入和移除操作不会立即提交,同一文件在时间窗口内的写操作
+	 *  会被合并到一个Editor中,由后台写线程一次性提交.读取操作能读到尚未提交的值.
+	 * </p>
+	 * <p>
+	 * 	该模式下写入方法返回true仅表示写操作已加入队列,需要确认写入磁盘时请使用{@link #flush()}
+	 *  或{@link #flush(String)}返回的Future.如果已经开启,会先提交之前的写操作再按新的时间窗口开启.
+	 * </p>
+	 * 
+	 * @param windowMillis 合并写操作的时间窗口,单位:毫秒
+	 * */
+	public synchronized void enableBatchWrite(long windowMillis) {
+		disableBatchWrite();
+		mBatchWriter = new SharePreferencesBatchWriter(windowMillis, mCommittedListener);
+	}
+	
+	/**
+	 * <p>
+	 * 	关闭批量写入模式,该方法会阻塞直到所有尚未提交的写操作提交完成.
+	 *  注意请不要在有其他线程并发写入时调用.
+	 * </p>
+	 * 
+	 * @return 所有写操作提交成功返回true,否则返回false
+	 * */
+	public synchronized boolean disableBatchWrite() {
+		SharePreferencesBatchWriter writer = mBatchWriter;
+		if(writer == null) {
+			return true;
+		}
+		//提交完成前读取仍需要通过写入器读到尚未写入文件的值,提交完成后再清除
+		try {
+			return writer.shutdown().get();
+		} catch (Exception e) {
+			e.printStackTrace();
+			return false;
+		} finally {
+			mBatchWriter = null;
+		}
+	}
+	
+	/**
+	 * <p>
+	 * 	判断是否开启了批量写入模式
+	 * </p>
+	 * 
+	 * @return 已开启返回true,否则返回false
+	 * */
+	public boolean isBatchWriteEnabled() {
+		return mBatchWriter != null;
+	}
+	
+	/**
+	 * <p>
+	 * 	立即提交所有SharePreferences文件尚未提交的写操作
+	 * </p>
+	 * 
+	 * @return 返回一个Future,此前所有写操作提交完成后结束,结果表示是否全部提交成功.
+	 * 		   未开启批量写入模式时返回一个已完成且结果为true的Future.
+	 * */
+	public Future<Boolean> flush() {
+		SharePreferencesBatchWriter writer = mBatchWriter;
+		if(writer == null) {
+			return completedFuture();
+		}
+		return writer.flushAll();
+	}
+	
+	/**
+	 * <p>
+	 * 	立即提交指定SharePreferences文件尚未提交的写操作
+	 * </p>
+	 * 
+	 * @param name 指定的SharePreferences文件名
+	 * 
+	 * @return 返回一个Future,该文件此前所有写操作提交完成后结束,结果表示是否全部提交成功.
+	 * 		   未开启批量写入模式时返回一个已完成且结果为true的Future.
+	 * */
+	public Future<Boolean> flush(String name) {
+		SharePreferencesBatchWriter writer = mBatchWriter;
+		if(writer == null || TextUtils.isEmpty(name)) {
+			return completedFuture();
+		}
+		return writer.flush(name);
+	}
+	
+	/**
+	 * <p>
+	 * 	开启或关闭读缓存.开启后每个SharePreferences文件在第一次读取时被加载为内存快照,
+	 *  之后的读取直接从快照返回,基本类型的读取不会装箱.
+	 * </p>
+	 * <p>
+	 * 	通过本类的写入和移除操作、以及直接对同一SharedPreferences对象的修改都会使相应文件的
+	 *  快照失效.如果通过其他途径修改了文件(例如其他进程),请调用{@link #invalidateReadCache(String)}.
+	 * </p>
+	 * 
+	 * @param enabled true表示开启,false表示关闭并释放所有快照
+	 * */
+	public synchronized void setReadCacheEnabled(boolean enabled) {
+		SharePreferencesReadCache cache = mReadCache;
+		if(enabled) {
+			if(cache == null) {
+				mReadCache = new SharePreferencesReadCache(mStorage);
+			}
+		} else if(cache != null) {
+			mReadCache = null;
+			cache.release();
+		}
+	}
+	
+	/**
+	 * <p>
+	 * 	判断是否开启了读缓存
+	 * </p>
+	 * 
+	 * @return 已开启返回true,否则返回false
+	 * */
+	public boolean isReadCacheEnabled() {
+		return mReadCache != null;
+	}
+	
+	/**
+	 * <p>
+	 * 	使指定SharePreferences文件的读缓存失效,下一次读取时重新加载
+	 * </p>
+	 * 
+	 * @param name 指定的SharePreferences文件名
+	 * */
+	public void invalidateReadCache(String name) {
+		SharePreferencesReadCache cache = mReadCache;
+		if(cache != null && !TextUtils.isEmpty(name)) {
+			cache.invalidate(name);
+		}
+	}
+	
+	/**
+	 * <p>
+	 * 	获取读缓存命中次数
+	 * </p>
+	 * 
+	 * @return 返回开启读缓存以来直接从快照返回的读取次数,未开启时返回0
+	 * */
+	public long getReadCacheHitCount() {
+		SharePreferencesReadCache cache = mReadCache;
+		return cache != null ? cache.getHitCount() : 0;
+	}
+	
+	/**
+	 * <p>
+	 * 	获取读缓存未命中次数
+	 * </p>
+	 * 
+	 * @return 返回开启读缓存以来需要重新加载快照的读取次数,未开启时返回0
+	 * */
+	public long getReadCacheMissCount() {
+		SharePreferencesReadCache cache = mReadCache;
+		return cache != null ? cache.getMissCount() : 0;
+	}
+	
+	private static Future<Boolean> completedFuture() {
+		FutureTask<Boolean> future = new FutureTask<Boolean>(new Callable<Boolean>() {
+
+			@Override
+			public Boolean call() throws Exception {
+				return true;
+			}
+		});
+		future.run();
+		return future;
+	}
+	
 	/**
 	 * <p>
 	 * 	添加一个键值对到默认的SharePreference文件中.
@@ -90,10 +322,21 @@ public class SharePreferencesManager {
 		if(!checkParameters(context, name, mode, key)) {
 			return false;
 		}
-		SharedPreferences sp = context.getSharedPreferences(name, mode);
+		return doPutBoolean(context, name, mode, key, value);
+	}
+	
+	//参数已检查过的写入
+	boolean doPutBoolean(Context context, String name, int mode, String key, boolean value) {
+		SharePreferencesBatchWriter writer = mBatchWriter;
+		if(writer != null) {
+			return writer.enqueue(openSharedPreferences(context, name, mode), name, key, value);
+		}
+		SharedPreferences sp = openSharedPreferences(context, name, mode);
 		Editor editor = sp.edit();
 		editor.putBoolean(key, value);
-		return editor.commit();
+		boolean result = editor.commit();
+		invalidateReadCache(name);
+		return result;
 	}
 	
 	/**
@@ -128,10 +371,21 @@ public class SharePreferencesManager {
 		if(!checkParameters(context, name, mode, key)) {
 			return false;
 		}
-		SharedPreferences sp = context.getSharedPreferences(name, mode);
+		return doPutFloat(context, name, mode, key, value);
+	}
+	
+	//参数已检查过的写入
+	boolean doPutFloat(Context context, String name, int mode, String key, float value) {
+		SharePreferencesBatchWriter writer = mBatchWriter;
+		if(writer != null) {
+			return writer.enqueue(openSharedPreferences(context, name, mode), name, key, value);
+		}
+		SharedPreferences sp = openSharedPreferences(context, name, mode);
 		Editor editor = sp.edit();
 		editor.putFloat(key, value);
-		return editor.commit();
+		boolean result = editor.commit();
+		invalidateReadCache(name);
+		return result;
 	}
 	
 	/**
@@ -166,10 +420,21 @@ public class SharePreferencesManager {
 		if(!checkParameters(context, name, mode, key)) {
 			return false;
 		}
-		SharedPreferences sp = context.getSharedPreferences(name, mode);
+		return doPutInt(context, name, mode, key, value);
+	}
+	
+	//参数已检查过的写入
+	boolean doPutInt(Context context, String name, int mode, String key, int value) {
+		SharePreferencesBatchWriter writer = mBatchWriter;
+		if(writer != null) {
+			return writer.enqueue(openSharedPreferences(context, name, mode), name, key, value);
+		}
+		SharedPreferences sp = openSharedPreferences(context, name, mode);
 		Editor editor = sp.edit();
 		editor.putInt(key, value);
-		return editor.commit();
+		boolean result = editor.commit();
+		invalidateReadCache(name);
+		return result;
 	}
 	
 	/**
@@ -204,10 +469,21 @@ public class SharePreferencesManager {
 		if(!checkParameters(context, name, mode, key)) {
 			return false;
 		}
-		SharedPreferences sp = context.getSharedPreferences(name, mode);
+		return doPutLong(context, name, mode, key, value);
+	}
+	
+	//参数已检查过的写入
+	boolean doPutLong(Context context, String name, int mode, String key, long value) {
+		SharePreferencesBatchWriter writer = mBatchWriter;
+		if(writer != null) {
+			return writer.enqueue(openSharedPreferences(context, name, mode), name, key, value);
+		}
+		SharedPreferences sp = openSharedPreferences(context, name, mode);
 		Editor editor = sp.edit();
 		editor.putLong(key, value);
-		return editor.commit();
+		boolean result = editor.commit();
+		invalidateReadCache(name);
+		return result;
 	}
 	
 	/**
@@ -242,10 +518,21 @@ public class SharePreferencesManager {
 		if(!checkParameters(context, name, mode, key)) {
 			return false;
 		}
-		SharedPreferences sp = context.getSharedPreferences(name, mode);
+		return doPutString(context, name, mode, key, value);
+	}
+	
+	//参数已检查过的写入
+	boolean doPutString(Context context, String name, int mode, String key, String value) {
+		SharePreferencesBatchWriter writer = mBatchWriter;
+		if(writer != null) {
+			return writer.enqueue(openSharedPreferences(context, name, mode), name, key, value);
+		}
+		SharedPreferences sp = openSharedPreferences(context, name, mode);
 		Editor editor = sp.edit();
 		editor.putString(key, value);
-		return editor.commit();
+		boolean result = editor.commit();
+		invalidateReadCache(name);
+		return result;
 	}
 	
 	/**
@@ -280,10 +567,22 @@ public class SharePreferencesManager {
 		if(!checkParameters(context, name, mode, key)) {
 			return false;
 		}
-		SharedPreferences sp = context.getSharedPreferences(name, mode);
+		return doPutStringSet(context, name, mode, key, values);
+	}
+	
+	//参数已检查过的写入
+	boolean doPutStringSet(Context context, String name, int mode, String key, Set<String> values) {
+		SharePreferencesBatchWriter writer = mBatchWriter;
+		if(writer != null) {
+			//批次在稍后提交,保存副本,避免调用者之后修改集合影响待写入的值
+			return writer.enqueue(openSharedPreferences(context, name, mode), name, key, copyOf(values));
+		}
+		SharedPreferences sp = openSharedPreferences(context, name, mode);
 		Editor editor = sp.edit();
 		editor.putStringSet(key, values);
-		return editor.commit();
+		boolean result = editor.commit();
+		invalidateReadCache(name);
+		return result;
 	}
 	
 	/**
@@ -318,7 +617,20 @@ public class SharePreferencesManager {
 		if(!checkParameters(context, name, mode, key)) {
 			return defValue;
 		}
-		SharedPreferences sp = context.getSharedPreferences(name, mode);
+		return doGetBoolean(context, name, mode, key, defValue);
+	}
+	
+	//参数已检查过的读取
+	boolean doGetBoolean(Context context, String name, int mode, String key, boolean defValue) {
+		Object pending = peekPending(name, key);
+		if(pending != null) {
+			return pending == SharePreferencesBatchWriter.REMOVED ? defValue : (Boolean) pending;
+		}
+		SharePreferencesReadCache cache = mReadCache;
+		if(cache != null) {
+			return cache.getBoolean(context, name, mode, key, defValue);
+		}
+		SharedPreferences sp = openSharedPreferences(context, name, mode);
 		return sp.getBoolean(key, defValue);
 	}
 	
@@ -354,7 +666,20 @@ public class SharePreferencesManager {
 		if(!checkParameters(context, name, mode, key)) {
 			return defValue;
 		}
-		SharedPreferences sp = context.getSharedPreferences(name, mode);
+		return doGetFloat(context, name, mode, key, defValue);
+	}
+	
+	//参数已检查过的读取
+	float doGetFloat(Context context, String name, int mode, String key, float defValue) {
+		Object pending = peekPending(name, key);
+		if(pending != null) {
+			return pending == SharePreferencesBatchWriter.REMOVED ? defValue : (Float) pending;
+		}
+		SharePreferencesReadCache cache = mReadCache;
+		if(cache != null) {
+			return cache.getFloat(context, name, mode, key, defValue);
+		}
+		SharedPreferences sp = openSharedPreferences(context, name, mode);
 		return sp.getFloat(key, defValue);
 	}
 	
@@ -390,7 +715,20 @@ public class SharePreferencesManager {
 		if(!checkParameters(context, name, mode, key)) {
 			return defValue;
 		}
-		SharedPreferences sp = context.getSharedPreferences(name, mode);
+		return doGetInt(context, name, mode, key, defValue);
+	}
+	
+	//参数已检查过的读取
+	int doGetInt(Context context, String name, int mode, String key, int defValue) {
+		Object pending = peekPending(name, key);
+		if(pending != null) {
+			return pending == SharePreferencesBatchWriter.REMOVED ? defValue : (Integer) pending;
+		}
+		SharePreferencesReadCache cache = mReadCache;
+		if(cache != null) {
+			return cache.getInt(context, name, mode, key, defValue);
+		}
+		SharedPreferences sp = openSharedPreferences(context, name, mode);
 		return sp.getInt(key, defValue);
 	}
 	
@@ -426,7 +764,20 @@ public class SharePreferencesManager {
 		if(!checkParameters(context, name, mode, key)) {
 			return defValue;
 		}
-		SharedPreferences sp = context.getSharedPreferences(name, mode);
+		return doGetLong(context, name, mode, key, defValue);
+	}
+	
+	//参数已检查过的读取
+	long doGetLong(Context context, String name, int mode, String key, long defValue) {
+		Object pending = peekPending(name, key);
+		if(pending != null) {
+			return pending == SharePreferencesBatchWriter.REMOVED ? defValue : (Long) pending;
+		}
+		SharePreferencesReadCache cache = mReadCache;
+		if(cache != null) {
+			return cache.getLong(context, name, mode, key, defValue);
+		}
+		SharedPreferences sp = openSharedPreferences(context, name, mode);
 		return sp.getLong(key, defValue);
 	}
 	
@@ -462,7 +813,20 @@ public class SharePreferencesManager {
 		if(!checkParameters(context, name, mode, key)) {
 			return defValue;
 		}
-		SharedPreferences sp = context.getSharedPreferences(name, mode);
+		return doGetString(context, name, mode, key, defValue);
+	}
+	
+	//参数已检查过的读取
+	String doGetString(Context context, String name, int mode, String key, String defValue) {
+		Object pending = peekPending(name, key);
+		if(pending != null) {
+			return pending == SharePreferencesBatchWriter.REMOVED ? defValue : (String) pending;
+		}
+		SharePreferencesReadCache cache = mReadCache;
+		if(cache != null) {
+			return cache.getString(context, name, mode, key, defValue);
+		}
+		SharedPreferences sp = openSharedPreferences(context, name, mode);
 		return sp.getString(key, defValue);
 	}
 	
@@ -498,7 +862,21 @@ public class SharePreferencesManager {
 		if(!checkParameters(context, name, mode, key)) {
 			return defValue;
 		}
-		SharedPreferences sp = context.getSharedPreferences(name, mode);
+		return doGetStringSet(context, name, mode, key, defValue);
+	}
+	
+	//参数已检查过的读取
+	@SuppressWarnings("unchecked")
+	Set<String> doGetStringSet(Context context, String name, int mode, String key, Set<String> defValue) {
+		Object pending = peekPending(name, key);
+		if(pending != null) {
+			return pending == SharePreferencesBatchWriter.REMOVED ? defValue : (Set<String>) pending;
+		}
+		SharePreferencesReadCache cache = mReadCache;
+		if(cache != null) {
+			return cache.getStringSet(context, name, mode, key, defValue);
+		}
+		SharedPreferences sp = openSharedPreferences(context, name, mode);
 		return sp.getStringSet(key, defValue);
 	}
 	
@@ -526,26 +904,51 @@ public class SharePreferencesManager {
 	 * 
 	 * @return 获取成功返回包含所有键值对的Map,获取失败返回null
 	 * */
-	@SuppressWarnings("deprecation")
 	public Map<String, ?> getAll(Context context, String name, int mode) {
-		if(context == null) {
+		if(!checkFile(context, name, mode)) {
 			return null;
 		}
-		if(TextUtils.isEmpty(name)) {
-			return null;
-		}
-		if(mode != Context.MODE_PRIVATE
-				|| mode != Context.MODE_WORLD_READABLE
-				|| mode != Context.MODE_WORLD_WRITEABLE) {
-			return null;
+		return doGetAll(context, name, mode);
+	}
+	
+	//参数已检查过的读取
+	Map<String, ?> doGetAll(Context context, String name, int mode) {
+		SharedPreferences sp = openSharedPreferences(context, name, mode);
+		SharePreferencesBatchWriter writer = mBatchWriter;
+		if(writer != null) {
+			Map<String, Object> all = new HashMap<String, Object>(sp.getAll());
+			writer.overlay(name, all);
+			return all;
 		}
-		SharedPreferences sp = context.getSharedPreferences(name, mode);
 		return sp.getAll();
 	}
 	
+	//通过当前的存储后端获取SharedPreferences
+	private SharedPreferences openSharedPreferences(Context context, String name, int mode) {
+		return mStorage.getSharedPreferences(context, name, mode);
+	}
+	
+	//查询批量写入模式下尚未提交的值
+	private Object peekPending(String name, String key) {
+		SharePreferencesBatchWriter writer = mBatchWriter;
+		return writer != null ? writer.peek(name, key) : null;
+	}
+	
 	//检查参数的合法性
-	@SuppressWarnings("deprecation")
 	private boolean checkParameters(Context context, String name, int mode, String key) {
+		if(!checkFile(context, name, mode)) {
+			return false;
+		}
+		//不允许存空键
+		if(TextUtils.isEmpty(key)) {
+			return false;
+		}
+		return true;
+	}
+	
+	//检查文件参数的合法性
+	@SuppressWarnings("deprecation")
+	private boolean checkFile(Context context, String name, int mode) {
 		if(context == null) {
 			return false;
 		}
@@ -557,13 +960,76 @@ public class SharePreferencesManager {
 				&& mode != Context.MODE_WORLD_WRITEABLE) {
 			return false;
 		}
-		//不允许存空键
-		if(TextUtils.isEmpty(key)) {
-			return false;
-		}
 		return true;
 	}
 	
+	private static Set<String> copyOf(Set<String> values) {
+		return values == null ? null : new HashSet<String>(values);
+	}
+	
+	//参数已检查过的批量写入,所有键值对通过一个Editor提交或者加入同一个批次
+	@SuppressWarnings("unchecked")
+	boolean doPutAll(Context context, String name, int mode, Map<String, ?> values) {
+		SharedPreferences sp = openSharedPreferences(context, name, mode);
+		SharePreferencesBatchWriter writer = mBatchWriter;
+		if(writer != null) {
+			//一次加入同一个批次,不会被时间窗口拆分到两次提交中
+			Map<String, Object> copy = new HashMap<String, Object>(values.size() * 4 / 3 + 1);
+			for(Map.Entry<String, ?> entry : values.entrySet()) {
+				Object value = entry.getValue();
+				if(value instanceof Set) {
+					value = copyOf((Set<String>) value);
+				}
+				copy.put(entry.getKey(), value);
+			}
+			return writer.enqueueAll(sp, name, copy);
+		}
+		Editor editor = sp.edit();
+		for(Map.Entry<String, ?> entry : values.entrySet()) {
+			String key = entry.getKey();
+			Object value = entry.getValue();
+			if(value == null) {
+				editor.remove(key);
+			} else if(value instanceof Boolean) {
+				editor.putBoolean(key, (Boolean) value);
+			} else if(value instanceof Float) {
+				editor.putFloat(key, (Float) value);
+			} else if(value instanceof Integer) {
+				editor.putInt(key, (Integer) value);
+			} else if(value instanceof Long) {
+				editor.putLong(key, (Long) value);
+			} else if(value instanceof Set) {
+				editor.putStringSet(key, (Set<String>) value);
+			} else {
+				editor.putString(key, (String) value);
+			}
+		}
+		boolean result = editor.commit();
+		invalidateReadCache(name);
+		return result;
+	}
+	
+	/**
+	 * <p>
+	 * 	获取绑定到指定SharePreferences文件的访问对象.参数只在这里检查一次,
+	 *  之后通过该对象的读写不再逐次检查参数,适合频繁访问同一个文件的场景.
+	 * </p>
+	 * 
+	 * @param context 上下文
+	 * @param name 指定的SharePreference文件名,不能为空
+	 * @param mode 创建的SharePreference文件模式
+	 * 
+	 * @return 返回绑定到该文件的访问对象
+	 * 
+	 * @throws IllegalArgumentException 参数不合法
+	 * */
+	public SharePreferencesFile getFile(Context context, String name, int mode) {
+		if(!checkFile(context, name, mode)) {
+			throw new IllegalArgumentException("invalid SharePreferences file " + name + ", mode " + mode);
+		}
+		return new SharePreferencesFile(this, context.getApplicationContext(), name, mode);
+	}
+	
 	/**
 	 * <p>
 	 * 	添加设置信息到相应的SharePreferences文件中
@@ -936,10 +1402,21 @@ public class SharePreferencesManager {
 		if(!checkParameters(context, name, mode, key)) {
 			return false;
 		}
-		SharedPreferences sp = context.getSharedPreferences(name, mode);
+		return doRemoveValue(context, name, mode, key);
+	}
+	
+	//参数已检查过的移除
+	boolean doRemoveValue(Context context, String name, int mode, String key) {
+		SharePreferencesBatchWriter writer = mBatchWriter;
+		if(writer != null) {
+			return writer.enqueue(openSharedPreferences(context, name, mode), name, key, SharePreferencesBatchWriter.REMOVED);
+		}
+		SharedPreferences sp = openSharedPreferences(context, name, mode);
 		Editor editor = sp.edit();
 		editor.remove(key);
-		return editor.commit();
+		boolean result = editor.commit();
+		invalidateReadCache(name);
+		return result;
 	}
 	
 	/**
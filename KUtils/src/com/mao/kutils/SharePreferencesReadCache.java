@@ -0,0 +1,243 @@
+package com.mao.kutils;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.content.SharedPreferences.OnSharedPreferenceChangeListener;
+
+/**
+ * <p>
+ * 	SharePreferences读缓存
+ * </p>
+ * <p>
+ * 	每个文件第一次读取时将所有键值对加载为一个只读快照,之后的读取直接从快照返回.
+ *  boolean、int、long、float类型的值以原始类型保存,读取时不会装箱.
+ *  通过SharePreferencesManager的写操作以及其他途径对同一SharedPreferences对象的修改都会使快照失效.
+ * </p>
+ *
+ * @author mao
+ * */
+final class SharePreferencesReadCache {
+
+	private final static int TYPE_BOOLEAN = 1;
+	private final static int TYPE_FLOAT = 2;
+	private final static int TYPE_INT = 3;
+	private final static int TYPE_LONG = 4;
+	private final static int TYPE_STRING = 5;
+	private final static int TYPE_STRING_SET = 6;
+
+	/** 提供SharedPreferences的存储后端 */
+	private final SharePreferencesStorage mStorage;
+
+	/** 每个文件的缓存,以文件名为键 */
+	private final ConcurrentHashMap<String, FileCache> mFiles = new ConcurrentHashMap<String, FileCache>();
+
+	private final AtomicLong mHitCount = new AtomicLong();
+
+	private final AtomicLong mMissCount = new AtomicLong();
+
+	SharePreferencesReadCache(SharePreferencesStorage storage) {
+		mStorage = storage;
+	}
+
+	boolean getBoolean(Context context, String name, int mode, String key, boolean defValue) {
+		Entry entry = snapshot(context, name, mode).get(key);
+		if(entry == null) {
+			return defValue;
+		}
+		checkType(entry, TYPE_BOOLEAN, key);
+		return entry.bits != 0;
+	}
+
+	float getFloat(Context context, String name, int mode, String key, float defValue) {
+		Entry entry = snapshot(context, name, mode).get(key);
+		if(entry == null) {
+			return defValue;
+		}
+		checkType(entry, TYPE_FLOAT, key);
+		return Float.intBitsToFloat((int) entry.bits);
+	}
+
+	int getInt(Context context, String name, int mode, String key, int defValue) {
+		Entry entry = snapshot(context, name, mode).get(key);
+		if(entry == null) {
+			return defValue;
+		}
+		checkType(entry, TYPE_INT, key);
+		return (int) entry.bits;
+	}
+
+	long getLong(Context context, String name, int mode, String key, long defValue) {
+		Entry entry = snapshot(context, name, mode).get(key);
+		if(entry == null) {
+			return defValue;
+		}
+		checkType(entry, TYPE_LONG, key);
+		return entry.bits;
+	}
+
+	String getString(Context context, String name, int mode, String key, String defValue) {
+		Entry entry = snapshot(context, name, mode).get(key);
+		if(entry == null) {
+			return defValue;
+		}
+		checkType(entry, TYPE_STRING, key);
+		return (String) entry.ref;
+	}
+
+	@SuppressWarnings("unchecked")
+	Set<String> getStringSet(Context context, String name, int mode, String key, Set<String> defValue) {
+		Entry entry = snapshot(context, name, mode).get(key);
+		if(entry == null) {
+			return defValue;
+		}
+		checkType(entry, TYPE_STRING_SET, key);
+		return (Set<String>) entry.ref;
+	}
+
+	/**
+	 * 使指定文件的快照失效,下一次读取时重新加载
+	 *
+	 * @param name SharePreferences文件名
+	 */
+	void invalidate(String name) {
+		FileCache file = mFiles.get(name);
+		if(file != null) {
+			file.invalidate();
+		}
+	}
+
+	/**
+	 * 释放所有快照并取消对SharedPreferences的监听
+	 */
+	void release() {
+		for(FileCache file : mFiles.values()) {
+			file.sp.unregisterOnSharedPreferenceChangeListener(file);
+			file.invalidate();
+		}
+		mFiles.clear();
+	}
+
+	long getHitCount() {
+		return mHitCount.get();
+	}
+
+	long getMissCount() {
+		return mMissCount.get();
+	}
+
+	//获取指定文件的快照,不存在时从SharedPreferences加载
+	private Map<String, Entry> snapshot(Context context, String name, int mode) {
+		FileCache file = mFiles.get(name);
+		if(file == null) {
+			SharedPreferences sp = mStorage.getSharedPreferences(context, name, mode);
+			FileCache created = new FileCache(sp);
+			file = mFiles.putIfAbsent(name, created);
+			if(file == null) {
+				file = created;
+				sp.registerOnSharedPreferenceChangeListener(file);
+			}
+		}
+		Map<String, Entry> snapshot = file.snapshot;
+		if(snapshot != null) {
+			mHitCount.incrementAndGet();
+			return snapshot;
+		}
+		mMissCount.incrementAndGet();
+		return file.load();
+	}
+
+	//与SharedPreferences保持一致,类型不匹配时抛出ClassCastException
+	private static void checkType(Entry entry, int type, String key) {
+		if(entry.type != type) {
+			throw new ClassCastException("value of key " + key + " is not the requested type");
+		}
+	}
+
+	private static Entry toEntry(Object value) {
+		if(value instanceof Boolean) {
+			return new Entry(TYPE_BOOLEAN, (Boolean) value ? 1 : 0, null);
+		} else if(value instanceof Float) {
+			return new Entry(TYPE_FLOAT, Float.floatToRawIntBits((Float) value), null);
+		} else if(value instanceof Integer) {
+			return new Entry(TYPE_INT, (Integer) value, null);
+		} else if(value instanceof Long) {
+			return new Entry(TYPE_LONG, (Long) value, null);
+		} else if(value instanceof Set) {
+			return new Entry(TYPE_STRING_SET, 0, value);
+		} else {
+			return new Entry(TYPE_STRING, 0, value);
+		}
+	}
+
+	/**
+	 * 快照中的一个值,原始类型保存在bits中,引用类型保存在ref中
+	 */
+	private static final class Entry {
+
+		final int type;
+
+		final long bits;
+
+		final Object ref;
+
+		Entry(int type, long bits, Object ref) {
+			this.type = type;
+			this.bits = bits;
+			this.ref = ref;
+		}
+	}
+
+	/**
+	 * 单个文件的缓存,同时作为该文件的修改监听器
+	 */
+	private static final class FileCache implements OnSharedPreferenceChangeListener {
+
+		final SharedPreferences sp;
+
+		/** 当前快照,为null表示需要重新加载 */
+		volatile Map<String, Entry> snapshot;
+
+		/** 每次失效加1,用于丢弃失效前开始加载的快照 */
+		private int version;
+
+		FileCache(SharedPreferences sp) {
+			this.sp = sp;
+		}
+
+		Map<String, Entry> load() {
+			int loadVersion;
+			synchronized (this) {
+				loadVersion = version;
+			}
+			Map<String, ?> all = sp.getAll();
+			Map<String, Entry> loaded = new HashMap<String, Entry>(all.size() * 4 / 3 + 1);
+			for(Map.Entry<String, ?> e : all.entrySet()) {
+				if(e.getValue() != null) {
+					loaded.put(e.getKey(), toEntry(e.getValue()));
+				}
+			}
+			synchronized (this) {
+				if(loadVersion == version) {
+					snapshot = loaded;
+				}
+			}
+			return loaded;
+		}
+
+		synchronized void invalidate() {
+			version++;
+			snapshot = null;
+		}
+
+		@Override
+		public void onSharedPreferenceChanged(SharedPreferences sharedPreferences, String key) {
+			invalidate();
+		}
+	}
+}
@@ -0,0 +1,29 @@
+package com.mao.kutils;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+/**
+ * <p>
+ * 	SharePreferences存储后端,决定SharePreferencesManager读写的SharedPreferences由谁提供.
+ * </p>
+ * <p>
+ * 	默认使用{@link Context#getSharedPreferences(String, int)}提供的基于XML的实现,
+ *  可以通过{@link SharePreferencesManager#setStorage(SharePreferencesStorage)}替换,
+ *  例如替换为{@link LogSharePreferencesStorage}.
+ * </p>
+ *
+ * @author mao
+ * */
+public interface SharePreferencesStorage {
+
+	/**
+	 * 获取指定名称的SharedPreferences,同一名称应该总是返回同一个对象
+	 *
+	 * @param context 上下文
+	 * @param name SharePreferences文件名
+	 * @param mode SharePreferences文件模式
+	 * @return 返回相应的SharedPreferences
+	 */
+	SharedPreferences getSharedPreferences(Context context, String name, int mode);
+}
@@ -1,9 +1,6 @@
 package com.mao.kutils;
 
-import java.text.SimpleDateFormat;
-import java.util.Calendar;
 import java.util.Date;
-import java.util.Locale;
 
 /**
  * 时间工具类
@@ -41,14 +38,25 @@ public class TimeUtils {
 	}
 	
 	/**
-	 * 时间戳转正常时间格式
+	 * 时间戳转正常时间格式,格式为yyyy-MM-dd HH:mm:ss
 	 * 
 	 * @param timestamp 要转换的时间戳
 	 * @return
 	 */
 	public static String timestamp2DateString(long timestamp) {
-		SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd hh:mm:ss", Locale.getDefault());
-		return sdf.format(timestamp2Date(timestamp));
+		return DateFormatter.getInstance(DateFormatter.DEFAULT_PATTERN).format(timestamp);
+	}
+	
+	/**
+	 * 时间戳按指定格式转换,使用默认的Locale和时区
+	 * 
+	 * @param timestamp 要转换的时间戳
+	 * @param pattern SimpleDateFormat格式
+	 * @return
+	 * @see DateFormatter
+	 */
+	public static String timestamp2DateString(long timestamp, String pattern) {
+		return DateFormatter.getInstance(pattern).format(timestamp);
 	}
 	
 	public static String timestamp2DesriptionString(long timestamp) {
@@ -57,7 +65,7 @@ public class TimeUtils {
 		long minute = 60 * 1000;
 		long hour = 60 * minute;
 		
-		long value = timestamp - time;
+		long value = time - timestamp;
 		//非法
 		if(value < 0) {
 			return "";
@@ -66,7 +74,7 @@ public class TimeUtils {
 			return "刚刚";
 		//1小时内
 		} else if(value < hour) {
-			return value / hour + "分钟前";
+			return value / minute + "分钟前";
 		} else if(value < 24 * hour) {
 			return value / hour + "小时前";
 		} else {
@@ -98,35 +106,34 @@ public class TimeUtils {
 	}
 	
 	/**
-	 * 获取指定日期的年份
+	 * 获取指定日期的年份,使用默认时区
 	 * 
 	 * @param timestamp
 	 * @return
+	 * @see DateFields
 	 */
 	public static int getYear(long timestamp) {
-		Calendar calendar = Calendar.getInstance(Locale.getDefault());
-		return calendar.get(Calendar.DAY_OF_YEAR);
+		return DateFields.getYear(DateFields.getDefault().pack(timestamp));
 	}
 	
 	/**
-	 * 获取指定日期的月份
+	 * 获取指定日期的月份,与Calendar.MONTH相同,从0开始
 	 * 
 	 * @param d
 	 * @return
 	 */
 	public static int getMonth(Date d) {
-		return getYear(date2timestamp(d));
+		return getMonth(date2timestamp(d));
 	}
 	
 	/**
-	 * 获取指定日期的月份
+	 * 获取指定日期的月份,与Calendar.MONTH相同,从0开始,使用默认时区
 	 * 
-	 * @param d
+	 * @param timestamp
 	 * @return
 	 */
 	public static int getMonth(long timestamp) {
-		Calendar calendar = Calendar.getInstance(Locale.getDefault());
-		return calendar.get(Calendar.MONTH);
+		return DateFields.getMonth(DateFields.getDefault().pack(timestamp)) - 1;
 	}
 	
 	/**
@@ -136,18 +143,17 @@ public class TimeUtils {
 	 * @return
 	 */
 	public static int getDayOfWeek(Date d) {
-		return getYear(date2timestamp(d));
+		return getDayOfWeek(date2timestamp(d));
 	}
 	
 	/**
-	 * 获取指定日期在所有星期第几天，从星期天开始
+	 * 获取指定日期在所有星期第几天，从星期天开始,与Calendar.DAY_OF_WEEK相同,使用默认时区
 	 * 
-	 * @param d
+	 * @param timestamp
 	 * @return
 	 */
 	public static int getDayOfWeek(long timestamp) {
-		Calendar calendar = Calendar.getInstance(Locale.getDefault());
-		return calendar.get(Calendar.DAY_OF_WEEK);
+		return DateFields.getDayOfWeek(DateFields.getDefault().pack(timestamp));
 	}
 	
 	/**
@@ -157,18 +163,17 @@ public class TimeUtils {
 	 * @return
 	 */
 	public static int getDayOfMonth(Date d) {
-		return getYear(date2timestamp(d));
+		return getDayOfMonth(date2timestamp(d));
 	}
 	
 	/**
-	 * 获取指定日期在所有月份第几天
+	 * 获取指定日期在所有月份第几天,使用默认时区
 	 * 
-	 * @param d
+	 * @param timestamp
 	 * @return
 	 */
 	public static int getDayOfMonth(long timestamp) {
-		Calendar calendar = Calendar.getInstance(Locale.getDefault());
-		return calendar.get(Calendar.DAY_OF_MONTH);
+		return DateFields.getDayOfMonth(DateFields.getDefault().pack(timestamp));
 	}
 	
 	/**
@@ -178,17 +183,26 @@ public class TimeUtils {
 	 * @return
 	 */
 	public static int getDayOfYear(Date d) {
-		return getYear(date2timestamp(d));
+		return getDayOfYear(date2timestamp(d));
 	}
 	
 	/**
-	 * 获取指定日期在所有年份第几天
+	 * 获取指定日期在所有年份第几天,使用默认时区
 	 * 
-	 * @param d
+	 * @param timestamp
 	 * @return
 	 */
 	public static int getDayOfYear(long timestamp) {
-		Calendar calendar = Calendar.getInstance(Locale.getDefault());
-		return calendar.get(Calendar.DAY_OF_YEAR);
+		return DateFields.getDayOfYear(DateFields.getDefault().pack(timestamp));
+	}
+	
+	/**
+	 * 一次获取所有日期字段,使用默认时区.批量处理时可以直接持有{@link DateFields}实例
+	 * 
+	 * @param timestamp
+	 * @return 返回打包的字段,通过{@link DateFields#getYear(long)}等方法取出
+	 */
+	public static long getDateFields(long timestamp) {
+		return DateFields.getDefault().pack(timestamp);
 	}
 }
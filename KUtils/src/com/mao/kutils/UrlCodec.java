@@ -0,0 +1,361 @@
+package com.mao.kutils;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * <p>
+ * 	URL百分号编码解码
+ * </p>
+ * <p>
+ * 	不同位置允许出现的字符不同,因此按位置提供了几种规则:{@link #PATH_SEGMENT}、{@link #PATH}、{@link #QUERY}、{@link #FORM}.
+ *  每种规则不需要编码的字符预先计算为ASCII位图,判断一个字符只需要一次移位.
+ *  不需要编码(或者解码)的字符串直接原样返回,不会分配新的对象;也可以把结果追加到调用者复用的StringBuilder中.
+ * </p>
+ * <p>
+ * 	UrlCodec是不可变的,可以在多个线程中使用.
+ * </p>
+ *
+ * @author mao
+ * */
+public final class UrlCodec {
+
+	private static final String ALPHA_DIGIT = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789";
+
+	/** RFC 3986 unreserved */
+	private static final String UNRESERVED = ALPHA_DIGIT + "-._~";
+
+	/** RFC 3986 sub-delims */
+	private static final String SUB_DELIMS = "!$&'()*+,;=";
+
+	/** 路径中的一段,'/'会被编码 */
+	public static final UrlCodec PATH_SEGMENT = new UrlCodec(UNRESERVED + SUB_DELIMS + ":@", false);
+
+	/** 完整的路径,保留'/' */
+	public static final UrlCodec PATH = new UrlCodec(UNRESERVED + SUB_DELIMS + ":@/", false);
+
+	/** 查询参数的名称或者值,'&'、'='、'+'、';'、'#'和空格会被编码 */
+	public static final UrlCodec QUERY = new UrlCodec(UNRESERVED + "!$'()*,:@/?", false);
+
+	/** application/x-www-form-urlencoded,空格编码为'+',与{@link java.net.URLEncoder}的结果相同 */
+	public static final UrlCodec FORM = new UrlCodec(ALPHA_DIGIT + "-._*", true);
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+
+	/** 字符集是否兼容ASCII,按名称缓存 */
+	private static final ConcurrentHashMap<String, Boolean> sAsciiCompatible = new ConcurrentHashMap<String, Boolean>();
+
+	/** 字符0-63中不需要编码的字符 */
+	private final long mSafeLow;
+
+	/** 字符64-127中不需要编码的字符 */
+	private final long mSafeHigh;
+
+	/** 空格是否编码为'+',同时解码时'+'解码为空格 */
+	private final boolean mSpaceAsPlus;
+
+	private UrlCodec(String safeChars, boolean spaceAsPlus) {
+		long low = 0;
+		long high = 0;
+		for(int i = 0; i < safeChars.length(); i++) {
+			char c = safeChars.charAt(i);
+			if(c < 64) {
+				low |= 1L << c;
+			} else {
+				high |= 1L << (c - 64);
+			}
+		}
+		mSafeLow = low;
+		mSafeHigh = high;
+		mSpaceAsPlus = spaceAsPlus;
+	}
+
+	private boolean isSafe(char c) {
+		if(c < 64) {
+			return (mSafeLow & (1L << c)) != 0;
+		}
+		return c < 128 && (mSafeHigh & (1L << (c - 64))) != 0;
+	}
+
+	/**
+	 * 按UTF-8编码
+	 *
+	 * @param s 要编码的字符串
+	 * @return 返回编码后的字符串,不需要编码时返回s本身,s为null时返回null
+	 */
+	public String encode(String s) {
+		return encode(s, UTF_8);
+	}
+
+	/**
+	 * 按指定字符集编码
+	 *
+	 * @param s 要编码的字符串
+	 * @param charset 需要编码的字符使用的字符集
+	 * @return 返回编码后的字符串,不需要编码时返回s本身,s为null时返回null
+	 */
+	public String encode(String s, Charset charset) {
+		if(s == null) {
+			return null;
+		}
+		int first = indexOfUnsafe(s);
+		if(first < 0) {
+			return s;
+		}
+		StringBuilder sb = new StringBuilder(s.length() + 16);
+		sb.append(s, 0, first);
+		encodeFrom(s, first, charset, sb);
+		return sb.toString();
+	}
+
+	/**
+	 * 编码后追加到out中
+	 *
+	 * @param s 要编码的字符串
+	 * @param charset 需要编码的字符使用的字符集
+	 * @param out 结果追加到这里
+	 * @return 返回out
+	 */
+	public StringBuilder encode(CharSequence s, Charset charset, StringBuilder out) {
+		int first = indexOfUnsafe(s);
+		if(first < 0) {
+			return out.append(s);
+		}
+		out.append(s, 0, first);
+		encodeFrom(s, first, charset, out);
+		return out;
+	}
+
+	private int indexOfUnsafe(CharSequence s) {
+		int length = s.length();
+		for(int i = 0; i < length; i++) {
+			if(!isSafe(s.charAt(i))) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private void encodeFrom(CharSequence s, int start, Charset charset, StringBuilder out) {
+		boolean utf8 = UTF_8.equals(charset);
+		//UTF-16等字符集中ASCII字符不是单个字节,需要与URLEncoder一样按字符集编码
+		boolean ascii = utf8 || isAsciiCompatible(charset);
+		int length = s.length();
+		int i = start;
+		while(i < length) {
+			char c = s.charAt(i);
+			if(isSafe(c)) {
+				out.append(c);
+				i++;
+			} else if(c == ' ' && mSpaceAsPlus) {
+				out.append('+');
+				i++;
+			} else if(c < 128 && ascii) {
+				appendEscaped(out, c);
+				i++;
+			} else if(utf8) {
+				i = appendUtf8(s, i, out);
+			} else {
+				//连续需要按字符集编码的字符一起编码,保证代理对不被拆开
+				int end = i + 1;
+				while(end < length && needsCharsetEncoding(s.charAt(end), ascii)) {
+					end++;
+				}
+				ByteBuffer bytes = charset.encode(CharBuffer.wrap(s, i, end));
+				while(bytes.hasRemaining()) {
+					appendEscaped(out, bytes.get());
+				}
+				i = end;
+			}
+		}
+	}
+
+	private boolean needsCharsetEncoding(char c, boolean ascii) {
+		if(ascii) {
+			return c >= 128;
+		}
+		return !isSafe(c) && !(c == ' ' && mSpaceAsPlus);
+	}
+
+	//ASCII字符编码后是否都是与自身相同的单个字节
+	private static boolean isAsciiCompatible(Charset charset) {
+		Boolean compatible = sAsciiCompatible.get(charset.name());
+		if(compatible == null) {
+			char[] chars = new char[128];
+			for(int i = 0; i < chars.length; i++) {
+				chars[i] = (char) i;
+			}
+			ByteBuffer bytes = charset.encode(CharBuffer.wrap(chars));
+			boolean same = bytes.remaining() == chars.length;
+			for(int i = 0; same && i < chars.length; i++) {
+				same = bytes.get() == i;
+			}
+			compatible = same;
+			sAsciiCompatible.put(charset.name(), compatible);
+		}
+		return compatible;
+	}
+
+	//编码index处的非ASCII字符,返回下一个字符的位置
+	private static int appendUtf8(CharSequence s, int index, StringBuilder out) {
+		char c = s.charAt(index++);
+		if(c < 0x800) {
+			appendEscaped(out, 0xc0 | (c >> 6));
+			appendEscaped(out, 0x80 | (c & 0x3f));
+		} else if(Character.isHighSurrogate(c) && index < s.length() && Character.isLowSurrogate(s.charAt(index))) {
+			int cp = Character.toCodePoint(c, s.charAt(index++));
+			appendEscaped(out, 0xf0 | (cp >> 18));
+			appendEscaped(out, 0x80 | ((cp >> 12) & 0x3f));
+			appendEscaped(out, 0x80 | ((cp >> 6) & 0x3f));
+			appendEscaped(out, 0x80 | (cp & 0x3f));
+		} else if(c >= Character.MIN_SURROGATE && c <= Character.MAX_SURROGATE) {
+			//不成对的代理字符与String.getBytes一样替换为'?'
+			appendEscaped(out, '?');
+		} else {
+			appendEscaped(out, 0xe0 | (c >> 12));
+			appendEscaped(out, 0x80 | ((c >> 6) & 0x3f));
+			appendEscaped(out, 0x80 | (c & 0x3f));
+		}
+		return index;
+	}
+
+	private static void appendEscaped(StringBuilder out, int b) {
+		out.append('%').append(HEX_DIGITS[(b >> 4) & 0x0f]).append(HEX_DIGITS[b & 0x0f]);
+	}
+
+	/**
+	 * 按UTF-8解码
+	 *
+	 * @param s 要解码的字符串
+	 * @return 返回解码后的字符串,不需要解码时返回s本身,s为null或者包含不完整的%转义时返回null
+	 */
+	public String decode(String s) {
+		return decode(s, UTF_8);
+	}
+
+	/**
+	 * 按指定字符集解码
+	 *
+	 * @param s 要解码的字符串
+	 * @param charset %转义的字节解码时使用的字符集
+	 * @return 返回解码后的字符串,不需要解码时返回s本身,s为null或者包含不完整的%转义时返回null
+	 */
+	public String decode(String s, Charset charset) {
+		if(s == null) {
+			return null;
+		}
+		int first = indexOfEscaped(s);
+		if(first < 0) {
+			return s;
+		}
+		StringBuilder sb = new StringBuilder(s.length());
+		sb.append(s, 0, first);
+		return decodeFrom(s, first, charset, sb) ? sb.toString() : null;
+	}
+
+	/**
+	 * 解码后追加到out中
+	 *
+	 * @param s 要解码的字符串
+	 * @param charset %转义的字节解码时使用的字符集
+	 * @param out 结果追加到这里
+	 * @return 解码成功返回out,包含不完整的%转义时返回null,此时out中可能已追加部分内容
+	 */
+	public StringBuilder decode(CharSequence s, Charset charset, StringBuilder out) {
+		int first = indexOfEscaped(s);
+		if(first < 0) {
+			return out.append(s);
+		}
+		out.append(s, 0, first);
+		return decodeFrom(s, first, charset, out) ? out : null;
+	}
+
+	private int indexOfEscaped(CharSequence s) {
+		int length = s.length();
+		for(int i = 0; i < length; i++) {
+			char c = s.charAt(i);
+			if(c == '%' || (c == '+' && mSpaceAsPlus)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private boolean decodeFrom(CharSequence s, int start, Charset charset, StringBuilder out) {
+		boolean utf8 = UTF_8.equals(charset);
+		int length = s.length();
+		int i = start;
+		while(i < length) {
+			char c = s.charAt(i);
+			if(c == '+' && mSpaceAsPlus) {
+				out.append(' ');
+				i++;
+			} else if(c != '%') {
+				out.append(c);
+				i++;
+			} else {
+				//连续的%转义一起解码,多字节字符可能跨越多个转义
+				int count = 0;
+				boolean ascii = true;
+				int end = i;
+				while(end < length && s.charAt(end) == '%') {
+					int b = escapedByte(s, end);
+					if(b < 0) {
+						return false;
+					}
+					ascii &= b < 128;
+					count++;
+					end += 3;
+				}
+				if(ascii && (utf8 || isAsciiCompatible(charset))) {
+					for(int k = i; k < end; k += 3) {
+						out.append((char) escapedByte(s, k));
+					}
+				} else {
+					byte[] bytes = new byte[count];
+					for(int k = 0; k < count; k++) {
+						bytes[k] = (byte) escapedByte(s, i + k * 3);
+					}
+					out.append(new String(bytes, charset));
+				}
+				i = end;
+			}
+		}
+		return true;
+	}
+
+	//解析index处'%'之后的两个十六进制字符,不合法时返回-1
+	private static int escapedByte(CharSequence s, int index) {
+		if(index + 2 >= s.length()) {
+			return -1;
+		}
+		int high = ByteUtils.hexValue(s.charAt(index + 1));
+		int low = ByteUtils.hexValue(s.charAt(index + 2));
+		if((high | low) < 0) {
+			return -1;
+		}
+		return high << 4 | low;
+	}
+
+	/**
+	 * 向URL追加一个查询参数,按UTF-8编码参数名和值.URL中还没有'?'时先追加'?',否则追加'&'
+	 *
+	 * @param url 已有的URL
+	 * @param name 参数名
+	 * @param value 参数值,为null时只追加参数名
+	 * @return 返回url
+	 */
+	public static StringBuilder appendQueryParameter(StringBuilder url, String name, String value) {
+		url.append(url.indexOf("?") < 0 ? '?' : '&');
+		QUERY.encode(name, UTF_8, url);
+		if(value != null) {
+			url.append('=');
+			QUERY.encode(value, UTF_8, url);
+		}
+		return url;
+	}
+}
@@ -0,0 +1,82 @@
+package com.mao.test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import com.mao.kutils.Base64Codec;
+import com.mao.kutils.BaseEncryptHelper;
+
+public class Base64CodecTest extends TestCase {
+
+	private static final Charset US_ASCII = Charset.forName("US-ASCII");
+
+	public void testRfc4648Vectors() {
+		String[] raw = {"", "f", "fo", "foo", "foob", "fooba", "foobar"};
+		String[] encoded = {"", "Zg==", "Zm8=", "Zm9v", "Zm9vYg==", "Zm9vYmE=", "Zm9vYmFy"};
+		for(int i = 0; i < raw.length; i++) {
+			byte[] data = raw[i].getBytes(US_ASCII);
+			assertEquals(encoded[i], Base64Codec.STANDARD.encodeToString(data));
+			assertTrue(Arrays.equals(data, Base64Codec.STANDARD.decode(encoded[i])));
+			//没有填充也可以解码
+			assertTrue(Arrays.equals(data, Base64Codec.STANDARD.decode(encoded[i].replace("=", ""))));
+		}
+		assertEquals("-_8", Base64Codec.URL_SAFE.withoutPadding().encodeToString(new byte[] {(byte) 0xfb, (byte) 0xff}));
+	}
+
+	public void testRejectsInvalidInput() {
+		assertNull(Base64Codec.STANDARD.decode("Z"));
+		assertNull(Base64Codec.STANDARD.decode("Zg=a"));
+		assertNull(Base64Codec.STANDARD.decode("Zm9v\n"));
+		assertNull(Base64Codec.URL_SAFE.decode("+/8="));
+		assertTrue(Arrays.equals("foo".getBytes(US_ASCII), Base64Codec.MIME.decode("Zm\r\n9v")));
+	}
+
+	public void testLineBreaks() {
+		byte[] data = new byte[100];
+		new Random(1).nextBytes(data);
+		String mime = Base64Codec.MIME.encodeToString(data);
+		assertEquals(76, mime.indexOf("\r\n"));
+		assertFalse(mime.endsWith("\n"));
+		//与android.util.Base64.DEFAULT一致:每行以"\n"结尾
+		String def = new String(BaseEncryptHelper.encodeBase64(data), US_ASCII);
+		assertEquals(mime.replace("\r\n", "\n") + "\n", def);
+		assertTrue(Arrays.equals(data, BaseEncryptHelper.decodeBase64(def.getBytes(US_ASCII))));
+	}
+
+	public void testStreams() throws IOException {
+		byte[] data = new byte[20000];
+		new Random(2).nextBytes(data);
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		OutputStream os = Base64Codec.MIME.wrap(baos);
+		for(int offset = 0; offset < data.length; offset += 777) {
+			os.write(data, offset, Math.min(777, data.length - offset));
+		}
+		os.close();
+		assertTrue(Arrays.equals(Base64Codec.MIME.encode(data), baos.toByteArray()));
+
+		InputStream is = Base64Codec.MIME.wrap(new ByteArrayInputStream(baos.toByteArray()));
+		ByteArrayOutputStream decoded = new ByteArrayOutputStream();
+		byte[] buffer = new byte[1000];
+		int n;
+		while((n = is.read(buffer)) != -1) {
+			decoded.write(buffer, 0, n);
+		}
+		assertTrue(Arrays.equals(data, decoded.toByteArray()));
+
+		is = Base64Codec.STANDARD.wrap(new ByteArrayInputStream("Zm9v!".getBytes(US_ASCII)));
+		try {
+			while(is.read() != -1) {
+			}
+			fail();
+		} catch (IOException expected) {
+		}
+	}
+}
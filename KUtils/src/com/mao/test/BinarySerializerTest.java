@@ -0,0 +1,202 @@
+package com.mao.test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import junit.framework.TestCase;
+
+import com.mao.kutils.BinarySerializer;
+
+public class BinarySerializerTest extends TestCase {
+
+	enum Color {
+		RED, GREEN
+	}
+
+	static class Item implements java.io.Serializable {
+		private static final long serialVersionUID = 1L;
+		int id;
+		long time;
+		double price;
+		String name;
+		Color color;
+		Item parent;
+		int[] tags;
+		List<String> labels = new ArrayList<String>();
+	}
+
+	static class OldVersion {
+		int id;
+		String removed = "x";
+	}
+
+	static class NewVersion {
+		long id;
+		String added = "default";
+	}
+
+	static class ByLength implements Comparator<String> {
+
+		@Override
+		public int compare(String a, String b) {
+			return a.length() != b.length() ? a.length() - b.length() : a.compareTo(b);
+		}
+	}
+
+	static class Holder {
+		Date created;
+		Date same;
+		ConcurrentHashMap<String, Integer> counts;
+		CopyOnWriteArrayList<String> listeners;
+		TreeSet<String> names;
+		TreeMap<String, Integer> lengths;
+	}
+
+	public void testRoundTrip() {
+		Item item = new Item();
+		item.id = -7;
+		item.time = 1L << 40;
+		item.price = 9.5;
+		item.name = "名称😀";
+		item.color = Color.GREEN;
+		item.parent = item;
+		item.tags = new int[] {1, -1, 300};
+		item.labels.add("a");
+		item.labels.add("a");
+
+		Item copy = (Item) BinarySerializer.fromBytes(BinarySerializer.toBytes(item));
+		assertEquals(-7, copy.id);
+		assertEquals(1L << 40, copy.time);
+		assertEquals(9.5, copy.price);
+		assertEquals("名称😀", copy.name);
+		assertEquals(Color.GREEN, copy.color);
+		assertSame(copy, copy.parent);
+		assertEquals(300, copy.tags[2]);
+		assertSame(copy.labels.get(0), copy.labels.get(1));
+	}
+
+	public void testSmallerThanJavaSerialization() throws Exception {
+		List<Item> items = new ArrayList<Item>();
+		for(int i = 0; i < 100; i++) {
+			Item item = new Item();
+			item.id = i;
+			item.name = "item";
+			item.labels.add("label" + (i % 5));
+			items.add(item);
+		}
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		ObjectOutputStream oos = new ObjectOutputStream(baos);
+		oos.writeObject(items);
+		oos.close();
+		byte[] data = BinarySerializer.toBytes(items);
+		assertTrue(data.length * 2 < baos.size());
+	}
+
+	public void testSchemaEvolution() {
+		BinarySerializer.registerSchema(OldVersion.class, 1001);
+		OldVersion old = new OldVersion();
+		old.id = 42;
+		Map<String, Object> map = new LinkedHashMap<String, Object>();
+		map.put("value", old);
+		byte[] data = BinarySerializer.toBytes(map);
+
+		//模拟类被修改:同一个模式编号对应新的类
+		BinarySerializer.registerSchema(NewVersion.class, 1002);
+		int index = indexOfVarInt(data, 1001);
+		data[index] = (byte) (1002 & 0x7f | 0x80);
+		data[index + 1] = (byte) (1002 >>> 7);
+		Map<?, ?> read = (Map<?, ?>) BinarySerializer.fromBytes(data);
+		NewVersion value = (NewVersion) read.get("value");
+		assertEquals(42L, value.id);
+		assertEquals("default", value.added);
+	}
+
+	private static int indexOfVarInt(byte[] data, int v) {
+		byte b0 = (byte) (v & 0x7f | 0x80);
+		byte b1 = (byte) (v >>> 7);
+		for(int i = 0; i < data.length - 1; i++) {
+			if(data[i] == b0 && data[i + 1] == b1) {
+				return i;
+			}
+		}
+		throw new AssertionError("varint not found");
+	}
+
+	public void testDate() {
+		Holder holder = new Holder();
+		holder.created = new Date(1234567890123L);
+		holder.same = holder.created;
+		Holder copy = (Holder) BinarySerializer.fromBytes(BinarySerializer.toBytes(holder));
+		assertEquals(1234567890123L, copy.created.getTime());
+		assertSame(copy.created, copy.same);
+		assertEquals(new Date(-1L), BinarySerializer.fromBytes(BinarySerializer.toBytes(new Date(-1L))));
+	}
+
+	public void testConcreteContainerTypes() {
+		Holder holder = new Holder();
+		holder.counts = new ConcurrentHashMap<String, Integer>();
+		holder.counts.put("a", 1);
+		holder.listeners = new CopyOnWriteArrayList<String>();
+		holder.listeners.add("x");
+		Holder copy = (Holder) BinarySerializer.fromBytes(BinarySerializer.toBytes(holder));
+		assertEquals(ConcurrentHashMap.class, copy.counts.getClass());
+		assertEquals(Integer.valueOf(1), copy.counts.get("a"));
+		assertEquals(CopyOnWriteArrayList.class, copy.listeners.getClass());
+		assertEquals("x", copy.listeners.get(0));
+	}
+
+	public void testComparatorKept() {
+		Holder holder = new Holder();
+		holder.names = new TreeSet<String>(new ByLength());
+		holder.names.add("ccc");
+		holder.names.add("a");
+		holder.names.add("bb");
+		holder.lengths = new TreeMap<String, Integer>(new ByLength());
+		holder.lengths.put("ccc", 3);
+		holder.lengths.put("a", 1);
+		Holder copy = (Holder) BinarySerializer.fromBytes(BinarySerializer.toBytes(holder));
+		assertTrue(copy.names.comparator() instanceof ByLength);
+		assertEquals("[a, bb, ccc]", copy.names.toString());
+		copy.names.add("dd");
+		assertEquals("[a, bb, dd, ccc]", copy.names.toString());
+		assertTrue(copy.lengths.comparator() instanceof ByLength);
+		assertEquals("a", copy.lengths.firstKey());
+	}
+
+	public void testUnsupportedTypesRejectedOnWrite() {
+		assertNull(BinarySerializer.toBytes(Locale.US));
+		TreeSet<String> reversed = new TreeSet<String>(Collections.<String>reverseOrder());
+		reversed.add("a");
+		assertNull(BinarySerializer.toBytes(reversed));
+	}
+
+	public void testCorruptLength() {
+		//int数组,长度为Integer.MAX_VALUE
+		byte[] array = {'K', 'B', 1, 13, 4, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, 0x07, 0};
+		assertNull(BinarySerializer.fromBytes(array));
+		//字符串,长度为2^28
+		byte[] string = {'K', 'B', 1, 10, (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, 0x01, 'a'};
+		assertNull(BinarySerializer.fromBytes(string));
+		//ArrayList,长度为2^28
+		byte[] list = {'K', 'B', 1, 15, 0, (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, 0x01, 0};
+		assertNull(BinarySerializer.fromBytes(list));
+	}
+
+	public void testMalformedTreeSetReturnsNull() {
+		//TreeSet中同时有Integer和String,加入时抛出ClassCastException
+		byte[] data = {'K', 'B', 1, 15, 4, 2, 3, 2, 10, 1, 'a'};
+		assertNull(BinarySerializer.fromBytes(data));
+	}
+}
@@ -0,0 +1,143 @@
+package com.mao.test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.util.Arrays;
+import java.util.Random;
+
+import android.graphics.Bitmap;
+import android.graphics.Bitmap.CompressFormat;
+import android.graphics.Color;
+import android.os.Build;
+import android.test.AndroidTestCase;
+
+import com.mao.kutils.BitmapEncoder;
+import com.mao.kutils.BulkDeleter;
+
+/**
+ * 需要真实的Bitmap和编码器,作为instrumentation测试运行
+ */
+public class BitmapEncoderTest extends AndroidTestCase {
+
+	private File dir;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		dir = TestFiles.createTempDir("BitmapEncoderTest");
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		BulkDeleter.delete(dir);
+		super.tearDown();
+	}
+
+	//随机颜色,JPEG质量越高编码结果越大
+	private static Bitmap noise(int width, int height, Bitmap.Config config) {
+		int[] colors = new int[width * height];
+		Random random = new Random(1);
+		for(int i = 0; i < colors.length; i++) {
+			colors[i] = 0xff000000 | random.nextInt(0x1000000);
+		}
+		return Bitmap.createBitmap(colors, width, height, config);
+	}
+
+	private static Bitmap solid(int width, int height, int color) {
+		int[] colors = new int[width * height];
+		Arrays.fill(colors, color);
+		return Bitmap.createBitmap(colors, width, height, Bitmap.Config.RGB_565);
+	}
+
+	private static int encodedSize(Bitmap bitmap, CompressFormat format, int quality) {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		assertTrue(bitmap.compress(format, quality, out));
+		return out.size();
+	}
+
+	public void testChooseFormat() {
+		Bitmap alpha = noise(32, 32, Bitmap.Config.ARGB_8888);
+		assertTrue(alpha.hasAlpha());
+		assertEquals(Build.VERSION.SDK_INT >= 18 ? CompressFormat.WEBP : CompressFormat.PNG, BitmapEncoder.chooseFormat(alpha));
+		//颜色很少的位图使用PNG
+		assertEquals(CompressFormat.PNG, BitmapEncoder.chooseFormat(solid(32, 32, Color.RED)));
+		assertEquals(CompressFormat.JPEG, BitmapEncoder.chooseFormat(noise(32, 32, Bitmap.Config.RGB_565)));
+
+		BitmapEncoder encoder = new BitmapEncoder();
+		assertNotNull(encoder.encode(noise(32, 32, Bitmap.Config.RGB_565)));
+		assertEquals(CompressFormat.JPEG, encoder.getLastFormat());
+		assertEquals(BitmapEncoder.DEFAULT_QUALITY, encoder.getLastQuality());
+		//指定的格式优先
+		assertNotNull(encoder.setFormat(CompressFormat.PNG).encode(noise(32, 32, Bitmap.Config.RGB_565)));
+		assertEquals(CompressFormat.PNG, encoder.getLastFormat());
+	}
+
+	public void testMaxBytesSearchesQuality() {
+		Bitmap bitmap = noise(128, 128, Bitmap.Config.RGB_565);
+		int low = encodedSize(bitmap, CompressFormat.JPEG, 40);
+		int high = encodedSize(bitmap, CompressFormat.JPEG, 80);
+		assertTrue(low < high);
+		int maxBytes = (low + high) / 2;
+
+		BitmapEncoder encoder = new BitmapEncoder().setFormat(CompressFormat.JPEG).setMaxBytes(maxBytes);
+		byte[] data = encoder.encode(bitmap);
+		int quality = encoder.getLastQuality();
+		assertTrue(data.length <= maxBytes);
+		assertEquals(encodedSize(bitmap, CompressFormat.JPEG, quality), data.length);
+		//找到的是不超过限制的最高质量
+		assertTrue(quality > 40 && quality < 80);
+		assertTrue(encodedSize(bitmap, CompressFormat.JPEG, quality + 1) > maxBytes);
+
+		//写入输出流的结果相同
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		assertTrue(encoder.encode(bitmap, out));
+		assertTrue(Arrays.equals(data, out.toByteArray()));
+
+		//不超过限制时直接使用设置的质量
+		encoder.setMaxBytes(high * 10).setQuality(80);
+		assertEquals(high, encoder.encode(bitmap).length);
+		assertEquals(80, encoder.getLastQuality());
+
+		//最低质量也超过限制时使用最低质量的结果
+		encoder.setMaxBytes(1);
+		assertEquals(encodedSize(bitmap, CompressFormat.JPEG, BitmapEncoder.MIN_QUALITY), encoder.encode(bitmap).length);
+		assertEquals(BitmapEncoder.MIN_QUALITY, encoder.getLastQuality());
+
+		//PNG忽略字节数限制
+		encoder.setFormat(CompressFormat.PNG);
+		assertEquals(encodedSize(bitmap, CompressFormat.PNG, 80), encoder.encode(bitmap).length);
+	}
+
+	public void testEncodeToFile() throws Exception {
+		Bitmap bitmap = noise(64, 64, Bitmap.Config.RGB_565);
+		BitmapEncoder encoder = new BitmapEncoder();
+		byte[] expected = encoder.encode(bitmap);
+
+		//同名的.tmp文件不会被覆盖或者删除
+		File file = new File(dir, "sub/a.jpg");
+		file.getParentFile().mkdirs();
+		File other = new File(dir, "sub/a.jpg.tmp");
+		TestFiles.write(other, 7);
+		assertTrue(encoder.encodeToFile(bitmap, file.getPath()));
+		assertEquals(expected.length, file.length());
+		assertEquals(7, other.length());
+		//临时文件已经重命名,没有留下其它文件
+		String[] names = file.getParentFile().list();
+		Arrays.sort(names);
+		assertTrue(Arrays.equals(new String[] {"a.jpg", "a.jpg.tmp"}, names));
+
+		//覆盖已有的文件,父目录不存在时自动创建
+		assertTrue(encoder.setMaxBytes(expected.length / 2).encodeToFile(bitmap, file.getPath()));
+		assertTrue(file.length() <= expected.length / 2);
+		File nested = new File(dir, "x/y/b.jpg");
+		assertTrue(encoder.encodeToFile(bitmap, nested.getPath()));
+		assertTrue(nested.isFile());
+
+		//失败时目标文件保持不变
+		long length = file.length();
+		bitmap.recycle();
+		assertFalse(encoder.encodeToFile(bitmap, file.getPath()));
+		assertEquals(length, file.length());
+		assertFalse(encoder.encodeToFile(noise(8, 8, Bitmap.Config.RGB_565), new File(other, "c.jpg").getPath()));
+	}
+}
@@ -0,0 +1,142 @@
+package com.mao.test;
+
+import android.graphics.Bitmap;
+import android.graphics.Color;
+import android.os.Build;
+import android.test.AndroidTestCase;
+
+import com.mao.kutils.BitmapPool;
+
+/**
+ * 需要真实的Bitmap,作为instrumentation测试运行
+ */
+public class BitmapPoolTest extends AndroidTestCase {
+
+	/** 10x10的ARGB_8888位图占用的字节数 */
+	private static final int SIZE_10 = 10 * 10 * 4;
+
+	private static Bitmap create(int width, int height) {
+		return Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+	}
+
+	public void testPutAndGet() {
+		BitmapPool pool = new BitmapPool(SIZE_10 * 10);
+		Bitmap bitmap = create(10, 10);
+		bitmap.eraseColor(Color.RED);
+		assertTrue(pool.put(bitmap));
+		//同一个位图不会重复放入
+		assertFalse(pool.put(bitmap));
+		assertEquals(SIZE_10, pool.getCurrentSize());
+
+		assertNull(pool.get(10, 10, Bitmap.Config.RGB_565));
+		assertNull(pool.get(10, 11, Bitmap.Config.ARGB_8888));
+		assertEquals(2, pool.getMissCount());
+		assertEquals(0, pool.getHitCount());
+
+		Bitmap reused = pool.get(10, 10, Bitmap.Config.ARGB_8888);
+		assertSame(bitmap, reused);
+		//get()清空内容
+		assertEquals(Color.TRANSPARENT, reused.getPixel(0, 0));
+		assertEquals(1, pool.getHitCount());
+		assertEquals(0, pool.getCurrentSize());
+		assertNull(pool.get(10, 10, Bitmap.Config.ARGB_8888));
+		assertEquals(3, pool.getMissCount());
+
+		//getDirty()保留原来的内容
+		reused.eraseColor(Color.RED);
+		assertTrue(pool.put(reused));
+		assertEquals(Color.RED, pool.getDirty(10, 10, Bitmap.Config.ARGB_8888).getPixel(0, 0));
+	}
+
+	public void testRejectsUnusableBitmaps() {
+		BitmapPool pool = new BitmapPool(SIZE_10 * 10);
+		assertFalse(pool.put(null));
+		Bitmap immutable = Bitmap.createBitmap(new int[100], 10, 10, Bitmap.Config.ARGB_8888);
+		assertFalse(immutable.isMutable());
+		assertFalse(pool.put(immutable));
+		Bitmap recycled = create(10, 10);
+		recycled.recycle();
+		assertFalse(pool.put(recycled));
+		//比上限还大的位图不放入,也不会被回收
+		Bitmap large = create(40, 40);
+		assertFalse(pool.put(large));
+		assertFalse(large.isRecycled());
+		assertEquals(0, pool.getCurrentSize());
+		try {
+			new BitmapPool(0);
+			fail();
+		} catch (IllegalArgumentException e) {
+		}
+	}
+
+	public void testLruEviction() {
+		BitmapPool pool = new BitmapPool(SIZE_10 * 2);
+		Bitmap a = create(10, 10);
+		Bitmap b = create(10, 10);
+		Bitmap c = create(10, 10);
+		assertTrue(pool.put(a));
+		assertTrue(pool.put(b));
+		assertTrue(pool.put(c));
+		//超过上限时淘汰并回收最早放入的
+		assertTrue(a.isRecycled());
+		assertEquals(1, pool.getEvictionCount());
+		assertEquals(SIZE_10 * 2, pool.getCurrentSize());
+		//同样尺寸的位图先取最近放入的
+		assertSame(c, pool.getDirty(10, 10, Bitmap.Config.ARGB_8888));
+		assertSame(b, pool.getDirty(10, 10, Bitmap.Config.ARGB_8888));
+		assertFalse(b.isRecycled());
+	}
+
+	public void testByteBudget() {
+		BitmapPool pool = new BitmapPool(SIZE_10 * 4);
+		Bitmap small = create(10, 10);
+		Bitmap large = create(10, 30);
+		assertTrue(pool.put(small));
+		assertTrue(pool.put(large));
+		assertEquals(SIZE_10 * 4, pool.getCurrentSize());
+
+		//缩小上限时立即淘汰
+		pool.setMaxSize(SIZE_10 * 3);
+		assertEquals(SIZE_10 * 3, pool.getMaxSize());
+		assertTrue(small.isRecycled());
+		assertEquals(SIZE_10 * 3, pool.getCurrentSize());
+
+		pool.trimToSize(SIZE_10);
+		assertTrue(large.isRecycled());
+		assertEquals(0, pool.getCurrentSize());
+		assertEquals(2, pool.getEvictionCount());
+
+		Bitmap bitmap = create(10, 10);
+		assertTrue(pool.put(bitmap));
+		pool.clear();
+		assertTrue(bitmap.isRecycled());
+		assertEquals(0, pool.getCurrentSize());
+		assertNull(pool.getDirty(10, 10, Bitmap.Config.ARGB_8888));
+	}
+
+	public void testGetReusable() {
+		BitmapPool pool = new BitmapPool(SIZE_10 * 100);
+		Bitmap medium = create(20, 20);
+		Bitmap large = create(40, 40);
+		assertTrue(pool.put(large));
+		assertTrue(pool.put(medium));
+		if(Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+			//只要求内存足够,选择满足条件的最小位图
+			assertSame(medium, pool.getReusable(15, 15, Bitmap.Config.ARGB_8888));
+			//不选择超过所需内存4倍的位图
+			assertNull(pool.getReusable(10, 10, Bitmap.Config.ARGB_8888));
+			assertSame(large, pool.getReusable(30, 40, Bitmap.Config.RGB_565));
+		} else {
+			//inBitmap要求尺寸相同
+			assertNull(pool.getReusable(15, 15, Bitmap.Config.ARGB_8888));
+			assertSame(medium, pool.getReusable(20, 20, Bitmap.Config.ARGB_8888));
+			assertSame(large, pool.getReusable(40, 40, Bitmap.Config.ARGB_8888));
+		}
+		assertEquals(2, pool.getHitCount());
+		assertEquals(1, pool.getMissCount());
+		assertEquals(0, pool.getCurrentSize());
+		//按内存取出后其他索引中也不再有该位图
+		assertNull(pool.getDirty(20, 20, Bitmap.Config.ARGB_8888));
+		assertNull(pool.getDirty(40, 40, Bitmap.Config.ARGB_8888));
+	}
+}
@@ -0,0 +1,27 @@
+package com.mao.test;
+
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+import com.mao.kutils.BitmapTransformer;
+
+public class BitmapTransformerTest extends TestCase {
+
+	public void testKey() {
+		assertEquals("", new BitmapTransformer().getKey());
+		assertEquals("centerCrop(100x50)|round(8.0)",
+				new BitmapTransformer().centerCrop(100, 50).roundedCorners(8).getKey());
+		assertFalse(new BitmapTransformer().circle().resize(10, 10).getKey()
+				.equals(new BitmapTransformer().resize(10, 10).circle().getKey()));
+	}
+
+	public void testOutputSize() {
+		//圆形取较小的边
+		assertTrue(Arrays.equals(new int[] {300, 300}, new BitmapTransformer().circle().getOutputSize(400, 300)));
+		assertTrue(Arrays.equals(new int[] {100, 50}, new BitmapTransformer().centerCrop(100, 50).getOutputSize(400, 300)));
+		assertTrue(Arrays.equals(new int[] {50, 50}, new BitmapTransformer().centerCrop(100, 50).circle().getOutputSize(400, 300)));
+		assertTrue(Arrays.equals(new int[] {64, 64}, new BitmapTransformer().circle().resize(64, 64).getOutputSize(400, 300)));
+		assertTrue(Arrays.equals(new int[] {400, 300}, new BitmapTransformer().getOutputSize(400, 300)));
+	}
+}
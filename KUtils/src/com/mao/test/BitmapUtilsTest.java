@@ -0,0 +1,35 @@
+package com.mao.test;
+
+import junit.framework.TestCase;
+
+import android.graphics.Bitmap;
+import android.graphics.Bitmap.CompressFormat;
+
+import com.mao.kutils.BitmapEncoder;
+import com.mao.kutils.BitmapUtils;
+
+public class BitmapUtilsTest extends TestCase {
+
+	public void testCalculateInSampleSize() {
+		assertEquals(1, BitmapUtils.calculateInSampleSize(4000, 3000, 0, 0));
+		assertEquals(1, BitmapUtils.calculateInSampleSize(100, 100, 200, 200));
+		//缩小后不能小于目标尺寸
+		assertEquals(8, BitmapUtils.calculateInSampleSize(4000, 3000, 400, 300));
+		assertEquals(4, BitmapUtils.calculateInSampleSize(4000, 3000, 400, 600));
+		//只限制高度
+		assertEquals(16, BitmapUtils.calculateInSampleSize(4000, 3000, 0, 100));
+	}
+
+	public void testBytesPerPixel() {
+		assertEquals(4, BitmapUtils.getBytesPerPixel(Bitmap.Config.ARGB_8888));
+		assertEquals(2, BitmapUtils.getBytesPerPixel(Bitmap.Config.RGB_565));
+		assertEquals(1, BitmapUtils.getBytesPerPixel(Bitmap.Config.ALPHA_8));
+	}
+
+	public void testFormatForPath() {
+		assertEquals(CompressFormat.JPEG, BitmapEncoder.formatForPath("/sdcard/a.JPG"));
+		assertEquals(CompressFormat.PNG, BitmapEncoder.formatForPath("a.png"));
+		assertEquals(CompressFormat.WEBP, BitmapEncoder.formatForPath("a.webp"));
+		assertNull(BitmapEncoder.formatForPath("cache/avatar"));
+	}
+}
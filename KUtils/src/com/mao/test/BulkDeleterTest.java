@@ -0,0 +1,131 @@
+package com.mao.test;
+
+import java.io.File;
+import java.util.concurrent.Future;
+
+import junit.framework.TestCase;
+
+import com.mao.kutils.BulkDeleter;
+import com.mao.kutils.FileUtils;
+
+public class BulkDeleterTest extends TestCase {
+
+	private File dir;
+
+	private File outside;
+
+	/**
+	 * 删除名为"bad"的文件时抛出异常
+	 */
+	static class ThrowingFile extends File {
+
+		private static final long serialVersionUID = 1L;
+
+		ThrowingFile(File file) {
+			super(file.getPath());
+		}
+
+		@Override
+		public File[] listFiles() {
+			File[] children = super.listFiles();
+			if(children != null) {
+				for(int i = 0; i < children.length; i++) {
+					children[i] = new ThrowingFile(children[i]);
+				}
+			}
+			return children;
+		}
+
+		@Override
+		public boolean delete() {
+			if(getName().equals("bad")) {
+				throw new SecurityException("denied");
+			}
+			return super.delete();
+		}
+	}
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		dir = TestFiles.createTempDir("BulkDeleterTest");
+		outside = TestFiles.createTempDir("BulkDeleterTest-outside");
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		BulkDeleter.delete(dir);
+		BulkDeleter.delete(outside);
+		super.tearDown();
+	}
+
+	public void testDelete() throws Exception {
+		TestFiles.write(new File(dir, "a"), 10);
+		new File(dir, "sub/sub").mkdirs();
+		TestFiles.write(new File(dir, "sub/sub/b"), 20);
+		BulkDeleter.Result result = BulkDeleter.delete(dir);
+		assertTrue(result.isSuccessful());
+		assertEquals(2, result.getDeletedFiles());
+		assertEquals(3, result.getDeletedDirectories());
+		assertEquals(30, result.getBytesFreed());
+		assertFalse(dir.exists());
+
+		TestFiles.write(new File(outside, "b"), 5);
+		assertEquals(5, FileUtils.deleteWithResult(new File(outside, "b").getPath()).getBytesFreed());
+		assertEquals(0, FileUtils.deleteWithResult("").getDeletedFiles());
+	}
+
+	public void testClearInBackground() throws Exception {
+		TestFiles.write(new File(dir, "a"), 10);
+		new File(dir, "sub").mkdirs();
+		TestFiles.write(new File(dir, "sub/b"), 20);
+		Future<BulkDeleter.Result> future = BulkDeleter.clearInBackground(dir);
+		//返回时目录已经重新创建并且为空
+		assertTrue(dir.isDirectory());
+		assertEquals(0, dir.list().length);
+		BulkDeleter.Result result = future.get();
+		assertTrue(result.isSuccessful());
+		assertEquals(30, result.getBytesFreed());
+		//sub和重命名后的原目录
+		assertEquals(2, result.getDeletedDirectories());
+	}
+
+	public void testSymlinksNotCounted() throws Exception {
+		TestFiles.write(new File(dir, "a"), 10);
+		File target = new File(outside, "big");
+		TestFiles.write(target, 1000);
+		TestFiles.symlink(target, new File(dir, "fileLink"));
+		TestFiles.symlink(outside, new File(dir, "dirLink"));
+		BulkDeleter.Result result = BulkDeleter.delete(dir);
+		assertTrue(result.isSuccessful());
+		assertEquals(3, result.getDeletedFiles());
+		//目录链接不计入;文件链接不解析规范路径,按目标的大小计入
+		assertEquals(1010, result.getBytesFreed());
+		assertEquals(1000, target.length());
+		assertTrue(new File(outside, "big").exists());
+
+		//删除链接本身
+		File link = new File(outside, "link");
+		TestFiles.symlink(target, link);
+		assertEquals(0, BulkDeleter.delete(link).getBytesFreed());
+		assertTrue(target.exists());
+	}
+
+	public void testTaskFailureDoesNotHang() throws Exception {
+		new File(dir, "sub").mkdirs();
+		TestFiles.write(new File(dir, "sub/bad"), 1);
+		TestFiles.write(new File(dir, "sub/good"), 1);
+		final BulkDeleter.Result[] result = new BulkDeleter.Result[1];
+		Thread thread = new Thread() {
+
+			@Override
+			public void run() {
+				result[0] = BulkDeleter.delete(new ThrowingFile(dir));
+			}
+		};
+		thread.start();
+		thread.join(10000);
+		assertFalse(thread.isAlive());
+		assertFalse(result[0].isSuccessful());
+	}
+}
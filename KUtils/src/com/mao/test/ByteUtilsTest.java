@@ -0,0 +1,46 @@
+package com.mao.test;
+
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+import com.mao.kutils.ByteUtils;
+
+public class ByteUtilsTest extends TestCase {
+
+	public void testHexPadsSmallBytes() {
+		byte[] data = {0, 1, 0x0f, 0x10, 0x7f, (byte) 0x80, (byte) 0xff};
+		assertEquals("00010f107f80ff", ByteUtils.bytes2HexString(data));
+		assertEquals("00010F107F80FF", ByteUtils.bytes2HexString(data, true));
+		assertEquals("", ByteUtils.bytes2HexString(new byte[0]));
+		assertNull(ByteUtils.bytes2HexString(null));
+
+		//与Integer.toHexString补零后的结果相同
+		byte[] all = new byte[256];
+		StringBuilder expected = new StringBuilder();
+		for(int i = 0; i < all.length; i++) {
+			all[i] = (byte) i;
+			expected.append(i < 16 ? "0" : "").append(Integer.toHexString(i));
+		}
+		assertEquals(expected.toString(), ByteUtils.bytes2HexString(all));
+		assertTrue(Arrays.equals(all, ByteUtils.hexString2Bytes(expected.toString().toUpperCase())));
+	}
+
+	public void testDecodeHexRejectsInvalidInput() {
+		byte[] dst = new byte[4];
+		assertEquals(2, ByteUtils.decodeHex("0aFf", 0, 4, dst, 0));
+		assertEquals(10, dst[0]);
+		assertEquals(-1, dst[1]);
+
+		//长度为奇数
+		assertEquals(-1, ByteUtils.decodeHex("0a0", 0, 3, dst, 0));
+		assertNull(ByteUtils.hexString2Bytes("abc"));
+
+		//非十六进制字符,包括非ASCII字符
+		String[] invalid = {"0g", "g0", " 0", "0x", "-1", "٠١", "0０", "İı"};
+		for(String s : invalid) {
+			assertEquals(s, -1, ByteUtils.decodeHex(s, 0, s.length(), dst, 0));
+			assertNull(ByteUtils.hexString2Bytes(s));
+		}
+	}
+}
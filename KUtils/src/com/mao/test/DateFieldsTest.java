@@ -0,0 +1,80 @@
+package com.mao.test;
+
+import java.util.Calendar;
+import java.util.Date;
+import java.util.GregorianCalendar;
+import java.util.Random;
+import java.util.TimeZone;
+
+import junit.framework.TestCase;
+
+import com.mao.kutils.DateFields;
+
+public class DateFieldsTest extends TestCase {
+
+	private static final String[] ZONES = {
+		"UTC", "Asia/Shanghai", "America/New_York", "Europe/London", "Australia/Lord_Howe", "Africa/Casablanca",
+	};
+
+	public void testMatchesCalendar() {
+		Random random = new Random(5);
+		for(String id : ZONES) {
+			TimeZone zone = TimeZone.getTimeZone(id);
+			DateFields dateFields = DateFields.getInstance(zone);
+			GregorianCalendar calendar = new GregorianCalendar(zone);
+			//全部按公历计算
+			calendar.setGregorianChange(new Date(Long.MIN_VALUE));
+			for(int i = 0; i < 20000; i++) {
+				//1900年到2100年,集中在相邻的时间以命中缓存
+				long timestamp = i % 2 == 0
+						? -2208988800000L + (long) (random.nextDouble() * 6311433600000L)
+						: 1700000000000L + random.nextInt(400) * 3600000L + random.nextInt(3600000);
+				assertFields(dateFields, calendar, timestamp);
+			}
+		}
+	}
+
+	public void testAroundTransitions() {
+		TimeZone zone = TimeZone.getTimeZone("America/New_York");
+		DateFields dateFields = DateFields.getInstance(zone);
+		GregorianCalendar calendar = new GregorianCalendar(zone);
+		//2024-03-10T07:00:00Z进入夏令时,2024-11-03T06:00:00Z退出
+		long[] transitions = {1710054000000L, 1730613600000L};
+		for(long transition : transitions) {
+			for(long delta = -2; delta <= 2; delta++) {
+				assertFields(dateFields, calendar, transition + delta);
+			}
+		}
+	}
+
+	public void testPackedRange() {
+		DateFields utc = DateFields.getInstance(TimeZone.getTimeZone("UTC"));
+		long fields = utc.pack(0);
+		assertEquals(1970, DateFields.getYear(fields));
+		assertEquals(1, DateFields.getMonth(fields));
+		assertEquals(Calendar.THURSDAY, DateFields.getDayOfWeek(fields));
+		//公元前1年为0
+		assertEquals(0, DateFields.getYear(utc.pack(-62135596800000L - 1)));
+		assertEquals(366, DateFields.getDayOfYear(utc.pack(951782400000L + 306L * 86400000L)));
+		try {
+			utc.pack(Long.MAX_VALUE / 2);
+			fail();
+		} catch (IllegalArgumentException e) {
+		}
+	}
+
+	private static void assertFields(DateFields dateFields, Calendar calendar, long timestamp) {
+		calendar.setTimeInMillis(timestamp);
+		long fields = dateFields.pack(timestamp);
+		String message = dateFields + " " + timestamp;
+		assertEquals(message, calendar.get(Calendar.YEAR), DateFields.getYear(fields));
+		assertEquals(message, calendar.get(Calendar.MONTH) + 1, DateFields.getMonth(fields));
+		assertEquals(message, calendar.get(Calendar.DAY_OF_MONTH), DateFields.getDayOfMonth(fields));
+		assertEquals(message, calendar.get(Calendar.DAY_OF_YEAR), DateFields.getDayOfYear(fields));
+		assertEquals(message, calendar.get(Calendar.DAY_OF_WEEK), DateFields.getDayOfWeek(fields));
+		assertEquals(message, calendar.get(Calendar.HOUR_OF_DAY), DateFields.getHour(fields));
+		assertEquals(message, calendar.get(Calendar.MINUTE), DateFields.getMinute(fields));
+		assertEquals(message, calendar.get(Calendar.SECOND), DateFields.getSecond(fields));
+		assertEquals(message, calendar.get(Calendar.MILLISECOND), DateFields.getMillis(fields));
+	}
+}
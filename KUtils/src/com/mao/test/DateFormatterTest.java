@@ -0,0 +1,65 @@
+package com.mao.test;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.Random;
+import java.util.TimeZone;
+
+import junit.framework.TestCase;
+
+import com.mao.kutils.DateFormatter;
+
+public class DateFormatterTest extends TestCase {
+
+	private static final String[] PATTERNS = {
+		"yyyy-MM-dd HH:mm:ss",
+		"yyyy-MM-dd'T'HH:mm:ss.SSS",
+		"HH:mm 'o''clock' dd/MM",
+		"yyyy年MM月dd日",
+		"EEE, d MMM yyyy hh:mm a",
+	};
+
+	private static final String[] ZONES = {"UTC", "Asia/Shanghai", "America/New_York", "Asia/Kathmandu"};
+
+	public void testMatchesSimpleDateFormat() {
+		Random random = new Random(3);
+		//th_TH使用佛历,年份比公历多543年,不能走快速路径
+		Locale[] locales = {Locale.US, new Locale("th", "TH")};
+		for(Locale locale : locales) {
+			for(String pattern : PATTERNS) {
+				for(String id : ZONES) {
+					TimeZone zone = TimeZone.getTimeZone(id);
+					DateFormatter formatter = DateFormatter.getInstance(pattern, locale, zone);
+					SimpleDateFormat expected = new SimpleDateFormat(pattern, locale);
+					expected.setTimeZone(zone);
+					for(int i = 0; i < 2000; i++) {
+						//公元1600年到2200年之间,包括1970年之前的负数时间戳
+						long timestamp = -11676096000000L + (long) (random.nextDouble() * 18934560000000L);
+						assertEquals(expected.format(new Date(timestamp)), formatter.format(timestamp));
+						//同一秒内的缓存
+						assertEquals(expected.format(new Date(timestamp + 1)), formatter.format(timestamp + 1));
+					}
+					//超出快速路径的年份
+					assertEquals(expected.format(new Date(-62135769600000L)), formatter.format(-62135769600000L));
+				}
+			}
+		}
+	}
+
+	public void testInstancesAreShared() {
+		TimeZone zone = TimeZone.getTimeZone("UTC");
+		assertSame(DateFormatter.getInstance("HH:mm", Locale.US, zone), DateFormatter.getInstance("HH:mm", Locale.US, zone));
+		//24小时制
+		assertEquals("1970-01-01 13:05:09", DateFormatter.getInstance(DateFormatter.DEFAULT_PATTERN, Locale.US, zone)
+				.format(13 * 3600000L + 5 * 60000L + 9000L));
+	}
+
+	public void testInvalidPattern() {
+		try {
+			DateFormatter.getInstance("yyyy-qq", Locale.US, TimeZone.getTimeZone("UTC"));
+			fail();
+		} catch (IllegalArgumentException e) {
+		}
+	}
+}
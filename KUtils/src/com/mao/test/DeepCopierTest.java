@@ -0,0 +1,71 @@
+package com.mao.test;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import com.mao.kutils.DeepCopier;
+
+public class DeepCopierTest extends TestCase {
+
+	static class Node implements Serializable {
+		private static final long serialVersionUID = 1L;
+		int id;
+		String name;
+		Node next;
+		int[] values;
+		List<Node> children = new ArrayList<Node>();
+		transient Object cache;
+	}
+
+	static class Immutable implements Serializable {
+		private static final long serialVersionUID = 1L;
+		final int value;
+
+		Immutable(int value) {
+			this.value = value;
+		}
+	}
+
+	public void testCopiesGraphWithCycles() {
+		Node a = new Node();
+		a.id = 1;
+		a.name = "a";
+		a.values = new int[] {1, 2};
+		a.cache = new Object();
+		Node b = new Node();
+		b.id = 2;
+		a.next = b;
+		b.next = a;
+		a.children.add(b);
+
+		Node copy = DeepCopier.copy(a);
+		assertNotSame(a, copy);
+		assertEquals(1, copy.id);
+		assertEquals("a", copy.name);
+		assertNotSame(a.values, copy.values);
+		assertEquals(2, copy.values[1]);
+		assertNull(copy.cache);
+		assertNotSame(b, copy.next);
+		assertSame(copy, copy.next.next);
+		assertSame(copy.next, copy.children.get(0));
+	}
+
+	public void testCopiesCollectionsAndArrays() {
+		Map<String, Object[]> map = new HashMap<String, Object[]>();
+		Object[] array = {new Immutable(3), "s"};
+		map.put("k", array);
+
+		Map<String, Object[]> copy = DeepCopier.copy(map);
+		Object[] copiedArray = copy.get("k");
+		assertNotSame(array, copiedArray);
+		//没有无参构造方法的Serializable类通过序列化复制
+		assertNotSame(array[0], copiedArray[0]);
+		assertEquals(3, ((Immutable) copiedArray[0]).value);
+		assertSame(array[1], copiedArray[1]);
+	}
+}
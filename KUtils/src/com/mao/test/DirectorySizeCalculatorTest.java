@@ -0,0 +1,152 @@
+package com.mao.test;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import com.mao.kutils.BulkDeleter;
+import com.mao.kutils.DirectorySizeCalculator;
+
+public class DirectorySizeCalculatorTest extends TestCase {
+
+	private File dir;
+
+	private File outside;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		dir = TestFiles.createTempDir("DirectorySizeCalculatorTest");
+		outside = TestFiles.createTempDir("DirectorySizeCalculatorTest-outside");
+		TestFiles.write(new File(dir, "a"), 10000);
+		File sub = new File(dir, "sub");
+		sub.mkdirs();
+		TestFiles.write(new File(sub, "b"), 12);
+		TestFiles.write(new File(outside, "c"), 400000);
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		new File(dir, "sub").setReadable(true);
+		BulkDeleter.delete(dir);
+		BulkDeleter.delete(outside);
+		super.tearDown();
+	}
+
+	public void testSize() {
+		assertEquals(10012, new DirectorySizeCalculator().calculate(dir.getPath()));
+		DirectorySizeCalculator calculator = new DirectorySizeCalculator().setParallel(false);
+		assertEquals(10012, calculator.calculate(dir.getPath()));
+		assertEquals(2, calculator.getFileCount());
+		assertEquals(0, calculator.getSkippedDirectoryCount());
+
+		assertEquals(10000, new DirectorySizeCalculator().calculate(new File(dir, "a").getPath()));
+		assertEquals(0, new DirectorySizeCalculator().calculate(new File(dir, "missing").getPath()));
+		assertEquals(0, new DirectorySizeCalculator().calculate(""));
+	}
+
+	public void testSymlinksNotFollowed() throws Exception {
+		TestFiles.symlink(dir, new File(dir, "sub/loop"));
+		TestFiles.symlink(outside, new File(dir, "outside"));
+
+		assertEquals(10012, new DirectorySizeCalculator().calculate(dir.getPath()));
+		assertEquals(10012, new DirectorySizeCalculator().setParallel(false).calculate(dir.getPath()));
+
+		DirectorySizeCalculator.SizeCache cache = new DirectorySizeCalculator.SizeCache();
+		assertEquals(10012, new DirectorySizeCalculator().setSizeCache(cache).calculate(dir.getPath()));
+		assertEquals(10012, new DirectorySizeCalculator().setSizeCache(cache).calculate(dir.getPath()));
+	}
+
+	public void testUnreadableDirectory() {
+		File sub = new File(dir, "sub");
+		assertTrue(sub.setReadable(false));
+		DirectorySizeCalculator calculator = new DirectorySizeCalculator().setParallel(false);
+		long size = calculator.calculate(dir.getPath());
+		if(sub.list() == null) {
+			//无法列出的目录被跳过,不能按文件统计目录本身的大小
+			assertEquals(10000, size);
+			assertEquals(1, calculator.getFileCount());
+			assertEquals(1, calculator.getSkippedDirectoryCount());
+		} else {
+			//以root运行时仍然可以列出
+			assertEquals(10012, size);
+			assertEquals(0, calculator.getSkippedDirectoryCount());
+		}
+	}
+
+	public void testProgressListener() {
+		final List<long[]> progress = new ArrayList<long[]>();
+		long size = new DirectorySizeCalculator().setParallel(false).setOnProgressListener(
+				new DirectorySizeCalculator.OnProgressListener() {
+
+			@Override
+			public void onProgress(long fileCount, long totalBytes) {
+				progress.add(new long[] {fileCount, totalBytes});
+			}
+		}).calculate(dir.getPath());
+		assertEquals(10012, size);
+		//每个目录回调一次,子目录先于根目录完成
+		assertEquals(2, progress.size());
+		assertEquals(1, progress.get(0)[0]);
+		assertEquals(12, progress.get(0)[1]);
+		assertEquals(2, progress.get(1)[0]);
+		assertEquals(10012, progress.get(1)[1]);
+	}
+
+	public void testCancel() {
+		DirectorySizeCalculator calculator = new DirectorySizeCalculator();
+		calculator.cancel();
+		assertTrue(calculator.isCancelled());
+		assertEquals(-1, calculator.calculate(dir.getPath()));
+
+		//在回调中取消,并行与否都返回-1
+		for(boolean parallel : new boolean[] {false, true}) {
+			final DirectorySizeCalculator cancelling = new DirectorySizeCalculator().setParallel(parallel);
+			cancelling.setOnProgressListener(new DirectorySizeCalculator.OnProgressListener() {
+
+				@Override
+				public void onProgress(long fileCount, long totalBytes) {
+					cancelling.cancel();
+				}
+			});
+			assertEquals(-1, cancelling.calculate(dir.getPath()));
+		}
+	}
+
+	public void testSizeCache() throws Exception {
+		File sub = new File(dir, "sub");
+		DirectorySizeCalculator.SizeCache cache = new DirectorySizeCalculator.SizeCache();
+		assertEquals(10012, new DirectorySizeCalculator().setSizeCache(cache).calculate(dir.getPath()));
+
+		//原地修改文件内容不改变目录的修改时间,缓存的结果被复用
+		RandomAccessFile file = new RandomAccessFile(new File(sub, "b"), "rw");
+		try {
+			file.setLength(20);
+		} finally {
+			file.close();
+		}
+		DirectorySizeCalculator calculator = new DirectorySizeCalculator().setSizeCache(cache);
+		assertEquals(10012, calculator.calculate(dir.getPath()));
+		assertEquals(2, calculator.getFileCount());
+
+		cache.invalidate(sub.getPath());
+		assertEquals(10020, new DirectorySizeCalculator().setSizeCache(cache).calculate(dir.getPath()));
+
+		//增加文件后目录的修改时间改变,缓存失效
+		TestFiles.write(new File(sub, "c"), 5);
+		assertTrue(sub.setLastModified(sub.lastModified() + 2000));
+		assertEquals(10025, new DirectorySizeCalculator().setSizeCache(cache).calculate(dir.getPath()));
+
+		file = new RandomAccessFile(new File(dir, "a"), "rw");
+		try {
+			file.setLength(1);
+		} finally {
+			file.close();
+		}
+		cache.clear();
+		assertEquals(26, new DirectorySizeCalculator().setSizeCache(cache).calculate(dir.getPath()));
+	}
+}
@@ -0,0 +1,231 @@
+package com.mao.test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import junit.framework.TestCase;
+
+import com.mao.kutils.BulkDeleter;
+import com.mao.kutils.DirectoryWalker;
+import com.mao.kutils.FileUtils;
+
+public class DirectoryWalkerTest extends TestCase {
+
+	private File dir;
+
+	private File outside;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		dir = TestFiles.createTempDir("DirectoryWalkerTest");
+		outside = TestFiles.createTempDir("DirectoryWalkerTest-outside");
+		TestFiles.write(new File(dir, "a.txt"), 1);
+		TestFiles.write(new File(dir, "b.jpg"), 1);
+		new File(dir, "sub/deep").mkdirs();
+		TestFiles.write(new File(dir, "sub/c.png"), 1);
+		TestFiles.write(new File(dir, "sub/deep/d.jpg"), 1);
+		new File(dir, "skip").mkdirs();
+		TestFiles.write(new File(dir, "skip/e.txt"), 1);
+		TestFiles.write(new File(outside, "f.txt"), 1);
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		BulkDeleter.delete(dir);
+		BulkDeleter.delete(outside);
+		super.tearDown();
+	}
+
+	//按相对路径排序,目录列表的顺序由文件系统决定
+	private List<String> collect(Iterable<File> walker) {
+		List<String> paths = new ArrayList<String>();
+		for(File file : walker) {
+			paths.add(relative(file));
+		}
+		Collections.sort(paths);
+		return paths;
+	}
+
+	private String relative(File file) {
+		return file.getPath().substring(dir.getPath().length() + 1);
+	}
+
+	public void testIteratesFiles() {
+		assertEquals(Arrays.asList("a.txt", "b.jpg", "skip/e.txt", "sub/c.png", "sub/deep/d.jpg"),
+				collect(FileUtils.walk(dir.getPath())));
+
+		Iterator<File> iterator = new DirectoryWalker(dir).setMaxDepth(1).iterator();
+		//hasNext()可以重复调用
+		assertTrue(iterator.hasNext());
+		assertTrue(iterator.hasNext());
+		iterator.next();
+		try {
+			iterator.remove();
+			fail();
+		} catch (UnsupportedOperationException e) {
+		}
+		iterator.next();
+		assertFalse(iterator.hasNext());
+		try {
+			iterator.next();
+			fail();
+		} catch (NoSuchElementException e) {
+		}
+	}
+
+	public void testMissingRoot() {
+		assertFalse(new DirectoryWalker(new File(dir, "missing")).iterator().hasNext());
+		//文件作为根目录时没有子项
+		assertFalse(new DirectoryWalker(new File(dir, "a.txt")).iterator().hasNext());
+	}
+
+	public void testDirectoriesBeforeChildren() {
+		List<String> paths = new ArrayList<String>();
+		for(File file : new DirectoryWalker(dir).setIncludeDirectories(true)) {
+			paths.add(relative(file));
+		}
+		assertEquals(8, paths.size());
+		assertTrue(paths.indexOf("sub") < paths.indexOf("sub/c.png"));
+		assertTrue(paths.indexOf("sub") < paths.indexOf("sub/deep"));
+		assertTrue(paths.indexOf("sub/deep") < paths.indexOf("sub/deep/d.jpg"));
+		assertTrue(paths.indexOf("skip") < paths.indexOf("skip/e.txt"));
+	}
+
+	public void testMaxDepth() {
+		assertEquals(Arrays.asList("a.txt", "b.jpg"), collect(new DirectoryWalker(dir).setMaxDepth(1)));
+		assertEquals(Arrays.asList("a.txt", "b.jpg", "skip", "sub"),
+				collect(new DirectoryWalker(dir).setMaxDepth(1).setIncludeDirectories(true)));
+		assertEquals(Arrays.asList("a.txt", "b.jpg", "skip/e.txt", "sub/c.png"), collect(new DirectoryWalker(dir).setMaxDepth(2)));
+		try {
+			new DirectoryWalker(dir).setMaxDepth(0);
+			fail();
+		} catch (IllegalArgumentException e) {
+		}
+	}
+
+	public void testNameFilter() {
+		assertEquals(Arrays.asList("b.jpg", "sub/c.png", "sub/deep/d.jpg"),
+				collect(new DirectoryWalker(dir).setNameFilter("*.{jpg,png}")));
+		assertEquals(Arrays.asList("a.txt", "skip/e.txt"), collect(new DirectoryWalker(dir).setNameFilter("?.txt")));
+		assertEquals(Arrays.asList("a.txt", "b.jpg"), collect(new DirectoryWalker(dir).setNameFilter("[a-b].*")));
+		assertEquals(Arrays.asList("sub/c.png", "sub/deep/d.jpg"), collect(new DirectoryWalker(dir).setNameFilter("[!abe]*")));
+		//正则表达式的特殊字符按字面匹配
+		assertEquals(Collections.<String>emptyList(), collect(new DirectoryWalker(dir).setNameFilter("a.tx+")));
+		//名称过滤不影响是否进入目录
+		assertEquals(Arrays.asList("sub", "sub/deep"),
+				collect(new DirectoryWalker(dir).setIncludeDirectories(true).setNameFilter("{sub,deep}")));
+		try {
+			new DirectoryWalker(dir).setNameFilter("[abc");
+			fail();
+		} catch (IllegalArgumentException e) {
+		}
+		try {
+			new DirectoryWalker(dir).setNameFilter("{a,b");
+			fail();
+		} catch (IllegalArgumentException e) {
+		}
+	}
+
+	public void testFilters() {
+		final List<String> seen = new ArrayList<String>();
+		DirectoryWalker walker = new DirectoryWalker(dir).setIncludeDirectories(true).setFilter(new DirectoryWalker.Filter() {
+
+			@Override
+			public boolean accept(File file, boolean isDirectory, int depth) {
+				assertEquals(file.isDirectory(), isDirectory);
+				assertEquals(relative(file).split("/").length, depth);
+				return !isDirectory && depth >= 2;
+			}
+		}).setDirectoryFilter(new DirectoryWalker.Filter() {
+
+			@Override
+			public boolean accept(File file, boolean isDirectory, int depth) {
+				assertTrue(isDirectory);
+				seen.add(relative(file));
+				return !file.getName().equals("skip");
+			}
+		});
+		assertEquals(Arrays.asList("sub/c.png", "sub/deep/d.jpg"), collect(walker));
+		Collections.sort(seen);
+		assertEquals(Arrays.asList("skip", "sub", "sub/deep"), seen);
+
+		//目录过滤不影响目录本身是否被返回
+		walker = new DirectoryWalker(dir).setIncludeDirectories(true).setDirectoryFilter(new DirectoryWalker.Filter() {
+
+			@Override
+			public boolean accept(File file, boolean isDirectory, int depth) {
+				return false;
+			}
+		});
+		assertEquals(Arrays.asList("a.txt", "b.jpg", "skip", "sub"), collect(walker));
+	}
+
+	public void testVisitorSkipAndTerminate() {
+		final List<String> visited = new ArrayList<String>();
+		assertTrue(FileUtils.walk(dir.getPath(), new DirectoryWalker.Visitor() {
+
+			@Override
+			public int visit(File file, boolean isDirectory, int depth) {
+				visited.add(relative(file));
+				return DirectoryWalker.CONTINUE;
+			}
+		}));
+		Collections.sort(visited);
+		assertEquals(Arrays.asList("a.txt", "b.jpg", "skip/e.txt", "sub/c.png", "sub/deep/d.jpg"), visited);
+
+		visited.clear();
+		assertTrue(new DirectoryWalker(dir).setIncludeDirectories(true).walk(new DirectoryWalker.Visitor() {
+
+			@Override
+			public int visit(File file, boolean isDirectory, int depth) {
+				visited.add(relative(file));
+				//对文件返回SKIP_SUBTREE等同于CONTINUE
+				return !isDirectory || file.getName().equals("sub") ? DirectoryWalker.SKIP_SUBTREE : DirectoryWalker.CONTINUE;
+			}
+		}));
+		Collections.sort(visited);
+		assertEquals(Arrays.asList("a.txt", "b.jpg", "skip", "skip/e.txt", "sub"), visited);
+
+		visited.clear();
+		assertFalse(new DirectoryWalker(dir).walk(new DirectoryWalker.Visitor() {
+
+			@Override
+			public int visit(File file, boolean isDirectory, int depth) {
+				visited.add(relative(file));
+				return visited.size() == 2 ? DirectoryWalker.TERMINATE : DirectoryWalker.CONTINUE;
+			}
+		}));
+		assertEquals(2, visited.size());
+		assertFalse(FileUtils.walk("", new DirectoryWalker.Visitor() {
+
+			@Override
+			public int visit(File file, boolean isDirectory, int depth) {
+				return DirectoryWalker.CONTINUE;
+			}
+		}));
+	}
+
+	public void testSymlinks() throws Exception {
+		TestFiles.symlink(dir, new File(dir, "sub/loop"));
+		TestFiles.symlink(outside, new File(dir, "out"));
+		TestFiles.symlink(new File(outside, "f.txt"), new File(dir, "link.txt"));
+
+		//默认不进入指向目录的链接,但链接本身会作为条目返回
+		assertEquals(Arrays.asList("a.txt", "b.jpg", "link.txt", "skip/e.txt", "sub/c.png", "sub/deep/d.jpg"),
+				collect(new DirectoryWalker(dir)));
+		List<String> withDirectories = collect(new DirectoryWalker(dir).setIncludeDirectories(true));
+		assertTrue(withDirectories.contains("out"));
+		assertTrue(withDirectories.contains("sub/loop"));
+		assertEquals(11, withDirectories.size());
+
+		//跟随链接时进入out,但跳过指向上级目录的loop
+		assertEquals(Arrays.asList("a.txt", "b.jpg", "link.txt", "out/f.txt", "skip/e.txt", "sub/c.png", "sub/deep/d.jpg"),
+				collect(new DirectoryWalker(dir).setFollowLinks(true)));
+	}
+}
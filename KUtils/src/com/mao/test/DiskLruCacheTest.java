@@ -0,0 +1,147 @@
+package com.mao.test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import junit.framework.TestCase;
+
+import com.mao.kutils.BulkDeleter;
+import com.mao.kutils.DiskLruCache;
+
+public class DiskLruCacheTest extends TestCase {
+
+	private File dir;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		dir = File.createTempFile("DiskLruCacheTest", "");
+		dir.delete();
+		dir.mkdirs();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		BulkDeleter.delete(dir);
+		super.tearDown();
+	}
+
+	public void testWriteAndReopen() throws Exception {
+		DiskLruCache cache = DiskLruCache.open(dir, 1, 1024);
+		assertTrue(cache.put("a", new byte[] {1, 2, 3}));
+		DiskLruCache.Editor editor = cache.edit("b");
+		OutputStream out = editor.newOutputStream();
+		out.write(4);
+		out.close();
+		//未提交的内容不可见
+		assertNull(cache.get("b"));
+		editor.commit();
+		cache.close();
+
+		cache = DiskLruCache.open(dir, 1, 1024);
+		assertEquals(4, cache.size());
+		DiskLruCache.Snapshot snapshot = cache.get("a");
+		assertEquals(3, snapshot.getBytes().length);
+		snapshot.close();
+		cache.close();
+	}
+
+	public void testEvictsLeastRecentlyUsed() throws Exception {
+		DiskLruCache cache = DiskLruCache.open(dir, 1, 10, 3);
+		cache.put("a", new byte[4]);
+		cache.put("b", new byte[4]);
+		cache.get("a").close();
+		cache.put("c", new byte[4]);
+		cache.flush();
+		assertTrue(cache.contains("a"));
+		assertFalse(cache.contains("b"));
+		assertTrue(cache.contains("c"));
+		assertEquals(8, cache.size());
+		cache.close();
+	}
+
+	public void testReadOrderSurvivesReopen() throws Exception {
+		DiskLruCache cache = DiskLruCache.open(dir, 1, 30);
+		cache.put("a", new byte[10]);
+		cache.put("b", new byte[10]);
+		cache.put("c", new byte[10]);
+		cache.get("a").close();
+		cache.close();
+
+		cache = DiskLruCache.open(dir, 1, 30);
+		cache.put("d", new byte[10]);
+		cache.flush();
+		assertTrue(cache.contains("a"));
+		assertFalse(cache.contains("b"));
+		assertTrue(cache.contains("c"));
+		assertTrue(cache.contains("d"));
+		cache.close();
+	}
+
+	public void testUncommittedEditIsDiscardedOnReopen() throws Exception {
+		DiskLruCache cache = DiskLruCache.open(dir, 1, 1024);
+		cache.put("a", new byte[2]);
+		DiskLruCache.Editor editor = cache.edit("b");
+		editor.newOutputStream().close();
+		assertNull(cache.edit("b"));
+		//模拟进程在提交前退出,并且日志的最后一行只写了一半
+		OutputStream journal = new FileOutputStream(new File(dir, "journal"), true);
+		journal.write("CLEAN a 99".getBytes("UTF-8"));
+		journal.close();
+
+		cache = DiskLruCache.open(dir, 1, 1024);
+		assertEquals(2, cache.size());
+		assertFalse(cache.contains("b"));
+		assertFalse(new File(dir, "b.tmp").exists());
+		cache.close();
+	}
+
+	public void testMalformedJournalLineLeavesNoEntry() throws Exception {
+		DiskLruCache cache = DiskLruCache.open(dir, 1, 1024);
+		cache.put("a", new byte[2]);
+		cache.close();
+		OutputStream journal = new FileOutputStream(new File(dir, "journal"), true);
+		journal.write("CLEAN c abc\n".getBytes("UTF-8"));
+		journal.close();
+
+		cache = DiskLruCache.open(dir, 1, 1024);
+		assertFalse(cache.contains("c"));
+		cache.close();
+		//重建后的日志中也不能出现该缓存项
+		cache = DiskLruCache.open(dir, 1, 1024);
+		assertFalse(cache.contains("c"));
+		assertNull(cache.get("c"));
+		assertEquals(2, cache.size());
+		cache.close();
+	}
+
+	public void testFailedRenameReleasesEntry() throws Exception {
+		DiskLruCache cache = DiskLruCache.open(dir, 1, 1024);
+		//缓存文件的位置被一个非空目录占用,提交时重命名失败
+		File blocker = new File(dir, "a.0");
+		new File(blocker, "child").mkdirs();
+		DiskLruCache.Editor editor = cache.edit("a");
+		OutputStream out = editor.newOutputStream();
+		out.write(1);
+		out.close();
+		try {
+			editor.commit();
+			fail();
+		} catch (IOException e) {
+			//期望的结果
+		}
+		assertTrue(blocker.exists());
+		assertFalse(new File(dir, "a.tmp").exists());
+		assertFalse(cache.contains("a"));
+		assertEquals(0, cache.size());
+
+		//编辑锁已经释放
+		new File(blocker, "child").delete();
+		blocker.delete();
+		assertTrue(cache.put("a", new byte[3]));
+		assertEquals(3, cache.size());
+		cache.close();
+	}
+}
@@ -0,0 +1,106 @@
+package com.mao.test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import com.mao.kutils.BaseEncryptHelper;
+import com.mao.kutils.ByteUtils;
+import com.mao.kutils.Hasher;
+
+public class HasherTest extends TestCase {
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	public void testKnownVectors() {
+		assertEquals("900150983cd24fb0d6963f7d28e17f72", BaseEncryptHelper.md5("abc"));
+		assertEquals("a9993e364706816aba3e25717850c26c9cd0d89d", hex(BaseEncryptHelper.SHA1, "abc"));
+		assertEquals("ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad", hex(BaseEncryptHelper.SHA256, "abc"));
+		assertEquals("e3069283", hex(BaseEncryptHelper.CRC32C, "123456789"));
+		assertEquals("ef46db3751d8e999", hex(BaseEncryptHelper.XXHASH64, ""));
+		assertEquals("44bc2cf5ad770999", hex(BaseEncryptHelper.XXHASH64, "abc"));
+	}
+
+	public void testIncrementalMatchesOneShot() {
+		byte[] data = new byte[1000];
+		new Random(1).nextBytes(data);
+		String[] algorithms = {BaseEncryptHelper.MD5, BaseEncryptHelper.CRC32C, BaseEncryptHelper.XXHASH64};
+		for(String algorithm : algorithms) {
+			byte[] expected = BaseEncryptHelper.hash(algorithm, data);
+			Hasher hasher = BaseEncryptHelper.newHasher(algorithm);
+			//不规则的分段,覆盖缓冲区未满和跨越边界的情况
+			int offset = 0;
+			int step = 1;
+			while(offset < data.length) {
+				int n = Math.min(step, data.length - offset);
+				hasher.update(data, offset, n);
+				offset += n;
+				step = step * 3 % 67 + 1;
+			}
+			assertTrue(algorithm, Arrays.equals(expected, hasher.digest()));
+
+			ByteBuffer direct = ByteBuffer.allocateDirect(data.length);
+			direct.put(data).flip();
+			assertTrue(algorithm, Arrays.equals(expected, BaseEncryptHelper.hash(algorithm, direct)));
+			assertTrue(algorithm, Arrays.equals(expected, BaseEncryptHelper.hash(algorithm, new ByteArrayInputStream(data))));
+		}
+	}
+
+	public void testPooledHasherResetAfterFailure() {
+		byte[] data = "abc".getBytes(UTF_8);
+		byte[] expected = BaseEncryptHelper.hash(BaseEncryptHelper.MD5, data);
+		InputStream failing = new ByteArrayInputStream(new byte[100]) {
+
+			@Override
+			public synchronized int read(byte[] b, int off, int len) {
+				if(pos > 0) {
+					throw new IllegalStateException("broken");
+				}
+				return super.read(b, off, Math.min(len, 10));
+			}
+		};
+		try {
+			BaseEncryptHelper.hash(BaseEncryptHelper.MD5, failing);
+			fail();
+		} catch (IllegalStateException e) {
+			//已传入的数据不能留在缓存的Hasher中
+		}
+		assertTrue(Arrays.equals(expected, BaseEncryptHelper.hash(BaseEncryptHelper.MD5, data)));
+	}
+
+	public void testFileAndParallel() throws Exception {
+		File file = File.createTempFile("HasherTest", "");
+		try {
+			byte[] data = new byte[1024 * 1024 + 123];
+			new Random(2).nextBytes(data);
+			FileOutputStream fos = new FileOutputStream(file);
+			fos.write(data);
+			fos.close();
+
+			String algorithm = BaseEncryptHelper.SHA256;
+			assertTrue(Arrays.equals(BaseEncryptHelper.hash(algorithm, data), BaseEncryptHelper.hash(algorithm, file)));
+
+			//并行结果是各块哈希值拼接后的哈希值
+			int chunkSize = 300 * 1024;
+			Hasher root = BaseEncryptHelper.newHasher(algorithm);
+			for(int offset = 0; offset < data.length; offset += chunkSize) {
+				int n = Math.min(chunkSize, data.length - offset);
+				root.update(BaseEncryptHelper.hash(algorithm, Arrays.copyOfRange(data, offset, offset + n)));
+			}
+			assertTrue(Arrays.equals(root.digest(), BaseEncryptHelper.hashParallel(algorithm, file, chunkSize)));
+		} finally {
+			file.delete();
+		}
+	}
+
+	private static String hex(String algorithm, String s) {
+		return ByteUtils.bytes2HexString(BaseEncryptHelper.hash(algorithm, s.getBytes(UTF_8)));
+	}
+}
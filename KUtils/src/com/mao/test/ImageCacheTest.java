@@ -0,0 +1,83 @@
+package com.mao.test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+import com.mao.kutils.BulkDeleter;
+import com.mao.kutils.DiskLruCache;
+import com.mao.kutils.ImageCache;
+
+public class ImageCacheTest extends TestCase {
+
+	private File dir;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		dir = File.createTempFile("ImageCacheTest", "");
+		dir.delete();
+		dir.mkdirs();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		BulkDeleter.delete(dir);
+		super.tearDown();
+	}
+
+	public void testConcurrentRequestsAreCoalescedAndCachedOnDisk() throws Exception {
+		final byte[] payload = {1, 2, 3, 4};
+		final AtomicInteger fetches = new AtomicInteger();
+		final int threads = 6;
+		final CountDownLatch started = new CountDownLatch(threads);
+		final ImageCache cache = new ImageCache(1024 * 1024, DiskLruCache.open(dir, 1, 1024 * 1024), new ImageCache.Fetcher() {
+
+			@Override
+			public byte[] fetch(String url) throws IOException {
+				fetches.incrementAndGet();
+				//所有线程都发起请求后才完成下载
+				try {
+					started.await();
+				} catch (InterruptedException e) {
+					throw new IOException("interrupted");
+				}
+				return payload;
+			}
+		});
+
+		final byte[][] results = new byte[threads][];
+		final CountDownLatch done = new CountDownLatch(threads);
+		for(int i = 0; i < threads; i++) {
+			final int index = i;
+			new Thread() {
+
+				@Override
+				public void run() {
+					started.countDown();
+					results[index] = cache.getBytes("http://example.com/a.png");
+					done.countDown();
+				}
+			}.start();
+		}
+		done.await();
+
+		//下载完成前写入了磁盘缓存,下载完成之后才发起的请求从磁盘读取,都不会再次下载
+		assertEquals(1, fetches.get());
+		for(byte[] result : results) {
+			assertTrue(Arrays.equals(payload, result));
+		}
+		assertEquals(1, cache.getNetworkStats().getHitCount());
+
+		//第二次从磁盘读取
+		long diskHits = cache.getDiskStats().getHitCount();
+		assertTrue(Arrays.equals(payload, cache.getBytes("http://example.com/a.png")));
+		assertEquals(1, fetches.get());
+		assertEquals(diskHits + 1, cache.getDiskStats().getHitCount());
+		cache.close();
+	}
+}
@@ -0,0 +1,250 @@
+package com.mao.test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+import android.graphics.Bitmap;
+
+import com.mao.kutils.ByteUtils;
+import com.mao.kutils.ImageCache;
+import com.mao.kutils.ImageLoader;
+
+public class ImageLoaderTest extends TestCase {
+
+	/** 1x1的红色PNG */
+	private static final byte[] PNG = ByteUtils.hexString2Bytes("89504e470d0a1a0a0000000d4948445200000001000000010806"
+			+ "0000001f15c4890000000d49444154789c63f8cfc0f01f00050001ff89993d1d0000000049454e44ae426082");
+
+	private static final Executor DIRECT = new Executor() {
+
+		@Override
+		public void execute(Runnable command) {
+			command.run();
+		}
+	};
+
+	private static final Bitmap BITMAP = Bitmap.createBitmap(1, 1, Bitmap.Config.ARGB_8888);
+
+	/**
+	 * 不经过BitmapDecoder,地址包含broken时解码失败,其它返回同一个位图
+	 */
+	private static final class StubCache extends ImageCache {
+
+		final AtomicInteger decodes = new AtomicInteger();
+
+		StubCache() {
+			super(1024 * 1024, null, null);
+		}
+
+		@Override
+		public Bitmap decode(String url, byte[] data, int reqWidth, int reqHeight) {
+			decodes.incrementAndGet();
+			return url.contains("broken") ? null : BITMAP;
+		}
+	}
+
+	private LocalServer server;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		server = new LocalServer();
+		server.start();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		server.close();
+		super.tearDown();
+	}
+
+	public void testDuplicateRequestsShareOneDownloadAndCancelledTargetIsSkipped() throws Exception {
+		StubCache cache = new StubCache();
+		ImageLoader loader = new ImageLoader(cache, 2, 1, DIRECT);
+		String url = server.url("/a.png");
+		RecordingTarget a = new RecordingTarget();
+		RecordingTarget b = new RecordingTarget();
+		RecordingTarget c = new RecordingTarget();
+		loader.load(url, 100, 100, a);
+		loader.load(url, 100, 100, b);
+		ImageLoader.Request request = loader.load(url, 100, 100, c);
+		assertEquals(1, loader.getPendingCount());
+
+		//c在下载完成前滚出屏幕
+		assertTrue(server.awaitRequest());
+		request.cancel();
+		server.release();
+
+		assertTrue(a.await());
+		assertTrue(b.await());
+		a.assertLoaded();
+		b.assertLoaded();
+		//c在下载完成前已经从任务中移除,不会收到任何回调
+		assertEquals(0, c.loaded.get() + c.failed.get());
+		assertEquals(1, server.requests.get());
+		assertEquals(1, cache.decodes.get());
+		assertTrue(request.isCancelled());
+		loader.shutdown();
+	}
+
+	public void testDecodeFailureCallsOnFailed() throws Exception {
+		ImageLoader loader = new ImageLoader(new StubCache(), 1, 1, DIRECT);
+		RecordingTarget target = new RecordingTarget();
+		loader.load(server.url("/broken.png"), 0, 0, target);
+		server.release();
+		assertTrue(target.await());
+		assertEquals(0, target.loaded.get());
+		assertEquals(1, target.failed.get());
+		assertEquals(0, loader.getPendingCount());
+		loader.shutdown();
+	}
+
+	public void testCancellingAllRequestsSkipsDownload() throws Exception {
+		ImageLoader loader = new ImageLoader(new StubCache(), 1, 1, DIRECT);
+		//占用唯一的下载线程
+		RecordingTarget blocker = new RecordingTarget();
+		loader.load(server.url("/blocker.png"), 0, 0, blocker);
+		assertTrue(server.awaitRequest());
+
+		//下载队列后进先出,after在skipped之后执行,after完成时skipped一定已经被处理
+		RecordingTarget after = new RecordingTarget();
+		loader.load(server.url("/after.png"), 0, 0, after);
+		RecordingTarget target = new RecordingTarget();
+		loader.load(server.url("/skipped.png"), 0, 0, target);
+		loader.cancel(target);
+		server.release();
+		assertTrue(blocker.await());
+		assertTrue(after.await());
+		blocker.assertLoaded();
+		after.assertLoaded();
+		assertEquals(2, server.requests.get());
+		assertEquals(0, target.loaded.get() + target.failed.get());
+		loader.shutdown();
+	}
+
+	/**
+	 * 分别记录成功和失败的回调次数
+	 */
+	private static final class RecordingTarget implements ImageLoader.Target {
+
+		final CountDownLatch done = new CountDownLatch(1);
+
+		final AtomicInteger loaded = new AtomicInteger();
+
+		final AtomicInteger failed = new AtomicInteger();
+
+		volatile Bitmap bitmap;
+
+		@Override
+		public void onLoaded(Bitmap bitmap) {
+			this.bitmap = bitmap;
+			loaded.incrementAndGet();
+			done.countDown();
+		}
+
+		@Override
+		public void onFailed() {
+			failed.incrementAndGet();
+			done.countDown();
+		}
+
+		boolean await() throws InterruptedException {
+			return done.await(5, TimeUnit.SECONDS);
+		}
+
+		void assertLoaded() {
+			assertEquals(1, loaded.get());
+			assertEquals(0, failed.get());
+			assertSame(BITMAP, bitmap);
+		}
+	}
+
+	/**
+	 * 只能返回同一张图片的HTTP服务器,收到请求后等待release()才响应
+	 */
+	private static final class LocalServer extends Thread {
+
+		final ServerSocket socket;
+
+		final AtomicInteger requests = new AtomicInteger();
+
+		final CountDownLatch received = new CountDownLatch(1);
+
+		final CountDownLatch released = new CountDownLatch(1);
+
+		LocalServer() throws IOException {
+			socket = new ServerSocket(0);
+			setDaemon(true);
+		}
+
+		String url(String path) {
+			return "http://127.0.0.1:" + socket.getLocalPort() + path;
+		}
+
+		boolean awaitRequest() throws InterruptedException {
+			return received.await(5, TimeUnit.SECONDS);
+		}
+
+		void release() {
+			released.countDown();
+		}
+
+		void close() throws IOException {
+			released.countDown();
+			socket.close();
+		}
+
+		@Override
+		public void run() {
+			while(true) {
+				final Socket client;
+				try {
+					client = socket.accept();
+				} catch (IOException e) {
+					return;
+				}
+				new Thread() {
+
+					@Override
+					public void run() {
+						handle(client);
+					}
+				}.start();
+			}
+		}
+
+		private void handle(Socket client) {
+			try {
+				BufferedReader reader = new BufferedReader(new InputStreamReader(client.getInputStream(), "US-ASCII"));
+				String line;
+				while((line = reader.readLine()) != null && line.length() > 0) {
+				}
+				requests.incrementAndGet();
+				received.countDown();
+				released.await();
+				OutputStream out = client.getOutputStream();
+				out.write(("HTTP/1.1 200 OK\r\nContent-Type: image/png\r\nContent-Length: " + PNG.length
+						+ "\r\nConnection: close\r\n\r\n").getBytes("US-ASCII"));
+				out.write(PNG);
+				out.flush();
+			} catch (Exception e) {
+				e.printStackTrace();
+			} finally {
+				try {
+					client.close();
+				} catch (IOException e) {
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,344 @@
+package com.mao.test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import com.mao.kutils.BulkDeleter;
+import com.mao.kutils.IoUtils;
+
+public class IoUtilsTest extends TestCase {
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	/** 可能与临时目录不在同一个文件系统中的目录 */
+	private static final String[] OTHER_FILE_SYSTEMS = {"/dev/shm", System.getenv("EXTERNAL_STORAGE")};
+
+	private File dir;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		dir = TestFiles.createTempDir("IoUtilsTest");
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		BulkDeleter.delete(dir);
+		super.tearDown();
+	}
+
+	private static byte[] writeRandom(File file, int length, int seed) throws Exception {
+		byte[] data = new byte[length];
+		new Random(seed).nextBytes(data);
+		FileOutputStream out = new FileOutputStream(file);
+		try {
+			out.write(data);
+		} finally {
+			out.close();
+		}
+		return data;
+	}
+
+	private static byte[] read(File file) throws Exception {
+		FileInputStream in = new FileInputStream(file);
+		try {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			byte[] buffer = new byte[8192];
+			int n;
+			while((n = in.read(buffer)) != -1) {
+				out.write(buffer, 0, n);
+			}
+			return out.toByteArray();
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * 记录每次回调的进度,返回第cancelAt次回调时取消
+	 */
+	private static class RecordingListener implements IoUtils.OnProgressListener {
+
+		final List<long[]> calls = new ArrayList<long[]>();
+
+		private final int mCancelAt;
+
+		RecordingListener(int cancelAt) {
+			mCancelAt = cancelAt;
+		}
+
+		@Override
+		public boolean onProgress(long transferred, long total) {
+			calls.add(new long[] {transferred, total});
+			return calls.size() != mCancelAt;
+		}
+
+		long last() {
+			return calls.get(calls.size() - 1)[0];
+		}
+	}
+
+	public void testByteArrayBuilderSpansSegments() throws Exception {
+		byte[] data = new byte[200 * 1024 + 7];
+		new Random(1).nextBytes(data);
+		IoUtils.ByteArrayBuilder builder = new IoUtils.ByteArrayBuilder();
+		builder.write(data[0]);
+		builder.write(data, 1, data.length - 1);
+		assertEquals(data.length, builder.size());
+
+		ByteArrayOutputStream copy = new ByteArrayOutputStream();
+		builder.writeTo(copy);
+		assertTrue(Arrays.equals(data, copy.toByteArray()));
+		assertTrue(Arrays.equals(data, builder.toByteArray()));
+		ByteBuffer view = builder.asByteBuffer();
+		assertEquals(data.length, view.remaining());
+		builder.close();
+
+		//关闭后相当于重新创建
+		builder.write(data, 0, 3);
+		assertTrue(Arrays.equals(Arrays.copyOf(data, 3), builder.toByteArray()));
+		builder.close();
+	}
+
+	public void testExactCapacityIsHandedOffWithoutCopy() throws Exception {
+		byte[] data = new byte[1000];
+		new Random(2).nextBytes(data);
+		IoUtils.ByteArrayBuilder builder = new IoUtils.ByteArrayBuilder(data.length);
+		assertEquals(data.length, builder.readFrom(new ByteArrayInputStream(data)));
+		byte[] result = builder.toByteArray();
+		assertTrue(Arrays.equals(data, result));
+		assertSame(result, builder.array());
+
+		//已经交出的数组不会被reset()覆盖
+		builder.reset();
+		builder.write(new byte[10], 0, 10);
+		assertTrue(Arrays.equals(data, result));
+		builder.close();
+	}
+
+	public void testAsInputStreamReadsAcrossSegments() throws Exception {
+		byte[] data = new byte[150 * 1024 + 3];
+		new Random(3).nextBytes(data);
+		IoUtils.ByteArrayBuilder builder = new IoUtils.ByteArrayBuilder();
+		builder.write(data, 0, data.length);
+		InputStream in = builder.asInputStream();
+		assertEquals(data.length, in.available());
+		ByteArrayOutputStream copy = new ByteArrayOutputStream();
+		copy.write(in.read());
+		byte[] buffer = new byte[1000];
+		int n;
+		while((n = in.read(buffer, 0, buffer.length)) != -1) {
+			copy.write(buffer, 0, n);
+		}
+		assertEquals(-1, in.read());
+		assertTrue(Arrays.equals(data, copy.toByteArray()));
+		builder.close();
+
+		//关闭后为空
+		assertEquals(-1, builder.asInputStream().read());
+	}
+
+	public void testInputStream2StringWithShortReads() throws Exception {
+		StringBuilder sb = new StringBuilder();
+		for(int i = 0; i < 500; i++) {
+			sb.append("a中é😀\n");
+		}
+		String text = sb.toString();
+		byte[] data = text.getBytes(UTF_8);
+		int[] sizeHints = {-1, 0, 7, data.length, data.length * 2};
+		for(int sizeHint : sizeHints) {
+			//每次只返回1-5个字节,多字节字符会被拆开
+			InputStream in = new ByteArrayInputStream(data) {
+
+				private final Random mRandom = new Random(4);
+
+				@Override
+				public synchronized int read(byte[] b, int off, int len) {
+					return super.read(b, off, Math.min(len, 1 + mRandom.nextInt(5)));
+				}
+			};
+			assertEquals(text, IoUtils.inputStream2String(in, UTF_8, sizeHint));
+		}
+	}
+
+	public void testCopyFileToItself() throws Exception {
+		File file = File.createTempFile("IoUtilsTest", "");
+		try {
+			FileOutputStream out = new FileOutputStream(file);
+			out.write(new byte[100]);
+			out.close();
+			assertFalse(IoUtils.copyFile(file, file, null));
+			File alias = new File(file.getParentFile(), "./" + file.getName());
+			assertFalse(IoUtils.copyFile(file.getPath(), alias.getPath()));
+			assertEquals(100, file.length());
+		} finally {
+			file.delete();
+		}
+	}
+
+	public void testCopyFile() throws Exception {
+		File src = new File(dir, "src");
+		byte[] data = writeRandom(src, 300 * 1024 + 5, 5);
+		//目标目录不存在时自动创建,已存在的更长的目标文件被截断
+		File dst = new File(dir, "a/b/dst");
+		dst.getParentFile().mkdirs();
+		writeRandom(dst, 400 * 1024, 6);
+		RecordingListener listener = new RecordingListener(0);
+		assertTrue(IoUtils.copyFile(src, dst, listener));
+		assertTrue(Arrays.equals(data, read(dst)));
+		assertTrue(Arrays.equals(data, read(src)));
+		assertEquals(data.length, listener.last());
+		assertEquals(data.length, listener.calls.get(0)[1]);
+
+		File other = new File(dir, "c/other");
+		assertTrue(IoUtils.copyFile(src.getPath(), other.getPath()));
+		assertTrue(Arrays.equals(data, read(other)));
+
+		assertFalse(IoUtils.copyFile(new File(dir, "missing").getPath(), other.getPath()));
+		assertFalse(IoUtils.copyFile(dir.getPath(), other.getPath()));
+		assertFalse(IoUtils.copyFile("", other.getPath()));
+	}
+
+	public void testCopyFileCancelled() throws Exception {
+		File src = new File(dir, "src");
+		writeRandom(src, 1000, 7);
+		File dst = new File(dir, "dst");
+		RecordingListener listener = new RecordingListener(1);
+		assertFalse(IoUtils.copyFile(src, dst, listener));
+		assertEquals(1, listener.calls.size());
+		//取消后删除不完整的目标文件
+		assertFalse(dst.exists());
+		assertEquals(1000, src.length());
+	}
+
+	public void testMoveFile() throws Exception {
+		File src = new File(dir, "src");
+		byte[] data = writeRandom(src, 2000, 8);
+		File dst = new File(dir, "a/dst");
+		RecordingListener listener = new RecordingListener(0);
+		assertTrue(IoUtils.moveFile(src, dst, listener));
+		assertFalse(src.exists());
+		assertTrue(Arrays.equals(data, read(dst)));
+		//同一个文件系统中直接重命名,不回调进度
+		assertEquals(0, listener.calls.size());
+
+		assertTrue(IoUtils.moveFile(dst.getPath(), src.getPath()));
+		assertTrue(Arrays.equals(data, read(src)));
+		assertFalse(IoUtils.moveFile(dst.getPath(), src.getPath()));
+	}
+
+	//查找重命名会失败的目录,即与临时目录不在同一个文件系统中
+	private File otherFileSystemDir() throws Exception {
+		File probe = new File(dir, "probe");
+		for(String path : OTHER_FILE_SYSTEMS) {
+			if(path == null || !new File(path).isDirectory()) {
+				continue;
+			}
+			File other = new File(path, "IoUtilsTest-" + System.nanoTime());
+			if(!other.mkdirs()) {
+				continue;
+			}
+			writeRandom(probe, 1, 0);
+			if(!probe.renameTo(new File(other, "probe"))) {
+				probe.delete();
+				return other;
+			}
+			BulkDeleter.delete(other);
+		}
+		fail("no directory on another file system, can't test copying fallback of moveFile()");
+		return null;
+	}
+
+	public void testMoveFileAcrossFileSystems() throws Exception {
+		File other = otherFileSystemDir();
+		try {
+			File src = new File(dir, "src");
+			byte[] data = writeRandom(src, 5000, 9);
+			File dst = new File(other, "dst");
+
+			//复制被取消时源文件保持不变
+			RecordingListener listener = new RecordingListener(1);
+			assertFalse(IoUtils.moveFile(src, dst, listener));
+			assertEquals(1, listener.calls.size());
+			assertTrue(Arrays.equals(data, read(src)));
+			assertFalse(dst.exists());
+
+			//无法重命名时先复制再删除源文件
+			listener = new RecordingListener(0);
+			assertTrue(IoUtils.moveFile(src, dst, listener));
+			assertFalse(src.exists());
+			assertTrue(Arrays.equals(data, read(dst)));
+			assertEquals(data.length, listener.last());
+		} finally {
+			BulkDeleter.delete(other);
+		}
+	}
+
+	public void testTransferStreams() throws Exception {
+		byte[] data = new byte[200 * 1024 + 1];
+		new Random(10).nextBytes(data);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		RecordingListener listener = new RecordingListener(0);
+		assertEquals(data.length, IoUtils.transfer(new ByteArrayInputStream(data), out, -1, listener));
+		assertTrue(Arrays.equals(data, out.toByteArray()));
+		//每读一次回调一次,进度递增,总字节数原样传入
+		assertTrue(listener.calls.size() > 1);
+		long previous = 0;
+		for(long[] call : listener.calls) {
+			assertTrue(call[0] > previous);
+			assertEquals(-1, call[1]);
+			previous = call[0];
+		}
+		assertEquals(data.length, previous);
+
+		listener = new RecordingListener(2);
+		assertEquals(-1, IoUtils.transfer(new ByteArrayInputStream(data), new ByteArrayOutputStream(), data.length, listener));
+		assertEquals(2, listener.calls.size());
+		assertEquals(-1, IoUtils.transfer(null, out, -1, null));
+	}
+
+	public void testTransferFileStreams() throws Exception {
+		File src = new File(dir, "src");
+		byte[] data = writeRandom(src, 100 * 1024, 11);
+		File dst = new File(dir, "dst");
+		FileInputStream in = new FileInputStream(src);
+		FileOutputStream out = new FileOutputStream(dst);
+		try {
+			//从输入流的当前位置开始传输,未知总长度时为剩余的字节数
+			assertEquals(10, in.skip(10));
+			RecordingListener listener = new RecordingListener(0);
+			assertEquals(data.length - 10, IoUtils.transfer(in, out, -1, listener));
+			assertEquals(data.length - 10, listener.last());
+			assertEquals(data.length - 10, listener.calls.get(0)[1]);
+			//传输后输入流位于结尾
+			assertEquals(-1, in.read());
+		} finally {
+			in.close();
+			out.close();
+		}
+		assertTrue(Arrays.equals(Arrays.copyOfRange(data, 10, data.length), read(dst)));
+
+		in = new FileInputStream(src);
+		out = new FileOutputStream(dst);
+		try {
+			RecordingListener listener = new RecordingListener(1);
+			assertEquals(-1, IoUtils.transfer(in, out, data.length, listener));
+			assertEquals(1, listener.calls.size());
+		} finally {
+			in.close();
+			out.close();
+		}
+	}
+}
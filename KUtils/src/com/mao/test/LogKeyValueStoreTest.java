@@ -0,0 +1,119 @@
+package com.mao.test;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+import com.mao.kutils.LogKeyValueStore;
+
+public class LogKeyValueStoreTest extends TestCase {
+
+	private File file;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		file = File.createTempFile("LogKeyValueStoreTest", ".kvlog");
+		file.delete();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		file.delete();
+		super.tearDown();
+	}
+
+	public void testWriteAndReopen() throws Exception {
+		LogKeyValueStore store = LogKeyValueStore.open(file);
+		Set<String> set = new HashSet<String>();
+		set.add("a");
+		set.add("b");
+		Map<String, Object> changes = new HashMap<String, Object>();
+		changes.put("boolean", true);
+		changes.put("int", 1);
+		changes.put("long", 2L);
+		changes.put("float", 3f);
+		changes.put("string", "中文");
+		changes.put("set", set);
+		store.write(changes, false, true);
+		changes.clear();
+		changes.put("int", null);
+		store.write(changes, false, true);
+		store.close();
+
+		store = LogKeyValueStore.open(file);
+		assertEquals(Boolean.TRUE, store.get("boolean"));
+		assertNull(store.get("int"));
+		assertEquals(2L, store.get("long"));
+		assertEquals(3f, store.get("float"));
+		assertEquals("中文", store.get("string"));
+		assertEquals(set, store.get("set"));
+		store.close();
+	}
+
+	public void testTornRecordIsDiscarded() throws Exception {
+		LogKeyValueStore store = LogKeyValueStore.open(file);
+		Map<String, Object> changes = new HashMap<String, Object>();
+		changes.put("key", "first");
+		store.write(changes, false, true);
+		long validSize = store.getLogSize();
+		changes.put("key", "second");
+		store.write(changes, false, true);
+		store.close();
+
+		//模拟写入第二条记录时崩溃
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		raf.setLength(raf.length() - 3);
+		raf.close();
+
+		store = LogKeyValueStore.open(file);
+		assertEquals("first", store.get("key"));
+		assertEquals(validSize, store.getLogSize());
+		assertEquals(validSize, file.length());
+		store.close();
+	}
+
+	public void testCompactKeepsLatestValues() throws Exception {
+		LogKeyValueStore store = LogKeyValueStore.open(file);
+		Map<String, Object> changes = new HashMap<String, Object>();
+		for(int i = 0; i < 100; i++) {
+			changes.put("key", i);
+			changes.put("other" + (i % 10), "value" + i);
+			store.write(changes, false, false);
+			changes.clear();
+		}
+		long before = store.getLogSize();
+		store.compact();
+		assertTrue(store.getLogSize() < before);
+		changes.put("after", "compact");
+		store.write(changes, true, true);
+		store.close();
+
+		store = LogKeyValueStore.open(file);
+		assertEquals(1, store.getAll().size());
+		assertEquals("compact", store.get("after"));
+		store.close();
+	}
+
+	public void testCompactedFileReopens() throws Exception {
+		LogKeyValueStore store = LogKeyValueStore.open(file);
+		Map<String, Object> changes = new HashMap<String, Object>();
+		for(int i = 0; i < 1000; i++) {
+			changes.put("key" + (i % 300), i);
+			store.write(changes, false, false);
+			changes.clear();
+		}
+		store.compact();
+		store.close();
+
+		store = LogKeyValueStore.open(file);
+		assertEquals(300, store.getAll().size());
+		assertEquals(999, store.get("key99"));
+		store.close();
+	}
+}
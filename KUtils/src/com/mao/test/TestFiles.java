@@ -0,0 +1,63 @@
+package com.mao.test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import junit.framework.Assert;
+
+/**
+ * 测试中共用的临时文件和符号链接工具
+ *
+ * @author mao
+ * */
+final class TestFiles {
+
+	private TestFiles() {
+	}
+
+	/**
+	 * 创建空的临时目录
+	 *
+	 * @param prefix 目录名前缀
+	 * @return 返回创建的目录
+	 */
+	static File createTempDir(String prefix) throws IOException {
+		File dir = File.createTempFile(prefix, "");
+		if(!dir.delete() || !dir.mkdirs()) {
+			throw new IOException("can't create temp dir " + dir);
+		}
+		return dir;
+	}
+
+	/**
+	 * 写入指定长度的0
+	 */
+	static void write(File file, int length) throws IOException {
+		FileOutputStream out = new FileOutputStream(file);
+		try {
+			out.write(new byte[length]);
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * 创建符号链接,无法创建时测试失败,不会静默跳过依赖符号链接的断言
+	 *
+	 * @param target 链接指向的文件
+	 * @param link 链接的路径
+	 */
+	static void symlink(File target, File link) throws Exception {
+		int exit;
+		try {
+			Process process = Runtime.getRuntime().exec(new String[] {"ln", "-s", target.getPath(), link.getPath()});
+			exit = process.waitFor();
+		} catch (IOException e) {
+			exit = -1;
+		}
+		if(exit != 0 || !link.exists()) {
+			Assert.fail("can't create symbolic link " + link + " to " + target);
+		}
+	}
+}
@@ -0,0 +1,56 @@
+package com.mao.test;
+
+import java.net.URLEncoder;
+import java.nio.charset.Charset;
+
+import junit.framework.TestCase;
+
+import com.mao.kutils.UrlCodec;
+
+public class UrlCodecTest extends TestCase {
+
+	public void testFormMatchesUrlEncoder() throws Exception {
+		String[] samples = {"", "abc", "a b+c", "k=v&x=y", "中文", "😀", "~*'()!"};
+		for(String s : samples) {
+			assertEquals(URLEncoder.encode(s, "UTF-8"), UrlCodec.FORM.encode(s));
+			assertEquals(URLEncoder.encode(s, "GBK"), UrlCodec.FORM.encode(s, Charset.forName("GBK")));
+			assertEquals(s, UrlCodec.FORM.decode(UrlCodec.FORM.encode(s)));
+		}
+	}
+
+	public void testNonAsciiCompatibleCharset() throws Exception {
+		String[] samples = {"0.)!", "a b+c", "k=v&x=y", "中文 😀"};
+		for(String s : samples) {
+			assertEquals(URLEncoder.encode(s, "UTF-16"), UrlCodec.FORM.encode(s, Charset.forName("UTF-16")));
+			assertEquals(URLEncoder.encode(s, "UTF-16LE"), UrlCodec.FORM.encode(s, Charset.forName("UTF-16LE")));
+			assertEquals(s, UrlCodec.FORM.decode(UrlCodec.FORM.encode(s, Charset.forName("UTF-16")), Charset.forName("UTF-16")));
+		}
+	}
+
+	public void testComponentRules() {
+		assertEquals("/a%20b/c%3Fd", UrlCodec.PATH.encode("/a b/c?d"));
+		assertEquals("a%2Fb", UrlCodec.PATH_SEGMENT.encode("a/b"));
+		assertEquals("a%2Bb%26c%3Dd/?", UrlCodec.QUERY.encode("a+b&c=d/?"));
+		//'+'只在FORM中表示空格
+		assertEquals("a+b", UrlCodec.QUERY.decode("a+b"));
+		assertEquals("a b", UrlCodec.FORM.decode("a+b"));
+	}
+
+	public void testUnchangedInputIsReturnedAsIs() {
+		String s = "plain-ascii_text.value";
+		assertSame(s, UrlCodec.QUERY.encode(s));
+		assertSame(s, UrlCodec.QUERY.decode(s));
+	}
+
+	public void testInvalidEscapes() {
+		assertNull(UrlCodec.QUERY.decode("%zz"));
+		assertNull(UrlCodec.QUERY.decode("abc%4"));
+	}
+
+	public void testAppendQueryParameter() {
+		StringBuilder url = new StringBuilder("http://example.com/search");
+		UrlCodec.appendQueryParameter(url, "q", "a b&c");
+		UrlCodec.appendQueryParameter(url, "page", "2");
+		assertEquals("http://example.com/search?q=a%20b%26c&page=2", url.toString());
+	}
+}